@@ -0,0 +1,6 @@
+import joblib
+
+# Convert the pickled model to the XGBoost JSON format loaded by badhtaxfileserv (ETA_MODEL_PATH)
+model = joblib.load("xgb_refund_model.pkl")
+model.get_booster().save_model("xgb_refund_model.json")
+print("Wrote xgb_refund_model.json")
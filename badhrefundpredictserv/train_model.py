@@ -83,3 +83,5 @@ print(f"Test R² Score: {r2:.2f}")
 
 # --- SAVE TRAINED MODEL ---
 joblib.dump(model, 'xgb_refund_model.pkl')
+# JSON export scored in-process by badhtaxfileserv (ETA_MODEL_PATH)
+model.get_booster().save_model('xgb_refund_model.json')
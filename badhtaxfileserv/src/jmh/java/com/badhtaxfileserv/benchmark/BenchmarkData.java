@@ -0,0 +1,84 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.config.RedisConfig;
+import com.badhtaxfileserv.dto.CreateTaxFileRequest;
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Sample entities and requests shared by the benchmarks, shaped like a typical filing.
+ */
+final class BenchmarkData {
+
+    static final String USER_ID = "bench-user";
+    static final int YEAR = 2024;
+
+    private BenchmarkData() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new RedisConfig().objectMapper();
+    }
+
+    static CacheValueCodec codec(CacheValueCodec.Format format) {
+        return new CacheValueCodec(objectMapper(), format, 1024);
+    }
+
+    static TaxFile taxFileWithRefund(String userId, int year) {
+        TaxFile taxFile = TaxFile.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .year(year)
+                .income(new BigDecimal("120000.00"))
+                .expense(new BigDecimal("20000.00"))
+                .taxRate(new BigDecimal("30.00"))
+                .deducted(new BigDecimal("25000.00"))
+                .refundAmount(new BigDecimal("500.00"))
+                .taxStatus(TaxFile.TaxStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        Refund refund = Refund.builder()
+                .id(UUID.randomUUID())
+                .taxFile(taxFile)
+                .refundStatus(Refund.RefundStatus.PENDING)
+                .refundEta(LocalDateTime.now().plusDays(30))
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        taxFile.setRefund(refund);
+        return taxFile;
+    }
+
+    static CreateTaxFileRequest createRequest(String userId, int year) {
+        return CreateTaxFileRequest.builder()
+                .userId(userId)
+                .year(year)
+                .income(new BigDecimal("120000.00"))
+                .expense(new BigDecimal("20000.00"))
+                .taxRate(new BigDecimal("30.00"))
+                .deducted(new BigDecimal("25000.00"))
+                .refund(new BigDecimal("500.00"))
+                .build();
+    }
+
+    static ProcessRefundEventRequest refundEvent(UUID fileId, String type) {
+        return ProcessRefundEventRequest.builder()
+                .eventId(UUID.randomUUID().toString())
+                .fileId(fileId.toString())
+                .type(type)
+                .data(ProcessRefundEventRequest.EventData.builder()
+                        .eventDate(LocalDateTime.now())
+                        .build())
+                .build();
+    }
+}
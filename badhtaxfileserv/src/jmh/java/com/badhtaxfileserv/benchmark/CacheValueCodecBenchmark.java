@@ -0,0 +1,100 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache value encode/decode per {@link CacheValueCodec.Format}, for a single tax file and for a
+ * ten-year {@link TaxUserResponse}. Encoded sizes are printed once per format at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheValueCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private CacheValueCodec.Format format;
+
+    private CacheValueCodec codec;
+    private TaxFileResponse taxFile;
+    private TaxUserResponse taxUser;
+    private byte[] encodedTaxFile;
+    private byte[] encodedTaxUser;
+
+    @Setup
+    public void setUp() {
+        codec = BenchmarkData.codec(format);
+        taxFile = TaxFileResponse.fromEntity(BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, BenchmarkData.YEAR));
+
+        List<TaxUserResponse.TaxFileSummary> summaries = new ArrayList<>();
+        for (int year = BenchmarkData.YEAR - 9; year <= BenchmarkData.YEAR; year++) {
+            TaxFile entity = BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, year);
+            summaries.add(TaxUserResponse.TaxFileSummary.builder()
+                    .fileId(entity.getId().toString())
+                    .year(year)
+                    .income(entity.getIncome())
+                    .expense(entity.getExpense())
+                    .taxRate(entity.getTaxRate())
+                    .deducted(entity.getDeducted())
+                    .refundAmount(entity.getRefundAmount())
+                    .taxStatus(entity.getTaxStatus().name())
+                    .refundStatus(entity.getRefund().getRefundStatus().name())
+                    .refundEta(entity.getRefund().getRefundEta())
+                    .createdAt(entity.getCreatedAt())
+                    .updatedAt(entity.getUpdatedAt())
+                    .build());
+        }
+        taxUser = TaxUserResponse.builder()
+                .userId(BenchmarkData.USER_ID)
+                .firstName("Bench")
+                .lastName("User")
+                .taxFiles(summaries)
+                .totalFiles(summaries.size())
+                .build();
+
+        encodedTaxFile = codec.encode(taxFile);
+        encodedTaxUser = codec.encode(taxUser);
+        System.out.printf("%n%s encoded sizes: tax file %d bytes, tax user %d bytes%n",
+                format, encodedTaxFile.length, encodedTaxUser.length);
+    }
+
+    @Benchmark
+    public byte[] encodeTaxFile() {
+        return codec.encode(taxFile);
+    }
+
+    @Benchmark
+    public TaxFileResponse decodeTaxFile() {
+        return codec.decodeTaxFile(encodedTaxFile);
+    }
+
+    @Benchmark
+    public byte[] encodeTaxUser() {
+        return codec.encode(taxUser);
+    }
+
+    @Benchmark
+    public TaxUserResponse decodeTaxUser() {
+        return codec.decodeTaxUser(encodedTaxUser);
+    }
+}
@@ -0,0 +1,108 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.util.ETAPredictor;
+import com.badhtaxfileserv.util.TreeEnsembleModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process ETA scoring with an ensemble the size of the largest grid in train_model.py
+ * (200 trees of depth 7), for one filing and for a 1000-filing bulk create.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ETAPredictorBenchmark {
+
+    private static final int FEATURE_COUNT = 10;
+
+    @Param({"200"})
+    public int trees;
+
+    @Param({"7"})
+    public int depth;
+
+    private ETAPredictor etaPredictor;
+    private TaxFile taxFile;
+    private List<TaxFile> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        etaPredictor = new ETAPredictor();
+        etaPredictor.setModel(TreeEnsembleModel.load(new ByteArrayInputStream(
+                syntheticModel(trees, depth).getBytes(StandardCharsets.UTF_8))));
+
+        taxFile = BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+        batch = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            batch.add(BenchmarkData.taxFileWithRefund("bench-user-" + i, BenchmarkData.YEAR));
+        }
+    }
+
+    @Benchmark
+    public LocalDateTime predictETA() {
+        return etaPredictor.predictETA(taxFile);
+    }
+
+    @Benchmark
+    public List<LocalDateTime> predictETAs() {
+        return etaPredictor.predictETAs(batch);
+    }
+
+    /**
+     * Complete binary trees in XGBoost's JSON layout with random splits over the feature ranges.
+     */
+    private static String syntheticModel(int trees, int depth) {
+        Random random = new Random(42);
+        double[] maxValues = {2025, 200_000, 50_000, 40, 30_000, 10_000, 740_000, 12, 6, 1};
+        StringBuilder json = new StringBuilder("{\"learner\":{\"learner_model_param\":{\"base_score\":\"3E1\",\"num_feature\":\"" + FEATURE_COUNT + "\"},"
+                + "\"gradient_booster\":{\"model\":{\"trees\":[");
+        int nodes = (1 << (depth + 1)) - 1;
+        int internal = (1 << depth) - 1;
+        for (int t = 0; t < trees; t++) {
+            StringBuilder left = new StringBuilder();
+            StringBuilder right = new StringBuilder();
+            StringBuilder indices = new StringBuilder();
+            StringBuilder conditions = new StringBuilder();
+            StringBuilder defaults = new StringBuilder();
+            for (int n = 0; n < nodes; n++) {
+                String separator = n == 0 ? "" : ",";
+                boolean leaf = n >= internal;
+                int feature = random.nextInt(FEATURE_COUNT);
+                left.append(separator).append(leaf ? -1 : 2 * n + 1);
+                right.append(separator).append(leaf ? -1 : 2 * n + 2);
+                indices.append(separator).append(leaf ? 0 : feature);
+                conditions.append(separator).append(leaf ? random.nextGaussian() : random.nextDouble() * maxValues[feature]);
+                defaults.append(separator).append(random.nextInt(2));
+            }
+            json.append(t == 0 ? "" : ",")
+                    .append("{\"left_children\":[").append(left)
+                    .append("],\"right_children\":[").append(right)
+                    .append("],\"split_indices\":[").append(indices)
+                    .append("],\"split_conditions\":[").append(conditions)
+                    .append("],\"default_left\":[").append(defaults).append("]}");
+        }
+        return json.append("]}}}}").toString();
+    }
+}
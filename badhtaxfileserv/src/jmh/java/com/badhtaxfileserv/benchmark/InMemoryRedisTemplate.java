@@ -0,0 +1,276 @@
+package com.badhtaxfileserv.benchmark;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis stand-in for benchmarks. Values are stored as the bytes that would go
+ * on the wire, so serialization cost matches production while the network
+ * round trip is left out.
+ */
+public class InMemoryRedisTemplate extends RedisTemplate<String, Object> {
+
+    private final ConcurrentHashMap<String, byte[]> store = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+    private final ValueOperations<String, Object> valueOperations;
+    private final ThreadLocal<List<Object>> pipeline = new ThreadLocal<>();
+
+    @SuppressWarnings("unchecked")
+    public InMemoryRedisTemplate() {
+        setKeySerializer(new StringRedisSerializer());
+        setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        setHashKeySerializer(new StringRedisSerializer());
+        setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+
+        valueOperations = (ValueOperations<String, Object>) Proxy.newProxyInstance(
+                ValueOperations.class.getClassLoader(),
+                new Class<?>[]{ValueOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "get" -> read((String) args[0]);
+                    case "set" -> {
+                        write((String) args[0], args[1]);
+                        yield null;
+                    }
+                    case "increment" -> increment((String) args[0]);
+                    case "getOperations" -> this;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Override
+    public ValueOperations<String, Object> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        return store.remove(key) != null | hashes.remove(key) != null;
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+        return keys.stream().filter(this::delete).count();
+    }
+
+    /**
+     * Runs the callback against this template, collecting each script result as a pipeline would.
+     */
+    @Override
+    public List<Object> executePipelined(SessionCallback<?> session) {
+        return executePipelined(session, getValueSerializer());
+    }
+
+    /**
+     * Script results are already deserialized here, so the serializer is not applied again.
+     */
+    @Override
+    public List<Object> executePipelined(SessionCallback<?> session, RedisSerializer<?> resultSerializer) {
+        List<Object> results = new ArrayList<>();
+        pipeline.set(results);
+        try {
+            session.execute(this);
+        } finally {
+            pipeline.remove();
+        }
+        return results;
+    }
+
+    @Override
+    public <T> T execute(RedisScript<T> script, RedisSerializer<?> argsSerializer,
+                         RedisSerializer<T> resultSerializer, List<String> keys, Object... args) {
+        T result = runScript(script, resultSerializer, keys, args);
+        List<Object> results = pipeline.get();
+        if (results == null) {
+            return result;
+        }
+        results.add(result);
+        return null;
+    }
+
+    /**
+     * Emulates the tax file cache scripts, told apart by their leading comment. Expiry is ignored;
+     * generations, versions and load locks behave as in Redis.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T runScript(RedisScript<T> script, RedisSerializer<T> resultSerializer,
+                                         List<String> keys, Object... args) {
+        String name = script.getScriptAsString().lines().findFirst().orElse("");
+        if (name.equals("-- taxfile:lock")) {
+            return (T) Long.valueOf(store.putIfAbsent(keys.get(0), text(args[0]).getBytes(StandardCharsets.UTF_8)) == null ? 1 : 0);
+        }
+        if (name.equals("-- taxfile:unlock")) {
+            byte[] held = store.get(keys.get(0));
+            boolean owned = held != null && text(held).equals(text(args[0])) && store.remove(keys.get(0), held);
+            return (T) Long.valueOf(owned ? 1 : 0);
+        }
+        String generation = generation(keys.get(0));
+        Map<String, byte[]> hash = hashes.get(keys.get(1));
+        boolean live = hash != null && generation.equals(text(hash.get("gen")));
+        return switch (name) {
+            case "-- taxfile:read" -> {
+                byte[] value = live ? hash.get(text(args[0])) : null;
+                if (value == null && live && hash.containsKey(text(args[0]) + ":none")) {
+                    value = new byte[0];
+                }
+                yield value == null ? null : resultSerializer != null ? resultSerializer.deserialize(value) : (T) value;
+            }
+            case "-- taxfile:read-stale" -> {
+                byte[] value = live ? hash.get(text(args[0])) : null;
+                yield value == null ? null : resultSerializer != null ? resultSerializer.deserialize(value) : (T) value;
+            }
+            case "-- taxfile:read-all" -> {
+                List<byte[]> pairs = new ArrayList<>();
+                if (live) {
+                    hash.forEach((field, value) -> {
+                        if (field.chars().allMatch(Character::isDigit) && hash.containsKey(field + ":exp")) {
+                            pairs.add(field.getBytes(StandardCharsets.UTF_8));
+                            pairs.add(value);
+                        }
+                    });
+                }
+                yield (T) pairs;
+            }
+            case "-- taxfile:write" -> {
+                if (args.length > 4 && "1".equals(text(args[4]))) {
+                    invalidateTaxUser(keys.get(1), generation);
+                }
+                yield (T) writeField(keys.get(1), generation, text(args[0]), (byte[]) args[1], text(args[2]));
+            }
+            case "-- taxfile:write-missing" -> {
+                Map<String, byte[]> target = resetOnNewGeneration(keys.get(1), generation);
+                if (target.containsKey(text(args[0]) + ":v")) {
+                    yield (T) Long.valueOf(0);
+                }
+                target.put(text(args[0]) + ":none", new byte[0]);
+                yield (T) Long.valueOf(1);
+            }
+            case "-- taxfile:evict" -> {
+                Long evicted = evictFields(keys.get(1), args);
+                invalidateTaxUser(keys.get(1), generation);
+                yield (T) evicted;
+            }
+            case "-- taxfile:read-user" -> {
+                List<byte[]> result = new ArrayList<>();
+                result.add((generation + ":" + (live && hash.containsKey("user:v") ? text(hash.get("user:v")) : "0"))
+                        .getBytes(StandardCharsets.UTF_8));
+                if (live && hash.containsKey("user")) {
+                    result.add(hash.get("user"));
+                }
+                yield (T) result;
+            }
+            case "-- taxfile:write-user" -> {
+                Map<String, byte[]> target = resetOnNewGeneration(keys.get(1), generation);
+                String version = generation + ":" + (target.containsKey("user:v") ? text(target.get("user:v")) : "0");
+                if (!version.equals(text(args[1]))) {
+                    yield (T) Long.valueOf(0);
+                }
+                target.put("user", (byte[]) args[0]);
+                yield (T) Long.valueOf(1);
+            }
+            case "-- taxfile:invalidate-user" -> {
+                invalidateTaxUser(keys.get(1), generation);
+                yield (T) Long.valueOf(1);
+            }
+            default -> throw new UnsupportedOperationException(name);
+        };
+    }
+
+    public int size() {
+        return store.size() + hashes.size();
+    }
+
+    public void clear() {
+        store.clear();
+        hashes.clear();
+    }
+
+    private Long writeField(String key, String generation, String year, byte[] value, String version) {
+        Map<String, byte[]> hash = resetOnNewGeneration(key, generation);
+        byte[] current = hash.get(year + ":v");
+        if (current != null && Long.parseLong(text(current)) > Long.parseLong(version)) {
+            return 0L;
+        }
+        hash.put(year + ":v", version.getBytes(StandardCharsets.UTF_8));
+        hash.remove(year + ":none");
+        if (value.length == 0) {
+            hash.remove(year);
+            hash.remove(year + ":exp");
+        } else {
+            hash.put(year, value);
+            hash.put(year + ":exp", new byte[0]);
+        }
+        return 1L;
+    }
+
+    private Long evictFields(String key, Object[] args) {
+        Map<String, byte[]> hash = hashes.get(key);
+        long evicted = 0;
+        for (int i = 0; i < args.length && hash != null; i++) {
+            String year = text(args[i]);
+            if (hash.remove(year) != null) {
+                evicted++;
+            }
+            hash.remove(year + ":exp");
+            hash.remove(year + ":none");
+        }
+        return evicted;
+    }
+
+    private void invalidateTaxUser(String key, String generation) {
+        Map<String, byte[]> hash = resetOnNewGeneration(key, generation);
+        hash.remove("user");
+        byte[] version = hash.get("user:v");
+        hash.put("user:v", String.valueOf(version == null ? 1 : Long.parseLong(text(version)) + 1).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private Map<String, byte[]> resetOnNewGeneration(String key, String generation) {
+        Map<String, byte[]> hash = hashes.get(key);
+        if (hash == null || !generation.equals(text(hash.get("gen")))) {
+            hash = new ConcurrentHashMap<>();
+            hash.put("gen", generation.getBytes(StandardCharsets.UTF_8));
+            hashes.put(key, hash);
+        }
+        return hash;
+    }
+
+    private String generation(String key) {
+        byte[] generation = store.get(key);
+        return generation != null ? text(generation) : "0";
+    }
+
+    private synchronized Long increment(String key) {
+        long next = Long.parseLong(generation(key)) + 1;
+        store.put(key, String.valueOf(next).getBytes(StandardCharsets.UTF_8));
+        return next;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : value.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(String key, Object value) {
+        store.put(key, ((RedisSerializer<Object>) getValueSerializer()).serialize(value));
+    }
+
+    private Object read(String key) {
+        byte[] bytes = store.get(key);
+        return bytes != null ? getValueSerializer().deserialize(bytes) : null;
+    }
+}
@@ -0,0 +1,245 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.entity.OutboxMessage;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.RefundEvent;
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.entity.User;
+import com.badhtaxfileserv.repository.OutboxRepository;
+import com.badhtaxfileserv.repository.RefundEventRepository;
+import com.badhtaxfileserv.repository.RefundRepository;
+import com.badhtaxfileserv.repository.TaxFileBatchRepository;
+import com.badhtaxfileserv.repository.TaxFileKeyStreamRepository;
+import com.badhtaxfileserv.repository.TaxFileRepository;
+import com.badhtaxfileserv.repository.UserRepository;
+import com.badhtaxfileserv.service.TaxFileExistenceFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Postgres stand-ins for benchmarks. Each repository is a dynamic proxy that
+ * implements just the query methods the services call, backed by hash maps.
+ * Refund events and outbox messages are counted rather than retained so long runs stay flat in memory.
+ */
+public class InMemoryRepositories {
+
+    private final Map<String, TaxFile> taxFilesByKey = new ConcurrentHashMap<>();
+    private final Map<UUID, TaxFile> taxFilesById = new ConcurrentHashMap<>();
+    private final Map<UUID, Refund> refundsByTaxFileId = new ConcurrentHashMap<>();
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+    private final AtomicLong refundEventCount = new AtomicLong();
+    private final AtomicLong outboxSequence = new AtomicLong();
+
+    public final TaxFileRepository taxFileRepository = proxy(TaxFileRepository.class, Map.of(
+            "save", args -> saveTaxFile((TaxFile) args[0]),
+            "findById", args -> Optional.ofNullable(taxFilesById.get((UUID) args[0])),
+            "findByUserIdAndYearWithRefund", args -> Optional.ofNullable(taxFilesByKey.get(key((String) args[0], (Integer) args[1]))),
+            "findByUserIdWithRefund", args -> findByUserId((String) args[0]),
+            "existsByUserIdAndYear", args -> taxFilesByKey.containsKey(key((String) args[0], (Integer) args[1])),
+            "findUserIdAndYearByUserIdInAndYearIn", args -> findUserIdAndYear((Collection<?>) args[0], (Collection<?>) args[1])));
+
+    public final RefundRepository refundRepository = proxy(RefundRepository.class, Map.of(
+            "save", args -> saveRefund((Refund) args[0]),
+            "findByTaxFileId", args -> Optional.ofNullable(refundsByTaxFileId.get((UUID) args[0])),
+            "findByTaxFileIdForUpdate", args -> Optional.ofNullable(refundsByTaxFileId.get((UUID) args[0])),
+            "findByUserIdAndYear", args -> Optional.ofNullable(taxFilesByKey.get(key((String) args[0], (Integer) args[1])))
+                    .map(TaxFile::getRefund)));
+
+    public final RefundEventRepository refundEventRepository = proxy(RefundEventRepository.class, Map.of(
+            "save", args -> saveRefundEvent((RefundEvent) args[0]),
+            // Events are not retained, so every ID looks new; duplicates are caught by the in-memory filter
+            "existsByEventId", args -> false));
+
+    public final OutboxRepository outboxRepository = proxy(OutboxRepository.class, Map.of(
+            "save", args -> saveOutboxMessage((OutboxMessage) args[0])));
+
+    public final UserRepository userRepository = proxy(UserRepository.class, Map.of(
+            "save", args -> saveUser((User) args[0]),
+            "findByUserId", args -> Optional.ofNullable(usersById.get((String) args[0])),
+            "existsByUserId", args -> usersById.containsKey((String) args[0])));
+
+    public final TaxFileBatchRepository taxFileBatchRepository = new TaxFileBatchRepository(null) {
+        @Override
+        public Set<UUID> insertTaxFiles(List<TaxFile> taxFiles) {
+            Set<UUID> inserted = new HashSet<>();
+            for (TaxFile taxFile : taxFiles) {
+                if (taxFilesByKey.putIfAbsent(key(taxFile.getUserId(), taxFile.getYear()), taxFile) == null) {
+                    taxFilesById.put(taxFile.getId(), taxFile);
+                    inserted.add(taxFile.getId());
+                }
+            }
+            return inserted;
+        }
+
+        @Override
+        public void insertRefunds(List<Refund> refunds) {
+            refunds.forEach(refund -> refundsByTaxFileId.put(refund.getTaxFile().getId(), refund));
+        }
+
+        @Override
+        public void insertOutboxMessages(List<OutboxMessage> messages) {
+            messages.forEach(InMemoryRepositories.this::saveOutboxMessage);
+        }
+
+        @Override
+        public TaxFileResponse insertTaxFile(TaxFile taxFile, Refund refund, OutboxMessage message) {
+            if (taxFilesByKey.containsKey(key(taxFile.getUserId(), taxFile.getYear()))) {
+                throw new DuplicateKeyException("uk_tax_file_user_year");
+            }
+            taxFile.setCreatedAt(LocalDateTime.now());
+            saveTaxFile(taxFile);
+            if (refund != null) {
+                refund.setCreatedAt(LocalDateTime.now());
+                saveRefund(refund);
+                saveOutboxMessage(message);
+            }
+            return TaxFileResponse.fromEntity(taxFile);
+        }
+
+        @Override
+        public List<TaxFileResponse> findTaxFilesWithRefund(List<TaxFileKey> keys) {
+            return keys.stream()
+                    .map(key -> taxFilesByKey.get(key(key.getUserId(), key.getYear())))
+                    .filter(Objects::nonNull)
+                    .map(TaxFileResponse::fromEntity)
+                    .collect(Collectors.toList());
+        }
+    };
+
+    public final TaxFileKeyStreamRepository taxFileKeyStreamRepository = new TaxFileKeyStreamRepository(null) {
+        @Override
+        public long count() {
+            return taxFilesByKey.size();
+        }
+
+        @Override
+        public void forEachKey(int fetchSize, BiConsumer<String, Integer> consumer) {
+            taxFilesByKey.values().forEach(taxFile -> consumer.accept(taxFile.getUserId(), taxFile.getYear()));
+        }
+    };
+
+    /**
+     * An existence filter built from the tax files saved so far, with no Redis to announce to.
+     */
+    public TaxFileExistenceFilter existenceFilter() {
+        TransactionTemplate noTransaction = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(null);
+            }
+        };
+        TaxFileExistenceFilter filter = new TaxFileExistenceFilter(taxFileKeyStreamRepository, noTransaction, null,
+                new BackgroundExecutorFactory(false), new SimpleMeterRegistry(), false, true, 0.01, 1000, "taxfile:created");
+        filter.buildOnStartup();
+        while (!filter.isReady()) {
+            Thread.onSpinWait();
+        }
+        return filter;
+    }
+
+    /**
+     * Drop a tax file (and its refund) so the same key can be created again.
+     */
+    public void forget(String userId, Integer year) {
+        TaxFile taxFile = taxFilesByKey.remove(key(userId, year));
+        if (taxFile != null) {
+            taxFilesById.remove(taxFile.getId());
+            refundsByTaxFileId.remove(taxFile.getId());
+        }
+    }
+
+    public long refundEventCount() {
+        return refundEventCount.get();
+    }
+
+    private TaxFile saveTaxFile(TaxFile taxFile) {
+        if (taxFile.getId() == null) {
+            taxFile.setId(UUID.randomUUID());
+            taxFile.setCreatedAt(LocalDateTime.now());
+        }
+        taxFile.setUpdatedAt(LocalDateTime.now());
+        taxFilesByKey.put(key(taxFile.getUserId(), taxFile.getYear()), taxFile);
+        taxFilesById.put(taxFile.getId(), taxFile);
+        return taxFile;
+    }
+
+    private Refund saveRefund(Refund refund) {
+        if (refund.getId() == null) {
+            refund.setId(UUID.randomUUID());
+            refund.setCreatedAt(LocalDateTime.now());
+        }
+        refund.setUpdatedAt(LocalDateTime.now());
+        refund.getTaxFile().setRefund(refund);
+        refundsByTaxFileId.put(refund.getTaxFile().getId(), refund);
+        return refund;
+    }
+
+    private RefundEvent saveRefundEvent(RefundEvent event) {
+        if (event.getId() == null) {
+            event.setId(UUID.randomUUID());
+        }
+        refundEventCount.incrementAndGet();
+        return event;
+    }
+
+    private OutboxMessage saveOutboxMessage(OutboxMessage message) {
+        message.setId(outboxSequence.incrementAndGet());
+        return message;
+    }
+
+    private User saveUser(User user) {
+        usersById.put(user.getUserId(), user);
+        return user;
+    }
+
+    private List<TaxFile> findByUserId(String userId) {
+        return taxFilesByKey.values().stream()
+                .filter(taxFile -> taxFile.getUserId().equals(userId))
+                .sorted(Comparator.comparing(TaxFile::getYear).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private List<Object[]> findUserIdAndYear(Collection<?> userIds, Collection<?> years) {
+        return taxFilesByKey.values().stream()
+                .filter(taxFile -> userIds.contains(taxFile.getUserId()) && years.contains(taxFile.getYear()))
+                .map(taxFile -> new Object[]{taxFile.getUserId(), taxFile.getYear()})
+                .collect(Collectors.toList());
+    }
+
+    private static String key(String userId, Integer year) {
+        return userId + ":" + year;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> handlers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> handler = handlers.get(method.getName());
+            if (handler == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return handler.apply(args);
+        });
+    }
+}
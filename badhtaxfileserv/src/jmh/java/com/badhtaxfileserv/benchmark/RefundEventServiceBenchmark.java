@@ -0,0 +1,78 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.service.RefundEventIdFilter;
+import com.badhtaxfileserv.service.RefundEventService;
+import com.badhtaxfileserv.service.TaxFileCacheService;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import com.badhtaxfileserv.util.RefundEtaStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying one refund status event: refund lookup, status transition,
+ * cache eviction and the append to refund_events. Also measures a redelivered
+ * event, which should be dropped by the event ID filter before any other work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RefundEventServiceBenchmark {
+
+    private RefundEventService refundEventService;
+    private ProcessRefundEventRequest approvedEvent;
+    private ProcessRefundEventRequest duplicateEvent;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        InMemoryRepositories repositories = new InMemoryRepositories();
+        TaxFile taxFile = BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+        repositories.taxFileRepository.save(taxFile);
+        repositories.refundRepository.save(taxFile.getRefund());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        refundEventService = new RefundEventService(
+                repositories.refundRepository,
+                repositories.refundEventRepository,
+                repositories.taxFileRepository,
+                new TaxFileCacheService(new InMemoryRedisTemplate(), BenchmarkData.codec(CacheValueCodec.Format.BINARY), meterRegistry, 3000, 1000, 60000, 300000, 86400000, 60000),
+                null,  // the batch path is not covered here
+                null,
+                new RefundEventIdFilter(100_000, 3_600_000),
+                new RefundEtaStatistics(false, 30),
+                meterRegistry);
+
+        // APPROVED applies from any status, so every invocation takes the update path
+        approvedEvent = BenchmarkData.refundEvent(taxFile.getId(), "refund.approved");
+        duplicateEvent = BenchmarkData.refundEvent(taxFile.getId(), "refund.approved");
+        refundEventService.processRefundEvent(duplicateEvent);
+    }
+
+    @Benchmark
+    public void processRefundEvent() {
+        // A fresh event ID per call, otherwise every call after the first is a duplicate
+        approvedEvent.setEventId("evt-" + sequence++);
+        refundEventService.processRefundEvent(approvedEvent);
+    }
+
+    @Benchmark
+    public void processDuplicateRefundEvent() {
+        refundEventService.processRefundEvent(duplicateEvent);
+    }
+}
@@ -0,0 +1,64 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.service.TaxFileCacheService;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-DTO mapping and the cache value round trip: {@link TaxFileResponse#fromEntity}
+ * plus the value encode/decode done by {@link TaxFileCacheService} on every put and hit, per
+ * {@link CacheValueCodec.Format}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaxFileCacheBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private CacheValueCodec.Format format;
+
+    private TaxFile taxFile;
+    private TaxFileResponse response;
+    private TaxFileCacheService cacheService;
+
+    @Setup
+    public void setUp() {
+        taxFile = BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+        response = TaxFileResponse.fromEntity(taxFile);
+        cacheService = new TaxFileCacheService(new InMemoryRedisTemplate(), BenchmarkData.codec(format), new SimpleMeterRegistry(), 3000, 1000, 60000, 300000, 86400000, 60000);
+        cacheService.putInCache(BenchmarkData.USER_ID, BenchmarkData.YEAR, response);
+    }
+
+    @Benchmark
+    public TaxFileResponse fromEntity() {
+        return TaxFileResponse.fromEntity(taxFile);
+    }
+
+    @Benchmark
+    public void putInCache() {
+        cacheService.putInCache(BenchmarkData.USER_ID, BenchmarkData.YEAR, response);
+    }
+
+    @Benchmark
+    public TaxFileResponse getFromCache() {
+        return cacheService.getFromCache(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+    }
+}
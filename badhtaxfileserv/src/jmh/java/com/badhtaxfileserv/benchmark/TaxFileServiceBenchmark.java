@@ -0,0 +1,173 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.dto.BatchCreateTaxFileResponse;
+import com.badhtaxfileserv.dto.CreateTaxFileRequest;
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileLookupResponse;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.entity.User;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+import com.badhtaxfileserv.service.TaxFileCacheService;
+import com.badhtaxfileserv.service.TaxFileService;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import com.badhtaxfileserv.util.ETAPredictor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of the {@link TaxFileService} read and write paths with
+ * in-memory Redis and Postgres, so the numbers isolate our own code
+ * (entity mapping, JSON, logging, key building) from network latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaxFileServiceBenchmark {
+
+    private static final int LOOKUP_SIZE = 100;
+    private static final int CREATE_BATCH_SIZE = 100;
+
+    private InMemoryRepositories repositories;
+    private InMemoryRedisTemplate redisTemplate;
+    private TaxFileService taxFileService;
+    private CreateTaxFileRequest createRequest;
+    private List<CreateTaxFileRequest> createBatch;
+    private List<TaxFileKey> lookupKeys;
+
+    @Setup
+    public void setUp() {
+        repositories = new InMemoryRepositories();
+        redisTemplate = new InMemoryRedisTemplate();
+
+        repositories.userRepository.save(User.builder()
+                .userId(BenchmarkData.USER_ID)
+                .firstName("Bench")
+                .lastName("User")
+                .build());
+        repositories.taxFileRepository.save(BenchmarkData.taxFileWithRefund(BenchmarkData.USER_ID, BenchmarkData.YEAR));
+        createRequest = BenchmarkData.createRequest("bench-create-user", BenchmarkData.YEAR);
+        createBatch = new ArrayList<>(CREATE_BATCH_SIZE);
+        for (int i = 0; i < CREATE_BATCH_SIZE; i++) {
+            createBatch.add(BenchmarkData.createRequest("bench-batch-user-" + i, BenchmarkData.YEAR));
+        }
+        lookupKeys = new ArrayList<>(LOOKUP_SIZE);
+        for (int i = 0; i < LOOKUP_SIZE; i++) {
+            repositories.taxFileRepository.save(BenchmarkData.taxFileWithRefund("bench-lookup-user-" + i, BenchmarkData.YEAR));
+            lookupKeys.add(new TaxFileKey("bench-lookup-user-" + i, BenchmarkData.YEAR));
+        }
+
+        // Built after the tax files above are saved, as at startup
+        taxFileService = new TaxFileService(
+                repositories.taxFileRepository,
+                repositories.userRepository,
+                new ETAPredictor(),
+                new TaxFileCacheService(redisTemplate, BenchmarkData.codec(CacheValueCodec.Format.BINARY), new SimpleMeterRegistry(), 3000, 1000, 60000, 300000, 86400000, 60000),
+                repositories.taxFileBatchRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                repositories.existenceFilter());
+
+        // Prime the cache so the hit benchmark starts warm
+        taxFileService.getTaxFile(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+        taxFileService.getTaxFilesByUserId(BenchmarkData.USER_ID);
+        taxFileService.lookupTaxFiles(lookupKeys);
+    }
+
+    @Benchmark
+    public TaxFileResponse getTaxFileCacheHit() {
+        return taxFileService.getTaxFile(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+    }
+
+    @Benchmark
+    public TaxFileResponse getTaxFileCacheMiss() {
+        // Clearing a single-entry map is negligible next to the load-and-cache path it forces
+        redisTemplate.clear();
+        return taxFileService.getTaxFile(BenchmarkData.USER_ID, BenchmarkData.YEAR);
+    }
+
+    /**
+     * A year the user has not filed for, as polled by clients waiting on a filing; the existence
+     * filter answers without the cache or the repositories
+     */
+    @Benchmark
+    public boolean getTaxFileNotFiled() {
+        try {
+            taxFileService.getTaxFile(BenchmarkData.USER_ID, BenchmarkData.YEAR + 1);
+            return true;
+        } catch (TaxFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * What a job reading {@code LOOKUP_SIZE} tax files did before the bulk lookup, minus the HTTP calls
+     */
+    @Benchmark
+    public int getTaxFileOneByOneCacheHit() {
+        int found = 0;
+        for (TaxFileKey key : lookupKeys) {
+            found += taxFileService.getTaxFile(key.getUserId(), key.getYear()) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public TaxFileLookupResponse lookupTaxFilesCacheHit() {
+        return taxFileService.lookupTaxFiles(lookupKeys);
+    }
+
+    @Benchmark
+    public TaxFileLookupResponse lookupTaxFilesCacheMiss() {
+        redisTemplate.clear();
+        return taxFileService.lookupTaxFiles(lookupKeys);
+    }
+
+    @Benchmark
+    public TaxUserResponse getTaxFilesByUserIdCacheHit() {
+        return taxFileService.getTaxFilesByUserId(BenchmarkData.USER_ID);
+    }
+
+    @Benchmark
+    public TaxUserResponse getTaxFilesByUserIdCacheMiss() {
+        redisTemplate.clear();
+        return taxFileService.getTaxFilesByUserId(BenchmarkData.USER_ID);
+    }
+
+    @Benchmark
+    public TaxFileResponse createTaxFile() {
+        TaxFileResponse response = taxFileService.createTaxFile(createRequest);
+        // Forget the row again so every invocation takes the insert path
+        repositories.forget(createRequest.getUserId(), createRequest.getYear());
+        return response;
+    }
+
+    /**
+     * Partner e-file submission of {@code CREATE_BATCH_SIZE} tax files: per-item validation, the
+     * duplicate query, one batch insert per table and one cache pipeline
+     */
+    @Benchmark
+    public BatchCreateTaxFileResponse createTaxFiles() {
+        BatchCreateTaxFileResponse response = taxFileService.createTaxFiles(createBatch);
+        for (CreateTaxFileRequest request : createBatch) {
+            repositories.forget(request.getUserId(), request.getYear());
+        }
+        return response;
+    }
+}
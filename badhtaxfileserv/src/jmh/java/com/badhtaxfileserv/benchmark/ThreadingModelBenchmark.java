@@ -0,0 +1,87 @@
+package com.badhtaxfileserv.benchmark;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Platform versus virtual threads for blocking request handling. Each operation serves a
+ * burst of {@code concurrentRequests} requests that each block for {@code ioMillis}, standing
+ * in for a Redis or JDBC round trip, and waits until all have finished.
+ *
+ * The platform mode is a fixed pool the size of Tomcat's default {@code server.tomcat.threads.max},
+ * which is what bounds thread stack memory today. The virtual mode uses a virtual thread per
+ * request, as Tomcat does with {@code spring.threads.virtual.enabled}. Requires Java 21.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadingModelBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"200", "2000", "10000"})
+    public int concurrentRequests;
+
+    @Param({"5"})
+    public long ioMillis;
+
+    private Executor executor;
+    private ExecutorService platformPool;
+
+    @Setup
+    public void setUp() {
+        if ("virtual".equals(mode)) {
+            executor = new BackgroundExecutorFactory(true).newExecutor("request-");
+        } else {
+            platformPool = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            executor = platformPool;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void serveBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(ioMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,88 @@
+-- Insert throughput for refund_events shaped rows keyed by random (version 4) UUIDs, the old
+-- gen_random_uuid() scheme, versus time-ordered (version 7) UUIDs from uuid_generate_v7().
+-- Each scheme fills its own scratch table, with a primary key and a refund_id index, in
+-- committed batches and reports the rate as the table grows.
+--
+-- Needs a database migrated to V9. Run against a Postgres sized like production; the gap
+-- only opens once the indexes outgrow shared_buffers:
+--   psql "$DATABASE_URL" -v rows=30000000 -v batch=100000 -f src/jmh/sql/uuid_key_insert_benchmark.sql
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+    \set rows 30000000
+\endif
+\if :{?batch}
+\else
+    \set batch 100000
+\endif
+
+CREATE SCHEMA IF NOT EXISTS uuid_bench;
+
+-- Events reference refunds created shortly before them, so refund_id takes a fresh key of the
+-- same scheme: random in the v4 table, recent in the v7 table
+CREATE OR REPLACE PROCEDURE uuid_bench.fill(scheme TEXT, key_function TEXT, total BIGINT, batch INT)
+LANGUAGE plpgsql AS $$
+DECLARE
+    table_name TEXT := 'refund_events_' || scheme;
+    started TIMESTAMPTZ;
+    batch_started TIMESTAMPTZ;
+    inserted BIGINT := 0;
+    rows_in_batch INT;
+BEGIN
+    EXECUTE format('DROP TABLE IF EXISTS uuid_bench.%I', table_name);
+    EXECUTE format('CREATE TABLE uuid_bench.%I (id UUID PRIMARY KEY, refund_id UUID NOT NULL, ' ||
+                   'event_type VARCHAR(32) NOT NULL, event_date TIMESTAMPTZ NOT NULL, ' ||
+                   'created_at TIMESTAMPTZ NOT NULL DEFAULT NOW())', table_name);
+    EXECUTE format('CREATE INDEX %I ON uuid_bench.%I (refund_id)', table_name || '_refund_id', table_name);
+    COMMIT;
+
+    started := clock_timestamp();
+    WHILE inserted < total LOOP
+        batch_started := clock_timestamp();
+        rows_in_batch := LEAST(batch, total - inserted);
+        EXECUTE format('INSERT INTO uuid_bench.%I (id, refund_id, event_type, event_date) ' ||
+                       'SELECT %s, %s, ''refund.inprogress'', NOW() FROM generate_series(1, $1)',
+                       table_name, key_function, key_function)
+            USING rows_in_batch;
+        COMMIT;
+        inserted := inserted + rows_in_batch;
+        IF inserted % (batch::BIGINT * 50) = 0 OR inserted = total THEN
+            RAISE NOTICE '% at % rows: % rows/s in the last batch, % rows/s overall',
+                scheme, inserted,
+                round(rows_in_batch / GREATEST(extract(epoch FROM clock_timestamp() - batch_started), 0.001)),
+                round(inserted / GREATEST(extract(epoch FROM clock_timestamp() - started), 0.001));
+        END IF;
+    END LOOP;
+
+    INSERT INTO uuid_bench.results (scheme, rows_inserted, seconds, primary_key_bytes, refund_id_index_bytes)
+    VALUES (scheme, inserted, extract(epoch FROM clock_timestamp() - started),
+            pg_relation_size(format('uuid_bench.%I', table_name || '_pkey')::REGCLASS),
+            pg_relation_size(format('uuid_bench.%I', table_name || '_refund_id')::REGCLASS));
+    COMMIT;
+END;
+$$;
+
+DROP TABLE IF EXISTS uuid_bench.results;
+CREATE TABLE uuid_bench.results (
+    scheme TEXT PRIMARY KEY,
+    rows_inserted BIGINT NOT NULL,
+    seconds NUMERIC NOT NULL,
+    primary_key_bytes BIGINT NOT NULL,
+    refund_id_index_bytes BIGINT NOT NULL
+);
+
+CALL uuid_bench.fill('v4', 'gen_random_uuid()', :rows, :batch);
+CHECKPOINT;
+CALL uuid_bench.fill('v7', 'taxfileservdb.uuid_generate_v7()', :rows, :batch);
+
+-- Random keys split pages all over the index and leave them about half full, so besides the
+-- rate compare the index sizes
+SELECT scheme,
+       rows_inserted,
+       round(rows_inserted / seconds) AS rows_per_second,
+       pg_size_pretty(primary_key_bytes) AS primary_key,
+       pg_size_pretty(refund_id_index_bytes) AS refund_id_index
+FROM uuid_bench.results
+ORDER BY scheme;
+
+DROP SCHEMA uuid_bench CASCADE;
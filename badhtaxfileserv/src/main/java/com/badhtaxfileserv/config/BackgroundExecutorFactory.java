@@ -0,0 +1,37 @@
+package com.badhtaxfileserv.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the executors for background work outside the request path (publisher start-up,
+ * subscriber handlers). They follow {@code spring.threads.virtual.enabled}, the same switch that
+ * moves Tomcat and the scheduler onto virtual threads, so one property selects the threading mode.
+ */
+@Component
+@Slf4j
+public class BackgroundExecutorFactory {
+
+    private final boolean virtualThreads;
+
+    public BackgroundExecutorFactory(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        log.info("Background executors use {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * A thread per task, virtual or platform daemon depending on the mode.
+     */
+    public SimpleAsyncTaskExecutor newExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(virtualThreads);
+        executor.setDaemon(true);
+        return executor;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+}
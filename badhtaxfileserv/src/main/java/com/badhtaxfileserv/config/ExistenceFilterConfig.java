@@ -0,0 +1,27 @@
+package com.badhtaxfileserv.config;
+
+import com.badhtaxfileserv.service.TaxFileExistenceFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnExpression("${redis.enabled:true} and ${cache.existence-filter.enabled:true}")
+public class ExistenceFilterConfig {
+
+    /**
+     * Subscribes the existence filter to the channel other instances announce created tax files
+     * on, so their keys are never answered as missing here.
+     */
+    @Bean
+    public RedisMessageListenerContainer existenceFilterListener(
+            RedisConnectionFactory connectionFactory, TaxFileExistenceFilter existenceFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(existenceFilter, new ChannelTopic(existenceFilter.getChannel()));
+        return container;
+    }
+}
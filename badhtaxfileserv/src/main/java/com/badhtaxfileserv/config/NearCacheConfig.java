@@ -0,0 +1,27 @@
+package com.badhtaxfileserv.config;
+
+import com.badhtaxfileserv.service.NearTaxFileCacheService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnExpression("${redis.enabled:true} and ${cache.near.enabled:false}")
+public class NearCacheConfig {
+
+    /**
+     * Subscribes the near cache to the invalidation channel so evictions made on
+     * other instances are applied to this instance's in-process tier.
+     */
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationListener(
+            RedisConnectionFactory connectionFactory, NearTaxFileCacheService nearCacheService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCacheService, new ChannelTopic(nearCacheService.getInvalidationChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,130 @@
+package com.badhtaxfileserv.config;
+
+import com.badhtaxfileserv.controller.ReactiveReadHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * Optional reactive read API. A Reactor Netty server on {@code reactive.port} serves the read-heavy
+ * GETs through WebFlux, R2DBC and reactive Lettuce, next to the MVC server which keeps all writes.
+ * Both share the database, the Redis cache and its invalidations.
+ *
+ * The R2DBC pool is built here rather than by Spring Boot, whose R2DBC auto-configuration is
+ * excluded so it never competes with JPA for the transaction manager.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveReadConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool r2dbcConnectionPool(
+            @Value("${reactive.r2dbc.url}") String url,
+            @Value("${reactive.r2dbc.username}") String username,
+            @Value("${reactive.r2dbc.password}") String password,
+            @Value("${reactive.r2dbc.pool.initial-size:4}") int initialSize,
+            @Value("${reactive.r2dbc.pool.max-size:20}") int maxSize,
+            @Value("${reactive.r2dbc.pool.max-acquire-time:5000}") long maxAcquireTimeMillis) {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("reactive-read")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(Duration.ofMillis(maxAcquireTimeMillis))
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionPool r2dbcConnectionPool) {
+        return DatabaseClient.create(r2dbcConnectionPool);
+    }
+
+    /**
+     * Same serializers as the blocking {@code redisTemplate} in {@link RedisConfig}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "redis.enabled", havingValue = "true", matchIfMissing = true)
+    public ReactiveRedisTemplate<String, Object> reactiveTaxFileRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(new GenericJackson2JsonRedisSerializer())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    @Bean
+    public ReactiveReadServer reactiveReadServer(ReactiveReadHandler handler,
+                                                 ObjectMapper objectMapper,
+                                                 @Value("${reactive.port:4001}") int port) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        return new ReactiveReadServer(new ReactorHttpHandlerAdapter(
+                RouterFunctions.toHttpHandler(handler.routes(), strategies)), port);
+    }
+
+    /**
+     * Binds the Netty server once the context is up and releases it on shutdown.
+     */
+    public static class ReactiveReadServer implements SmartLifecycle {
+
+        private final ReactorHttpHandlerAdapter handlerAdapter;
+        private final int port;
+        private volatile DisposableServer server;
+
+        ReactiveReadServer(ReactorHttpHandlerAdapter handlerAdapter, int port) {
+            this.handlerAdapter = handlerAdapter;
+            this.port = port;
+        }
+
+        @Override
+        public void start() {
+            server = HttpServer.create().port(port).handle(handlerAdapter).bindNow();
+            log.info("Reactive read API listening on port {}", server.port());
+        }
+
+        @Override
+        public void stop() {
+            if (server != null) {
+                server.disposeNow();
+                server = null;
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return server != null;
+        }
+    }
+}
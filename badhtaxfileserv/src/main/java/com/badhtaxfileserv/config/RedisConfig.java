@@ -1,8 +1,10 @@
 package com.badhtaxfileserv.config;
 
+import com.badhtaxfileserv.util.CacheValueCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -16,6 +18,7 @@ import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSeriali
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.Locale;
 
 @Configuration
 @EnableCaching
@@ -37,6 +40,17 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Encoding of tax file cache values. Every format is readable whichever one is written.
+     */
+    @Bean
+    public CacheValueCodec cacheValueCodec(ObjectMapper objectMapper,
+                                           @Value("${cache.codec.format:json}") String format,
+                                           @Value("${cache.codec.compression-threshold:1024}") int compressionThreshold) {
+        return new CacheValueCodec(objectMapper, CacheValueCodec.Format.valueOf(format.trim().toUpperCase(Locale.ROOT)),
+                compressionThreshold);
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
@@ -0,0 +1,13 @@
+package com.badhtaxfileserv.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on scheduling for the outbox relay poller, the refund ETA statistics flush and the
+ * existence filter rebuild. Each of those beans carries its own enabling condition.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
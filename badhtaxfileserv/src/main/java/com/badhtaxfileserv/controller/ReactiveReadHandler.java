@@ -0,0 +1,92 @@
+package com.badhtaxfileserv.controller;
+
+import com.badhtaxfileserv.exception.GlobalExceptionHandler.ErrorResponse;
+import com.badhtaxfileserv.service.ReactiveReadService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Functional WebFlux endpoints for the read-heavy GETs. Paths, parameters and response bodies
+ * match {@link TaxFileController}, {@link RefundController} and {@link UserController}, so a
+ * client can switch between the two stacks by port alone.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveReadHandler {
+
+    private final ReactiveReadService readService;
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/taxFile", this::getTaxFile)
+                .GET("/taxFile/taxUser", this::getTaxFilesByUserId)
+                .GET("/refund", this::getRefund)
+                .GET("/user/{userId}", this::getUserById)
+                .onError(IllegalArgumentException.class, (e, request) -> error(HttpStatus.BAD_REQUEST, e.getMessage(), request))
+                .build();
+    }
+
+    Mono<ServerResponse> getTaxFile(ServerRequest request) {
+        String userId = requiredParam(request, "userId");
+        Integer year = Integer.valueOf(requiredParam(request, "year"));
+        return respond(request, readService.getTaxFile(userId, year),
+                "Tax file not found for user: " + userId + " and year: " + year);
+    }
+
+    Mono<ServerResponse> getTaxFilesByUserId(ServerRequest request) {
+        String userId = requiredParam(request, "userId");
+        return respond(request, readService.getTaxFilesByUserId(userId), "User not found with ID: " + userId);
+    }
+
+    Mono<ServerResponse> getRefund(ServerRequest request) {
+        String fileId = request.queryParam("fileId").orElse(null);
+        String userId = request.queryParam("userId").orElse(null);
+        String year = request.queryParam("year").orElse(null);
+
+        if (fileId != null) {
+            return respond(request, readService.getRefundByFileId(fileId), "Refund not found for file ID: " + fileId);
+        } else if (userId != null && year != null) {
+            return respond(request, readService.getRefund(userId, Integer.valueOf(year)),
+                    "Refund not found for user: " + userId + " and year: " + year);
+        }
+        throw new IllegalArgumentException("Either fileId or both userId and year must be provided");
+    }
+
+    Mono<ServerResponse> getUserById(ServerRequest request) {
+        String userId = request.pathVariable("userId");
+        return respond(request, readService.getUserById(userId), "User with ID " + userId + " not found");
+    }
+
+    private static Mono<ServerResponse> respond(ServerRequest request, Mono<?> body, String notFoundMessage) {
+        return body.flatMap(value -> ServerResponse.ok().bodyValue(value))
+                .switchIfEmpty(Mono.defer(() -> error(HttpStatus.NOT_FOUND, notFoundMessage, request)));
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, String message, ServerRequest request) {
+        log.debug("Reactive read {} {} -> {}: {}", request.method(), request.path(), status.value(), message);
+        return ServerResponse.status(status).bodyValue(ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .path(request.path())
+                .build());
+    }
+
+    private static String requiredParam(ServerRequest request, String name) {
+        return request.queryParam(name)
+                .orElseThrow(() -> new IllegalArgumentException("Missing required parameter: " + name));
+    }
+}
@@ -1,7 +1,10 @@
 package com.badhtaxfileserv.controller;
 
+import com.badhtaxfileserv.dto.BatchRefundEventRequest;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
 import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
 import com.badhtaxfileserv.service.RefundEventService;
+import com.badhtaxfileserv.util.RefundEventMessageParser;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -12,10 +15,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Refund events, as direct JSON requests or as Pub/Sub push messages.
+ *
+ * Ack policy for push messages, on both endpoints: a message that was read and processed is
+ * answered 200 with a result per event, also when some events were invalid or name an unknown
+ * file. Redelivering cannot fix those events and would run the good ones again, so they are
+ * logged one by one and acknowledged. A message that cannot be read at all, or holds no events
+ * or more than {@link BatchRefundEventRequest#MAX_EVENTS}, is answered 400 and left to the push
+ * subscription's dead-letter policy. Failures while processing (e.g. the database is down)
+ * surface as 5xx, so Pub/Sub retries the message.
+ *
+ * Direct callers get 202 for a single event and 200, or 207 when any event failed, for a batch.
+ */
 @RestController
 @RequestMapping("/processRefundEvent")
 @RequiredArgsConstructor
@@ -24,32 +39,28 @@ import java.util.Map;
 public class RefundEventController {
     
     private final RefundEventService refundEventService;
+    private final RefundEventMessageParser messageParser;
     
     @PostMapping
-    @Operation(summary = "Process refund event", description = "Processes a refund event to update refund status")
+    @Operation(summary = "Process refund event",
+            description = "Processes a refund event to update refund status. Accepts one event, or a Pub/Sub push message " +
+                    "whose data is one event or an array of events")
     @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Pub/Sub message processed and acknowledged; see per-event results"),
         @ApiResponse(responseCode = "202", description = "Refund event processed successfully"),
-        @ApiResponse(responseCode = "400", description = "Invalid event data"),
+        @ApiResponse(responseCode = "400", description = "Invalid event data, or unreadable Pub/Sub message"),
         @ApiResponse(responseCode = "404", description = "Refund not found")
     })
-    public ResponseEntity<Void> processRefundEvent(@RequestBody Map<String, Object> requestBody) {
+    public ResponseEntity<BatchRefundEventResponse> processRefundEvent(@RequestBody Map<String, Object> requestBody) {
         log.info("Received request: {}", requestBody);
         
+        if (requestBody.containsKey("message")) {
+            return processPushMessage(requestBody);
+        }
+        
         try {
-            ProcessRefundEventRequest request;
-            
-            // Check if this is a Pub/Sub message (has 'message' field)
-            if (requestBody.containsKey("message")) {
-                log.info("Processing Pub/Sub message");
-                request = parsePubSubMessage(requestBody);
-            } else {
-                // This is a direct request
-                log.info("Processing direct request");
-                ObjectMapper objectMapper = new ObjectMapper();
-                objectMapper.registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
-                objectMapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-                request = objectMapper.convertValue(requestBody, ProcessRefundEventRequest.class);
-            }
+            log.info("Processing direct request");
+            ProcessRefundEventRequest request = messageParser.convert(requestBody);
             
             log.info("Processed refund event: {} for file ID: {}", request.getType(), request.getFileId());
             
@@ -63,7 +74,77 @@ public class RefundEventController {
         }
     }
     
-    private ProcessRefundEventRequest parsePubSubMessage(Map<String, Object> pubsubMessage) throws Exception {
+    @PostMapping("/batch")
+    @Operation(summary = "Process refund events in bulk",
+            description = "Processes many refund events in one transaction and returns a result per event. " +
+                    "Accepts {\"events\": [...]} or a Pub/Sub push message whose data is an array of events")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "All events processed successfully, or a Pub/Sub message acknowledged; see per-event results"),
+        @ApiResponse(responseCode = "207", description = "Some events were invalid or not found; see per-event results"),
+        @ApiResponse(responseCode = "400", description = "Empty, oversized or unreadable batch")
+    })
+    public ResponseEntity<BatchRefundEventResponse> processRefundEvents(@RequestBody Map<String, Object> requestBody) {
+        if (requestBody.containsKey("message")) {
+            return processPushMessage(requestBody);
+        }
+        
+        List<ProcessRefundEventRequest> requests;
+        try {
+            requests = messageParser.convertBatch(requestBody).getEvents();
+        } catch (Exception e) {
+            log.error("Failed to read refund event batch", e);
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isAcceptedBatchSize(requests)) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Received batch of {} refund events", requests.size());
+        
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(requests);
+        
+        HttpStatus status = response.getFailed() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
+    }
+    
+    /**
+     * Process a Pub/Sub push message under the ack policy above.
+     */
+    private ResponseEntity<BatchRefundEventResponse> processPushMessage(Map<String, Object> requestBody) {
+        List<ProcessRefundEventRequest> requests;
+        try {
+            log.info("Processing Pub/Sub message");
+            JsonNode messageJson = decodePubSubMessage(requestBody);
+            requests = messageJson.isArray() ? messageParser.parseEvents(messageJson) : List.of(messageParser.parseEvent(messageJson));
+        } catch (Exception e) {
+            log.error("Failed to read Pub/Sub message", e);
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isAcceptedBatchSize(requests)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(requests);
+        log.info("Processed Pub/Sub message: applied={}, unchanged={}, duplicates={}, failed={}",
+                response.getApplied(), response.getUnchanged(), response.getDuplicates(), response.getFailed());
+        for (BatchRefundEventResponse.EventResult result : response.getResults()) {
+            if (result.getStatus() == BatchRefundEventResponse.EventStatus.NOT_FOUND
+                    || result.getStatus() == BatchRefundEventResponse.EventStatus.INVALID) {
+                log.warn("Acknowledging refund event that cannot be applied: index={}, eventId={}, fileId={}, status={}, error={}",
+                        result.getIndex(), result.getEventId(), result.getFileId(), result.getStatus(), result.getError());
+            }
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    private static boolean isAcceptedBatchSize(List<ProcessRefundEventRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > BatchRefundEventRequest.MAX_EVENTS) {
+            log.warn("Rejecting refund event batch of size {}", requests == null ? 0 : requests.size());
+            return false;
+        }
+        return true;
+    }
+    
+    private JsonNode decodePubSubMessage(Map<String, Object> pubsubMessage) throws Exception {
         // Extract the message data from Pub/Sub format
         String messageData = null;
         if (pubsubMessage.containsKey("message")) {
@@ -80,33 +161,9 @@ public class RefundEventController {
             throw new IllegalArgumentException("No message data found in Pub/Sub message");
         }
         
-        log.info("Decoded message data: {}", messageData);
+        log.debug("Decoded message data: {}", messageData);
         
         // Parse the JSON message data
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        JsonNode messageJson = objectMapper.readTree(messageData);
-        
-        // Create ProcessRefundEventRequest from the message
-        String eventDateStr = messageJson.get("data").get("eventDate").asText();
-        // Parse the date string, handling both with and without timezone
-        java.time.LocalDateTime eventDate;
-        if (eventDateStr.endsWith("Z")) {
-            // Remove 'Z' and parse as LocalDateTime
-            eventDate = java.time.LocalDateTime.parse(eventDateStr.substring(0, eventDateStr.length() - 1));
-        } else {
-            eventDate = java.time.LocalDateTime.parse(eventDateStr);
-        }
-        
-        return ProcessRefundEventRequest.builder()
-            .eventId(messageJson.get("eventId").asText())
-            .fileId(messageJson.get("fileId").asText())
-            .type(messageJson.get("type").asText())
-            .data(ProcessRefundEventRequest.EventData.builder()
-                .eventDate(eventDate)
-                .build())
-            .build();
+        return messageParser.readTree(messageData);
     }
 }
-
@@ -1,6 +1,10 @@
 package com.badhtaxfileserv.controller;
 
+import com.badhtaxfileserv.dto.BatchCreateTaxFileRequest;
+import com.badhtaxfileserv.dto.BatchCreateTaxFileResponse;
 import com.badhtaxfileserv.dto.CreateTaxFileRequest;
+import com.badhtaxfileserv.dto.TaxFileLookupRequest;
+import com.badhtaxfileserv.dto.TaxFileLookupResponse;
 import com.badhtaxfileserv.dto.TaxFileResponse;
 import com.badhtaxfileserv.dto.TaxUserResponse;
 import com.badhtaxfileserv.service.TaxFileService;
@@ -40,6 +44,22 @@ public class TaxFileController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
     
+    @PostMapping("/batch")
+    @Operation(summary = "Create tax files in bulk", description = "Creates many tax files in one call and returns a result per item")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "All tax files created successfully"),
+        @ApiResponse(responseCode = "207", description = "Some items were duplicates or invalid; see per-item results"),
+        @ApiResponse(responseCode = "400", description = "Empty or oversized batch")
+    })
+    public ResponseEntity<BatchCreateTaxFileResponse> createTaxFiles(@Valid @RequestBody BatchCreateTaxFileRequest request) {
+        log.info("Received request to create {} tax files in batch", request.getTaxFiles().size());
+        
+        BatchCreateTaxFileResponse response = taxFileService.createTaxFiles(request.getTaxFiles());
+        
+        HttpStatus status = response.getFailed() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
+    }
+    
     @GetMapping
     @Operation(summary = "Get tax file", description = "Retrieves a tax file by user ID and year")
     @ApiResponses(value = {
@@ -59,6 +79,20 @@ public class TaxFileController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/lookup")
+    @Operation(summary = "Get tax files in bulk", description = "Retrieves the tax files for many user ID and year pairs in one call")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Tax files retrieved; pairs without a tax file are listed as not found"),
+        @ApiResponse(responseCode = "400", description = "Empty or oversized lookup, or an incomplete pair")
+    })
+    public ResponseEntity<TaxFileLookupResponse> lookupTaxFiles(@Valid @RequestBody TaxFileLookupRequest request) {
+        log.info("Received request to look up {} tax files", request.getKeys().size());
+        
+        TaxFileLookupResponse response = taxFileService.lookupTaxFiles(request.getKeys());
+        
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/taxUser")
     @Operation(summary = "Get all tax files for a user", description = "Retrieves all tax files for the specified user ID")
     @ApiResponses(value = {
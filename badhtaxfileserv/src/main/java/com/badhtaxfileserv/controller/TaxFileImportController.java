@@ -0,0 +1,77 @@
+package com.badhtaxfileserv.controller;
+
+import com.badhtaxfileserv.dto.TaxFileImportResponse;
+import com.badhtaxfileserv.exception.GlobalExceptionHandler;
+import com.badhtaxfileserv.exception.ImportAlreadyRunningException;
+import com.badhtaxfileserv.service.TaxFileImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/admin/import")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Import", description = "Bulk import of historical filings")
+public class TaxFileImportController {
+    
+    private final TaxFileImportService taxFileImportService;
+    
+    @PostMapping(consumes = {"text/csv", "application/x-ndjson", "text/plain", "application/octet-stream"})
+    @Operation(summary = "Import tax files", description = "Streams a CSV or NDJSON body into the user, tax_file and refund tables via COPY")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import completed"),
+        @ApiResponse(responseCode = "400", description = "Malformed input"),
+        @ApiResponse(responseCode = "409", description = "An import is already running")
+    })
+    public ResponseEntity<TaxFileImportResponse> importTaxFiles(
+            @Parameter(description = "Input format: csv or ndjson (defaults from the content type)")
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) throws IOException {
+        
+        String formatName = format != null ? format : String.valueOf(request.getContentType());
+        TaxFileImportService.ImportFormat importFormat = TaxFileImportService.ImportFormat.fromName(formatName);
+        log.info("Received {} import request", importFormat);
+        
+        // Read straight from the request stream so the body is never buffered in memory
+        TaxFileImportResponse response = taxFileImportService.importFile(
+                request.getInputStream(), importFormat, "http:" + request.getRemoteAddr());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/progress")
+    @Operation(summary = "Get import progress", description = "Returns counters of the running import, or the result of the last one")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Progress retrieved successfully")
+    })
+    public ResponseEntity<TaxFileImportResponse> getProgress() {
+        return ResponseEntity.ok(taxFileImportService.getProgress());
+    }
+    
+    @ExceptionHandler(ImportAlreadyRunningException.class)
+    public ResponseEntity<GlobalExceptionHandler.ErrorResponse> handleImportAlreadyRunning(ImportAlreadyRunningException ex) {
+        log.warn("Rejected import request: {}", ex.getMessage());
+        
+        GlobalExceptionHandler.ErrorResponse errorResponse = GlobalExceptionHandler.ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .error("Conflict")
+                .message(ex.getMessage())
+                .path("/admin/import")
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+}
@@ -2,6 +2,7 @@ package com.badhtaxfileserv.controller;
 
 import com.badhtaxfileserv.dto.AllUsersResponse;
 import com.badhtaxfileserv.dto.CreateUserRequest;
+import com.badhtaxfileserv.dto.UserRefundStatusResponse;
 import com.badhtaxfileserv.dto.UserResponse;
 import com.badhtaxfileserv.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,9 +13,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/user")
@@ -23,8 +30,13 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "User", description = "User management operations")
 public class UserController {
     
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
     private final UserService userService;
     
+    @Value("${user.refund-status.cache-max-age-seconds:30}")
+    private long refundStatusMaxAgeSeconds;
+    
     @PostMapping
     @Operation(summary = "Create a new user", description = "Creates a new user with first name, last name, and user ID")
     @ApiResponses(value = {
@@ -40,18 +52,61 @@ public class UserController {
     }
     
     @GetMapping
-    @Operation(summary = "Get all users", description = "Retrieves all users in the system")
+    @Operation(summary = "Get all users", description = "Retrieves all users, or one keyset page of users when limit or cursor is given")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Users retrieved successfully")
+        @ApiResponse(responseCode = "200", description = "Users retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid limit or cursor")
     })
-    public ResponseEntity<AllUsersResponse> getAllUsers() {
-        log.info("Received request to get all users");
+    public ResponseEntity<AllUsersResponse> getAllUsers(
+            @Parameter(description = "Page size (1-1000); enables pagination")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Opaque cursor from nextCursor of the previous page")
+            @RequestParam(required = false) String cursor) {
+        log.info("Received request to get all users - limit: {}, cursor: {}", limit, cursor);
         
-        AllUsersResponse response = userService.getAllUsers();
+        AllUsersResponse response = limit != null || cursor != null
+                ? userService.getUsersPage(limit != null ? limit : DEFAULT_PAGE_SIZE, cursor)
+                : userService.getAllUsers();
         
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping(params = "stream=true")
+    @Operation(summary = "Stream all users", description = "Streams every user as JSON straight from a database cursor")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Users streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("Received request to stream all users");
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userService::streamAllUsers);
+    }
+    
+    @GetMapping("/refundStatus")
+    @Operation(summary = "Get latest refund status for all users",
+            description = "Retrieves each user's most recent tax file, refund status and refund amount, paginated by user ID")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Refund statuses retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid limit or cursor")
+    })
+    public ResponseEntity<UserRefundStatusResponse> getLatestRefundStatuses(
+            @Parameter(description = "Page size (1-1000)")
+            @RequestParam(defaultValue = "1000") int limit,
+            @Parameter(description = "Opaque cursor from nextCursor of the previous page")
+            @RequestParam(required = false) String cursor) {
+        log.info("Received request to get latest refund statuses - limit: {}, cursor: {}", limit, cursor);
+        
+        UserRefundStatusResponse response = userService.getLatestRefundStatuses(limit, cursor);
+        
+        // Statuses only move on IRS events, so a short cache lifetime absorbs dashboard refreshes. The
+        // listing names every user with their refund, so only the caller's own cache may keep it.
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(refundStatusMaxAgeSeconds)).cachePrivate())
+                .body(response);
+    }
+    
     @GetMapping("/{userId}")
     @Operation(summary = "Get user by ID", description = "Retrieves a specific user by their user ID")
     @ApiResponses(value = {
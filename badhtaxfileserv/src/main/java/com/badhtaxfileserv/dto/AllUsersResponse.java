@@ -15,4 +15,7 @@ public class AllUsersResponse {
     
     private List<UserResponse> users;
     private int totalUsers;
+    
+    // Opaque keyset cursor for the next page; null on the last page and for unpaginated listings
+    private String nextCursor;
 }
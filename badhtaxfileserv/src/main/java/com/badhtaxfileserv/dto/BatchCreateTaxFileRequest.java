@@ -0,0 +1,23 @@
+package com.badhtaxfileserv.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateTaxFileRequest {
+    
+    // Items are validated one by one in the service so a bad item is reported
+    // in its own result instead of rejecting the whole batch
+    @NotEmpty(message = "At least one tax file is required")
+    @Size(max = 5000, message = "A batch must not exceed 5000 tax files")
+    private List<CreateTaxFileRequest> taxFiles;
+}
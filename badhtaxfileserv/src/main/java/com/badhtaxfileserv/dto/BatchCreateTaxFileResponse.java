@@ -0,0 +1,36 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateTaxFileResponse {
+    
+    private List<ItemResult> results;
+    private int created;
+    private int failed;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private String userId;
+        private Integer year;
+        private ItemStatus status;
+        private TaxFileResponse taxFile;
+        private String error;
+    }
+    
+    public enum ItemStatus {
+        CREATED, DUPLICATE, INVALID
+    }
+}
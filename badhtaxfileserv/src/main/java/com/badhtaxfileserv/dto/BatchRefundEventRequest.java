@@ -0,0 +1,22 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRefundEventRequest {
+    
+    // Enforced by the controller for bodies and Pub/Sub push messages alike
+    public static final int MAX_EVENTS = 50000;
+    
+    // Events are checked one by one in the service so a bad event is reported
+    // in its own result instead of rejecting the whole batch
+    private List<ProcessRefundEventRequest> events;
+}
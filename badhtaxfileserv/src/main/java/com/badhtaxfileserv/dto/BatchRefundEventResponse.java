@@ -0,0 +1,45 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRefundEventResponse {
+    
+    private List<EventResult> results;
+    private int applied;
+    private int unchanged;
+    private int duplicates;
+    private int failed;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EventResult {
+        private int index;
+        private String eventId;
+        private String fileId;
+        private EventStatus status;
+        private String refundStatus;
+        private String error;
+    }
+    
+    public enum EventStatus {
+        // Event recorded and the refund status changed
+        APPLIED,
+        // Event recorded, refund status left as it was
+        UNCHANGED,
+        // Event ID already processed, or repeated earlier in the same batch; nothing written
+        DUPLICATE,
+        NOT_FOUND,
+        INVALID
+    }
+}
@@ -0,0 +1,50 @@
+package com.badhtaxfileserv.dto;
+
+import com.badhtaxfileserv.entity.Refund;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Committed refund state to write through to a cached {@link TaxFileResponse}.
+ * {@code refundUpdatedAt} orders updates for the same tax file. It must be the refund row's
+ * updated_at as Postgres stamped it, the same value a later load of the tax file reads, or that
+ * load would be refused as older than the patch.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefundCacheUpdate {
+    
+    private String userId;
+    private Integer year;
+    private String refundStatus;
+    private List<TaxFileResponse.ErrorDetail> refundErrors;
+    private LocalDateTime refundUpdatedAt;
+    
+    public static RefundCacheUpdate of(String userId, Integer year, Refund refund) {
+        return RefundCacheUpdate.builder()
+                .userId(userId)
+                .year(year)
+                .refundStatus(refund.getRefundStatus().name())
+                .refundErrors(TaxFileResponse.parseRefundErrors(refund.getRefundErrors()))
+                .refundUpdatedAt(refund.getUpdatedAt())
+                .build();
+    }
+    
+    /**
+     * Copy of {@code cached} with this update's refund fields applied.
+     */
+    public TaxFileResponse applyTo(TaxFileResponse cached) {
+        return cached.toBuilder()
+                .refundStatus(refundStatus)
+                .refundErrors(refundErrors)
+                .refundUpdatedAt(refundUpdatedAt)
+                .build();
+    }
+}
@@ -1,6 +1,10 @@
 package com.badhtaxfileserv.dto;
 
 import com.badhtaxfileserv.entity.Refund;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,6 +19,9 @@ import java.util.List;
 @AllArgsConstructor
 public class RefundResponse {
     
+    private static final ObjectMapper ERRORS_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    
     private String fileId;
     private String userId;
     private Integer year;
@@ -32,22 +39,29 @@ public class RefundResponse {
     }
     
     public static RefundResponse fromEntity(Refund refund) {
-        RefundResponseBuilder builder = RefundResponse.builder()
+        return RefundResponse.builder()
                 .fileId(refund.getTaxFile().getId().toString())
                 .userId(refund.getTaxFile().getUserId())
                 .year(refund.getTaxFile().getYear())
                 .refundStatus(refund.getRefundStatus().name())
-                .eta(refund.getRefundEta());
-        
-        // Parse refund errors if present
-        if (refund.getRefundErrors() != null && !refund.getRefundErrors().isEmpty()) {
-            // For now, we'll handle this in the service layer
-            builder.errors(List.of());
-        } else {
-            builder.errors(List.of());
+                .eta(refund.getRefundEta())
+                .errors(parseErrors(refund.getRefundErrors()))
+                .build();
+    }
+    
+    /**
+     * Error details from the refund's jsonb column, as {@link TaxFileResponse#parseRefundErrors}
+     * reads them. Unreadable content is treated as no errors.
+     */
+    public static List<ErrorDetail> parseErrors(String json) {
+        if (json == null || json.isBlank()) {
+            return List.of();
+        }
+        try {
+            return ERRORS_MAPPER.readValue(json, new TypeReference<List<ErrorDetail>>() {});
+        } catch (JsonProcessingException e) {
+            return List.of();
         }
-        
-        return builder.build();
     }
 }
 
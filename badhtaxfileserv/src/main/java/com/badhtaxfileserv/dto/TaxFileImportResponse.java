@@ -0,0 +1,24 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxFileImportResponse {
+
+    private String source;
+    private String format;
+    private boolean running;
+    private long rowsRead;
+    private long rowsRejected;
+    private long usersInserted;
+    private long taxFilesInserted;
+    private long refundsInserted;
+    private long durationMillis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,21 @@
+package com.badhtaxfileserv.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxFileKey {
+    
+    @NotBlank(message = "User ID is required")
+    private String userId;
+    
+    @NotNull(message = "Year is required")
+    private Integer year;
+}
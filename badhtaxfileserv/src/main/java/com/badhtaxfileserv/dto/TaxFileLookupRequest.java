@@ -0,0 +1,23 @@
+package com.badhtaxfileserv.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxFileLookupRequest {
+    
+    @NotEmpty(message = "At least one key is required")
+    @Size(max = 1000, message = "A lookup must not exceed 1000 keys")
+    private List<@Valid @NotNull TaxFileKey> keys;
+}
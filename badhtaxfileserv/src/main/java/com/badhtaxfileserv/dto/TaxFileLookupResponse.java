@@ -0,0 +1,19 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxFileLookupResponse {
+    
+    // In request order, repeated keys once
+    private List<TaxFileResponse> taxFiles;
+    private List<TaxFileKey> notFound;
+}
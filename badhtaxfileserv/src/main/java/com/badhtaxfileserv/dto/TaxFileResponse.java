@@ -2,6 +2,11 @@ package com.badhtaxfileserv.dto;
 
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.entity.TaxFile;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,11 +17,14 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TaxFileResponse {
     
+    private static final ObjectMapper ERRORS_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    
     private String fileId;
     private String userId;
     private Integer year;
@@ -29,6 +37,10 @@ public class TaxFileResponse {
     private String refundStatus;
     private List<ErrorDetail> refundErrors;
     private LocalDateTime refundEta;
+    // When the refund status last changed; the cache keeps it as the entry version, beside the value.
+    // Not part of the API, so JSON leaves it out and the JSON cache format does not carry it.
+    @JsonIgnore
+    private LocalDateTime refundUpdatedAt;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -58,15 +70,9 @@ public class TaxFileResponse {
         if (taxFile.getRefund() != null) {
             Refund refund = taxFile.getRefund();
             builder.refundStatus(refund.getRefundStatus().name())
-                   .refundEta(refund.getRefundEta());
-            
-            // Parse refund errors if present
-            if (refund.getRefundErrors() != null && !refund.getRefundErrors().isEmpty()) {
-                // For now, we'll handle this in the service layer
-                builder.refundErrors(List.of());
-            } else {
-                builder.refundErrors(List.of());
-            }
+                   .refundEta(refund.getRefundEta())
+                   .refundUpdatedAt(refund.getUpdatedAt())
+                   .refundErrors(parseRefundErrors(refund.getRefundErrors()));
         } else {
             builder.refundStatus(null)
                    .refundEta(null)
@@ -75,5 +81,18 @@ public class TaxFileResponse {
         
         return builder.build();
     }
+    
+    /**
+     * Error details from the refund's jsonb column. Unreadable content is treated as no errors.
+     */
+    public static List<ErrorDetail> parseRefundErrors(String json) {
+        if (json == null || json.isBlank()) {
+            return List.of();
+        }
+        try {
+            return ERRORS_MAPPER.readValue(json, new TypeReference<List<ErrorDetail>>() {});
+        } catch (JsonProcessingException e) {
+            return List.of();
+        }
+    }
 }
-
@@ -0,0 +1,40 @@
+package com.badhtaxfileserv.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRefundStatusResponse {
+    
+    private List<UserRefundStatus> users;
+    private int totalUsers;
+    private String nextCursor;
+    
+    /**
+     * A user and their most recently created tax file. File fields are null when the user has not filed yet.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserRefundStatus {
+        private String userId;
+        private String firstName;
+        private String lastName;
+        private String fileId;
+        private Integer year;
+        private String taxStatus;
+        private String refundStatus;
+        private BigDecimal refundAmount;
+        private LocalDateTime lastUpdated;
+    }
+}
@@ -0,0 +1,18 @@
+package com.badhtaxfileserv.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Time-ordered UUID primary key, in place of {@code @GeneratedValue(strategy = GenerationType.UUID)}
+ * whose random keys scatter inserts across the primary key index.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedUuidV7 {
+}
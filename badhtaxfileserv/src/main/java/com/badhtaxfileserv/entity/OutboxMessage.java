@@ -0,0 +1,55 @@
+package com.badhtaxfileserv.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox", schema = "taxfileservdb")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "topic", nullable = false, length = 32)
+    private Topic topic;
+    
+    @Column(name = "payload", nullable = false, columnDefinition = "text")
+    private String payload;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+    
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    public static OutboxMessage of(Topic topic, String payload) {
+        LocalDateTime now = LocalDateTime.now();
+        return OutboxMessage.builder()
+                .topic(topic)
+                .payload(payload)
+                .availableAt(now)
+                .createdAt(now)
+                .build();
+    }
+    
+    public enum Topic {
+        SEND_REFUND, REFUND_UPDATE
+    }
+}
@@ -19,9 +19,12 @@ import java.util.UUID;
 public class RefundEvent {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
     
+    @Column(name = "event_id", unique = true, length = 100)
+    private String eventId;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "refund_id", nullable = false)
     private Refund refund;
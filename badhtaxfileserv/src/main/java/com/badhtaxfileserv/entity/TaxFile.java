@@ -21,7 +21,7 @@ import java.util.UUID;
 public class TaxFile {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
     
     @Column(name = "user_id", nullable = false, length = 100)
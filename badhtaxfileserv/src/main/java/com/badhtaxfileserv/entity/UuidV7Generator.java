@@ -0,0 +1,25 @@
+package com.badhtaxfileserv.entity;
+
+import com.badhtaxfileserv.util.UuidV7;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * Assigns {@link UuidV7} ids on insert, for fields annotated with {@link GeneratedUuidV7}.
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return UuidV7.randomUuid();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,11 @@
+package com.badhtaxfileserv.exception;
+
+/**
+ * A bulk import was started while another one is still running on this instance.
+ */
+public class ImportAlreadyRunningException extends IllegalStateException {
+
+    public ImportAlreadyRunningException(String runningSource) {
+        super("Another import is already running: " + runningSource);
+    }
+}
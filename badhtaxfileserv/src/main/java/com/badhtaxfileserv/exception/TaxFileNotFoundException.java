@@ -0,0 +1,12 @@
+package com.badhtaxfileserv.exception;
+
+/**
+ * No tax file exists for a user and year. Thrown by the read path whether Postgres, the negative
+ * cache or the existence filter gave the answer, with the same message in each case.
+ */
+public class TaxFileNotFoundException extends RuntimeException {
+
+    public TaxFileNotFoundException(String userId, Integer year) {
+        super("Tax file not found for user: " + userId + " and year: " + year);
+    }
+}
@@ -0,0 +1,24 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+    
+    // Claims the next due rows by pushing their due time to the end of the lease, so once the claim
+    // commits other relay instances leave them alone until then. Rows another instance is claiming
+    // right now are skipped rather than waited on.
+    @Query(value = "UPDATE taxfileservdb.outbox SET available_at = :leaseUntil WHERE id IN (" +
+                   "SELECT id FROM taxfileservdb.outbox WHERE available_at <= :now ORDER BY id LIMIT :limit " +
+                   "FOR UPDATE SKIP LOCKED) RETURNING *",
+           nativeQuery = true)
+    List<OutboxMessage> claimNextBatch(@Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil,
+                                       @Param("limit") int limit);
+}
@@ -0,0 +1,137 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.dto.RefundResponse;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.dto.UserResponse;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Non-blocking R2DBC equivalents of the read queries behind the reactive API. Rows map straight
+ * to the response DTOs, so the results match what the JPA path returns for the same data.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveReadRepository {
+
+    private static final String TAX_FILE_WITH_REFUND_SQL =
+            "SELECT tf.id, tf.user_id, tf.tax_year, tf.income, tf.expense, tf.tax_rate_percent, tf.deducted, " +
+            "tf.refund_amount, tf.tax_status, tf.created_at, tf.updated_at, r.refund_status, r.refund_eta, " +
+            "r.refund_errors::text AS refund_errors, r.updated_at AS refund_updated_at " +
+            "FROM taxfileservdb.tax_file tf LEFT JOIN taxfileservdb.refund r ON r.tax_file_id = tf.id ";
+
+    private static final String REFUND_SQL =
+            "SELECT tf.id, tf.user_id, tf.tax_year, r.refund_status, r.refund_eta, r.refund_errors::text AS refund_errors " +
+            "FROM taxfileservdb.refund r JOIN taxfileservdb.tax_file tf ON tf.id = r.tax_file_id ";
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Same result as {@link TaxFileRepository#findByUserIdAndYearWithRefund}.
+     */
+    public Mono<TaxFileResponse> findTaxFileByUserIdAndYear(String userId, Integer year) {
+        return databaseClient.sql(TAX_FILE_WITH_REFUND_SQL + "WHERE tf.user_id = $1 AND tf.tax_year = $2")
+                .bind(0, userId)
+                .bind(1, year)
+                .map(ReactiveReadRepository::toTaxFileResponse)
+                .one();
+    }
+
+    /**
+     * Same rows as {@link TaxFileRepository#findByUserIdWithRefund}, newest year first.
+     */
+    public Flux<TaxUserResponse.TaxFileSummary> findTaxFilesByUserId(String userId) {
+        return databaseClient.sql(TAX_FILE_WITH_REFUND_SQL + "WHERE tf.user_id = $1 ORDER BY tf.tax_year DESC")
+                .bind(0, userId)
+                .map(ReactiveReadRepository::toTaxFileSummary)
+                .all();
+    }
+
+    public Mono<RefundResponse> findRefundByUserIdAndYear(String userId, Integer year) {
+        return databaseClient.sql(REFUND_SQL + "WHERE tf.user_id = $1 AND tf.tax_year = $2")
+                .bind(0, userId)
+                .bind(1, year)
+                .map(ReactiveReadRepository::toRefundResponse)
+                .one();
+    }
+
+    public Mono<RefundResponse> findRefundByTaxFileId(UUID taxFileId) {
+        return databaseClient.sql(REFUND_SQL + "WHERE r.tax_file_id = $1")
+                .bind(0, taxFileId)
+                .map(ReactiveReadRepository::toRefundResponse)
+                .one();
+    }
+
+    public Mono<UserResponse> findUserByUserId(String userId) {
+        return databaseClient.sql("SELECT user_id, first_name, last_name, created_at, updated_at " +
+                        "FROM taxfileservdb.\"user\" WHERE user_id = $1")
+                .bind(0, userId)
+                .map(row -> UserResponse.builder()
+                        .userId(row.get("user_id", String.class))
+                        .firstName(row.get("first_name", String.class))
+                        .lastName(row.get("last_name", String.class))
+                        .createdAt(row.get("created_at", LocalDateTime.class))
+                        .updatedAt(row.get("updated_at", LocalDateTime.class))
+                        .build())
+                .one();
+    }
+
+    private static TaxFileResponse toTaxFileResponse(Readable row) {
+        return TaxFileResponse.builder()
+                .fileId(row.get("id", UUID.class).toString())
+                .userId(row.get("user_id", String.class))
+                .year(row.get("tax_year", Integer.class))
+                .income(row.get("income", BigDecimal.class))
+                .expense(row.get("expense", BigDecimal.class))
+                .taxRate(row.get("tax_rate_percent", BigDecimal.class))
+                .deducted(row.get("deducted", BigDecimal.class))
+                .refund(row.get("refund_amount", BigDecimal.class))
+                .taxStatus(row.get("tax_status", String.class))
+                .refundStatus(row.get("refund_status", String.class))
+                .refundEta(row.get("refund_eta", LocalDateTime.class))
+                .refundErrors(TaxFileResponse.parseRefundErrors(row.get("refund_errors", String.class)))
+                .refundUpdatedAt(row.get("refund_updated_at", LocalDateTime.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    private static TaxUserResponse.TaxFileSummary toTaxFileSummary(Readable row) {
+        return TaxUserResponse.TaxFileSummary.builder()
+                .fileId(row.get("id", UUID.class).toString())
+                .year(row.get("tax_year", Integer.class))
+                .income(row.get("income", BigDecimal.class))
+                .expense(row.get("expense", BigDecimal.class))
+                .taxRate(row.get("tax_rate_percent", BigDecimal.class))
+                .deducted(row.get("deducted", BigDecimal.class))
+                .refundAmount(row.get("refund_amount", BigDecimal.class))
+                .taxStatus(row.get("tax_status", String.class))
+                .refundStatus(row.get("refund_status", String.class))
+                .refundEta(row.get("refund_eta", LocalDateTime.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    private static RefundResponse toRefundResponse(Readable row) {
+        return RefundResponse.builder()
+                .fileId(row.get("id", UUID.class).toString())
+                .userId(row.get("user_id", String.class))
+                .year(row.get("tax_year", Integer.class))
+                .refundStatus(row.get("refund_status", String.class))
+                .eta(row.get("refund_eta", LocalDateTime.class))
+                .errors(RefundResponse.parseErrors(row.get("refund_errors", String.class)))
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.util.DaysHistogram;
+import com.badhtaxfileserv.util.RefundEtaStatistics;
+import com.badhtaxfileserv.util.RefundEtaStatistics.BucketKey;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * JDBC access for the persisted refund ETA histograms and for scanning approval history
+ * out of refund_events when they are first built.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class RefundEtaHistogramRepository {
+    
+    // Serializes merges and the cold-start rebuild across instances
+    private static final long ADVISORY_LOCK_KEY = 0x7265_6675_6e64_6574L;
+    private static final int SCAN_FETCH_SIZE = 5000;
+    
+    private static final String SELECT_ALL_SQL =
+            "SELECT filing_month, amount_band, tax_year, counts FROM taxfileservdb.refund_eta_histogram";
+    
+    private static final String UPSERT_SQL =
+            "INSERT INTO taxfileservdb.refund_eta_histogram (filing_month, amount_band, tax_year, sample_count, counts, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, NOW()) " +
+            "ON CONFLICT (filing_month, amount_band, tax_year) DO UPDATE " +
+            "SET sample_count = EXCLUDED.sample_count, counts = EXCLUDED.counts, updated_at = NOW()";
+    
+    private static final String APPROVAL_RANGE_SQL =
+            "SELECT MIN(event_date) AS first_date, MAX(event_date) AS last_date " +
+            "FROM taxfileservdb.refund_events WHERE event_type = 'REFUND_APPROVED'";
+    
+    // First approval of each refund whose approval falls in [from, to)
+    private static final String SCAN_FIRST_APPROVALS_SQL =
+            "SELECT tf.tax_year, tf.created_at, tf.refund_amount, e.event_date " +
+            "FROM taxfileservdb.refund_events e " +
+            "JOIN taxfileservdb.refund r ON r.id = e.refund_id " +
+            "JOIN taxfileservdb.tax_file tf ON tf.id = r.tax_file_id " +
+            "WHERE e.event_type = 'REFUND_APPROVED' AND e.event_date >= ? AND e.event_date < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM taxfileservdb.refund_events p WHERE p.refund_id = e.refund_id " +
+            "AND p.event_type = 'REFUND_APPROVED' AND p.event_date < e.event_date)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Take the cross-instance lock for the current transaction.
+     */
+    public void lockForUpdate() {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", (RowCallbackHandler) resultSet -> { }, ADVISORY_LOCK_KEY);
+    }
+    
+    public boolean isRebuilt() {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM taxfileservdb.refund_eta_statistics_state", Integer.class);
+        return rows != null && rows > 0;
+    }
+    
+    public void markRebuilt() {
+        jdbcTemplate.update("INSERT INTO taxfileservdb.refund_eta_statistics_state (id, rebuilt_at) VALUES (1, NOW()) " +
+                "ON CONFLICT (id) DO UPDATE SET rebuilt_at = NOW()");
+    }
+    
+    public Map<BucketKey, DaysHistogram> findAll() {
+        Map<BucketKey, DaysHistogram> buckets = new HashMap<>();
+        jdbcTemplate.query(SELECT_ALL_SQL, (RowCallbackHandler) resultSet -> {
+            buckets.put(new BucketKey(resultSet.getInt("filing_month"), resultSet.getInt("amount_band"), resultSet.getInt("tax_year")),
+                    DaysHistogram.fromBytes(resultSet.getBytes("counts")));
+        });
+        return buckets;
+    }
+    
+    /**
+     * Add {@code delta} to the stored histograms. Callers hold {@link #lockForUpdate()}, so the
+     * read-merge-write cannot interleave with another instance.
+     */
+    public void merge(Map<BucketKey, DaysHistogram> delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, DaysHistogram> stored = findAll();
+        List<Object[]> rows = new ArrayList<>(delta.size());
+        delta.forEach((bucket, histogram) -> {
+            DaysHistogram merged = stored.getOrDefault(bucket, new DaysHistogram());
+            merged.merge(histogram);
+            rows.add(new Object[]{(short) bucket.filingMonth(), (short) bucket.amountBand(), bucket.taxYear(),
+                    merged.getTotal(), merged.toBytes()});
+        });
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+    
+    public Optional<LocalDateTime[]> findApprovalDateRange() {
+        return jdbcTemplate.query(APPROVAL_RANGE_SQL, resultSet -> {
+            if (!resultSet.next() || resultSet.getTimestamp("first_date") == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new LocalDateTime[]{
+                    resultSet.getTimestamp("first_date").toLocalDateTime(),
+                    resultSet.getTimestamp("last_date").toLocalDateTime()});
+        });
+    }
+    
+    /**
+     * Stream the first approvals in {@code [from, to)} without materializing them.
+     */
+    public void scanFirstApprovals(LocalDateTime from, LocalDateTime to, Consumer<RefundEtaStatistics.Approval> consumer) {
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(SCAN_FIRST_APPROVALS_SQL);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            consumer.accept(new RefundEtaStatistics.Approval(
+                    resultSet.getInt("tax_year"),
+                    resultSet.getTimestamp("created_at").toLocalDateTime(),
+                    resultSet.getBigDecimal("refund_amount"),
+                    resultSet.getTimestamp("event_date").toLocalDateTime()));
+        });
+    }
+}
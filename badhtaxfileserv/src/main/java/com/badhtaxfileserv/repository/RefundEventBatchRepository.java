@@ -0,0 +1,165 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.RefundEvent;
+import com.badhtaxfileserv.entity.TaxFile;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * JDBC access for batched refund event processing. Refunds are read and written outside the
+ * persistence context, so a burst of events costs one lookup and two writes instead of
+ * several statements per event. Loaded refunds carry a tax file with only id, userId, year, refundAmount and createdAt set,
+ * which is what cache eviction and the ETA statistics need.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class RefundEventBatchRepository {
+    
+    private static final String SELECT_REFUNDS_BY_TAX_FILE_IDS_SQL =
+            "SELECT r.id, r.refund_status, r.refund_errors, tf.id AS tax_file_id, tf.user_id, tf.tax_year, " +
+            "tf.refund_amount, tf.created_at AS tax_file_created_at " +
+            "FROM taxfileservdb.refund r JOIN taxfileservdb.tax_file tf ON tf.id = r.tax_file_id " +
+            "WHERE r.tax_file_id = ANY(?) ORDER BY r.id FOR UPDATE OF r";
+    
+    private static final String SELECT_TAX_FILES_BY_IDS_SQL =
+            "SELECT id, user_id, tax_year, refund_amount, created_at AS tax_file_created_at FROM taxfileservdb.tax_file WHERE id = ANY(?)";
+    
+    // updated_at is set by the refund trigger and read back, as it versions the cached tax file
+    private static final String UPDATE_REFUNDS_SQL =
+            "UPDATE taxfileservdb.refund r SET refund_status = u.refund_status, refund_errors = u.refund_errors::jsonb " +
+            "FROM unnest(?::uuid[], ?::varchar[], ?::text[]) AS u(id, refund_status, refund_errors) " +
+            "WHERE r.id = u.id RETURNING r.id, r.updated_at";
+    
+    // One statement for the whole batch, so the rows that were actually inserted come back. An event
+    // ID recorded by a concurrent transaction waits for it to commit and then conflicts.
+    private static final String INSERT_REFUND_EVENTS_SQL =
+            "INSERT INTO taxfileservdb.refund_events (id, event_id, refund_id, event_type, event_date, error_reasons, created_at) " +
+            "SELECT e.id, e.event_id, e.refund_id, e.event_type, e.event_date, e.error_reasons::jsonb, ? " +
+            "FROM unnest(?::uuid[], ?::varchar[], ?::uuid[], ?::varchar[], ?::timestamp[], ?::text[]) " +
+            "AS e(id, event_id, refund_id, event_type, event_date, error_reasons) " +
+            "ON CONFLICT (event_id) DO NOTHING RETURNING event_id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Load and lock the refunds of the given tax files until the transaction ends, so concurrent
+     * batches touching the same refund apply their events one after the other instead of
+     * overwriting each other's status and errors. Rows are locked in id order, so batches with
+     * overlapping refunds cannot deadlock on each other.
+     */
+    public List<Refund> findRefundsByTaxFileIds(Collection<UUID> taxFileIds) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_REFUNDS_BY_TAX_FILE_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", taxFileIds.toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> Refund.builder()
+                .id(resultSet.getObject("id", UUID.class))
+                .refundStatus(Refund.RefundStatus.valueOf(resultSet.getString("refund_status")))
+                .refundErrors(resultSet.getString("refund_errors"))
+                .taxFile(TaxFile.builder()
+                        .id(resultSet.getObject("tax_file_id", UUID.class))
+                        .userId(resultSet.getString("user_id"))
+                        .year(resultSet.getInt("tax_year"))
+                        .refundAmount(resultSet.getBigDecimal("refund_amount"))
+                        .createdAt(toLocalDateTime(resultSet.getTimestamp("tax_file_created_at")))
+                        .build())
+                .build());
+    }
+    
+    public List<TaxFile> findTaxFilesByIds(Collection<UUID> taxFileIds) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_TAX_FILES_BY_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", taxFileIds.toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> TaxFile.builder()
+                .id(resultSet.getObject("id", UUID.class))
+                .userId(resultSet.getString("user_id"))
+                .year(resultSet.getInt("tax_year"))
+                .refundAmount(resultSet.getBigDecimal("refund_amount"))
+                .createdAt(toLocalDateTime(resultSet.getTimestamp("tax_file_created_at")))
+                .build());
+    }
+    
+    /**
+     * Write the refunds' status and errors in one statement and set each refund's updatedAt to the
+     * value Postgres stamped on its row.
+     */
+    public void updateRefunds(Collection<Refund> refunds) {
+        Map<UUID, Refund> refundsById = new HashMap<>();
+        UUID[] ids = new UUID[refunds.size()];
+        String[] statuses = new String[refunds.size()];
+        String[] errors = new String[refunds.size()];
+        int i = 0;
+        for (Refund refund : refunds) {
+            refundsById.put(refund.getId(), refund);
+            ids[i] = refund.getId();
+            statuses[i] = refund.getRefundStatus().name();
+            errors[i] = refund.getRefundErrors();
+            i++;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPDATE_REFUNDS_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", ids));
+            statement.setArray(2, connection.createArrayOf("varchar", statuses));
+            statement.setArray(3, connection.createArrayOf("text", errors));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> refundsById.get(resultSet.getObject("id", UUID.class))
+                .setUpdatedAt(toLocalDateTime(resultSet.getTimestamp("updated_at"))));
+    }
+    
+    /**
+     * Insert the events, skipping those whose event ID is already recorded.
+     *
+     * @return the event IDs that were inserted
+     */
+    public Set<String> insertRefundEvents(List<RefundEvent> events) {
+        int size = events.size();
+        UUID[] ids = new UUID[size];
+        String[] eventIds = new String[size];
+        UUID[] refundIds = new UUID[size];
+        String[] eventTypes = new String[size];
+        Timestamp[] eventDates = new Timestamp[size];
+        String[] errorReasons = new String[size];
+        for (int i = 0; i < size; i++) {
+            RefundEvent event = events.get(i);
+            ids[i] = event.getId();
+            eventIds[i] = event.getEventId();
+            refundIds[i] = event.getRefund().getId();
+            eventTypes[i] = event.getEventType().name();
+            eventDates[i] = Timestamp.valueOf(event.getEventDate());
+            errorReasons[i] = event.getErrorReasons();
+        }
+        LocalDateTime createdAt = events.get(0).getCreatedAt();
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_REFUND_EVENTS_SQL);
+            statement.setTimestamp(1, Timestamp.valueOf(createdAt));
+            statement.setArray(2, connection.createArrayOf("uuid", ids));
+            statement.setArray(3, connection.createArrayOf("varchar", eventIds));
+            statement.setArray(4, connection.createArrayOf("uuid", refundIds));
+            statement.setArray(5, connection.createArrayOf("varchar", eventTypes));
+            statement.setArray(6, connection.createArrayOf("timestamp", eventDates));
+            statement.setArray(7, connection.createArrayOf("text", errorReasons));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getString("event_id")));
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
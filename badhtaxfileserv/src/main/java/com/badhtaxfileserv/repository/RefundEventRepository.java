@@ -11,5 +11,7 @@ import java.util.UUID;
 public interface RefundEventRepository extends JpaRepository<RefundEvent, UUID> {
     
     List<RefundEvent> findByRefundIdOrderByEventDateAsc(UUID refundId);
+    
+    boolean existsByEventId(String eventId);
 }
 
@@ -1,7 +1,9 @@
 package com.badhtaxfileserv.repository;
 
 import com.badhtaxfileserv.entity.Refund;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,5 +18,11 @@ public interface RefundRepository extends JpaRepository<Refund, UUID> {
     Optional<Refund> findByUserIdAndYear(@Param("userId") String userId, @Param("year") Integer year);
     
     Optional<Refund> findByTaxFileId(UUID taxFileId);
+    
+    // Row lock held until commit, as RefundEventBatchRepository takes for batches, so a single event
+    // and a batch touching the same refund cannot overwrite each other's change
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Refund r WHERE r.taxFile.id = :taxFileId")
+    Optional<Refund> findByTaxFileIdForUpdate(@Param("taxFileId") UUID taxFileId);
 }
 
@@ -0,0 +1,238 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.entity.OutboxMessage;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.TaxFile;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * JDBC batch inserts for bulk tax file creation. Ids and timestamps are assigned
+ * by the caller, so only the ids of the tax files actually inserted are read back.
+ * Outbox ids come from the sequence and are only needed by the relay.
+ *
+ * Single tax file creation writes its rows the same way, in one statement.
+ *
+ * Also the bulk read behind tax file lookups, which has no JPQL equivalent.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class TaxFileBatchRepository {
+    
+    private static final int JDBC_BATCH_SIZE = 500;
+    
+    // One statement for the whole batch. A year already filed, also by a concurrent transaction,
+    // is skipped instead of failing the batch, and its id is missing from what comes back.
+    private static final String INSERT_TAX_FILES_SQL =
+            "INSERT INTO taxfileservdb.tax_file (id, user_id, tax_year, income, expense, tax_rate_percent, deducted, " +
+            "refund_amount, tax_status, created_at, updated_at) " +
+            "SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::integer[], ?::numeric[], ?::numeric[], ?::numeric[], " +
+            "?::numeric[], ?::numeric[], ?::varchar[], ?::timestamp[], ?::timestamp[]) " +
+            "ON CONFLICT (user_id, tax_year) DO NOTHING RETURNING id";
+    
+    private static final String INSERT_REFUND_SQL =
+            "INSERT INTO taxfileservdb.refund (id, tax_file_id, refund_status, refund_eta, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_OUTBOX_SQL =
+            "INSERT INTO taxfileservdb.outbox (topic, payload, attempts, available_at, created_at) VALUES (?, ?, 0, ?, ?)";
+    
+    // One statement, and one round trip, for a tax file, its refund and the refund's outbox message.
+    // Postgres checks refund's foreign key at the end of the statement, once the tax file row exists.
+    private static final String INSERT_TAX_FILE_WITH_REFUND_SQL =
+            "WITH tf AS (INSERT INTO taxfileservdb.tax_file (id, user_id, tax_year, income, expense, tax_rate_percent, " +
+            "deducted, refund_amount, tax_status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING *), " +
+            "r AS (INSERT INTO taxfileservdb.refund (id, tax_file_id, refund_status, refund_eta) " +
+            "SELECT ?, tf.id, ?, ? FROM tf RETURNING refund_status, refund_eta, refund_errors, updated_at), " +
+            "o AS (INSERT INTO taxfileservdb.outbox (topic, payload, attempts, available_at, created_at) " +
+            "SELECT ?, ?, 0, ?, ? FROM tf) " +
+            "SELECT tf.id, tf.user_id, tf.tax_year, tf.income, tf.expense, tf.tax_rate_percent, tf.deducted, " +
+            "tf.refund_amount, tf.tax_status, tf.created_at, tf.updated_at, r.refund_status, r.refund_eta, " +
+            "r.refund_errors::text AS refund_errors, r.updated_at AS refund_updated_at FROM tf CROSS JOIN r";
+    
+    private static final String INSERT_TAX_FILE_RETURNING_SQL =
+            "INSERT INTO taxfileservdb.tax_file (id, user_id, tax_year, income, expense, tax_rate_percent, deducted, " +
+            "refund_amount, tax_status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "RETURNING id, user_id, tax_year, income, expense, tax_rate_percent, deducted, refund_amount, tax_status, " +
+            "created_at, updated_at, NULL::varchar AS refund_status, NULL::timestamptz AS refund_eta, " +
+            "NULL::text AS refund_errors, NULL::timestamptz AS refund_updated_at";
+    
+    // The keys are bound as two arrays, so the statement text is the same for any number of keys
+    // and Postgres keeps one prepared plan for it
+    private static final String SELECT_TAX_FILES_WITH_REFUND_SQL =
+            "SELECT tf.id, tf.user_id, tf.tax_year, tf.income, tf.expense, tf.tax_rate_percent, tf.deducted, " +
+            "tf.refund_amount, tf.tax_status, tf.created_at, tf.updated_at, r.refund_status, r.refund_eta, " +
+            "r.refund_errors::text AS refund_errors, r.updated_at AS refund_updated_at " +
+            "FROM taxfileservdb.tax_file tf LEFT JOIN taxfileservdb.refund r ON r.tax_file_id = tf.id " +
+            "WHERE (tf.user_id, tf.tax_year) IN (SELECT * FROM unnest(?, ?))";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Insert the tax files, skipping those whose user already filed for the year.
+     *
+     * @return the ids of the tax files that were inserted
+     */
+    public Set<UUID> insertTaxFiles(List<TaxFile> taxFiles) {
+        int size = taxFiles.size();
+        UUID[] ids = new UUID[size];
+        String[] userIds = new String[size];
+        Integer[] years = new Integer[size];
+        BigDecimal[] incomes = new BigDecimal[size];
+        BigDecimal[] expenses = new BigDecimal[size];
+        BigDecimal[] taxRates = new BigDecimal[size];
+        BigDecimal[] deducted = new BigDecimal[size];
+        BigDecimal[] refundAmounts = new BigDecimal[size];
+        String[] taxStatuses = new String[size];
+        Timestamp[] createdAts = new Timestamp[size];
+        Timestamp[] updatedAts = new Timestamp[size];
+        for (int i = 0; i < size; i++) {
+            TaxFile taxFile = taxFiles.get(i);
+            ids[i] = taxFile.getId();
+            userIds[i] = taxFile.getUserId();
+            years[i] = taxFile.getYear();
+            incomes[i] = taxFile.getIncome();
+            expenses[i] = taxFile.getExpense();
+            taxRates[i] = taxFile.getTaxRate();
+            deducted[i] = taxFile.getDeducted();
+            refundAmounts[i] = taxFile.getRefundAmount();
+            taxStatuses[i] = taxFile.getTaxStatus().name();
+            createdAts[i] = Timestamp.valueOf(taxFile.getCreatedAt());
+            updatedAts[i] = Timestamp.valueOf(taxFile.getUpdatedAt());
+        }
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_TAX_FILES_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", ids));
+            statement.setArray(2, connection.createArrayOf("varchar", userIds));
+            statement.setArray(3, connection.createArrayOf("integer", years));
+            statement.setArray(4, connection.createArrayOf("numeric", incomes));
+            statement.setArray(5, connection.createArrayOf("numeric", expenses));
+            statement.setArray(6, connection.createArrayOf("numeric", taxRates));
+            statement.setArray(7, connection.createArrayOf("numeric", deducted));
+            statement.setArray(8, connection.createArrayOf("numeric", refundAmounts));
+            statement.setArray(9, connection.createArrayOf("varchar", taxStatuses));
+            statement.setArray(10, connection.createArrayOf("timestamp", createdAts));
+            statement.setArray(11, connection.createArrayOf("timestamp", updatedAts));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getObject("id", UUID.class)));
+    }
+    
+    public void insertRefunds(List<Refund> refunds) {
+        jdbcTemplate.batchUpdate(INSERT_REFUND_SQL, refunds, JDBC_BATCH_SIZE, (ps, refund) -> {
+            ps.setObject(1, refund.getId());
+            ps.setObject(2, refund.getTaxFile().getId());
+            ps.setString(3, refund.getRefundStatus().name());
+            ps.setTimestamp(4, refund.getRefundEta() != null ? Timestamp.valueOf(refund.getRefundEta()) : null);
+            ps.setTimestamp(5, Timestamp.valueOf(refund.getCreatedAt()));
+            ps.setTimestamp(6, Timestamp.valueOf(refund.getUpdatedAt()));
+        });
+    }
+    
+    public void insertOutboxMessages(List<OutboxMessage> messages) {
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_SQL, messages, JDBC_BATCH_SIZE, (ps, message) -> {
+            ps.setString(1, message.getTopic().name());
+            ps.setString(2, message.getPayload());
+            ps.setTimestamp(3, Timestamp.valueOf(message.getAvailableAt()));
+            ps.setTimestamp(4, Timestamp.valueOf(message.getCreatedAt()));
+        });
+    }
+    
+    /**
+     * Insert a tax file, and its refund and outbox message when it has one, with a single
+     * statement. Timestamps come from the column defaults and the response is built from what the
+     * statement returns, so nothing is read back. A tax file that already exists for the user and
+     * year fails on uk_tax_file_user_year with a {@link org.springframework.dao.DuplicateKeyException}.
+     */
+    public TaxFileResponse insertTaxFile(TaxFile taxFile, Refund refund, OutboxMessage message) {
+        if (refund == null) {
+            return jdbcTemplate.query(INSERT_TAX_FILE_RETURNING_SQL,
+                    ps -> setTaxFile(ps, taxFile), (rs, rowNum) -> toTaxFileResponse(rs)).get(0);
+        }
+        return jdbcTemplate.query(INSERT_TAX_FILE_WITH_REFUND_SQL, ps -> {
+            setTaxFile(ps, taxFile);
+            ps.setObject(10, refund.getId());
+            ps.setString(11, refund.getRefundStatus().name());
+            ps.setTimestamp(12, refund.getRefundEta() != null ? Timestamp.valueOf(refund.getRefundEta()) : null);
+            ps.setString(13, message.getTopic().name());
+            ps.setString(14, message.getPayload());
+            ps.setTimestamp(15, Timestamp.valueOf(message.getAvailableAt()));
+            ps.setTimestamp(16, Timestamp.valueOf(message.getCreatedAt()));
+        }, (rs, rowNum) -> toTaxFileResponse(rs)).get(0);
+    }
+    
+    /**
+     * {@link TaxFileRepository#findByUserIdAndYearWithRefund} for many keys in one query. Keys
+     * without a tax file are simply absent from the result, which is in no particular order.
+     */
+    public List<TaxFileResponse> findTaxFilesWithRefund(List<TaxFileKey> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        String[] userIds = new String[keys.size()];
+        Integer[] years = new Integer[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            userIds[i] = keys.get(i).getUserId();
+            years[i] = keys.get(i).getYear();
+        }
+        return jdbcTemplate.query(SELECT_TAX_FILES_WITH_REFUND_SQL, ps -> {
+            Array userIdArray = ps.getConnection().createArrayOf("varchar", userIds);
+            Array yearArray = ps.getConnection().createArrayOf("integer", years);
+            ps.setArray(1, userIdArray);
+            ps.setArray(2, yearArray);
+        }, (rs, rowNum) -> toTaxFileResponse(rs));
+    }
+    
+    private static void setTaxFile(PreparedStatement ps, TaxFile taxFile) throws SQLException {
+        ps.setObject(1, taxFile.getId());
+        ps.setString(2, taxFile.getUserId());
+        ps.setInt(3, taxFile.getYear());
+        ps.setBigDecimal(4, taxFile.getIncome());
+        ps.setBigDecimal(5, taxFile.getExpense());
+        ps.setBigDecimal(6, taxFile.getTaxRate());
+        ps.setBigDecimal(7, taxFile.getDeducted());
+        ps.setBigDecimal(8, taxFile.getRefundAmount());
+        ps.setString(9, taxFile.getTaxStatus().name());
+    }
+    
+    private static TaxFileResponse toTaxFileResponse(ResultSet rs) throws SQLException {
+        return TaxFileResponse.builder()
+                .fileId(rs.getString("id"))
+                .userId(rs.getString("user_id"))
+                .year(rs.getInt("tax_year"))
+                .income(rs.getBigDecimal("income"))
+                .expense(rs.getBigDecimal("expense"))
+                .taxRate(rs.getBigDecimal("tax_rate_percent"))
+                .deducted(rs.getBigDecimal("deducted"))
+                .refund(rs.getBigDecimal("refund_amount"))
+                .taxStatus(rs.getString("tax_status"))
+                .refundStatus(rs.getString("refund_status"))
+                .refundEta(toLocalDateTime(rs.getTimestamp("refund_eta")))
+                .refundErrors(TaxFileResponse.parseRefundErrors(rs.getString("refund_errors")))
+                .refundUpdatedAt(toLocalDateTime(rs.getTimestamp("refund_updated_at")))
+                .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+                .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+                .build();
+    }
+    
+    // timestamptz columns: pgjdbc only maps plain timestamp to LocalDateTime directly
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.badhtaxfileserv.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Forward-only JDBC scan over the (user_id, tax_year) key of every tax file, answered from
+ * uk_tax_file_user_year. Must run inside a transaction: Postgres only honours the fetch size
+ * with autocommit off.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class TaxFileKeyStreamRepository {
+
+    private static final String COUNT_SQL = "SELECT count(*) FROM taxfileservdb.tax_file";
+
+    private static final String SELECT_KEYS_SQL = "SELECT user_id, tax_year FROM taxfileservdb.tax_file";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        return count != null ? count : 0;
+    }
+
+    public void forEachKey(int fetchSize, BiConsumer<String, Integer> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_KEYS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getString("user_id"), resultSet.getInt("tax_year")));
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,5 +21,10 @@ public interface TaxFileRepository extends JpaRepository<TaxFile, UUID> {
     List<TaxFile> findByUserIdWithRefund(@Param("userId") String userId);
     
     boolean existsByUserIdAndYear(String userId, Integer year);
+    
+    // Superset match on both columns; callers filter to the exact (userId, year) pairs
+    @Query("SELECT tf.userId, tf.year FROM TaxFile tf WHERE tf.userId IN :userIds AND tf.year IN :years")
+    List<Object[]> findUserIdAndYearByUserIdInAndYearIn(@Param("userIds") Collection<String> userIds,
+                                                        @Param("years") Collection<Integer> years);
 }
 
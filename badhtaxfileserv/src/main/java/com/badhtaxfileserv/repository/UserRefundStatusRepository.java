@@ -0,0 +1,59 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.dto.UserRefundStatusResponse.UserRefundStatus;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Latest tax file and refund status for a page of users in a single statement. The lateral
+ * subquery is one probe of idx_tax_file_user_created_at per user instead of one request per user.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class UserRefundStatusRepository {
+    
+    private static final String SELECT_PAGE_SQL =
+            "SELECT u.user_id, u.first_name, u.last_name, t.id AS file_id, t.tax_year, t.tax_status, t.refund_amount, " +
+            "r.refund_status, GREATEST(t.updated_at, r.updated_at) AS last_updated " +
+            "FROM taxfileservdb.\"user\" u " +
+            "LEFT JOIN LATERAL (" +
+            "SELECT tf.id, tf.tax_year, tf.tax_status, tf.refund_amount, tf.updated_at FROM taxfileservdb.tax_file tf " +
+            "WHERE tf.user_id = u.user_id ORDER BY tf.created_at DESC LIMIT 1" +
+            ") t ON TRUE " +
+            "LEFT JOIN taxfileservdb.refund r ON r.tax_file_id = t.id " +
+            "WHERE u.user_id > ? " +
+            "ORDER BY u.user_id LIMIT ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Users ordered by user_id, starting strictly after {@code afterUserId} (use "" for the first page).
+     */
+    public List<UserRefundStatus> findPageAfter(String afterUserId, int limit) {
+        return jdbcTemplate.query(SELECT_PAGE_SQL, (resultSet, rowNum) -> mapRow(resultSet), afterUserId, limit);
+    }
+    
+    private UserRefundStatus mapRow(ResultSet resultSet) throws SQLException {
+        Object fileId = resultSet.getObject("file_id");
+        Timestamp lastUpdated = resultSet.getTimestamp("last_updated");
+        return UserRefundStatus.builder()
+                .userId(resultSet.getString("user_id"))
+                .firstName(resultSet.getString("first_name"))
+                .lastName(resultSet.getString("last_name"))
+                .fileId(fileId != null ? fileId.toString() : null)
+                .year(fileId != null ? resultSet.getInt("tax_year") : null)
+                .taxStatus(resultSet.getString("tax_status"))
+                .refundStatus(resultSet.getString("refund_status"))
+                .refundAmount(resultSet.getBigDecimal("refund_amount"))
+                .lastUpdated(lastUpdated != null ? lastUpdated.toLocalDateTime() : null)
+                .build();
+    }
+}
@@ -1,9 +1,13 @@
 package com.badhtaxfileserv.repository;
 
 import com.badhtaxfileserv.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,5 +18,15 @@ public interface UserRepository extends JpaRepository<User, String> {
     
     List<User> findAllByOrderByCreatedAtDesc();
     
+    List<User> findAllByOrderByCreatedAtDescUserIdDesc(Pageable pageable);
+    
+    // Row-value comparison so Postgres can seek straight into idx_user_created_at. created_at is
+    // timestamptz, so the position is bound with its offset rather than in the session time zone.
+    @Query(value = "SELECT * FROM taxfileservdb.\"user\" u WHERE (u.created_at, u.user_id) < (:createdAt, :userId) " +
+                   "ORDER BY u.created_at DESC, u.user_id DESC LIMIT :limit", nativeQuery = true)
+    List<User> findPageAfter(@Param("createdAt") OffsetDateTime createdAt,
+                             @Param("userId") String userId,
+                             @Param("limit") int limit);
+    
     boolean existsByUserId(String userId);
 }
@@ -0,0 +1,44 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.entity.User;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+/**
+ * Forward-only JDBC scan over all users. Rows are handed to the consumer as they arrive
+ * and never enter a persistence context, so memory stays flat for any table size.
+ * Must run inside a transaction: Postgres only honours the fetch size with autocommit off.
+ */
+@Repository
+@RequiredArgsConstructor
+@Timed(value = "repository.jdbc.invocations", description = "JDBC repository method latency")
+public class UserStreamRepository {
+    
+    private static final String SELECT_ALL_SQL =
+            "SELECT user_id, first_name, last_name, created_at, updated_at FROM taxfileservdb.\"user\" " +
+            "ORDER BY created_at DESC, user_id DESC";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public void forEachOrderByCreatedAtDesc(int fetchSize, Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(User.builder()
+                .userId(resultSet.getString("user_id"))
+                .firstName(resultSet.getString("first_name"))
+                .lastName(resultSet.getString("last_name"))
+                .createdAt(resultSet.getTimestamp("created_at").toLocalDateTime())
+                .updatedAt(resultSet.getTimestamp("updated_at").toLocalDateTime())
+                .build()));
+    }
+}
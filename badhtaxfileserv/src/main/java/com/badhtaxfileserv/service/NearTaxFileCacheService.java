@@ -0,0 +1,361 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier tax file cache: a bounded in-process Caffeine (W-TinyLFU) cache in front of
+ * the Redis-backed {@link TaxFileCacheService}. Hits on the near tier never leave the JVM.
+ *
+ * Evictions are applied locally and broadcast on a Redis channel so every other instance
+ * drops its near copy too. Near entries also expire on their own, which bounds staleness
+ * if an invalidation message is ever lost.
+ *
+ * A read that fills the near tier from Redis or the database can race an eviction of the same
+ * key and put back the value the eviction removed. Every invalidation bumps a generation for
+ * the user's stripe first, and a fill that sees the generation move drops what it just put.
+ */
+@Service
+@Primary
+@Slf4j
+@ConditionalOnExpression("${redis.enabled:true} and ${cache.near.enabled:false}")
+public class NearTaxFileCacheService implements TaxFileCacheServiceInterface, MessageListener {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final TaxFileCacheService redisCache;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String invalidationChannel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Cache<NearKey, TaxFileResponse> nearCache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /** Near cache key; a record so user invalidations compare the user ID exactly. */
+    record NearKey(String userId, Integer year) {
+    }
+
+    /** What an invalidation drops: one tax file, all of a user's tax files, or everything. */
+    enum TargetType { TAX_FILE, USER, ALL }
+
+    record Target(TargetType type, String userId, Integer year) {
+        static Target taxFile(String userId, Integer year) {
+            return new Target(TargetType.TAX_FILE, userId, year);
+        }
+    }
+
+    /** Invalidation published to the other instances, serialized as JSON. */
+    record Invalidation(String instanceId, List<Target> targets) {
+    }
+
+    public NearTaxFileCacheService(
+            TaxFileCacheService redisCache,
+            StringRedisTemplate stringRedisTemplate,
+            ObjectMapper objectMapper,
+            @Value("${cache.near.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${cache.near.time-to-live:300000}") long timeToLiveMillis,
+            @Value("${cache.near.invalidation-channel:taxfile:invalidations}") String invalidationChannel) {
+        this.redisCache = redisCache;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.invalidationChannel = invalidationChannel;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((NearKey key, TaxFileResponse value) -> estimateSize(key, value))
+                .expireAfterWrite(Duration.ofMillis(timeToLiveMillis))
+                .recordStats()
+                .build();
+        log.info("Near cache enabled: maxWeightBytes={}, ttlMillis={}, channel={}",
+                maxWeightBytes, timeToLiveMillis, invalidationChannel);
+    }
+
+    @Override
+    public TaxFileResponse getFromCache(String userId, Integer year) {
+        NearKey key = new NearKey(userId, year);
+        TaxFileResponse nearValue = nearCache.getIfPresent(key);
+        if (nearValue != null) {
+            log.debug("Near cache hit for tax file: userId={}, year={}", userId, year);
+            return nearValue;
+        }
+
+        long generation = generation(userId);
+        TaxFileResponse redisValue = redisCache.getFromCache(userId, year);
+        if (redisValue != null) {
+            fill(key, redisValue, generation);
+        }
+        return redisValue;
+    }
+
+    /**
+     * Keys held in the near tier are served from it; the rest are read from Redis in one pipeline
+     * and kept near for next time.
+     */
+    @Override
+    public List<TaxFileResponse> getFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        List<TaxFileResponse> found = new ArrayList<>();
+        Map<String, List<Integer>> remaining = new HashMap<>();
+        Map<String, Long> generationsByUserId = new HashMap<>();
+        yearsByUserId.forEach((userId, years) -> {
+            for (Integer year : years) {
+                TaxFileResponse nearValue = nearCache.getIfPresent(new NearKey(userId, year));
+                if (nearValue != null) {
+                    found.add(nearValue);
+                } else {
+                    remaining.computeIfAbsent(userId, id -> new ArrayList<>()).add(year);
+                    generationsByUserId.computeIfAbsent(userId, this::generation);
+                }
+            }
+        });
+        if (remaining.isEmpty()) {
+            return found;
+        }
+
+        for (TaxFileResponse redisValue : redisCache.getFromCacheBulk(remaining)) {
+            Long generation = generationsByUserId.get(redisValue.getUserId());
+            if (generation != null) {
+                fill(new NearKey(redisValue.getUserId(), redisValue.getYear()), redisValue, generation);
+            }
+            found.add(redisValue);
+        }
+        return found;
+    }
+
+    /**
+     * Multi-year reads go to Redis, which holds all of a user's years in one hash; the near tier
+     * only keeps single-year lookups.
+     */
+    @Override
+    public Map<Integer, TaxFileResponse> getAllFromCache(String userId) {
+        return redisCache.getAllFromCache(userId);
+    }
+
+    /**
+     * Tax user aggregates are cached in Redis only; they change with every tax file change of
+     * the user, which a near copy would have to be told about on every instance.
+     */
+    @Override
+    public TaxUserResponse getTaxUserFromCache(String userId, Supplier<TaxUserResponse> loader) {
+        return redisCache.getTaxUserFromCache(userId, loader);
+    }
+
+    @Override
+    public void evictTaxUsersFromCache(Collection<String> userIds) {
+        redisCache.evictTaxUsersFromCache(userIds);
+    }
+
+    @Override
+    public TaxFileResponse loadOnMiss(String userId, Integer year, Supplier<TaxFileResponse> loader) {
+        long generation = generation(userId);
+        TaxFileResponse response = redisCache.loadOnMiss(userId, year, loader);
+        fill(new NearKey(userId, year), response, generation);
+        return response;
+    }
+
+    @Override
+    public void putInCache(String userId, Integer year, TaxFileResponse taxFileResponse) {
+        long generation = generation(userId);
+        redisCache.putInCache(userId, year, taxFileResponse);
+        fill(new NearKey(userId, year), taxFileResponse, generation);
+    }
+
+    @Override
+    public void putInCacheBulk(List<TaxFileResponse> taxFileResponses) {
+        Map<String, Long> generationsByUserId = new HashMap<>();
+        for (TaxFileResponse response : taxFileResponses) {
+            generationsByUserId.computeIfAbsent(response.getUserId(), this::generation);
+        }
+        redisCache.putInCacheBulk(taxFileResponses);
+        for (TaxFileResponse response : taxFileResponses) {
+            fill(new NearKey(response.getUserId(), response.getYear()), response,
+                    generationsByUserId.get(response.getUserId()));
+        }
+    }
+
+    @Override
+    public void evictFromCache(String userId, Integer year) {
+        redisCache.evictFromCache(userId, year);
+        Target target = Target.taxFile(userId, year);
+        apply(target);
+        broadcast(List.of(target));
+    }
+
+    @Override
+    public void evictFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        if (yearsByUserId.isEmpty()) {
+            return;
+        }
+        redisCache.evictFromCacheBulk(yearsByUserId);
+        
+        List<Target> targets = new ArrayList<>();
+        yearsByUserId.forEach((userId, years) -> years.forEach(year -> targets.add(Target.taxFile(userId, year))));
+        targets.forEach(this::apply);
+        broadcast(targets);
+    }
+    
+    /**
+     * Redis entries are patched in place; near copies are dropped everywhere and refilled from
+     * the patched Redis entry on the next read.
+     */
+    @Override
+    public void applyRefundUpdates(List<RefundCacheUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        redisCache.applyRefundUpdates(updates);
+        
+        List<Target> targets = new ArrayList<>();
+        for (RefundCacheUpdate update : updates) {
+            targets.add(Target.taxFile(update.getUserId(), update.getYear()));
+        }
+        targets.forEach(this::apply);
+        broadcast(targets);
+    }
+    
+    @Override
+    public void evictAllForUser(String userId) {
+        redisCache.evictAllForUser(userId);
+        Target target = new Target(TargetType.USER, userId, null);
+        apply(target);
+        broadcast(List.of(target));
+    }
+
+    @Override
+    public void evictAll() {
+        redisCache.evictAll();
+        Target target = new Target(TargetType.ALL, null, null);
+        apply(target);
+        broadcast(List.of(target));
+    }
+
+    /**
+     * Apply an {@link Invalidation} published by another instance. Bulk evictions send all
+     * their targets in one message.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Invalidation invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), Invalidation.class);
+        } catch (Exception e) {
+            log.warn("Ignoring malformed near cache invalidation: {}",
+                    new String(message.getBody(), StandardCharsets.UTF_8), e);
+            return;
+        }
+        if (instanceId.equals(invalidation.instanceId()) || invalidation.targets() == null) {
+            return;
+        }
+
+        for (Target target : invalidation.targets()) {
+            if (target == null || target.type() == null) {
+                log.warn("Ignoring near cache invalidation target without a type: {}", target);
+                continue;
+            }
+            apply(target);
+            log.debug("Applied remote near cache invalidation: {}", target);
+        }
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    public long nearCacheSize() {
+        return nearCache.estimatedSize();
+    }
+
+    // The generation moves before the entries go, so a fill racing this sees it and backs out
+    private void apply(Target target) {
+        switch (target.type()) {
+            case TAX_FILE -> {
+                generations.incrementAndGet(stripe(target.userId()));
+                nearCache.invalidate(new NearKey(target.userId(), target.year()));
+            }
+            case USER -> {
+                generations.incrementAndGet(stripe(target.userId()));
+                nearCache.asMap().keySet().removeIf(key -> key.userId().equals(target.userId()));
+            }
+            case ALL -> {
+                for (int i = 0; i < GENERATION_STRIPES; i++) {
+                    generations.incrementAndGet(i);
+                }
+                nearCache.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Keep a value read while the user's generation was {@code generation}. Put first and check
+     * after: an invalidation that bumped the generation before the check is undone here, one
+     * that bumps it after the check removes the entry itself.
+     */
+    private void fill(NearKey key, TaxFileResponse value, long generation) {
+        nearCache.put(key, value);
+        if (generations.get(stripe(key.userId())) != generation) {
+            nearCache.asMap().remove(key, value);
+        }
+    }
+
+    private long generation(String userId) {
+        return generations.get(stripe(userId));
+    }
+
+    private static int stripe(String userId) {
+        return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+    }
+
+    private void broadcast(List<Target> targets) {
+        try {
+            stringRedisTemplate.convertAndSend(invalidationChannel,
+                    objectMapper.writeValueAsString(new Invalidation(instanceId, targets)));
+        } catch (Exception e) {
+            // Other instances fall back to the near cache TTL for these entries
+            log.error("Failed to broadcast near cache invalidation: {}", targets, e);
+        }
+    }
+
+    /**
+     * Rough retained size of a cached response, used as the Caffeine weight so the
+     * near tier is bounded by memory rather than entry count.
+     */
+    static int estimateSize(NearKey key, TaxFileResponse value) {
+        int size = 64 + stringSize(key.userId());
+        size += 16 * 8; // object header and references of the response itself
+        size += stringSize(value.getFileId()) + stringSize(value.getUserId())
+                + stringSize(value.getTaxStatus()) + stringSize(value.getRefundStatus());
+        size += 5 * 40; // BigDecimal amounts
+        size += 5 * 24; // LocalDateTime fields
+        if (value.getRefundErrors() != null) {
+            for (TaxFileResponse.ErrorDetail error : value.getRefundErrors()) {
+                size += 32 + stringSize(error.getCode()) + stringSize(error.getMessage());
+            }
+        }
+        return size;
+    }
+
+    private static int stringSize(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+}
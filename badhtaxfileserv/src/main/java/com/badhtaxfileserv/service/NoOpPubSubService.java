@@ -4,6 +4,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @Slf4j
 @ConditionalOnMissingBean(PubSubService.class)
@@ -22,4 +25,27 @@ public class NoOpPubSubService implements PubSubServiceInterface {
     public void publishSendRefund(String message) {
         log.info("Pub/Sub disabled - skipping send refund message: {}", message);
     }
+
+    @Override
+    public void publishSendRefunds(List<String> messages) {
+        log.info("Pub/Sub disabled - skipping {} send refund messages", messages.size());
+    }
+
+    @Override
+    public CompletableFuture<String> publishRefundUpdateAsync(String message) {
+        publishRefundUpdate(message);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<String> publishSendRefundAsync(String message) {
+        publishSendRefund(message);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> publishAll(PubSubTopic topic, List<String> messages) {
+        log.info("Pub/Sub disabled - skipping {} {} messages", messages.size(), topic);
+        return CompletableFuture.completedFuture(List.of());
+    }
 }
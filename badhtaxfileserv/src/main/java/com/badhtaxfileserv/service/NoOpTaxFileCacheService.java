@@ -5,6 +5,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @Slf4j
 @ConditionalOnProperty(name = "redis.enabled", havingValue = "false", matchIfMissing = false)
@@ -21,11 +25,21 @@ public class NoOpTaxFileCacheService implements TaxFileCacheServiceInterface {
         log.debug("No-op cache: Skipping cache put for tax file: userId={}, year={}", userId, year);
     }
     
+    @Override
+    public void putInCacheBulk(List<TaxFileResponse> taxFileResponses) {
+        log.debug("No-op cache: Skipping bulk cache put for {} tax files", taxFileResponses.size());
+    }
+    
     @Override
     public void evictFromCache(String userId, Integer year) {
         log.debug("No-op cache: Skipping cache eviction for tax file: userId={}, year={}", userId, year);
     }
     
+    @Override
+    public void evictFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        log.debug("No-op cache: Skipping bulk cache eviction for {} users", yearsByUserId.size());
+    }
+    
     @Override
     public void evictAllForUser(String userId) {
         log.debug("No-op cache: Skipping cache eviction for user: {}", userId);
@@ -0,0 +1,133 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.entity.OutboxMessage;
+import com.badhtaxfileserv.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the outbox table to Pub/Sub. Each pass claims a batch of due rows in a short
+ * transaction of its own, leasing them so several instances can relay concurrently without
+ * double-sending, then publishes them per topic with no transaction or row lock held and
+ * deletes the rows once Pub/Sub acknowledges. Failed rows stay in the table with an exponential
+ * backoff, and rows of an instance that dies mid-publish come due again when the lease ends,
+ * so every message is retried until it goes through: at-least-once delivery.
+ *
+ * Only runs with Pub/Sub enabled. Without it nothing could be delivered, and the rows wait in
+ * the table rather than being deleted as sent.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "pubsub.enabled", havingValue = "true")
+public class OutboxRelay {
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long PUBLISH_TIMEOUT_SECONDS = 60;
+    // Outlasts the publish timeout, so a claimed batch is only handed out again if its relay died
+    private static final long LEASE_SECONDS = 2 * PUBLISH_TIMEOUT_SECONDS;
+    
+    private final OutboxRepository outboxRepository;
+    private final PubSubServiceInterface pubSubService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${outbox.relay.initial-backoff:1000}")
+    private long initialBackoffMillis;
+    
+    @Value("${outbox.relay.max-backoff:300000}")
+    private long maxBackoffMillis;
+    
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval:1000}")
+    public void drain() {
+        try {
+            // Keep going while batches come back full and fully published
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay pass failed", e);
+        }
+    }
+    
+    /**
+     * Claim one batch of due messages and publish it.
+     *
+     * @return the number of messages published and deleted
+     */
+    int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> messages = transactionTemplate.execute(
+                status -> outboxRepository.claimNextBatch(now, now.plusSeconds(LEASE_SECONDS), batchSize));
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+        
+        Map<OutboxMessage.Topic, List<OutboxMessage>> byTopic = new EnumMap<>(OutboxMessage.Topic.class);
+        for (OutboxMessage message : messages) {
+            byTopic.computeIfAbsent(message.getTopic(), topic -> new ArrayList<>()).add(message);
+        }
+        
+        List<Long> published = new ArrayList<>(messages.size());
+        List<OutboxMessage> failed = new ArrayList<>();
+        byTopic.forEach((topic, topicMessages) -> {
+            try {
+                publish(topic, topicMessages);
+                topicMessages.forEach(message -> published.add(message.getId()));
+            } catch (Exception e) {
+                log.error("Failed to relay {} outbox messages for topic {}", topicMessages.size(), topic, e);
+                topicMessages.forEach(message -> scheduleRetry(message, e, now));
+                failed.addAll(topicMessages);
+            }
+        });
+        
+        if (!failed.isEmpty()) {
+            outboxRepository.saveAll(failed);
+        }
+        if (!published.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(published);
+            log.info("Relayed {} outbox messages", published.size());
+        }
+        return published.size();
+    }
+    
+    // Messages are handed to the publisher together so they share publish RPCs; wait for every ack
+    private void publish(OutboxMessage.Topic topic, List<OutboxMessage> messages) throws Exception {
+        pubSubService.publishAll(pubSubTopic(topic), messages.stream().map(OutboxMessage::getPayload).toList())
+                .get(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private static PubSubTopic pubSubTopic(OutboxMessage.Topic topic) {
+        return switch (topic) {
+            case SEND_REFUND -> PubSubTopic.SEND_REFUND;
+            case REFUND_UPDATE -> PubSubTopic.REFUND_UPDATE;
+        };
+    }
+    
+    // The new due time replaces the lease
+    private void scheduleRetry(OutboxMessage message, Exception error, LocalDateTime now) {
+        int attempts = message.getAttempts() + 1;
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 20));
+        String errorText = String.valueOf(error.getMessage());
+        
+        message.setAttempts(attempts);
+        message.setAvailableAt(now.plusNanos(backoff * 1_000_000));
+        message.setLastError(errorText.length() > MAX_ERROR_LENGTH ? errorText.substring(0, MAX_ERROR_LENGTH) : errorText);
+    }
+}
@@ -1,9 +1,26 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
 import com.google.cloud.pubsub.v1.Publisher;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.TopicName;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -12,14 +29,26 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 @ConditionalOnProperty(name = "pubsub.enabled", havingValue = "true", matchIfMissing = false)
 public class PubSubService implements PubSubServiceInterface {
 
-    public PubSubService() {
+    private static final long BLOCKING_PUBLISH_TIMEOUT_SECONDS = 30;
+
+    private final MeterRegistry meterRegistry;
+    private final BackgroundExecutorFactory backgroundExecutorFactory;
+
+    public PubSubService(MeterRegistry meterRegistry, BackgroundExecutorFactory backgroundExecutorFactory) {
+        this.meterRegistry = meterRegistry;
+        this.backgroundExecutorFactory = backgroundExecutorFactory;
         log.info("PubSubService constructor called - service is being created");
     }
 
@@ -32,30 +61,52 @@ public class PubSubService implements PubSubServiceInterface {
     @Value("${pubsub.send-refund-topic:send-refund-to-irs}")
     private String sendRefundTopic;
 
+    @Value("${pubsub.emulator-host:}")
+    private String emulatorHost;
+
+    @Value("${pubsub.publisher.batching.element-count-threshold:100}")
+    private long elementCountThreshold;
+
+    @Value("${pubsub.publisher.batching.request-byte-threshold:1000000}")
+    private long requestByteThreshold;
+
+    @Value("${pubsub.publisher.batching.delay-threshold:10}")
+    private long delayThresholdMillis;
+
+    @Value("${pubsub.publisher.flow-control.max-outstanding-element-count:10000}")
+    private long maxOutstandingElementCount;
+
+    @Value("${pubsub.publisher.flow-control.max-outstanding-request-bytes:104857600}")
+    private long maxOutstandingRequestBytes;
+
     private Publisher refundUpdatePublisher;
     private Publisher sendRefundPublisher;
+    // Publishers leave channels they were handed open, so these are closed after them
+    private final List<ManagedChannel> emulatorChannels = new CopyOnWriteArrayList<>();
     private volatile boolean publishersInitialized = false;
 
+    private TopicMetrics refundUpdateMetrics;
+    private TopicMetrics sendRefundMetrics;
+
     @PostConstruct
     public void initializePublishers() {
         log.info("Starting Pub/Sub publishers initialization...");
         log.info("Project ID: {}", projectId);
         log.info("Refund Update Topic: {}", refundUpdateTopic);
         log.info("Send Refund Topic: {}", sendRefundTopic);
-        
+
+        refundUpdateMetrics = new TopicMetrics(refundUpdateTopic);
+        sendRefundMetrics = new TopicMetrics(sendRefundTopic);
+
         // Initialize publishers asynchronously to avoid blocking startup
-        new Thread(() -> {
+        backgroundExecutorFactory.newExecutor("pubsub-init-").execute(() -> {
             try {
                 if (projectId != null && !projectId.isEmpty()) {
                     log.info("Creating refund update publisher...");
-                    refundUpdatePublisher = Publisher.newBuilder(
-                        TopicName.of(projectId, refundUpdateTopic)
-                    ).build();
+                    refundUpdatePublisher = newPublisher(refundUpdateTopic);
 
                     log.info("Creating send refund publisher...");
-                    sendRefundPublisher = Publisher.newBuilder(
-                        TopicName.of(projectId, sendRefundTopic)
-                    ).build();
+                    sendRefundPublisher = newPublisher(sendRefundTopic);
 
                     log.info("Successfully initialized Pub/Sub publishers for topics: {}, {}", refundUpdateTopic, sendRefundTopic);
                     publishersInitialized = true;
@@ -65,7 +116,35 @@ public class PubSubService implements PubSubServiceInterface {
             } catch (IOException e) {
                 log.error("Failed to initialize Pub/Sub publishers", e);
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Publisher with explicit batching and flow control. Flow control fails the publish
+     * instead of blocking when the outstanding limits are reached, so callers never stall
+     * on a slow or unreachable Pub/Sub.
+     */
+    private Publisher newPublisher(String topic) throws IOException {
+        BatchingSettings batchingSettings = BatchingSettings.newBuilder()
+            .setElementCountThreshold(elementCountThreshold)
+            .setRequestByteThreshold(requestByteThreshold)
+            .setDelayThreshold(org.threeten.bp.Duration.ofMillis(delayThresholdMillis))
+            .setFlowControlSettings(FlowControlSettings.newBuilder()
+                .setMaxOutstandingElementCount(maxOutstandingElementCount)
+                .setMaxOutstandingRequestBytes(maxOutstandingRequestBytes)
+                .setLimitExceededBehavior(FlowController.LimitExceededBehavior.ThrowException)
+                .build())
+            .build();
+
+        Publisher.Builder builder = Publisher.newBuilder(TopicName.of(projectId, topic))
+            .setBatchingSettings(batchingSettings);
+        if (emulatorHost != null && !emulatorHost.isEmpty()) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(emulatorHost).usePlaintext().build();
+            emulatorChannels.add(channel);
+            builder.setChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+                .setCredentialsProvider(NoCredentialsProvider.create());
+        }
+        return builder.build();
     }
 
     @PreDestroy
@@ -79,6 +158,10 @@ public class PubSubService implements PubSubServiceInterface {
                 sendRefundPublisher.shutdown();
                 sendRefundPublisher.awaitTermination(1, TimeUnit.MINUTES);
             }
+            for (ManagedChannel channel : emulatorChannels) {
+                channel.shutdown();
+                channel.awaitTermination(10, TimeUnit.SECONDS);
+            }
             log.info("Pub/Sub publishers shutdown completed");
         } catch (Exception e) {
             log.error("Error during Pub/Sub publishers shutdown", e);
@@ -87,29 +170,122 @@ public class PubSubService implements PubSubServiceInterface {
 
     public void publishRefundUpdate(String message) {
         log.info("Attempting to publish refund update message: {}", message);
-        publishMessage(refundUpdatePublisher, refundUpdateTopic, message);
+        await(publishRefundUpdateAsync(message), refundUpdateTopic);
     }
 
     public void publishSendRefund(String message) {
         log.info("Attempting to publish send refund message: {}", message);
-        publishMessage(sendRefundPublisher, sendRefundTopic, message);
+        await(publishSendRefundAsync(message), sendRefundTopic);
+    }
+
+    public void publishSendRefunds(List<String> messages) {
+        log.info("Attempting to publish {} send refund messages", messages.size());
+        await(publishAll(PubSubTopic.SEND_REFUND, messages), sendRefundTopic);
+    }
+
+    public CompletableFuture<String> publishRefundUpdateAsync(String message) {
+        return publishAsync(refundUpdatePublisher, refundUpdateTopic, refundUpdateMetrics, message);
+    }
+
+    public CompletableFuture<String> publishSendRefundAsync(String message) {
+        return publishAsync(sendRefundPublisher, sendRefundTopic, sendRefundMetrics, message);
+    }
+
+    /**
+     * Hand every message to the publisher up front, so the client batches them into a few
+     * publish RPCs, and complete once all of them are acknowledged.
+     */
+    public CompletableFuture<List<String>> publishAll(PubSubTopic topic, List<String> messages) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            futures.add(topic == PubSubTopic.SEND_REFUND
+                ? publishSendRefundAsync(message)
+                : publishRefundUpdateAsync(message));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(done -> futures.stream().map(CompletableFuture::join).toList());
     }
 
-    private void publishMessage(Publisher publisher, String topicName, String message) {
+    private CompletableFuture<String> publishAsync(Publisher publisher, String topicName, TopicMetrics metrics, String message) {
+        CompletableFuture<String> result = new CompletableFuture<>();
         if (!publishersInitialized || publisher == null) {
-            log.warn("Publisher for topic {} is not initialized yet, skipping message publish", topicName);
-            return;
+            metrics.failures.increment();
+            result.completeExceptionally(new IllegalStateException("Publisher for topic " + topicName + " is not initialized yet"));
+            return result;
         }
 
+        PubsubMessage pubsubMessage = PubsubMessage.newBuilder()
+            .setData(ByteString.copyFromUtf8(message))
+            .build();
+
+        long start = System.nanoTime();
+        metrics.inFlight.incrementAndGet();
+        ApiFuture<String> future;
         try {
-            PubsubMessage pubsubMessage = PubsubMessage.newBuilder()
-                .setData(ByteString.copyFromUtf8(message))
-                .build();
+            future = publisher.publish(pubsubMessage);
+        } catch (RuntimeException e) {
+            metrics.inFlight.decrementAndGet();
+            metrics.failures.increment();
+            result.completeExceptionally(e);
+            return result;
+        }
 
-            publisher.publish(pubsubMessage).get(10, TimeUnit.SECONDS);
-            log.info("Successfully published message to topic {}: {}", topicName, message);
+        // Completed on the publisher's callback thread; nothing here blocks
+        ApiFutures.addCallback(future, new ApiFutureCallback<String>() {
+            @Override
+            public void onSuccess(String messageId) {
+                metrics.inFlight.decrementAndGet();
+                metrics.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.debug("Published message {} to topic {}", messageId, topicName);
+                result.complete(messageId);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                metrics.inFlight.decrementAndGet();
+                metrics.failures.increment();
+                log.error("Failed to publish message to topic {}", topicName, t);
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * Wait for the blocking variants. Failures are thrown so the outbox relay keeps the
+     * message and retries it.
+     */
+    private static void await(CompletableFuture<?> future, String topicName) {
+        try {
+            future.get(BLOCKING_PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while publishing to topic " + topicName, e);
         } catch (Exception e) {
-            log.error("Failed to publish message to topic {}: {}", topicName, message, e);
+            throw new RuntimeException("Failed to publish to topic " + topicName, e);
+        }
+    }
+
+    /**
+     * Per-topic publish meters: messages awaiting an ack, time to ack, and failures.
+     */
+    private final class TopicMetrics {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Timer latency;
+        private final Counter failures;
+
+        private TopicMetrics(String topic) {
+            meterRegistry.gauge("pubsub.publish.in.flight", Tags.of("topic", topic), inFlight);
+            this.latency = Timer.builder("pubsub.publish.latency")
+                .description("Time from publish to Pub/Sub acknowledgement")
+                .tag("topic", topic)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            this.failures = Counter.builder("pubsub.publish.failures")
+                .description("Messages that Pub/Sub did not acknowledge")
+                .tag("topic", topic)
+                .register(meterRegistry);
         }
     }
 }
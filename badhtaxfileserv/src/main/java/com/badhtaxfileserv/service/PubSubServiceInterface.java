@@ -1,6 +1,15 @@
 package com.badhtaxfileserv.service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface PubSubServiceInterface {
     void publishRefundUpdate(String message);
     void publishSendRefund(String message);
+    void publishSendRefunds(List<String> messages);
+    
+    // Non-blocking variants; futures complete with the Pub/Sub message IDs once acknowledged
+    CompletableFuture<String> publishRefundUpdateAsync(String message);
+    CompletableFuture<String> publishSendRefundAsync(String message);
+    CompletableFuture<List<String>> publishAll(PubSubTopic topic, List<String> messages);
 }
@@ -0,0 +1,8 @@
+package com.badhtaxfileserv.service;
+
+/**
+ * Topics this service publishes to; the topic names come from {@code pubsub.*-topic}.
+ */
+public enum PubSubTopic {
+    SEND_REFUND, REFUND_UPDATE
+}
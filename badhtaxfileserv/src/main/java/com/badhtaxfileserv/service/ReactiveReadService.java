@@ -0,0 +1,70 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.RefundResponse;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.dto.UserResponse;
+import com.badhtaxfileserv.repository.ReactiveReadRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Non-blocking counterparts of the read paths in {@link TaxFileService}, {@link RefundService}
+ * and {@link UserService}. An empty result means not found.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveReadService {
+
+    private final ReactiveReadRepository readRepository;
+    private final ReactiveTaxFileCacheService cacheService;
+
+    public ReactiveReadService(ReactiveReadRepository readRepository,
+                               ObjectProvider<ReactiveTaxFileCacheService> cacheService) {
+        this.readRepository = readRepository;
+        // Absent when redis.enabled is false, reads then always go to the database
+        this.cacheService = cacheService.getIfAvailable();
+    }
+
+    public Mono<TaxFileResponse> getTaxFile(String userId, Integer year) {
+        Mono<TaxFileResponse> fromDatabase = readRepository.findTaxFileByUserIdAndYear(userId, year);
+        if (cacheService == null) {
+            return fromDatabase;
+        }
+        return cacheService.getFromCache(userId, year)
+                .switchIfEmpty(Mono.defer(() -> fromDatabase
+                        .flatMap(response -> cacheService.putInCache(userId, year, response).thenReturn(response))));
+    }
+
+    public Mono<TaxUserResponse> getTaxFilesByUserId(String userId) {
+        return readRepository.findUserByUserId(userId)
+                .flatMap(user -> readRepository.findTaxFilesByUserId(userId)
+                        .collectList()
+                        .map(taxFiles -> TaxUserResponse.builder()
+                                .userId(userId)
+                                .firstName(user.getFirstName())
+                                .lastName(user.getLastName())
+                                .taxFiles(taxFiles)
+                                .totalFiles(taxFiles.size())
+                                .build()));
+    }
+
+    public Mono<RefundResponse> getRefund(String userId, Integer year) {
+        return readRepository.findRefundByUserIdAndYear(userId, year);
+    }
+
+    public Mono<RefundResponse> getRefundByFileId(String fileId) {
+        return Mono.fromCallable(() -> UUID.fromString(fileId))
+                .flatMap(readRepository::findRefundByTaxFileId);
+    }
+
+    public Mono<UserResponse> getUserById(String userId) {
+        return readRepository.findUserByUserId(userId);
+    }
+}
@@ -0,0 +1,70 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reactive Lettuce view of the tax file cache. Reads and writes the same keys and encoding as
+ * {@link TaxFileCacheService}, through the same scripts and {@link CacheValueCodec}, so both stacks share one cache, its
+ * invalidations, generation and entry versions. Redis errors are logged and treated as misses,
+ * as on the blocking side.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnExpression("${reactive.enabled:false} and ${redis.enabled:true}")
+public class ReactiveTaxFileCacheService {
+
+    private static final RedisElementWriter<String> STRING_WRITER = RedisElementWriter.from(RedisSerializer.string());
+    private static final RedisElementWriter<byte[]> ARGS_WRITER = RedisElementWriter.from(RedisSerializer.byteArray());
+    private static final RedisElementReader<byte[]> VALUE_READER = RedisElementReader.from(RedisSerializer.byteArray());
+    private static final RedisElementReader<Long> RESULT_READER = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final CacheValueCodec codec;
+
+    public Mono<TaxFileResponse> getFromCache(String userId, Integer year) {
+        return reactiveRedisTemplate.execute(TaxFileCacheService.READ_SCRIPT,
+                        List.of(TaxFileCacheService.GENERATION_KEY, TaxFileCacheService.userKey(userId)),
+                        List.of(String.valueOf(year)), STRING_WRITER, VALUE_READER)
+                .next()
+                // A remembered miss is left to the database, which answers it without a row
+                .filter(cachedValue -> cachedValue.length > 0)
+                .flatMap(cachedValue -> Mono.fromCallable(() -> codec.decodeTaxFile(cachedValue)))
+                .doOnNext(hit -> log.debug("Cache hit for tax file: userId={}, year={}", userId, year))
+                .onErrorResume(e -> {
+                    log.error("Error reading cached tax file for userId={}, year={}", userId, year, e);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Void> putInCache(String userId, Integer year, TaxFileResponse taxFileResponse) {
+        return Mono.fromCallable(() -> codec.encode(taxFileResponse))
+                .flatMap(value -> reactiveRedisTemplate.execute(TaxFileCacheService.WRITE_SCRIPT,
+                                List.of(TaxFileCacheService.GENERATION_KEY, TaxFileCacheService.userKey(userId)),
+                                List.of(String.valueOf(year).getBytes(StandardCharsets.UTF_8), value,
+                                        TaxFileCacheService.versionBytes(taxFileResponse.getRefundUpdatedAt()),
+                                        TaxFileCacheService.CACHE_TTL_MILLIS),
+                                ARGS_WRITER, RESULT_READER)
+                        .next())
+                .doOnNext(written -> log.debug("Cached tax file: userId={}, year={}, written={}", userId, year, written))
+                .onErrorResume(e -> {
+                    log.error("Error caching tax file: userId={}, year={}", userId, year, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
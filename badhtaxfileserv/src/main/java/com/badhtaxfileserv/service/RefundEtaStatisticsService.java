@@ -0,0 +1,154 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.repository.RefundEtaHistogramRepository;
+import com.badhtaxfileserv.util.DaysHistogram;
+import com.badhtaxfileserv.util.RefundEtaStatistics;
+import com.badhtaxfileserv.util.RefundEtaStatistics.BucketKey;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps {@link RefundEtaStatistics} in step with the database. At startup it loads the persisted
+ * histograms, rebuilding them from refund_events first if they have never been built. After that
+ * it periodically merges the approvals recorded on this instance into the stored histograms and
+ * reloads them, which also picks up what other instances merged.
+ *
+ * Events committed on other instances while a cold-start rebuild is running may be missed; the
+ * percentiles are not sensitive to that.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "eta.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class RefundEtaStatisticsService {
+    
+    private final RefundEtaStatistics statistics;
+    private final RefundEtaHistogramRepository histogramRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BackgroundExecutorFactory backgroundExecutorFactory;
+    
+    @Value("${eta.statistics.rebuild.chunks:32}")
+    private int rebuildChunks;
+    
+    @Value("${eta.statistics.rebuild.parallelism:4}")
+    private int rebuildParallelism;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeAsync() {
+        // A rebuild over a large history should not hold up startup
+        backgroundExecutorFactory.newExecutor("eta-statistics-init-").execute(() -> {
+            try {
+                initialize();
+            } catch (Exception e) {
+                log.error("Failed to initialize refund ETA statistics, statistics ETAs stay unavailable", e);
+            }
+        });
+    }
+    
+    void initialize() {
+        transactionTemplate.executeWithoutResult(status -> {
+            histogramRepository.lockForUpdate();
+            if (!histogramRepository.isRebuilt()) {
+                // The rebuild scans refund_events, which already holds every approval buffered so far
+                statistics.drainPending();
+                histogramRepository.merge(rebuild());
+                histogramRepository.markRebuilt();
+            }
+        });
+        statistics.replaceTotals(histogramRepository.findAll());
+    }
+    
+    @Scheduled(fixedDelayString = "${eta.statistics.flush-interval:60000}", initialDelayString = "${eta.statistics.flush-interval:60000}")
+    public void flush() {
+        if (!statistics.isReady()) {
+            return;
+        }
+        Map<BucketKey, DaysHistogram> delta = statistics.drainPending();
+        try {
+            if (!delta.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    histogramRepository.lockForUpdate();
+                    histogramRepository.merge(delta);
+                });
+                log.debug("Persisted refund ETA samples for {} buckets", delta.size());
+            }
+        } catch (Exception e) {
+            statistics.restorePending(delta);
+            log.error("Failed to persist refund ETA statistics, will retry", e);
+            return;
+        }
+        try {
+            statistics.replaceTotals(histogramRepository.findAll());
+        } catch (Exception e) {
+            log.error("Failed to reload refund ETA statistics", e);
+        }
+    }
+    
+    /**
+     * Build histograms for the whole approval history. The date range is split into chunks that are
+     * scanned concurrently, each into its own histograms, and the partial results are merged.
+     */
+    Map<BucketKey, DaysHistogram> rebuild() {
+        Optional<LocalDateTime[]> range = histogramRepository.findApprovalDateRange();
+        if (range.isEmpty()) {
+            log.info("No approvals in refund_events, starting with empty ETA statistics");
+            return Map.of();
+        }
+        
+        long startNanos = System.nanoTime();
+        LocalDateTime first = range.get()[0];
+        // Exclusive upper bound that still includes the last approval
+        LocalDateTime end = range.get()[1].plusNanos(1000);
+        long chunkNanos = Math.max(1, Duration.between(first, end).toNanos() / rebuildChunks);
+        
+        SimpleAsyncTaskExecutor executor = backgroundExecutorFactory.newExecutor("eta-statistics-rebuild-");
+        executor.setConcurrencyLimit(rebuildParallelism);
+        
+        List<CompletableFuture<Map<BucketKey, DaysHistogram>>> chunks = new ArrayList<>(rebuildChunks);
+        for (LocalDateTime from = first; from.isBefore(end); from = from.plusNanos(chunkNanos)) {
+            LocalDateTime chunkFrom = from;
+            LocalDateTime chunkTo = from.plusNanos(chunkNanos).isBefore(end) ? from.plusNanos(chunkNanos) : end;
+            chunks.add(CompletableFuture.supplyAsync(() -> scanChunk(chunkFrom, chunkTo), executor));
+        }
+        
+        Map<BucketKey, DaysHistogram> merged = new HashMap<>();
+        long samples = 0;
+        for (CompletableFuture<Map<BucketKey, DaysHistogram>> chunk : chunks) {
+            for (Map.Entry<BucketKey, DaysHistogram> entry : chunk.join().entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), key -> new DaysHistogram()).merge(entry.getValue());
+                samples += entry.getValue().getTotal();
+            }
+        }
+        log.info("Rebuilt refund ETA statistics from {} approvals in {} chunks: {} buckets in {} ms",
+                samples, chunks.size(), merged.size(), Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+        return merged;
+    }
+    
+    private Map<BucketKey, DaysHistogram> scanChunk(LocalDateTime from, LocalDateTime to) {
+        Map<BucketKey, DaysHistogram> chunk = new HashMap<>();
+        // Read-only transaction so the driver streams rows by fetch size
+        transactionTemplate.executeWithoutResult(status -> histogramRepository.scanFirstApprovals(from, to, approval ->
+                chunk.computeIfAbsent(RefundEtaStatistics.bucketOf(approval.taxYear(), approval.filedAt(), approval.refundAmount()),
+                                key -> new DaysHistogram())
+                        .add(RefundEtaStatistics.daysToApproval(approval.filedAt(), approval.approvedAt()))));
+        return chunk;
+    }
+}
@@ -0,0 +1,70 @@
+package com.badhtaxfileserv.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bounded in-memory record of refund event IDs this instance has committed. Pub/Sub
+ * redeliveries of those events are dropped before any database access; anything that
+ * falls out of the LRU is still caught by the unique index on refund_events.event_id.
+ *
+ * IDs are only recorded after the surrounding transaction commits, so an event whose
+ * processing rolled back is never mistaken for a duplicate.
+ */
+@Service
+@Slf4j
+public class RefundEventIdFilter {
+    
+    private final Cache<String, Boolean> processedEventIds;
+    
+    public RefundEventIdFilter(
+            @Value("${refund-events.dedup.max-size:200000}") long maxSize,
+            @Value("${refund-events.dedup.time-to-live:3600000}") long timeToLiveMillis) {
+        this.processedEventIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(timeToLiveMillis))
+                .build();
+        log.info("Refund event ID filter enabled: maxSize={}, ttlMillis={}", maxSize, timeToLiveMillis);
+    }
+    
+    public boolean isKnownDuplicate(String eventId) {
+        return eventId != null && processedEventIds.getIfPresent(eventId) != null;
+    }
+    
+    public void markProcessed(String eventId) {
+        if (eventId != null) {
+            markProcessed(List.of(eventId));
+        }
+    }
+    
+    public void markProcessed(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(eventIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(eventIds);
+            }
+        });
+    }
+    
+    private void record(Collection<String> eventIds) {
+        for (String eventId : eventIds) {
+            processedEventIds.put(eventId, Boolean.TRUE);
+        }
+    }
+}
@@ -1,110 +1,475 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
 import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.entity.RefundEvent;
 import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.repository.RefundEventBatchRepository;
 import com.badhtaxfileserv.repository.RefundEventRepository;
 import com.badhtaxfileserv.repository.RefundRepository;
+import com.badhtaxfileserv.repository.TaxFileBatchRepository;
 import com.badhtaxfileserv.repository.TaxFileRepository;
-import lombok.RequiredArgsConstructor;
+import com.badhtaxfileserv.util.RefundEtaStatistics;
+import com.badhtaxfileserv.util.RefundEtaStatistics.Approval;
+import com.badhtaxfileserv.util.UuidV7;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
+@Timed(value = "service.invocations", description = "Service method latency")
 public class RefundEventService {
     
     private final RefundRepository refundRepository;
     private final RefundEventRepository refundEventRepository;
     private final TaxFileRepository taxFileRepository;
     private final TaxFileCacheServiceInterface cacheService;
+    private final RefundEventBatchRepository refundEventBatchRepository;
+    private final TaxFileBatchRepository taxFileBatchRepository;
+    private final RefundEventIdFilter eventIdFilter;
+    private final RefundEtaStatistics etaStatistics;
+    private final DistributionSummary batchSize;
+    // refund.events counters by event type (unparseable types last) and outcome
+    private final Counter[][] eventCounters;
+    
+    @Value("${cache.write-through.enabled:true}")
+    private boolean writeThroughEnabled;
+    
+    public RefundEventService(RefundRepository refundRepository,
+                              RefundEventRepository refundEventRepository,
+                              TaxFileRepository taxFileRepository,
+                              TaxFileCacheServiceInterface cacheService,
+                              RefundEventBatchRepository refundEventBatchRepository,
+                              TaxFileBatchRepository taxFileBatchRepository,
+                              RefundEventIdFilter eventIdFilter,
+                              RefundEtaStatistics etaStatistics,
+                              MeterRegistry meterRegistry) {
+        this.refundRepository = refundRepository;
+        this.refundEventRepository = refundEventRepository;
+        this.taxFileRepository = taxFileRepository;
+        this.cacheService = cacheService;
+        this.refundEventBatchRepository = refundEventBatchRepository;
+        this.taxFileBatchRepository = taxFileBatchRepository;
+        this.eventIdFilter = eventIdFilter;
+        this.etaStatistics = etaStatistics;
+        this.batchSize = DistributionSummary.builder("refund.events.batch.size")
+                .description("Refund events per batch")
+                .register(meterRegistry);
+        
+        RefundEvent.EventType[] types = RefundEvent.EventType.values();
+        BatchRefundEventResponse.EventStatus[] outcomes = BatchRefundEventResponse.EventStatus.values();
+        this.eventCounters = new Counter[types.length + 1][outcomes.length];
+        for (int type = 0; type <= types.length; type++) {
+            for (BatchRefundEventResponse.EventStatus outcome : outcomes) {
+                eventCounters[type][outcome.ordinal()] = meterRegistry.counter("refund.events",
+                        "type", type < types.length ? types[type].name() : "unknown",
+                        "outcome", outcome.name().toLowerCase());
+            }
+        }
+    }
     
     @Transactional
     public void processRefundEvent(ProcessRefundEventRequest request) {
         log.info("Processing refund event: {} for file ID: {}", request.getType(), request.getFileId());
         
+        // Drop redeliveries of events that were already applied
+        String eventId = request.getEventId();
+        if (eventIdFilter.isKnownDuplicate(eventId)) {
+            log.info("Skipping duplicate refund event: {}", eventId);
+            countEvent(parseEventType(request.getType()), BatchRefundEventResponse.EventStatus.DUPLICATE);
+            return;
+        }
+        if (eventId != null && refundEventRepository.existsByEventId(eventId)) {
+            log.info("Skipping already recorded refund event: {}", eventId);
+            eventIdFilter.markProcessed(eventId);
+            countEvent(parseEventType(request.getType()), BatchRefundEventResponse.EventStatus.DUPLICATE);
+            return;
+        }
+        
         UUID fileId = UUID.fromString(request.getFileId());
         
         // Try to find existing refund, or create one if tax file exists
-        Refund refund = refundRepository.findByTaxFileId(fileId)
+        Refund refund = refundRepository.findByTaxFileIdForUpdate(fileId)
                 .orElseGet(() -> {
                     log.info("Refund not found for file ID: {}, attempting to create one", request.getFileId());
                     return createRefundForTaxFile(fileId);
                 });
         
-               RefundEvent.EventType eventType = RefundEvent.EventType.fromValue(request.getType());
-               Refund.RefundStatus currentStatus = refund.getRefundStatus();
-               
-               // Process event based on type
-               boolean statusChanged = false;
-               switch (eventType) {
-                   case REFUND_INPROGRESS:
-                       if (currentStatus == Refund.RefundStatus.PENDING) {
-                           refund.setRefundStatus(Refund.RefundStatus.IN_PROGRESS);
-                           refundRepository.save(refund);
-                           statusChanged = true;
-                           log.info("Updated refund status to IN_PROGRESS");
-                       } else {
-                           log.info("Refund already in progress, skipping event");
-                       }
-                       break;
-                       
-                   case REFUND_APPROVED:
-                       refund.setRefundStatus(Refund.RefundStatus.APPROVED);
-                       refundRepository.save(refund);
-                       statusChanged = true;
-                       log.info("Updated refund status to APPROVED");
-                       break;
-                       
-                   case REFUND_REJECTED:
-                       refund.setRefundStatus(Refund.RefundStatus.REJECTED);
-                       refundRepository.save(refund);
-                       statusChanged = true;
-                       log.info("Updated refund status to REJECTED");
-                       break;
-                       
-                   case REFUND_ERROR:
-                       refund.setRefundStatus(Refund.RefundStatus.ERROR);
-                       if (request.getData().getErrorReasons() != null) {
-                           refund.setRefundErrors(convertErrorReasonsToJson(request.getData().getErrorReasons()));
-                       }
-                       refundRepository.save(refund);
-                       statusChanged = true;
-                       log.info("Updated refund status to ERROR");
-                       break;
-        }
-        
-        // Invalidate cache if status changed
+        RefundEvent.EventType eventType = RefundEvent.EventType.fromValue(request.getType());
+        LocalDateTime eventDate = request.getData().getEventDate() != null ? request.getData().getEventDate() : LocalDateTime.now();
+        
+        Approval approval = approvalOf(refund, eventType, eventDate);
+        boolean statusChanged = applyEvent(refund, eventType, request);
+        if (statusChanged) {
+            refundRepository.save(refund);
+        }
+        if (approval != null) {
+            etaStatistics.recordAfterCommit(List.of(approval));
+        }
+        
+        // Update the cached tax file if status changed; read after commit, once updatedAt is flushed
         if (statusChanged) {
             String userId = refund.getTaxFile().getUserId();
             Integer year = refund.getTaxFile().getYear();
-            cacheService.evictFromCache(userId, year);
-            log.info("Invalidated cache for tax file: userId={}, year={}", userId, year);
+            refreshCacheAfterCommit(() -> List.of(RefundCacheUpdate.of(userId, year, refund)));
         }
         
         // Create event record
         RefundEvent event = RefundEvent.builder()
+                .eventId(eventId)
                 .refund(refund)
                 .eventType(eventType)
-                .eventDate(request.getData().getEventDate() != null ? request.getData().getEventDate() : LocalDateTime.now())
+                .eventDate(eventDate)
                 .errorReasons(request.getData().getErrorReasons() != null ? 
                     convertErrorReasonsToJson(request.getData().getErrorReasons()) : null)
                 .build();
         
         refundEventRepository.save(event);
+        eventIdFilter.markProcessed(eventId);
+        countEvent(eventType, statusChanged
+                ? BatchRefundEventResponse.EventStatus.APPLIED : BatchRefundEventResponse.EventStatus.UNCHANGED);
         log.info("Created refund event record");
     }
     
+    /**
+     * Process a burst of refund events in one transaction. Refunds are loaded with a single query,
+     * transitions are applied in memory in event order, status updates and event rows are written
+     * with JDBC batches, and the affected cache entries are refreshed in one pipelined call after commit.
+     * Events whose eventId was already recorded, or repeats one earlier in the batch, are skipped.
+     */
+    @Transactional
+    public BatchRefundEventResponse processRefundEvents(List<ProcessRefundEventRequest> requests) {
+        log.info("Processing {} refund events in batch", requests.size());
+        
+        BatchRefundEventResponse.EventResult[] results = new BatchRefundEventResponse.EventResult[requests.size()];
+        UUID[] fileIds = new UUID[requests.size()];
+        RefundEvent.EventType[] eventTypes = new RefundEvent.EventType[requests.size()];
+        Set<UUID> distinctFileIds = new LinkedHashSet<>();
+        
+        Set<String> batchEventIds = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ProcessRefundEventRequest request = requests.get(i);
+            try {
+                if (request == null) {
+                    throw new IllegalArgumentException("Event must not be null");
+                }
+                if (request.getEventId() == null || request.getEventId().isBlank()) {
+                    throw new IllegalArgumentException("Event ID is required");
+                }
+                if (request.getFileId() == null) {
+                    throw new IllegalArgumentException("File ID is required");
+                }
+                if (request.getData() == null) {
+                    throw new IllegalArgumentException("Event data is missing or malformed");
+                }
+                fileIds[i] = UUID.fromString(request.getFileId());
+                eventTypes[i] = RefundEvent.EventType.fromValue(request.getType());
+            } catch (RuntimeException e) {
+                results[i] = eventResult(i, request, BatchRefundEventResponse.EventStatus.INVALID, null,
+                        e.getMessage() != null ? e.getMessage() : "Invalid event");
+                continue;
+            }
+            if (eventIdFilter.isKnownDuplicate(request.getEventId()) || !batchEventIds.add(request.getEventId())) {
+                results[i] = eventResult(i, request, BatchRefundEventResponse.EventStatus.DUPLICATE, null, null);
+            }
+        }
+        
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] == null) {
+                distinctFileIds.add(fileIds[i]);
+            }
+        }
+        
+        Map<UUID, Refund> refundsByFileId = loadOrCreateRefunds(distinctFileIds);
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<RefundEvent> events = new ArrayList<>();
+        List<Integer> eventIndexes = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            ProcessRefundEventRequest request = requests.get(i);
+            Refund refund = refundsByFileId.get(fileIds[i]);
+            if (refund == null) {
+                results[i] = eventResult(i, request, BatchRefundEventResponse.EventStatus.NOT_FOUND, null,
+                        "Refund not found and no tax file exists for file ID: " + request.getFileId());
+                continue;
+            }
+            events.add(RefundEvent.builder()
+                    .id(UuidV7.randomUuid())
+                    .eventId(request.getEventId())
+                    .refund(refund)
+                    .eventType(eventTypes[i])
+                    .eventDate(request.getData().getEventDate() != null ? request.getData().getEventDate() : now)
+                    .errorReasons(request.getData().getErrorReasons() != null ?
+                        convertErrorReasonsToJson(request.getData().getErrorReasons()) : null)
+                    .createdAt(now)
+                    .build());
+            eventIndexes.add(i);
+        }
+        
+        // Record the events first. Only those actually inserted are applied; an event ID already
+        // recorded, including by a concurrent delivery of the same event, is a duplicate.
+        Set<String> inserted = events.isEmpty() ? Set.of() : refundEventBatchRepository.insertRefundEvents(events);
+        eventIdFilter.markProcessed(events.stream().map(RefundEvent::getEventId).toList());
+        
+        Map<UUID, Refund> changedRefunds = new LinkedHashMap<>();
+        List<Approval> approvals = new ArrayList<>();
+        int applied = 0;
+        int unchanged = 0;
+        
+        for (int n = 0; n < events.size(); n++) {
+            RefundEvent event = events.get(n);
+            int i = eventIndexes.get(n);
+            ProcessRefundEventRequest request = requests.get(i);
+            if (!inserted.contains(event.getEventId())) {
+                results[i] = eventResult(i, request, BatchRefundEventResponse.EventStatus.DUPLICATE, null, null);
+                continue;
+            }
+            
+            Refund refund = event.getRefund();
+            Approval approval = approvalOf(refund, eventTypes[i], event.getEventDate());
+            if (approval != null) {
+                approvals.add(approval);
+            }
+            
+            boolean statusChanged = applyEvent(refund, eventTypes[i], request);
+            if (statusChanged) {
+                changedRefunds.put(refund.getId(), refund);
+                applied++;
+            } else {
+                unchanged++;
+            }
+            results[i] = eventResult(i, request,
+                    statusChanged ? BatchRefundEventResponse.EventStatus.APPLIED : BatchRefundEventResponse.EventStatus.UNCHANGED,
+                    refund.getRefundStatus().name(), null);
+        }
+        
+        if (!changedRefunds.isEmpty()) {
+            refundEventBatchRepository.updateRefunds(changedRefunds.values());
+        }
+        if (!approvals.isEmpty()) {
+            etaStatistics.recordAfterCommit(approvals);
+        }
+        log.info("Batch applied {} status changes and recorded {} refund events", changedRefunds.size(), inserted.size());
+        
+        if (!changedRefunds.isEmpty()) {
+            List<RefundCacheUpdate> updates = changedRefunds.values().stream()
+                    .map(refund -> RefundCacheUpdate.of(refund.getTaxFile().getUserId(), refund.getTaxFile().getYear(), refund))
+                    .toList();
+            refreshCacheAfterCommit(() -> updates);
+        }
+        
+        batchSize.record(requests.size());
+        for (int i = 0; i < results.length; i++) {
+            countEvent(eventTypes[i], results[i].getStatus());
+        }
+        
+        int duplicates = (int) Arrays.stream(results)
+                .filter(result -> result.getStatus() == BatchRefundEventResponse.EventStatus.DUPLICATE)
+                .count();
+        return BatchRefundEventResponse.builder()
+                .results(Arrays.asList(results))
+                .applied(applied)
+                .unchanged(unchanged)
+                .duplicates(duplicates)
+                .failed(requests.size() - applied - unchanged - duplicates)
+                .build();
+    }
+    
+    /**
+     * Bring the cache up to date once the refund changes are committed, so a reader cannot cache
+     * the old state again after the refresh. With write-through the cached entries are patched in
+     * place and keep serving hits, otherwise they are evicted. Runs immediately outside a transaction.
+     */
+    private void refreshCacheAfterCommit(Supplier<List<RefundCacheUpdate>> updates) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshCache(updates.get());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshCache(updates.get());
+            }
+        });
+    }
+    
+    private void refreshCache(List<RefundCacheUpdate> updates) {
+        try {
+            if (writeThroughEnabled) {
+                cacheService.applyRefundUpdates(updates);
+                log.info("Refreshed {} cached tax files with new refund status", updates.size());
+                return;
+            }
+            Map<String, Set<Integer>> yearsByUserId = new HashMap<>();
+            for (RefundCacheUpdate update : updates) {
+                yearsByUserId.computeIfAbsent(update.getUserId(), userId -> new TreeSet<>()).add(update.getYear());
+            }
+            cacheService.evictFromCacheBulk(yearsByUserId);
+            log.info("Invalidated {} cached tax files", updates.size());
+        } catch (RuntimeException e) {
+            // The change is committed; the entries fall back to their TTL
+            log.error("Failed to refresh {} cached tax files after refund update", updates.size(), e);
+        }
+    }
+    
+    /**
+     * The approval sample for the ETA statistics if this event is the refund's first approval,
+     * otherwise null. Must be called before the event is applied.
+     */
+    private Approval approvalOf(Refund refund, RefundEvent.EventType eventType, LocalDateTime eventDate) {
+        if (eventType != RefundEvent.EventType.REFUND_APPROVED
+                || refund.getRefundStatus() == Refund.RefundStatus.APPROVED) {
+            return null;
+        }
+        TaxFile taxFile = refund.getTaxFile();
+        if (taxFile.getCreatedAt() == null) {
+            return null;
+        }
+        return new Approval(taxFile.getYear(), taxFile.getCreatedAt(), taxFile.getRefundAmount(), eventDate);
+    }
+    
+    /**
+     * Apply the status transition for one event to the refund in memory.
+     *
+     * @return true if the refund status (or its error details) changed
+     */
+    private boolean applyEvent(Refund refund, RefundEvent.EventType eventType, ProcessRefundEventRequest request) {
+        Refund.RefundStatus currentStatus = refund.getRefundStatus();
+        
+        switch (eventType) {
+            case REFUND_INPROGRESS:
+                if (currentStatus == Refund.RefundStatus.PENDING) {
+                    refund.setRefundStatus(Refund.RefundStatus.IN_PROGRESS);
+                    log.info("Updated refund status to IN_PROGRESS");
+                    return true;
+                }
+                log.info("Refund already in progress, skipping event");
+                return false;
+                
+            case REFUND_APPROVED:
+                refund.setRefundStatus(Refund.RefundStatus.APPROVED);
+                log.info("Updated refund status to APPROVED");
+                return true;
+                
+            case REFUND_REJECTED:
+                refund.setRefundStatus(Refund.RefundStatus.REJECTED);
+                log.info("Updated refund status to REJECTED");
+                return true;
+                
+            case REFUND_ERROR:
+                refund.setRefundStatus(Refund.RefundStatus.ERROR);
+                if (request.getData().getErrorReasons() != null) {
+                    refund.setRefundErrors(convertErrorReasonsToJson(request.getData().getErrorReasons()));
+                }
+                log.info("Updated refund status to ERROR");
+                return true;
+                
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Bulk-load refunds for the given tax files. Tax files that exist without a refund get a
+     * PENDING refund inserted in one batch, matching the single-event path.
+     */
+    private Map<UUID, Refund> loadOrCreateRefunds(Set<UUID> fileIds) {
+        Map<UUID, Refund> refundsByFileId = new HashMap<>();
+        if (fileIds.isEmpty()) {
+            return refundsByFileId;
+        }
+        
+        for (Refund refund : refundEventBatchRepository.findRefundsByTaxFileIds(fileIds)) {
+            refundsByFileId.put(refund.getTaxFile().getId(), refund);
+        }
+        
+        Set<UUID> missing = new LinkedHashSet<>(fileIds);
+        missing.removeAll(refundsByFileId.keySet());
+        if (missing.isEmpty()) {
+            return refundsByFileId;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<Refund> created = new ArrayList<>();
+        for (TaxFile taxFile : refundEventBatchRepository.findTaxFilesByIds(missing)) {
+            Refund refund = Refund.builder()
+                    .id(UuidV7.randomUuid())
+                    .taxFile(taxFile)
+                    .refundStatus(Refund.RefundStatus.PENDING)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build();
+            created.add(refund);
+            refundsByFileId.put(taxFile.getId(), refund);
+        }
+        if (!created.isEmpty()) {
+            taxFileBatchRepository.insertRefunds(created);
+            log.info("Created {} missing refund records in batch", created.size());
+        }
+        return refundsByFileId;
+    }
+    
+    /**
+     * Count a processed event by type and outcome. Unparseable types are counted as unknown so
+     * bad input cannot grow the tag set.
+     */
+    private void countEvent(RefundEvent.EventType type, BatchRefundEventResponse.EventStatus outcome) {
+        int typeIndex = type != null ? type.ordinal() : eventCounters.length - 1;
+        eventCounters[typeIndex][outcome.ordinal()].increment();
+    }
+    
+    private static RefundEvent.EventType parseEventType(String type) {
+        try {
+            return RefundEvent.EventType.fromValue(type);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private BatchRefundEventResponse.EventResult eventResult(int index, ProcessRefundEventRequest request,
+                                                             BatchRefundEventResponse.EventStatus status,
+                                                             String refundStatus, String error) {
+        return BatchRefundEventResponse.EventResult.builder()
+                .index(index)
+                .eventId(request != null ? request.getEventId() : null)
+                .fileId(request != null ? request.getFileId() : null)
+                .status(status)
+                .refundStatus(refundStatus)
+                .error(error)
+                .build();
+    }
+    
     private Refund createRefundForTaxFile(UUID fileId) {
         // Find the tax file
         TaxFile taxFile = taxFileRepository.findById(fileId)
-                .orElseThrow(() -> new RuntimeException("Tax file not found for file ID: " + fileId));
+                .orElseThrow(() -> new RuntimeException("Refund not found and no tax file exists for file ID: " + fileId));
         
         // Create a new refund record
         Refund refund = Refund.builder()
@@ -129,4 +494,3 @@ public class RefundEventService {
         return json.toString();
     }
 }
-
@@ -4,6 +4,7 @@ import com.badhtaxfileserv.dto.RefundResponse;
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.repository.RefundRepository;
 import com.badhtaxfileserv.repository.TaxFileRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,7 @@ import java.util.UUID;
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "service.invocations", description = "Service method latency")
 public class RefundService {
     
     private final RefundRepository refundRepository;
@@ -49,8 +51,13 @@ public class RefundService {
                 java.time.Instant.now().toString()
             );
             
-            pubSubService.publishRefundUpdate(message);
-            log.info("Published refund update event for refund ID: {}", refund.getId());
+            pubSubService.publishRefundUpdateAsync(message).whenComplete((messageId, error) -> {
+                if (error != null) {
+                    log.error("Failed to publish refund update event for refund ID: {}", refund.getId(), error);
+                } else {
+                    log.info("Published refund update event for refund ID: {}", refund.getId());
+                }
+            });
         } catch (Exception e) {
             log.error("Failed to publish refund update event for refund ID: {}", refund.getId(), e);
         }
@@ -67,8 +74,13 @@ public class RefundService {
                 java.time.Instant.now().toString()
             );
             
-            pubSubService.publishSendRefund(message);
-            log.info("Published send refund event for refund ID: {}", refund.getId());
+            pubSubService.publishSendRefundAsync(message).whenComplete((messageId, error) -> {
+                if (error != null) {
+                    log.error("Failed to publish send refund event for refund ID: {}", refund.getId(), error);
+                } else {
+                    log.info("Published send refund event for refund ID: {}", refund.getId());
+                }
+            });
         } catch (Exception e) {
             log.error("Failed to publish send refund event for refund ID: {}", refund.getId(), e);
         }
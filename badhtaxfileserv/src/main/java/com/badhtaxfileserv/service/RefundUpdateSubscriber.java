@@ -0,0 +1,358 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.badhtaxfileserv.util.RefundEventMessageParser;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.core.InstantiatingExecutorProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.cloud.pubsub.v1.SubscriptionAdminClient;
+import com.google.cloud.pubsub.v1.SubscriptionAdminSettings;
+import com.google.cloud.pubsub.v1.TopicAdminClient;
+import com.google.cloud.pubsub.v1.TopicAdminSettings;
+import com.google.pubsub.v1.ProjectSubscriptionName;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.PushConfig;
+import com.google.pubsub.v1.TopicName;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming-pull consumer for the refund-update subscription, replacing one HTTP push per
+ * message. Several pull streams feed a queue bounded by the client's flow control, and
+ * handler threads drain it in micro-batches through {@link RefundEventService#processRefundEvents},
+ * so a burst of IRS updates costs a few batched transactions instead of one each.
+ *
+ * Messages are acked only after their batch commits; a failed batch is nacked and redelivered.
+ * Within a committed batch, a message with an event whose tax file was not found is nacked too,
+ * as the filing may not be visible yet; its other events come back as duplicates. The
+ * subscription's retry policy and dead-letter topic bound how often that is retried.
+ * The client library coalesces acks and nacks into batched RPCs on its own.
+ */
+@Service
+@Slf4j
+@ConditionalOnExpression("${pubsub.enabled:false} and ${pubsub.subscriber.enabled:false}")
+public class RefundUpdateSubscriber implements SmartLifecycle {
+
+    private static final long HANDLER_TERMINATION_TIMEOUT_MILLIS = 30_000;
+
+    private final RefundEventService refundEventService;
+    private final RefundEventMessageParser messageParser;
+    private final BackgroundExecutorFactory backgroundExecutorFactory;
+    private final BlockingQueue<PendingMessage> pending = new LinkedBlockingQueue<>();
+
+    private final Counter receivedCounter;
+    private final Counter ackedCounter;
+    private final Counter nackedCounter;
+    private final Counter rejectedCounter;
+    private final DistributionSummary batchSizeSummary;
+
+    @Value("${spring.cloud.gcp.project-id:}")
+    private String projectId;
+
+    @Value("${pubsub.refund-update-topic:refund-update-from-irs}")
+    private String refundUpdateTopic;
+
+    @Value("${pubsub.refund-update-subscription:refund-update-subscription}")
+    private String subscriptionId;
+
+    @Value("${pubsub.emulator-host:}")
+    private String emulatorHost;
+
+    @Value("${pubsub.subscriber.parallel-pull-count:2}")
+    private int parallelPullCount;
+
+    @Value("${pubsub.subscriber.executor-threads:4}")
+    private int executorThreads;
+
+    @Value("${pubsub.subscriber.max-outstanding-element-count:5000}")
+    private long maxOutstandingElementCount;
+
+    @Value("${pubsub.subscriber.max-outstanding-request-bytes:52428800}")
+    private long maxOutstandingRequestBytes;
+
+    @Value("${pubsub.subscriber.batch-size:500}")
+    private int batchSize;
+
+    @Value("${pubsub.subscriber.batch-max-wait:50}")
+    private long batchMaxWaitMillis;
+
+    @Value("${pubsub.subscriber.handler-threads:2}")
+    private int handlerThreads;
+
+    private Subscriber subscriber;
+    private SimpleAsyncTaskExecutor handlerExecutor;
+    private ManagedChannel emulatorChannel;
+    private volatile boolean running = false;
+
+    public RefundUpdateSubscriber(RefundEventService refundEventService,
+                                  RefundEventMessageParser messageParser,
+                                  BackgroundExecutorFactory backgroundExecutorFactory,
+                                  MeterRegistry meterRegistry) {
+        this.refundEventService = refundEventService;
+        this.messageParser = messageParser;
+        this.backgroundExecutorFactory = backgroundExecutorFactory;
+        this.receivedCounter = meterRegistry.counter("pubsub.subscriber.messages", "outcome", "received");
+        this.ackedCounter = meterRegistry.counter("pubsub.subscriber.messages", "outcome", "acked");
+        this.nackedCounter = meterRegistry.counter("pubsub.subscriber.messages", "outcome", "nacked");
+        this.rejectedCounter = meterRegistry.counter("pubsub.subscriber.messages", "outcome", "rejected");
+        this.batchSizeSummary = DistributionSummary.builder("pubsub.subscriber.batch.size")
+            .description("Refund events handed to RefundEventService per micro-batch")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (projectId == null || projectId.isEmpty()) {
+            log.warn("Project ID not configured, refund update subscriber not started");
+            return;
+        }
+
+        try {
+            ProjectSubscriptionName subscriptionName = ProjectSubscriptionName.of(projectId, subscriptionId);
+            Subscriber.Builder builder = Subscriber.newBuilder(subscriptionName,
+                    (PubsubMessage message, AckReplyConsumer consumer) -> {
+                        receivedCounter.increment();
+                        pending.add(new PendingMessage(message, consumer));
+                    })
+                .setParallelPullCount(parallelPullCount)
+                .setExecutorProvider(InstantiatingExecutorProvider.newBuilder()
+                    .setExecutorThreadCount(executorThreads)
+                    .build())
+                .setFlowControlSettings(FlowControlSettings.newBuilder()
+                    .setMaxOutstandingElementCount(maxOutstandingElementCount)
+                    .setMaxOutstandingRequestBytes(maxOutstandingRequestBytes)
+                    .build());
+
+            if (emulatorHost != null && !emulatorHost.isEmpty()) {
+                TransportChannelProvider channelProvider = emulatorChannelProvider();
+                ensureEmulatorSubscription(channelProvider);
+                builder.setChannelProvider(channelProvider)
+                    .setCredentialsProvider(NoCredentialsProvider.create());
+            }
+
+            handlerExecutor = backgroundExecutorFactory.newExecutor("refund-update-handler-");
+            handlerExecutor.setTaskTerminationTimeout(HANDLER_TERMINATION_TIMEOUT_MILLIS);
+            running = true;
+            for (int i = 0; i < handlerThreads; i++) {
+                handlerExecutor.execute(this::drainLoop);
+            }
+
+            subscriber = builder.build();
+            subscriber.startAsync().awaitRunning();
+            log.info("Refund update subscriber started: subscription={}, parallelPullCount={}, batchSize={}",
+                subscriptionName, parallelPullCount, batchSize);
+        } catch (Exception e) {
+            log.error("Failed to start refund update subscriber for subscription {}", subscriptionId, e);
+            stop();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (subscriber != null) {
+            subscriber.stopAsync();
+            try {
+                subscriber.awaitTerminated(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("Refund update subscriber did not terminate cleanly", e);
+            }
+        }
+        running = false;
+        if (handlerExecutor != null) {
+            // Waits for in-progress batches to ack or nack
+            handlerExecutor.close();
+        }
+
+        // Anything not handed to a batch yet goes back to Pub/Sub for another instance
+        List<PendingMessage> leftovers = new ArrayList<>();
+        pending.drainTo(leftovers);
+        leftovers.forEach(message -> nack(message));
+        if (emulatorChannel != null) {
+            emulatorChannel.shutdownNow();
+        }
+        log.info("Refund update subscriber stopped, nacked {} queued messages", leftovers.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (collectBatch(batch) > 0) {
+                    handleBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in refund update handler", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Block for the first message, then keep filling the batch until it is full or
+     * {@code batch-max-wait} has passed since the first message arrived.
+     */
+    int collectBatch(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage first = pending.poll(batchMaxWaitMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMaxWaitMillis);
+        while (batch.size() < batchSize) {
+            pending.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            PendingMessage next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Parse every message in the batch and apply them in one call. Unparseable messages are
+     * acked and dropped, since redelivering them can never succeed; so is a malformed event
+     * within a message, which the batch reports as invalid on its own. A message may carry an
+     * array of events; it is acked only when none of its events needs another attempt.
+     */
+    void handleBatch(List<PendingMessage> batch) {
+        List<ProcessRefundEventRequest> requests = new ArrayList<>(batch.size());
+        List<PendingMessage> parsed = new ArrayList<>(batch.size());
+        // Index of each parsed message's first event in requests; the next one's ends it
+        List<Integer> firstEvents = new ArrayList<>(batch.size() + 1);
+        for (PendingMessage message : batch) {
+            try {
+                List<ProcessRefundEventRequest> events = messageParser.parse(message.message().getData().toString(StandardCharsets.UTF_8));
+                firstEvents.add(requests.size());
+                requests.addAll(events);
+                parsed.add(message);
+            } catch (Exception e) {
+                log.error("Dropping unparseable refund update message {}", message.message().getMessageId(), e);
+                rejectedCounter.increment();
+                message.consumer().ack();
+            }
+        }
+        if (requests.isEmpty()) {
+            parsed.forEach(this::ack);
+            return;
+        }
+        firstEvents.add(requests.size());
+
+        batchSizeSummary.record(requests.size());
+        BatchRefundEventResponse response;
+        try {
+            response = refundEventService.processRefundEvents(requests);
+        } catch (Exception e) {
+            log.error("Failed to apply refund update batch of {} messages, nacking for redelivery", parsed.size(), e);
+            parsed.forEach(this::nack);
+            return;
+        }
+        log.debug("Applied refund update batch: messages={}, applied={}, unchanged={}, duplicates={}, failed={}",
+            parsed.size(), response.getApplied(), response.getUnchanged(), response.getDuplicates(), response.getFailed());
+
+        List<BatchRefundEventResponse.EventResult> results = response.getResults();
+        for (int m = 0; m < parsed.size(); m++) {
+            PendingMessage message = parsed.get(m);
+            boolean retry = false;
+            for (int i = firstEvents.get(m); i < firstEvents.get(m + 1); i++) {
+                if (results.get(i).getStatus() == BatchRefundEventResponse.EventStatus.NOT_FOUND) {
+                    retry = true;
+                } else if (results.get(i).getStatus() == BatchRefundEventResponse.EventStatus.INVALID) {
+                    log.warn("Dropping invalid refund event {} in message {}: {}",
+                        results.get(i).getEventId(), message.message().getMessageId(), results.get(i).getError());
+                }
+            }
+            if (retry) {
+                nack(message);
+            } else {
+                ack(message);
+            }
+        }
+    }
+
+    private void ack(PendingMessage message) {
+        message.consumer().ack();
+        ackedCounter.increment();
+    }
+
+    private void nack(PendingMessage message) {
+        message.consumer().nack();
+        nackedCounter.increment();
+    }
+
+    private TransportChannelProvider emulatorChannelProvider() {
+        emulatorChannel = ManagedChannelBuilder.forTarget(emulatorHost).usePlaintext().build();
+        return FixedTransportChannelProvider.create(GrpcTransportChannel.create(emulatorChannel));
+    }
+
+    /**
+     * The emulator starts empty, so create the topic and a pull subscription on first use.
+     * Real environments provision both through infra.
+     */
+    private void ensureEmulatorSubscription(TransportChannelProvider channelProvider) throws IOException {
+        TopicName topicName = TopicName.of(projectId, refundUpdateTopic);
+        ProjectSubscriptionName subscriptionName = ProjectSubscriptionName.of(projectId, subscriptionId);
+
+        try (TopicAdminClient topicAdmin = TopicAdminClient.create(TopicAdminSettings.newBuilder()
+                .setTransportChannelProvider(channelProvider)
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build())) {
+            topicAdmin.createTopic(topicName);
+            log.info("Created emulator topic {}", topicName);
+        } catch (AlreadyExistsException e) {
+            log.debug("Emulator topic {} already exists", topicName);
+        }
+
+        try (SubscriptionAdminClient subscriptionAdmin = SubscriptionAdminClient.create(SubscriptionAdminSettings.newBuilder()
+                .setTransportChannelProvider(channelProvider)
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build())) {
+            subscriptionAdmin.createSubscription(subscriptionName, topicName, PushConfig.getDefaultInstance(), 60);
+            log.info("Created emulator pull subscription {}", subscriptionName);
+        } catch (AlreadyExistsException e) {
+            log.debug("Emulator subscription {} already exists", subscriptionName);
+        }
+    }
+
+    record PendingMessage(PubsubMessage message, AckReplyConsumer consumer) {
+    }
+}
@@ -1,53 +1,498 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
 import com.badhtaxfileserv.dto.TaxFileResponse;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Supplier;
 
+/**
+ * Redis tax file cache. Each user's tax files live in one hash, {@code taxfile:{userId}}, with a
+ * field per year, so a user is evicted with a single DEL and read across years with one HGETALL.
+ * Evicting everything bumps a generation counter instead of scanning keys. Entries are read and
+ * written by Lua scripts that check the generation, a per-year expiry and the entry version.
+ * The scripts span the user's hash and the global generation key, so Redis Cluster is not
+ * supported.
+ *
+ * Misses are filled under a short per-key Redis lock so only one instance loads an entry from
+ * Postgres; the lock holds a random token and is only released by its holder. An expired entry
+ * stays in the hash for the stale TTL, and while one instance reloads it the others serve it
+ * rather than waiting. Refund changes patch or drop the entry, so a stale copy never predates
+ * the latest status.
+ *
+ * Every write carries a version, the refund row's updated_at as Postgres stamped it, kept next to
+ * the entry. Loads and patches take it from the same column, so a reload of a patched row is
+ * accepted. A write older than the stored version is dropped, so a load that read Postgres before a refund change
+ * committed cannot overwrite the entry patched by that change.
+ *
+ * The user's {@link TaxUserResponse} is cached in the same hash. Any change to the user's tax
+ * files drops it and bumps its version; a load only caches its result if the version is still the
+ * one seen on the miss. Its TTL is short while a refund is in flight and long once all are settled.
+ *
+ * A year a load found no tax file for is remembered as missing for a short while, so repeated
+ * lookups of a filing that does not exist yet are answered from Redis. Caching the year once it
+ * is created clears the marker.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 @ConditionalOnProperty(name = "redis.enabled", havingValue = "true", matchIfMissing = true)
 public class TaxFileCacheService implements TaxFileCacheServiceInterface {
     
     private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final CacheValueCodec codec;
+    private final MeterRegistry meterRegistry;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter negativeHits;
+    private final Counter puts;
+    private final Counter evictions;
+    private final Duration lockTtl;
+    private final String lockTtlMillis;
+    private final long waitTimeoutMillis;
+    private final long staleTtlMillis;
+    private final byte[] staleTtlBytes;
+    private final byte[] negativeTtlMillis;
+    private final Counter taxUserHits;
+    private final Counter taxUserMisses;
+    private final Counter taxUserPuts;
+    private final Duration taxUserActiveTtl;
+    private final Duration taxUserSettledTtl;
     
     private static final String CACHE_PREFIX = "taxfile:";
-    private static final long CACHE_TTL_HOURS = 1;
+    private static final String LOCK_PREFIX = CACHE_PREFIX + "lock:";
+    // Bumped by evictAll; hashes written under an older generation read as empty
+    static final String GENERATION_KEY = CACHE_PREFIX + "generation";
+    private static final String CACHE_NAME = "taxfile";
+    private static final String TAX_USER_CACHE_NAME = "taxuser";
+    static final long CACHE_TTL_HOURS = 1;
+    static final byte[] CACHE_TTL_MILLIS = bytes(String.valueOf(Duration.ofHours(CACHE_TTL_HOURS).toMillis()));
+    private static final byte[] NO_VALUE = new byte[0];
+    private static final byte[] CHANGE = bytes("1");
+    private static final long WAIT_POLL_MILLIS = 20;
+    
+    // Per user hash: field {year} holds the response, {year}:exp its expiry in epoch millis,
+    // {year}:v its version, {year}:none the expiry of a remembered miss, and gen the generation
+    // the hash was written under.
+    private static final String NOW_MILLIS =
+            "local t = redis.call('TIME') local now = t[1] * 1000 + math.floor(t[2] / 1000) ";
+    private static final String RESET_ON_NEW_GENERATION =
+            "if redis.call('HGET', h, 'gen') ~= gen then redis.call('DEL', h) redis.call('HSET', h, 'gen', gen) end ";
+    private static final String EXTEND_TTL =
+            "if redis.call('PTTL', h) < tonumber(keep) then redis.call('PEXPIRE', h, keep) end ";
+    // Field user holds the TaxUserResponse, user:exp its expiry and user:v a counter bumped on every
+    // change, so a load that started before the change cannot cache its result.
+    private static final String INVALIDATE_TAX_USER =
+            RESET_ON_NEW_GENERATION +
+            "redis.call('HDEL', h, 'user', 'user:exp') " +
+            "redis.call('HINCRBY', h, 'user:v', 1) " +
+            "if redis.call('PTTL', h) < 0 then redis.call('PEXPIRE', h, " + Duration.ofHours(CACHE_TTL_HOURS).toMillis() + ") end ";
+    
+    // KEYS: generation, hash. ARGV: year. The response, an empty string if the year is remembered as
+    // missing, or nil if absent, expired or of an old generation.
+    static final RedisScript<byte[]> READ_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:read\n" +
+            "local h = KEYS[2] " +
+            "if redis.call('HGET', h, 'gen') ~= (redis.call('GET', KEYS[1]) or '0') then return false end " +
+            "local expires = redis.call('HGET', h, ARGV[1] .. ':exp') " +
+            NOW_MILLIS +
+            "if expires and tonumber(expires) >= now then return redis.call('HGET', h, ARGV[1]) end " +
+            "local missing = redis.call('HGET', h, ARGV[1] .. ':none') " +
+            "if missing and tonumber(missing) >= now then return '' end " +
+            "return false", byte[].class);
+    
+    // KEYS: generation, hash. ARGV: year, stale TTL in millis. The response if it expired no longer
+    // than the stale TTL ago, or nil.
+    static final RedisScript<byte[]> READ_STALE_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:read-stale\n" +
+            "local h = KEYS[2] " +
+            "if redis.call('HGET', h, 'gen') ~= (redis.call('GET', KEYS[1]) or '0') then return false end " +
+            "local expires = redis.call('HGET', h, ARGV[1] .. ':exp') " +
+            NOW_MILLIS +
+            "if expires and tonumber(expires) + tonumber(ARGV[2]) >= now then return redis.call('HGET', h, ARGV[1]) end " +
+            "return false", byte[].class);
+    
+    // KEYS: generation, hash. Flat year, response pairs for every live year.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_ALL_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:read-all\n" +
+            "local h = KEYS[2] " +
+            "if redis.call('HGET', h, 'gen') ~= (redis.call('GET', KEYS[1]) or '0') then return {} end " +
+            NOW_MILLIS +
+            "local fields = redis.call('HGETALL', h) " +
+            "local byField = {} " +
+            "for i = 1, #fields, 2 do byField[fields[i]] = fields[i + 1] end " +
+            "local result = {} " +
+            "for field, value in pairs(byField) do " +
+            "local expires = byField[field .. ':exp'] " +
+            "if tonumber(field) and expires and tonumber(expires) >= now then " +
+            "result[#result + 1] = field result[#result + 1] = value end end " +
+            "return result", List.class);
+    
+    // KEYS: generation, hash. ARGV: year, response (empty drops it), version, TTL in millis,
+    // optionally '1' when the write is a change, which drops the cached TaxUserResponse even if
+    // the write is skipped, and optionally the stale TTL the entry is kept for after it expires.
+    // Skipped, returning 0, when the hash already holds a newer version of the year.
+    static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:write\n" +
+            "local h = KEYS[2] " +
+            "local ttl = ARGV[4] " +
+            "local keep = tonumber(ttl) + (tonumber(ARGV[6]) or 0) " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            RESET_ON_NEW_GENERATION +
+            // Before the version check: a change superseded by a newer one still changed the user
+            "if ARGV[5] == '1' then " + INVALIDATE_TAX_USER + "end " +
+            "local current = redis.call('HGET', h, ARGV[1] .. ':v') " +
+            "if current and tonumber(current) > tonumber(ARGV[3]) then return 0 end " +
+            "redis.call('HSET', h, ARGV[1] .. ':v', ARGV[3]) " +
+            "redis.call('HDEL', h, ARGV[1] .. ':none') " +
+            "if ARGV[2] == '' then redis.call('HDEL', h, ARGV[1], ARGV[1] .. ':exp') " +
+            "else " + NOW_MILLIS +
+            "redis.call('HSET', h, ARGV[1], ARGV[2], ARGV[1] .. ':exp', now + ttl) end " +
+            EXTEND_TTL +
+            "return 1", Long.class);
+    
+    // KEYS: generation, hash. ARGV: year, TTL in millis. Remembers the year as missing. Skipped,
+    // returning 0, once the year has a version: its tax file was created after the caller's query.
+    static final RedisScript<Long> WRITE_MISSING_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:write-missing\n" +
+            "local h = KEYS[2] " +
+            "local ttl = ARGV[2] " +
+            "local keep = ttl " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            RESET_ON_NEW_GENERATION +
+            "if redis.call('HEXISTS', h, ARGV[1] .. ':v') == 1 then return 0 end " +
+            NOW_MILLIS +
+            "redis.call('HSET', h, ARGV[1] .. ':none', now + ttl) " +
+            EXTEND_TTL +
+            "return 1", Long.class);
+    
+    // KEYS: generation, hash. ARGV: years... The years are dropped, stale copies included, since
+    // evictions follow refund changes, and the cached TaxUserResponse with them. Returns how many
+    // years held a response.
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:evict\n" +
+            "local h = KEYS[2] " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            "local evicted = 0 " +
+            "for i = 1, #ARGV do " +
+            "evicted = evicted + redis.call('HDEL', h, ARGV[i]) " +
+            "redis.call('HDEL', h, ARGV[i] .. ':exp', ARGV[i] .. ':none') end " +
+            INVALIDATE_TAX_USER +
+            "return evicted", Long.class);
+    
+    // KEYS: generation, hash. {version} on a miss, {version, response} on a hit. The version names
+    // the generation and change counter, and is handed back to WRITE_TAX_USER_SCRIPT.
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> READ_TAX_USER_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:read-user\n" +
+            "local h = KEYS[2] " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            "if redis.call('HGET', h, 'gen') ~= gen then return {gen .. ':0'} end " +
+            "local version = gen .. ':' .. (redis.call('HGET', h, 'user:v') or '0') " +
+            "local expires = redis.call('HGET', h, 'user:exp') " +
+            NOW_MILLIS +
+            "if not expires or tonumber(expires) < now then return {version} end " +
+            "return {version, redis.call('HGET', h, 'user')}", List.class);
+    
+    // KEYS: generation, hash. ARGV: response, version read on the miss, TTL in millis.
+    // Skipped, returning 0, when the user's tax files changed since that read.
+    static final RedisScript<Long> WRITE_TAX_USER_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:write-user\n" +
+            "local h = KEYS[2] " +
+            "local ttl = ARGV[3] " +
+            "local keep = ttl " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            RESET_ON_NEW_GENERATION +
+            "if gen .. ':' .. (redis.call('HGET', h, 'user:v') or '0') ~= ARGV[2] then return 0 end " +
+            NOW_MILLIS +
+            "redis.call('HSET', h, 'user', ARGV[1], 'user:exp', now + ttl) " +
+            EXTEND_TTL +
+            "return 1", Long.class);
+    
+    // KEYS: generation, hash. Drops the cached TaxUserResponse.
+    private static final RedisScript<Long> INVALIDATE_TAX_USER_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:invalidate-user\n" +
+            "local h = KEYS[2] " +
+            "local gen = redis.call('GET', KEYS[1]) or '0' " +
+            INVALIDATE_TAX_USER +
+            "return 1", Long.class);
+    
+    // KEYS: lock. ARGV: token, TTL in millis. 1 if the lock was taken.
+    static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:lock\n" +
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+            "return 0", Long.class);
+    
+    // KEYS: lock. ARGV: token. Deletes the lock only while the token still holds it, so a holder
+    // whose lock expired cannot release the next holder's.
+    static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "-- taxfile:unlock\n" +
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+    
+    public TaxFileCacheService(RedisTemplate<String, Object> redisTemplate,
+                               CacheValueCodec codec,
+                               MeterRegistry meterRegistry,
+                               @Value("${cache.single-flight.lock-ttl:3000}") long lockTtlMillis,
+                               @Value("${cache.single-flight.wait-timeout:1000}") long waitTimeoutMillis,
+                               @Value("${cache.stale-while-revalidate.stale-ttl:60000}") long staleTtlMillis,
+                               @Value("${cache.tax-user.active-ttl:300000}") long taxUserActiveTtlMillis,
+                               @Value("${cache.tax-user.settled-ttl:86400000}") long taxUserSettledTtlMillis,
+                               @Value("${cache.negative.time-to-live:60000}") long negativeTtlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.codec = codec;
+        this.meterRegistry = meterRegistry;
+        this.lockTtl = Duration.ofMillis(lockTtlMillis);
+        this.lockTtlMillis = String.valueOf(lockTtlMillis);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.staleTtlMillis = Math.max(staleTtlMillis, 0);
+        this.staleTtlBytes = bytes(String.valueOf(this.staleTtlMillis));
+        this.negativeTtlMillis = bytes(String.valueOf(negativeTtlMillis));
+        this.taxUserActiveTtl = Duration.ofMillis(taxUserActiveTtlMillis);
+        this.taxUserSettledTtl = Duration.ofMillis(taxUserSettledTtlMillis);
+        // Same meter names as Spring's cache metrics, so dashboards treat this like any other cache
+        this.hits = cacheCounter(CACHE_NAME, "cache.gets", "result", "hit");
+        this.misses = cacheCounter(CACHE_NAME, "cache.gets", "result", "miss");
+        this.negativeHits = cacheCounter(CACHE_NAME, "cache.gets", "result", "negative_hit");
+        this.puts = cacheCounter(CACHE_NAME, "cache.puts", null, null);
+        this.evictions = cacheCounter(CACHE_NAME, "cache.evictions", null, null);
+        this.taxUserHits = cacheCounter(TAX_USER_CACHE_NAME, "cache.gets", "result", "hit");
+        this.taxUserMisses = cacheCounter(TAX_USER_CACHE_NAME, "cache.gets", "result", "miss");
+        this.taxUserPuts = cacheCounter(TAX_USER_CACHE_NAME, "cache.puts", null, null);
+    }
     
     /**
-     * Generate cache key for tax file
+     * Hash holding every cached year of a user. Key layout shared with
+     * {@link ReactiveTaxFileCacheService}. The scripts touch this hash and the global
+     * {@link #GENERATION_KEY} together, which Redis Cluster rejects as CROSSSLOT, so only
+     * standalone and Sentinel deployments are supported.
      */
-    private String getCacheKey(String userId, Integer year) {
-        return CACHE_PREFIX + userId + ":" + year;
+    static String userKey(String userId) {
+        return CACHE_PREFIX + "{" + userId + "}";
+    }
+    
+    private static String lockKey(String userId, Integer year) {
+        return LOCK_PREFIX + "{" + userId + "}:" + year;
     }
     
     /**
-     * Get tax file from cache
+     * Get tax file from cache. Throws {@link TaxFileNotFoundException} if the year is remembered as missing.
      */
     public TaxFileResponse getFromCache(String userId, Integer year) {
         try {
-            String cacheKey = getCacheKey(userId, year);
-            String cachedValue = (String) redisTemplate.opsForValue().get(cacheKey);
-            
-            if (cachedValue != null) {
+            TaxFileResponse response = read(userId, userKey(userId), year);
+            if (response != null) {
                 log.debug("Cache hit for tax file: userId={}, year={}", userId, year);
-                return objectMapper.readValue(cachedValue, TaxFileResponse.class);
+                hits.increment();
+                return response;
             }
             
             log.debug("Cache miss for tax file: userId={}, year={}", userId, year);
+            misses.increment();
             return null;
-        } catch (JsonProcessingException e) {
+        } catch (TaxFileNotFoundException e) {
+            log.debug("Cache remembers tax file as missing: userId={}, year={}", userId, year);
+            negativeHits.increment();
+            throw e;
+        } catch (SerializationException e) {
             log.error("Error deserializing cached tax file for userId={}, year={}", userId, year, e);
+            countError("get");
             return null;
+        } catch (RuntimeException e) {
+            countError("get");
+            throw e;
+        }
+    }
+    
+    /**
+     * Many tax files read with one pipelined round trip, one read script per key. An entry that
+     * cannot be decoded counts as a miss; if Redis cannot be read at all, every key is a miss.
+     */
+    @Override
+    public List<TaxFileResponse> getFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        if (yearsByUserId.isEmpty()) {
+            return List.of();
+        }
+        
+        List<Object> cached;
+        try {
+            cached = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    yearsByUserId.forEach((userId, years) -> years.forEach(year -> readRaw(ops, userKey(userId), year)));
+                    return null;
+                }
+            }, RedisSerializer.byteArray());
+        } catch (Exception e) {
+            log.error("Error reading tax files for {} users from cache", yearsByUserId.size(), e);
+            countError("get");
+            return List.of();
+        }
+        
+        List<TaxFileResponse> found = new ArrayList<>();
+        int requested = 0;
+        for (Object value : cached) {
+            requested++;
+            // Remembered misses are left to the caller, like any other miss
+            if (value == null || ((byte[]) value).length == 0) {
+                continue;
+            }
+            try {
+                found.add(codec.decodeTaxFile((byte[]) value));
+            } catch (SerializationException e) {
+                log.error("Error deserializing cached tax file in bulk read", e);
+                countError("get");
+            }
+        }
+        hits.increment(found.size());
+        misses.increment(requested - found.size());
+        log.debug("Bulk cache read: {} of {} tax files cached", found.size(), requested);
+        return found;
+    }
+    
+    /**
+     * Every cached year of a user's tax files, read from the user's hash in one round trip
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Map<Integer, TaxFileResponse> getAllFromCache(String userId) {
+        try {
+            List<byte[]> pairs = redisTemplate.execute(READ_ALL_SCRIPT, RedisSerializer.string(),
+                    (RedisSerializer) RedisSerializer.byteArray(), List.of(GENERATION_KEY, userKey(userId)));
+            Map<Integer, TaxFileResponse> byYear = new TreeMap<>();
+            if (pairs != null) {
+                for (int i = 0; i + 1 < pairs.size(); i += 2) {
+                    byYear.put(Integer.valueOf(new String(pairs.get(i), StandardCharsets.UTF_8)),
+                            codec.decodeTaxFile(pairs.get(i + 1)));
+                }
+            }
+            if (byYear.isEmpty()) {
+                misses.increment();
+            } else {
+                hits.increment(byYear.size());
+            }
+            return byYear;
+        } catch (Exception e) {
+            log.error("Error reading cached tax files for userId={}", userId, e);
+            countError("get");
+            return Map.of();
+        }
+    }
+    
+    /**
+     * Fill a miss under a per-key Redis lock. The lock holder loads and caches the entry. Others
+     * serve the entry if it expired within the stale TTL, otherwise wait briefly for the holder's
+     * result. If the holder does not deliver in time they load it themselves.
+     *
+     * A loader that throws {@link TaxFileNotFoundException} has the year remembered as missing,
+     * and waiting instances get the same exception.
+     */
+    @Override
+    public TaxFileResponse loadOnMiss(String userId, Integer year, Supplier<TaxFileResponse> loader) {
+        String lockKey = lockKey(userId, year);
+        String lockToken = tryLock(lockKey);
+        if (lockToken != null) {
+            try {
+                // Another instance may have filled the entry between our miss and the lock
+                TaxFileResponse cached = readQuietly(userId, userKey(userId), year);
+                if (cached != null) {
+                    countLoad("raced");
+                    return cached;
+                }
+                TaxFileResponse response = loadOrRememberMissing(userId, year, loader);
+                putInCache(userId, year, response);
+                countLoad("loaded");
+                return response;
+            } finally {
+                unlock(lockKey, lockToken);
+            }
+        }
+        
+        TaxFileResponse stale = readStale(userId, year);
+        if (stale != null) {
+            log.debug("Serving stale tax file while another instance reloads: userId={}, year={}", userId, year);
+            countLoad("stale");
+            return stale;
+        }
+        
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(WAIT_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            TaxFileResponse loaded = readQuietly(userId, userKey(userId), year);
+            if (loaded != null) {
+                countLoad("waited");
+                return loaded;
+            }
+        }
+        
+        log.debug("Timed out waiting for tax file load, loading it here: userId={}, year={}", userId, year);
+        TaxFileResponse response = loadOrRememberMissing(userId, year, loader);
+        putInCache(userId, year, response);
+        countLoad("fallback");
+        return response;
+    }
+    
+    private TaxFileResponse loadOrRememberMissing(String userId, Integer year, Supplier<TaxFileResponse> loader) {
+        try {
+            return loader.get();
+        } catch (TaxFileNotFoundException e) {
+            countLoad("not_found");
+            putMissingInCache(userId, year);
+            throw e;
+        }
+    }
+    
+    /**
+     * Remember that the user has no tax file for the year. Failures are logged; the next lookup
+     * then simply asks Postgres again.
+     */
+    void putMissingInCache(String userId, Integer year) {
+        try {
+            Long written = redisTemplate.execute(WRITE_MISSING_SCRIPT, RedisSerializer.byteArray(), null,
+                    List.of(GENERATION_KEY, userKey(userId)), bytes(String.valueOf(year)), negativeTtlMillis);
+            if (Long.valueOf(0).equals(written)) {
+                log.debug("Skipped remembering tax file as missing, it was created meanwhile: userId={}, year={}", userId, year);
+                return;
+            }
+            log.debug("Remembered tax file as missing: userId={}, year={}", userId, year);
+        } catch (Exception e) {
+            log.error("Error remembering missing tax file: userId={}, year={}", userId, year, e);
+            countError("put");
         }
     }
     
@@ -56,48 +501,416 @@ public class TaxFileCacheService implements TaxFileCacheServiceInterface {
      */
     public void putInCache(String userId, Integer year, TaxFileResponse taxFileResponse) {
         try {
-            String cacheKey = getCacheKey(userId, year);
-            String jsonValue = objectMapper.writeValueAsString(taxFileResponse);
+            byte[] value = codec.encode(taxFileResponse);
             
-            redisTemplate.opsForValue().set(cacheKey, jsonValue, CACHE_TTL_HOURS, TimeUnit.HOURS);
+            Long written = write(redisTemplate, userId, year, value, taxFileResponse.getRefundUpdatedAt(), false);
+            if (Long.valueOf(0).equals(written)) {
+                log.debug("Skipped caching tax file superseded by a newer version: userId={}, year={}", userId, year);
+                return;
+            }
+            puts.increment();
             log.debug("Cached tax file: userId={}, year={}", userId, year);
-        } catch (JsonProcessingException e) {
+        } catch (SerializationException e) {
             log.error("Error serializing tax file for cache: userId={}, year={}", userId, year, e);
+            countError("put");
+        } catch (RuntimeException e) {
+            countError("put");
+            throw e;
+        }
+    }
+    
+    /**
+     * Store many tax files in cache with a single pipelined round trip
+     */
+    public void putInCacheBulk(List<TaxFileResponse> taxFileResponses) {
+        if (taxFileResponses.isEmpty()) {
+            return;
+        }
+        
+        try {
+            List<byte[]> values = new ArrayList<>(taxFileResponses.size());
+            for (TaxFileResponse response : taxFileResponses) {
+                values.add(codec.encode(response));
+            }
+            
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (int i = 0; i < taxFileResponses.size(); i++) {
+                        TaxFileResponse response = taxFileResponses.get(i);
+                        write(ops, response.getUserId(), response.getYear(), values.get(i), response.getRefundUpdatedAt(), false);
+                    }
+                    return null;
+                }
+            });
+            puts.increment(values.size());
+            log.debug("Cached {} tax files in one pipeline", values.size());
+        } catch (SerializationException e) {
+            log.error("Error serializing tax files for bulk cache put", e);
+            countError("put");
+        } catch (Exception e) {
+            log.error("Error writing {} tax files to cache", taxFileResponses.size(), e);
+            countError("put");
+        }
+    }
+    
+    /**
+     * Write committed refund changes through to the cached entries: each cached response gets the
+     * new status and errors, keeping reads on the hot path hits. Entries that are not cached stay
+     * uncached; their version is still raised so an in-flight load of the old state is dropped.
+     * If the patch fails the entries are evicted instead.
+     */
+    @Override
+    public void applyRefundUpdates(List<RefundCacheUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        
+        try {
+            List<Object> cached;
+            if (updates.size() == 1) {
+                cached = Collections.singletonList(readRaw(redisTemplate, userKey(updates.get(0).getUserId()), updates.get(0).getYear()));
+            } else {
+                cached = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                        for (RefundCacheUpdate update : updates) {
+                            readRaw(ops, userKey(update.getUserId()), update.getYear());
+                        }
+                        return null;
+                    }
+                }, RedisSerializer.byteArray());
+            }
+            
+            List<byte[]> patched = new ArrayList<>(updates.size());
+            for (int i = 0; i < updates.size(); i++) {
+                Object current = cached.get(i);
+                patched.add(current != null && ((byte[]) current).length > 0
+                        ? codec.encode(updates.get(i).applyTo(codec.decodeTaxFile((byte[]) current)))
+                        : NO_VALUE);
+            }
+            
+            List<Object> written;
+            if (updates.size() == 1) {
+                RefundCacheUpdate update = updates.get(0);
+                written = List.of(write(redisTemplate, update.getUserId(), update.getYear(), patched.get(0), update.getRefundUpdatedAt(), true));
+            } else {
+                written = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                        for (int i = 0; i < updates.size(); i++) {
+                            RefundCacheUpdate update = updates.get(i);
+                            write(ops, update.getUserId(), update.getYear(), patched.get(i), update.getRefundUpdatedAt(), true);
+                        }
+                        return null;
+                    }
+                });
+            }
+            
+            for (int i = 0; i < updates.size(); i++) {
+                String outcome = Long.valueOf(0).equals(written.get(i)) ? "superseded"
+                        : patched.get(i) == NO_VALUE ? "not_cached" : "patched";
+                meterRegistry.counter("cache.refreshes", "cache", CACHE_NAME, "outcome", outcome).increment();
+            }
+            log.debug("Wrote {} refund updates through to the cache", updates.size());
+        } catch (Exception e) {
+            log.error("Error writing {} refund updates through to the cache, evicting instead", updates.size(), e);
+            countError("refresh");
+            TaxFileCacheServiceInterface.super.applyRefundUpdates(updates);
+        }
+    }
+    
+    /**
+     * Read-through for a user's {@link TaxUserResponse}. A miss runs the loader and caches its
+     * result unless the user's tax files changed in the meantime. If Redis cannot be read the
+     * loader runs and nothing is cached.
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TaxUserResponse getTaxUserFromCache(String userId, Supplier<TaxUserResponse> loader) {
+        byte[] version;
+        try {
+            List<byte[]> cached = redisTemplate.execute(READ_TAX_USER_SCRIPT, RedisSerializer.string(),
+                    (RedisSerializer) RedisSerializer.byteArray(), List.of(GENERATION_KEY, userKey(userId)));
+            version = cached.get(0);
+            if (cached.size() > 1) {
+                TaxUserResponse response = codec.decodeTaxUser(cached.get(1));
+                log.debug("Cache hit for tax user: userId={}", userId);
+                taxUserHits.increment();
+                return response;
+            }
+        } catch (Exception e) {
+            log.error("Error reading cached tax user for userId={}, loading without the cache", userId, e);
+            countError("get");
+            return loader.get();
+        }
+        
+        log.debug("Cache miss for tax user: userId={}", userId);
+        taxUserMisses.increment();
+        TaxUserResponse response = loader.get();
+        try {
+            Long written = redisTemplate.execute(WRITE_TAX_USER_SCRIPT, RedisSerializer.byteArray(), null,
+                    List.of(GENERATION_KEY, userKey(userId)),
+                    codec.encode(response), version,
+                    bytes(String.valueOf(taxUserTtl(response).toMillis())));
+            if (Long.valueOf(0).equals(written)) {
+                log.debug("Skipped caching tax user changed while it was loaded: userId={}", userId);
+            } else {
+                taxUserPuts.increment();
+            }
+        } catch (Exception e) {
+            log.error("Error caching tax user for userId={}", userId, e);
+            countError("put");
         }
+        return response;
+    }
+    
+    /**
+     * Drop the cached {@link TaxUserResponse} of each user, pipelined when there are several
+     */
+    @Override
+    public void evictTaxUsersFromCache(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        
+        try {
+            if (userIds.size() == 1) {
+                invalidateTaxUser(redisTemplate, userIds.iterator().next());
+            } else {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                        userIds.forEach(userId -> invalidateTaxUser(ops, userId));
+                        return null;
+                    }
+                });
+            }
+            log.debug("Evicted {} tax users from cache", userIds.size());
+        } catch (Exception e) {
+            log.error("Error evicting {} tax users from cache", userIds.size(), e);
+            countError("evict");
+        }
+    }
+    
+    /**
+     * How long a {@link TaxUserResponse} is cached: briefly while any refund is still moving,
+     * since its status and ETA are what the dashboard polls for, and long once all are settled.
+     */
+    Duration taxUserTtl(TaxUserResponse response) {
+        boolean refundInFlight = response.getTaxFiles() != null && response.getTaxFiles().stream()
+                .map(TaxUserResponse.TaxFileSummary::getRefundStatus)
+                .anyMatch(status -> Refund.RefundStatus.PENDING.name().equals(status)
+                        || Refund.RefundStatus.IN_PROGRESS.name().equals(status));
+        return refundInFlight ? taxUserActiveTtl : taxUserSettledTtl;
     }
     
     /**
      * Remove tax file from cache
      */
     public void evictFromCache(String userId, Integer year) {
-        String cacheKey = getCacheKey(userId, year);
-        redisTemplate.delete(cacheKey);
+        try {
+            evict(redisTemplate, userId, List.of(year));
+        } catch (RuntimeException e) {
+            countError("evict");
+            throw e;
+        }
+        evictions.increment();
         log.debug("Evicted tax file from cache: userId={}, year={}", userId, year);
     }
     
     /**
-     * Evict all tax files for a specific user
+     * Remove many tax files from cache with a single pipelined round trip, one script per user
+     */
+    public void evictFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        if (yearsByUserId.isEmpty()) {
+            return;
+        }
+        
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    yearsByUserId.forEach((userId, years) -> evict(ops, userId, years));
+                    return null;
+                }
+            });
+            int evicted = yearsByUserId.values().stream().mapToInt(Collection::size).sum();
+            evictions.increment(evicted);
+            log.debug("Evicted {} tax files from cache in one pipeline", evicted);
+        } catch (Exception e) {
+            log.error("Error evicting tax files for {} users from cache", yearsByUserId.size(), e);
+            countError("evict");
+        }
+    }
+    
+    /**
+     * Evict all tax files for a specific user: one DEL of the user's hash
      */
     public void evictAllForUser(String userId) {
         try {
-            String pattern = CACHE_PREFIX + userId + ":*";
-            redisTemplate.delete(redisTemplate.keys(pattern));
+            redisTemplate.delete(userKey(userId));
             log.debug("Evicted all tax files from cache for user: {}", userId);
         } catch (Exception e) {
             log.error("Error evicting all tax files for user: {}", userId, e);
+            countError("evict");
         }
     }
     
     /**
-     * Evict all tax file caches
+     * Evict all tax file caches by moving to a new generation. Nothing is scanned or deleted; hashes
+     * of older generations read as empty, are reset on their next write and otherwise expire.
      */
     public void evictAll() {
         try {
-            String pattern = CACHE_PREFIX + "*";
-            redisTemplate.delete(redisTemplate.keys(pattern));
-            log.debug("Evicted all tax files from cache");
+            Long generation = redisTemplate.opsForValue().increment(GENERATION_KEY);
+            log.debug("Evicted all tax files from cache, generation is now {}", generation);
         } catch (Exception e) {
             log.error("Error evicting all tax files from cache", e);
+            countError("evict");
         }
     }
+    
+    private static byte[] readRaw(RedisOperations<String, Object> ops, String hashKey, Integer year) {
+        return ops.execute(READ_SCRIPT, RedisSerializer.string(), RedisSerializer.byteArray(),
+                List.of(GENERATION_KEY, hashKey), String.valueOf(year));
+    }
+    
+    private Long write(RedisOperations<String, Object> ops, String userId, Integer year,
+                       byte[] value, LocalDateTime refundUpdatedAt, boolean change) {
+        return ops.execute(WRITE_SCRIPT, RedisSerializer.byteArray(), null,
+                List.of(GENERATION_KEY, userKey(userId)),
+                bytes(String.valueOf(year)), value, versionBytes(refundUpdatedAt), CACHE_TTL_MILLIS,
+                change ? CHANGE : NO_VALUE, staleTtlBytes);
+    }
+    
+    private static void invalidateTaxUser(RedisOperations<String, Object> ops, String userId) {
+        ops.execute(INVALIDATE_TAX_USER_SCRIPT, RedisSerializer.string(), null, List.of(GENERATION_KEY, userKey(userId)));
+    }
+    
+    private static void evict(RedisOperations<String, Object> ops, String userId, Collection<Integer> years) {
+        Object[] args = years.stream().map(String::valueOf).toArray();
+        ops.execute(EVICT_SCRIPT, RedisSerializer.string(), null,
+                List.of(GENERATION_KEY, userKey(userId)), args);
+    }
+    
+    /**
+     * Version of an entry: microseconds since the epoch of the refund's last update, matching the
+     * precision Postgres keeps. Entries without a refund are version 0.
+     */
+    static byte[] versionBytes(LocalDateTime refundUpdatedAt) {
+        long version = refundUpdatedAt == null ? 0
+                : ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), refundUpdatedAt);
+        return bytes(String.valueOf(version));
+    }
+    
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private TaxFileResponse read(String userId, String hashKey, Integer year) {
+        byte[] cachedValue = readRaw(redisTemplate, hashKey, year);
+        if (cachedValue == null) {
+            return null;
+        }
+        if (cachedValue.length == 0) {
+            throw new TaxFileNotFoundException(userId, year);
+        }
+        return codec.decodeTaxFile(cachedValue);
+    }
+    
+    /**
+     * Read used while coordinating a load; failures count as a miss so the caller can still load.
+     * A remembered miss is passed on.
+     */
+    private TaxFileResponse readQuietly(String userId, String hashKey, Integer year) {
+        try {
+            return read(userId, hashKey, year);
+        } catch (TaxFileNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Error reading {} year {} from cache while loading", hashKey, year, e);
+            countError("get");
+            return null;
+        }
+    }
+    
+    /**
+     * The entry if it expired no longer than the stale TTL ago; failures count as having none.
+     */
+    private TaxFileResponse readStale(String userId, Integer year) {
+        if (staleTtlMillis == 0) {
+            return null;
+        }
+        try {
+            byte[] cachedValue = redisTemplate.execute(READ_STALE_SCRIPT, RedisSerializer.string(), RedisSerializer.byteArray(),
+                    List.of(GENERATION_KEY, userKey(userId)), String.valueOf(year), String.valueOf(staleTtlMillis));
+            return cachedValue == null || cachedValue.length == 0 ? null : codec.decodeTaxFile(cachedValue);
+        } catch (Exception e) {
+            log.warn("Error reading stale copy of {} year {} from cache", userKey(userId), year, e);
+            countError("get");
+            return null;
+        }
+    }
+    
+    /**
+     * Take the load lock for a key, returning the token that holds it, or null if another
+     * instance does. If Redis cannot be reached the caller loads without it.
+     */
+    private String tryLock(String lockKey) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Long taken = redisTemplate.execute(LOCK_SCRIPT, RedisSerializer.string(), null,
+                    List.of(lockKey), token, lockTtlMillis);
+            return Long.valueOf(1).equals(taken) ? token : null;
+        } catch (Exception e) {
+            log.warn("Error taking cache load lock {}, loading without it", lockKey, e);
+            countError("lock");
+            return token;
+        }
+    }
+    
+    /**
+     * Release the load lock if the token still holds it. A load that outlived the lock TTL
+     * leaves alone the lock another instance has taken since; the TTL covers a holder that dies
+     * before getting here.
+     */
+    private void unlock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(UNLOCK_SCRIPT, RedisSerializer.string(), null, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.warn("Error releasing cache load lock {}, it expires in {}", lockKey, lockTtl, e);
+        }
+    }
+    
+    private void countLoad(String outcome) {
+        meterRegistry.counter("cache.loads", "cache", CACHE_NAME, "outcome", outcome).increment();
+    }
+    
+    private Counter cacheCounter(String cacheName, String name, String tagKey, String tagValue) {
+        Counter.Builder builder = Counter.builder(name).tag("cache", cacheName);
+        if (tagKey != null) {
+            builder.tag(tagKey, tagValue);
+        }
+        return builder.register(meterRegistry);
+    }
+    
+    private void countError(String operation) {
+        Counter.builder("cache.errors")
+                .description("Redis cache operations that failed")
+                .tag("cache", CACHE_NAME)
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
 }
@@ -1,11 +1,91 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
 import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 public interface TaxFileCacheServiceInterface {
+    /**
+     * The cached tax file, or null on a miss. Caches that remember missing tax files throw
+     * {@link TaxFileNotFoundException} for a year known to have none.
+     */
     TaxFileResponse getFromCache(String userId, Integer year);
     void putInCache(String userId, Integer year, TaxFileResponse taxFileResponse);
+    void putInCacheBulk(List<TaxFileResponse> taxFileResponses);
     void evictFromCache(String userId, Integer year);
+    void evictFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId);
     void evictAllForUser(String userId);
     void evictAll();
+    
+    /**
+     * Cached tax files for many users and years; keys that are not cached are absent from the
+     * result. Shared caches override this to read every key in one round trip.
+     */
+    default List<TaxFileResponse> getFromCacheBulk(Map<String, ? extends Collection<Integer>> yearsByUserId) {
+        List<TaxFileResponse> hits = new ArrayList<>();
+        yearsByUserId.forEach((userId, years) -> {
+            for (Integer year : years) {
+                TaxFileResponse response = getFromCache(userId, year);
+                if (response != null) {
+                    hits.add(response);
+                }
+            }
+        });
+        return hits;
+    }
+    
+    /**
+     * Every cached year of a user's tax files. Empty when nothing is cached or the cache cannot
+     * read a user's entries in one call.
+     */
+    default Map<Integer, TaxFileResponse> getAllFromCache(String userId) {
+        return Map.of();
+    }
+    
+    /**
+     * Read-through for a user's {@link TaxUserResponse}: the cached aggregate, or the loader's result,
+     * cached for next time. By default nothing is cached and the loader always runs.
+     */
+    default TaxUserResponse getTaxUserFromCache(String userId, Supplier<TaxUserResponse> loader) {
+        return loader.get();
+    }
+    
+    /**
+     * Drop the cached {@link TaxUserResponse} of each user, after their tax files were created or
+     * changed. Evicting or patching tax files already drops it.
+     */
+    default void evictTaxUsersFromCache(Collection<String> userIds) {
+    }
+    
+    /**
+     * Fill a cache miss. Shared caches override this to keep several instances from loading the
+     * same entry at once; by default the loader simply runs and its result is cached.
+     */
+    default TaxFileResponse loadOnMiss(String userId, Integer year, Supplier<TaxFileResponse> loader) {
+        TaxFileResponse response = loader.get();
+        putInCache(userId, year, response);
+        return response;
+    }
+    
+    /**
+     * Bring cached entries in line with committed refund changes. Shared caches override this to
+     * patch the entries in place; by default they are evicted and reloaded on the next read.
+     */
+    default void applyRefundUpdates(List<RefundCacheUpdate> updates) {
+        Map<String, Set<Integer>> yearsByUserId = new HashMap<>();
+        for (RefundCacheUpdate update : updates) {
+            yearsByUserId.computeIfAbsent(update.getUserId(), userId -> new TreeSet<>()).add(update.getYear());
+        }
+        evictFromCacheBulk(yearsByUserId);
+    }
 }
@@ -0,0 +1,336 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.repository.TaxFileKeyStreamRepository;
+import com.badhtaxfileserv.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory Bloom filter of every (userId, year) that has a tax file. A key the filter has never
+ * seen certainly has no tax file, so lookups for filings that do not exist yet are answered without
+ * Redis or Postgres, and bulk creations leave them out of the duplicate query.
+ *
+ * The filter is built from tax_file at startup and rebuilt periodically, which also resizes it as
+ * the table grows. Tax files created here are added once committed and announced on a Redis
+ * channel for the other instances. Until the first build completes, and while a rebuild after a
+ * bulk import runs, every key is answered as possibly existing.
+ *
+ * Announcements sent while an instance was not subscribed are lost, so the filter is rebuilt
+ * whenever the subscription is re-established. An announcement that could not be sent is made
+ * up for by asking every instance to rebuild once Redis takes announcements again. Callers still
+ * check the cache before trusting an absent answer; rebuild-interval bounds anything left over.
+ */
+@Service
+@Slf4j
+public class TaxFileExistenceFilter implements MessageListener, SubscriptionListener {
+
+    static final String REBUILD = "*";
+    private static final char SEPARATOR = '|';
+    private static final char TARGET_SEPARATOR = '\n';
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private final TaxFileKeyStreamRepository keyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Executor rebuildExecutor;
+    private final boolean enabled;
+    private final double falsePositiveProbability;
+    private final long minCapacity;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter absent;
+    private final Counter present;
+    private final Counter notReady;
+
+    // Null until built, and after an import until rebuilt; every key may exist meanwhile
+    private volatile BloomFilter filter;
+    // The filter a running rebuild fills, which created keys are added to as well
+    private volatile BloomFilter building;
+    private final AtomicInteger rebuildRequests = new AtomicInteger();
+    // Bumped when the filter is dropped, so a rebuild that started before cannot install its result
+    private final AtomicLong invalidations = new AtomicLong();
+    // Set when an announcement could not be sent; the next one asks every instance to rebuild
+    private final AtomicBoolean announcementLost = new AtomicBoolean();
+
+    public TaxFileExistenceFilter(TaxFileKeyStreamRepository keyRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  ObjectProvider<StringRedisTemplate> stringRedisTemplate,
+                                  BackgroundExecutorFactory backgroundExecutorFactory,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${redis.enabled:true}") boolean redisEnabled,
+                                  @Value("${cache.existence-filter.enabled:true}") boolean enabled,
+                                  @Value("${cache.existence-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                                  @Value("${cache.existence-filter.min-capacity:1000000}") long minCapacity,
+                                  @Value("${cache.existence-filter.channel:taxfile:created}") String channel) {
+        this.keyRepository = keyRepository;
+        this.transactionTemplate = transactionTemplate;
+        // Without Redis this is a single instance with nobody to tell
+        this.stringRedisTemplate = redisEnabled ? stringRedisTemplate.getIfAvailable() : null;
+        this.rebuildExecutor = backgroundExecutorFactory.newExecutor("taxfile-existence-filter-");
+        this.enabled = enabled;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.minCapacity = minCapacity;
+        this.channel = channel;
+        this.absent = checkCounter(meterRegistry, "absent");
+        this.present = checkCounter(meterRegistry, "maybe_present");
+        this.notReady = checkCounter(meterRegistry, "not_ready");
+        log.info("Tax file existence filter {}: fpp={}, minCapacity={}, channel={}",
+                enabled ? "enabled" : "disabled", falsePositiveProbability, minCapacity, channel);
+    }
+
+    /**
+     * False only when the user certainly has no tax file for the year.
+     */
+    public boolean mightExist(String userId, Integer year) {
+        if (!enabled) {
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current == null) {
+            notReady.increment();
+            return true;
+        }
+        if (current.mightContain(key(userId, year))) {
+            present.increment();
+            return true;
+        }
+        absent.increment();
+        return false;
+    }
+
+    public void recordCreated(String userId, Integer year) {
+        recordCreated(List.of(new TaxFileKey(userId, year)));
+    }
+
+    /**
+     * Add newly created tax files once the surrounding transaction commits, here and on every
+     * other instance. A rolled back creation is never added.
+     */
+    public void recordCreated(Collection<TaxFileKey> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordAndBroadcast(keys);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordAndBroadcast(keys);
+            }
+        });
+    }
+
+    /**
+     * Tax files were inserted without passing through here, by a bulk import. Every instance stops
+     * trusting its filter and rebuilds it from the table.
+     */
+    public void invalidateAndRebuild() {
+        if (!enabled) {
+            return;
+        }
+        invalidateLocally();
+        broadcast(REBUILD);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            requestRebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.existence-filter.rebuild-interval:3600000}",
+            initialDelayString = "${cache.existence-filter.rebuild-interval:3600000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            requestRebuild();
+            if (announcementLost.get()) {
+                broadcast(REBUILD);
+            }
+        }
+    }
+
+    /**
+     * Apply an announcement from another instance. Messages are {@code instanceId|target}, where
+     * target is a {@code userId:year} key, or {@code *} to rebuild; several newline-separated
+     * keys may share one message.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.indexOf(SEPARATOR);
+        if (separator < 0) {
+            log.warn("Ignoring malformed tax file existence announcement: {}", payload);
+            return;
+        }
+        if (payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+
+        String targets = payload.substring(separator + 1);
+        if (REBUILD.equals(targets)) {
+            log.info("Rebuilding tax file existence filter after a bulk import on another instance");
+            invalidateLocally();
+            return;
+        }
+        for (String key : targets.split(String.valueOf(TARGET_SEPARATOR))) {
+            add(key);
+        }
+    }
+
+    /**
+     * Announcements sent while unsubscribed were missed, so a filter that was built, or is being
+     * built, before the subscription came up is rebuilt. The first subscription at startup
+     * precedes the first build and costs nothing.
+     */
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (enabled && (filter != null || building != null)) {
+            log.info("Rebuilding tax file existence filter after subscribing to {}", this.channel);
+            requestRebuild();
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    /**
+     * Rebuild in the background. A request made while a rebuild runs is served by one more
+     * rebuild after it, so keys committed in the meantime are never left out.
+     */
+    void requestRebuild() {
+        if (rebuildRequests.getAndIncrement() == 0) {
+            rebuildExecutor.execute(this::runRebuilds);
+        }
+    }
+
+    private void runRebuilds() {
+        int served;
+        do {
+            served = rebuildRequests.get();
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Failed to rebuild tax file existence filter, keeping the current one", e);
+            }
+        } while (rebuildRequests.addAndGet(-served) > 0);
+    }
+
+    void rebuild() {
+        long startNanos = System.nanoTime();
+        long invalidationsAtStart = invalidations.get();
+        long rows = keyRepository.count();
+        BloomFilter next = new BloomFilter(Math.max(minCapacity, rows * 2), falsePositiveProbability);
+        // Keys committed from here on are added to next directly; earlier ones are in the scan
+        building = next;
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    keyRepository.forEachKey(SCAN_FETCH_SIZE, (userId, year) -> next.put(key(userId, year))));
+            if (invalidations.get() == invalidationsAtStart) {
+                filter = next;
+                log.info("Built tax file existence filter from {} tax files: {} bits, {} hash functions, in {} ms",
+                        rows, next.bitSize(), next.hashFunctions(), Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+            } else {
+                log.info("Discarded tax file existence filter invalidated while it was built");
+            }
+        } finally {
+            building = null;
+        }
+    }
+
+    private void invalidateLocally() {
+        invalidations.incrementAndGet();
+        filter = null;
+        requestRebuild();
+    }
+
+    private void recordAndBroadcast(Collection<TaxFileKey> keys) {
+        StringBuilder targets = new StringBuilder();
+        for (TaxFileKey key : keys) {
+            String filterKey = key(key.getUserId(), key.getYear());
+            add(filterKey);
+            if (targets.length() > 0) {
+                targets.append(TARGET_SEPARATOR);
+            }
+            targets.append(filterKey);
+        }
+        broadcast(targets.toString());
+    }
+
+    private void add(String key) {
+        // Read building before filter: a rebuild installs its filter before clearing building,
+        // so the key reaches the new filter either way
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(key);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(key);
+        }
+    }
+
+    private void broadcast(String targets) {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            if (announcementLost.get() && !REBUILD.equals(targets)) {
+                stringRedisTemplate.convertAndSend(channel, instanceId + SEPARATOR + REBUILD);
+            }
+            stringRedisTemplate.convertAndSend(channel, instanceId + SEPARATOR + targets);
+            announcementLost.set(false);
+        } catch (Exception e) {
+            // Redis is unreachable, so this instance likely missed announcements as well
+            log.error("Failed to announce created tax files, rebuilding once announcements go through again: {}", targets, e);
+            if (!announcementLost.getAndSet(true)) {
+                requestRebuild();
+            }
+        }
+    }
+
+    private static String key(String userId, Integer year) {
+        return userId + ":" + year;
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cache.existence.checks")
+                .description("Tax file existence filter lookups")
+                .tag("cache", "taxfile")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,59 @@
+package com.badhtaxfileserv.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+/**
+ * Command-line import mode. Run the jar with
+ * {@code --import.file=/path/filings.csv --spring.main.web-application-type=none}
+ * to load a dump at startup. The context is closed and the process exits when the import is
+ * done, with status 1 if it failed, since schedulers and listeners would otherwise keep it alive.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "import.file")
+public class TaxFileImportRunner implements ApplicationRunner {
+    
+    private final TaxFileImportService taxFileImportService;
+    private final ApplicationContext applicationContext;
+    
+    // Replaced in tests, which must not end the JVM
+    IntConsumer exit = System::exit;
+    
+    @Value("${import.file}")
+    private String importFile;
+    
+    @Value("${import.format:}")
+    private String importFormat;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path path = Path.of(importFile);
+        TaxFileImportService.ImportFormat format = TaxFileImportService.ImportFormat.fromName(
+                importFormat.isEmpty() ? path.getFileName().toString() : importFormat);
+        
+        log.info("Importing {} as {}", path, format);
+        int status = 0;
+        try (InputStream input = Files.newInputStream(path)) {
+            taxFileImportService.importFile(input, format, path.toString());
+        } catch (Exception e) {
+            log.error("Import of {} failed", path, e);
+            status = 1;
+        }
+        int exitCode = status;
+        exit.accept(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+}
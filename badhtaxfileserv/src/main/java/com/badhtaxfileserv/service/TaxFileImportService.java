@@ -0,0 +1,453 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.TaxFileImportResponse;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.exception.ImportAlreadyRunningException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bulk import of historical filings from CSV or NDJSON. The input is streamed row by row
+ * into a temporary staging table over the PostgreSQL COPY protocol, then merged into
+ * "user", tax_file and refund with set-based statements in the same transaction.
+ * Existing (user_id, tax_year) pairs are left untouched via uk_tax_file_user_year.
+ *
+ * Columns use the names of dummy_tax_refund_data.csv plus user_id, first_name and last_name.
+ * Optional columns: first_name, last_name, created_at, refund_status, refund_eta, days_to_refund.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaxFileImportService {
+
+    public enum ImportFormat {
+        CSV, NDJSON;
+
+        public static ImportFormat fromName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.contains("json")) {
+                return NDJSON;
+            }
+            return CSV;
+        }
+    }
+
+    private static final int PROGRESS_INTERVAL_ROWS = 100_000;
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+    private static final int MAX_LOGGED_REJECTS = 20;
+
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMP TABLE import_staging (" +
+            "user_id VARCHAR(100), first_name VARCHAR(100), last_name VARCHAR(100), tax_year INT, " +
+            "income NUMERIC(14,2), expense NUMERIC(14,2), tax_rate_percent NUMERIC(5,2), deducted NUMERIC(14,2), " +
+            "refund_amount NUMERIC(14,2), refund_status VARCHAR(32), refund_eta TIMESTAMP WITH TIME ZONE, " +
+            "created_at TIMESTAMP WITH TIME ZONE) ON COMMIT DROP";
+
+    private static final String COPY_STAGING_SQL =
+            "COPY import_staging (user_id, first_name, last_name, tax_year, income, expense, tax_rate_percent, " +
+            "deducted, refund_amount, refund_status, refund_eta, created_at) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String MERGE_USERS_SQL =
+            "INSERT INTO taxfileservdb.\"user\" (user_id, first_name, last_name, created_at, updated_at) " +
+            "SELECT DISTINCT ON (user_id) user_id, first_name, last_name, created_at, created_at " +
+            "FROM import_staging ORDER BY user_id, created_at " +
+            "ON CONFLICT (user_id) DO NOTHING";
+
+    // Latest row wins for repeated (user_id, tax_year) within the file; refunds are only
+    // created for tax files this statement actually inserted
+    private static final String MERGE_TAX_FILES_SQL =
+            "WITH deduped AS (" +
+            "  SELECT DISTINCT ON (user_id, tax_year) * FROM import_staging ORDER BY user_id, tax_year, created_at DESC" +
+            "), inserted AS (" +
+            "  INSERT INTO taxfileservdb.tax_file (user_id, tax_year, income, expense, tax_rate_percent, deducted, " +
+            "    refund_amount, tax_status, created_at, updated_at) " +
+            "  SELECT user_id, tax_year, income, expense, tax_rate_percent, deducted, refund_amount, " +
+            "    CASE WHEN refund_amount > 0 THEN 'PENDING' ELSE 'COMPLETED' END, created_at, created_at FROM deduped " +
+            "  ON CONFLICT ON CONSTRAINT uk_tax_file_user_year DO NOTHING " +
+            "  RETURNING id, user_id, tax_year, refund_amount" +
+            "), refunds AS (" +
+            "  INSERT INTO taxfileservdb.refund (tax_file_id, refund_status, refund_eta, created_at, updated_at) " +
+            "  SELECT i.id, d.refund_status, d.refund_eta, d.created_at, d.created_at " +
+            "  FROM inserted i JOIN deduped d ON d.user_id = i.user_id AND d.tax_year = i.tax_year " +
+            "  WHERE i.refund_amount > 0 " +
+            "  RETURNING 1" +
+            ") SELECT (SELECT count(*) FROM inserted), (SELECT count(*) FROM refunds)";
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final TaxFileExistenceFilter existenceFilter;
+    private final TaxFileCacheServiceInterface cacheService;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private volatile TaxFileImportResponse lastResult;
+    private volatile String currentSource;
+    private volatile ImportFormat currentFormat;
+    private volatile long startedAtNanos;
+
+    public TaxFileImportResponse importFile(InputStream input, ImportFormat format, String source) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ImportAlreadyRunningException(currentSource);
+        }
+
+        rowsRead.set(0);
+        rowsRejected.set(0);
+        currentSource = source;
+        currentFormat = format;
+        startedAtNanos = System.nanoTime();
+        log.info("Starting {} import from {}", format, source);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_SQL);
+                }
+
+                copyIntoStaging(connection, input, format);
+                log.info("Staged {} rows ({} rejected) in {} ms, merging", rowsRead.get(), rowsRejected.get(), elapsedMillis());
+
+                long usersInserted;
+                long taxFilesInserted;
+                long refundsInserted;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ANALYZE import_staging");
+                    usersInserted = statement.executeUpdate(MERGE_USERS_SQL);
+                    try (ResultSet resultSet = statement.executeQuery(MERGE_TAX_FILES_SQL)) {
+                        resultSet.next();
+                        taxFilesInserted = resultSet.getLong(1);
+                        refundsInserted = resultSet.getLong(2);
+                    }
+                }
+                connection.commit();
+                if (taxFilesInserted > 0) {
+                    // The merge bypassed the existence filter and the cache, whose remembered
+                    // misses and tax user responses must not hide the new tax files
+                    existenceFilter.invalidateAndRebuild();
+                    cacheService.evictAll();
+                }
+
+                lastResult = snapshot(false, usersInserted, taxFilesInserted, refundsInserted);
+                log.info("Import from {} finished: {}", source, lastResult);
+                return lastResult;
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            log.error("Import from {} failed after {} rows", source, rowsRead.get(), e);
+            throw new RuntimeException("Import failed: " + e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Counters of the running import, or the result of the last one.
+     */
+    public TaxFileImportResponse getProgress() {
+        if (running.get()) {
+            return snapshot(true, 0, 0, 0);
+        }
+        return lastResult != null ? lastResult : TaxFileImportResponse.builder().build();
+    }
+
+    private void copyIntoStaging(Connection connection, InputStream input, ImportFormat format)
+            throws SQLException, IOException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_SQL);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+            Map<String, Integer> header = format == ImportFormat.CSV ? readHeader(reader) : null;
+
+            // Lines of NDJSON, records of CSV, whose quoted fields may span lines
+            long rowNumber = format == ImportFormat.CSV ? 1 : 0;
+            while (true) {
+                List<String> values = null;
+                String line = null;
+                if (format == ImportFormat.CSV) {
+                    values = readCsvRecord(reader);
+                    if (values == null) {
+                        break;
+                    }
+                } else {
+                    line = reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                }
+                rowNumber++;
+                if (values != null ? values.size() == 1 && values.get(0).isBlank() : line.isBlank()) {
+                    continue;
+                }
+
+                long read = rowsRead.incrementAndGet();
+                try {
+                    Function<String, String> field = values != null
+                            ? csvRow(header, values)
+                            : jsonRow(objectMapper.readTree(line));
+                    appendStagingRow(buffer, field);
+                } catch (Exception e) {
+                    if (rowsRejected.incrementAndGet() <= MAX_LOGGED_REJECTS) {
+                        log.warn("Rejected {} {}: {}", values != null ? "record" : "line", rowNumber, e.getMessage());
+                    }
+                }
+
+                if (buffer.length() >= COPY_BUFFER_CHARS) {
+                    flush(copyIn, buffer);
+                }
+                if (read % PROGRESS_INTERVAL_ROWS == 0) {
+                    log.info("Import progress: {} rows read, {} rejected, {} rows/s",
+                            read, rowsRejected.get(), String.format("%.0f", rowsPerSecond(read)));
+                }
+            }
+            flush(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void appendStagingRow(StringBuilder buffer, Function<String, String> field) {
+        String userId = required(field, "user_id");
+        if (userId.length() > 100) {
+            throw new IllegalArgumentException("user_id exceeds 100 characters");
+        }
+        int year = Integer.parseInt(required(field, "tax_year"));
+        BigDecimal income = amount(field, "income");
+        BigDecimal expense = amount(field, "expense");
+        BigDecimal taxRate = amount(field, "tax_rate_percent");
+        if (taxRate.compareTo(BigDecimal.valueOf(100)) > 0) {
+            throw new IllegalArgumentException("tax_rate_percent must not exceed 100");
+        }
+        BigDecimal deducted = amount(field, "deducted");
+        BigDecimal refundAmount = amount(field, "refund_amount");
+
+        String createdAtValue = optional(field, "created_at");
+        LocalDateTime createdAt = createdAtValue != null ? parseTimestamp(createdAtValue) : LocalDateTime.now();
+
+        String refundStatusValue = optional(field, "refund_status");
+        Refund.RefundStatus refundStatus = refundStatusValue != null
+                ? Refund.RefundStatus.valueOf(refundStatusValue.toUpperCase(Locale.ROOT))
+                : Refund.RefundStatus.PENDING;
+
+        LocalDateTime refundEta = null;
+        String refundEtaValue = optional(field, "refund_eta");
+        String daysToRefund = optional(field, "days_to_refund");
+        if (refundEtaValue != null) {
+            refundEta = parseTimestamp(refundEtaValue);
+        } else if (daysToRefund != null) {
+            refundEta = createdAt.plusDays(Long.parseLong(daysToRefund));
+        }
+
+        appendCsvValue(buffer, userId).append(',');
+        appendCsvValue(buffer, name(field, "first_name")).append(',');
+        appendCsvValue(buffer, name(field, "last_name")).append(',');
+        buffer.append(year).append(',')
+              .append(income.toPlainString()).append(',')
+              .append(expense.toPlainString()).append(',')
+              .append(taxRate.toPlainString()).append(',')
+              .append(deducted.toPlainString()).append(',')
+              .append(refundAmount.toPlainString()).append(',')
+              .append(refundStatus.name()).append(',');
+        if (refundEta != null) {
+            buffer.append(refundEta);
+        }
+        buffer.append(',').append(createdAt).append('\n');
+    }
+
+    private void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private TaxFileImportResponse snapshot(boolean inProgress, long usersInserted, long taxFilesInserted, long refundsInserted) {
+        long read = rowsRead.get();
+        return TaxFileImportResponse.builder()
+                .source(currentSource)
+                .format(currentFormat != null ? currentFormat.name() : null)
+                .running(inProgress)
+                .rowsRead(read)
+                .rowsRejected(rowsRejected.get())
+                .usersInserted(usersInserted)
+                .taxFilesInserted(taxFilesInserted)
+                .refundsInserted(refundsInserted)
+                .durationMillis(elapsedMillis())
+                .rowsPerSecond(rowsPerSecond(read))
+                .build();
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startedAtNanos) / 1_000_000;
+    }
+
+    private double rowsPerSecond(long rows) {
+        long millis = Math.max(1, elapsedMillis());
+        return rows * 1000.0 / millis;
+    }
+
+    private static Map<String, Integer> readHeader(BufferedReader reader) throws IOException {
+        List<String> columns = readCsvRecord(reader);
+        if (columns == null) {
+            throw new IOException("CSV input is empty");
+        }
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!header.containsKey("user_id")) {
+            throw new IOException("CSV header must contain a user_id column");
+        }
+        return header;
+    }
+
+    private static Function<String, String> csvRow(Map<String, Integer> header, List<String> values) {
+        return column -> {
+            Integer index = header.get(column);
+            return index != null && index < values.size() ? values.get(index) : null;
+        };
+    }
+
+    private static Function<String, String> jsonRow(JsonNode node) {
+        return column -> {
+            JsonNode value = node.get(column);
+            return value == null || value.isNull() ? null : value.asText();
+        };
+    }
+
+    /**
+     * Read the next CSV record, honouring double-quoted fields with "" escapes. A quoted field
+     * may span lines, so the record continues past a line break while a quote is open. Null at
+     * the end of the input.
+     */
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            line = reader.readLine();
+            if (line == null) {
+                throw new IOException("CSV input ends inside a quoted field");
+            }
+            current.append('\n');
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static StringBuilder appendCsvValue(StringBuilder buffer, String value) {
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        return buffer.append('"');
+    }
+
+    private static String optional(Function<String, String> field, String column) {
+        String value = field.apply(column);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String required(Function<String, String> field, String column) {
+        String value = optional(field, column);
+        if (value == null) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+        return value;
+    }
+
+    private static String name(Function<String, String> field, String column) {
+        String value = optional(field, column);
+        if (value == null) {
+            return "";
+        }
+        if (value.length() > 100) {
+            throw new IllegalArgumentException(column + " exceeds 100 characters");
+        }
+        return value;
+    }
+
+    private static BigDecimal amount(Function<String, String> field, String column) {
+        BigDecimal value = new BigDecimal(required(field, column));
+        if (value.signum() < 0) {
+            throw new IllegalArgumentException(column + " must be non-negative");
+        }
+        return value;
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        if (value.length() == 10) {
+            return LocalDate.parse(value).atStartOfDay();
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (Exception e) {
+            return OffsetDateTime.parse(value).toLocalDateTime();
+        }
+    }
+}
@@ -1,52 +1,78 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.dto.BatchCreateTaxFileResponse;
 import com.badhtaxfileserv.dto.CreateTaxFileRequest;
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileLookupResponse;
 import com.badhtaxfileserv.dto.TaxFileResponse;
 import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.entity.OutboxMessage;
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.entity.TaxFile;
 import com.badhtaxfileserv.entity.User;
-import com.badhtaxfileserv.repository.RefundRepository;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+import com.badhtaxfileserv.repository.TaxFileBatchRepository;
 import com.badhtaxfileserv.repository.TaxFileRepository;
 import com.badhtaxfileserv.repository.UserRepository;
 import com.badhtaxfileserv.util.ETAPredictor;
+import com.badhtaxfileserv.util.SingleFlight;
+import com.badhtaxfileserv.util.UuidV7;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "service.invocations", description = "Service method latency")
 public class TaxFileService {
     
     private final TaxFileRepository taxFileRepository;
-    private final RefundRepository refundRepository;
     private final UserRepository userRepository;
     private final ETAPredictor etaPredictor;
-    private final PubSubServiceInterface pubSubService;
     private final TaxFileCacheServiceInterface cacheService;
+    private final TaxFileBatchRepository taxFileBatchRepository;
+    private final Validator validator;
+    private final TaxFileExistenceFilter existenceFilter;
+    private final SingleFlight<String, TaxFileResponse> taxFileLoads = new SingleFlight<>();
+    private final SingleFlight<String, TaxUserResponse> taxUserLoads = new SingleFlight<>();
     
+    /**
+     * Ids are assigned here, so the tax file, its refund and the refund's outbox message are
+     * written with one statement and the response is built from what it returns. There is no
+     * existence pre-check; a duplicate fails on uk_tax_file_user_year instead.
+     */
     @Transactional
     public TaxFileResponse createTaxFile(CreateTaxFileRequest request) {
         log.info("Creating tax file for user: {} and year: {}", request.getUserId(), request.getYear());
         
-        // Check if tax file already exists
-        if (taxFileRepository.existsByUserIdAndYear(request.getUserId(), request.getYear())) {
-            throw new DataIntegrityViolationException("Tax file already exists for user: " + request.getUserId() + " and year: " + request.getYear());
-        }
-        
-        // Create tax file
-        TaxFile.TaxStatus taxStatus = request.getRefund().compareTo(BigDecimal.ZERO) > 0 
-            ? TaxFile.TaxStatus.PENDING 
-            : TaxFile.TaxStatus.COMPLETED;
-            
+        boolean hasRefund = request.getRefund().compareTo(BigDecimal.ZERO) > 0;
         TaxFile taxFile = TaxFile.builder()
+                .id(UuidV7.randomUuid())
                 .userId(request.getUserId())
                 .year(request.getYear())
                 .income(request.getIncome())
@@ -54,83 +80,272 @@ public class TaxFileService {
                 .taxRate(request.getTaxRate())
                 .deducted(request.getDeducted())
                 .refundAmount(request.getRefund())
-                .taxStatus(taxStatus)
+                .taxStatus(hasRefund ? TaxFile.TaxStatus.PENDING : TaxFile.TaxStatus.COMPLETED)
                 .build();
         
-        taxFile = taxFileRepository.save(taxFile);
-        log.info("Created tax file with ID: {}", taxFile.getId());
-        
-        // Create refund record if refund amount > 0
-        if (request.getRefund().compareTo(BigDecimal.ZERO) > 0) {
-            Refund refund = Refund.builder()
+        // Create refund record if refund amount > 0, with its creation message for OutboxRelay
+        Refund refund = null;
+        OutboxMessage message = null;
+        if (hasRefund) {
+            refund = Refund.builder()
+                    .id(UuidV7.randomUuid())
                     .taxFile(taxFile)
                     .refundStatus(Refund.RefundStatus.PENDING)
-                    .refundEta(etaPredictor.predictETA())
+                    .refundEta(etaPredictor.predictETA(taxFile))
                     .build();
+            taxFile.setRefund(refund);
+            message = OutboxMessage.of(OutboxMessage.Topic.SEND_REFUND, buildSendRefundMessage(taxFile, refund));
+        }
+        
+        TaxFileResponse response;
+        try {
+            response = taxFileBatchRepository.insertTaxFile(taxFile, refund, message);
+        } catch (DuplicateKeyException e) {
+            throw new DataIntegrityViolationException("Tax file already exists for user: " + request.getUserId() + " and year: " + request.getYear(), e);
+        }
+        log.info("Created tax file with ID: {}", response.getFileId());
+        if (hasRefund) {
+            log.info("Created refund record with ETA: {} and queued its creation event", response.getRefundEta());
+        }
+        
+        // Cache the response for future reads
+        cacheService.putInCache(request.getUserId(), request.getYear(), response);
+        evictTaxUsersAfterCommit(List.of(request.getUserId()));
+        existenceFilter.recordCreated(request.getUserId(), request.getYear());
+        
+        return response;
+    }
+    
+    /**
+     * Bulk variant of {@link #createTaxFile} for partner e-file submissions. Duplicates are
+     * found with one query, rows and their outbox messages are written with JDBC batching,
+     * and Redis is hit once per batch. Invalid or duplicate items, including one filed by a
+     * concurrent request after that query, are reported in their own result and do not stop
+     * the rest of the batch.
+     */
+    @Transactional
+    public BatchCreateTaxFileResponse createTaxFiles(List<CreateTaxFileRequest> requests) {
+        log.info("Creating {} tax files in batch", requests.size());
+        
+        BatchCreateTaxFileResponse.ItemResult[] results = new BatchCreateTaxFileResponse.ItemResult[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        
+        // Validate items and drop repeats of the same (userId, year) within the batch
+        for (int i = 0; i < requests.size(); i++) {
+            CreateTaxFileRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = itemResult(i, null, BatchCreateTaxFileResponse.ItemStatus.INVALID, null, "Item must not be null");
+                continue;
+            }
+            Set<ConstraintViolation<CreateTaxFileRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                String error = violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                results[i] = itemResult(i, request, BatchCreateTaxFileResponse.ItemStatus.INVALID, null, error);
+            } else if (candidates.putIfAbsent(userYearKey(request.getUserId(), request.getYear()), i) != null) {
+                results[i] = itemResult(i, request, BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, null,
+                        "Duplicate of an earlier item in this batch");
+            }
+        }
+        
+        // One query for every pair that already exists. The existence filter is not asked, as a
+        // creation announcement it missed would let a filed year through to the insert
+        Set<String> userIds = new HashSet<>();
+        Set<Integer> years = new HashSet<>();
+        for (int index : candidates.values()) {
+            CreateTaxFileRequest request = requests.get(index);
+            userIds.add(request.getUserId());
+            years.add(request.getYear());
+        }
+        if (!userIds.isEmpty()) {
+            for (Object[] row : taxFileRepository.findUserIdAndYearByUserIdInAndYearIn(userIds, years)) {
+                Integer index = candidates.remove(userYearKey((String) row[0], (Integer) row[1]));
+                if (index != null) {
+                    CreateTaxFileRequest request = requests.get(index);
+                    results[index] = itemResult(index, request, BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, null,
+                            "Tax file already exists for user: " + request.getUserId() + " and year: " + request.getYear());
+                }
+            }
+        }
+        
+        List<TaxFile> taxFiles = new ArrayList<>(candidates.size());
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (int index : candidates.values()) {
+            CreateTaxFileRequest request = requests.get(index);
+            boolean hasRefund = request.getRefund().compareTo(BigDecimal.ZERO) > 0;
             
-            refund = refundRepository.save(refund);
-            log.info("Created refund record with ETA: {}", refund.getRefundEta());
+            taxFiles.add(TaxFile.builder()
+                    .id(UuidV7.randomUuid())
+                    .userId(request.getUserId())
+                    .year(request.getYear())
+                    .income(request.getIncome())
+                    .expense(request.getExpense())
+                    .taxRate(request.getTaxRate())
+                    .deducted(request.getDeducted())
+                    .refundAmount(request.getRefund())
+                    .taxStatus(hasRefund ? TaxFile.TaxStatus.PENDING : TaxFile.TaxStatus.COMPLETED)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+        
+        // Years filed since the query above conflict and are not inserted
+        Set<UUID> inserted = taxFiles.isEmpty() ? Set.of() : taxFileBatchRepository.insertTaxFiles(taxFiles);
+        List<TaxFile> created = new ArrayList<>(inserted.size());
+        List<Integer> createdIndexes = new ArrayList<>(inserted.size());
+        List<Refund> refunds = new ArrayList<>();
+        int position = 0;
+        for (int index : candidates.values()) {
+            TaxFile taxFile = taxFiles.get(position++);
+            if (!inserted.contains(taxFile.getId())) {
+                results[index] = itemResult(index, requests.get(index), BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, null,
+                        "Tax file already exists for user: " + taxFile.getUserId() + " and year: " + taxFile.getYear());
+                continue;
+            }
+            created.add(taxFile);
+            createdIndexes.add(index);
             
-            // Send Pub/Sub message for refund creation
-            // Message format matches batch job database structure: file_id, status, error_message
-            try {
-                String message = String.format(
-                    "{\"file_id\":\"%s\",\"status\":\"%s\",\"error_message\":null,\"refund_amount\":\"%s\",\"user_id\":\"%s\",\"year\":%d,\"eta\":\"%s\",\"timestamp\":\"%s\"}",
-                    taxFile.getId(),  // file_id - matches batch job database field
-                    "pending",        // status - matches batch job database field  
-                    request.getRefund().toString(),  // Convert to string
-                    taxFile.getUserId(),
-                    taxFile.getYear(),
-                    refund.getRefundEta(),
-                    java.time.Instant.now().toString()
-                );
-                
-                log.info("About to call pubSubService.publishSendRefund with message: {}", message);
-                pubSubService.publishSendRefund(message);
-                log.info("Published refund creation event to Pub/Sub for file ID: {}", taxFile.getId());
-            } catch (Exception e) {
-                log.error("Failed to publish refund creation event for file ID: {}", taxFile.getId(), e);
-                // Don't fail the transaction if Pub/Sub fails
+            if (taxFile.getTaxStatus() == TaxFile.TaxStatus.PENDING) {
+                Refund refund = Refund.builder()
+                        .id(UuidV7.randomUuid())
+                        .taxFile(taxFile)
+                        .refundStatus(Refund.RefundStatus.PENDING)
+                        .createdAt(now)
+                        .updatedAt(now)
+                        .build();
+                taxFile.setRefund(refund);
+                refunds.add(refund);
             }
         }
         
-        // Fetch the complete tax file with refund
-        TaxFile completeTaxFile = taxFileRepository.findByUserIdAndYearWithRefund(request.getUserId(), request.getYear())
-                .orElseThrow(() -> new RuntimeException("Failed to retrieve created tax file"));
+        // One model pass for every refund in the batch
+        List<LocalDateTime> etas = etaPredictor.predictETAs(refunds.stream().map(Refund::getTaxFile).toList());
+        for (int i = 0; i < refunds.size(); i++) {
+            refunds.get(i).setRefundEta(etas.get(i));
+        }
         
-        TaxFileResponse response = TaxFileResponse.fromEntity(completeTaxFile);
+        if (!refunds.isEmpty()) {
+            taxFileBatchRepository.insertRefunds(refunds);
+        }
+        log.info("Inserted {} tax files and {} refunds in batch", created.size(), refunds.size());
         
-        // Cache the response for future reads
-        cacheService.putInCache(request.getUserId(), request.getYear(), response);
+        // Responses are built from the rows just written, no re-fetch needed
+        List<TaxFileResponse> responses = new ArrayList<>(created.size());
+        for (int i = 0; i < created.size(); i++) {
+            int index = createdIndexes.get(i);
+            TaxFileResponse response = TaxFileResponse.fromEntity(created.get(i));
+            responses.add(response);
+            results[index] = itemResult(index, requests.get(index), BatchCreateTaxFileResponse.ItemStatus.CREATED, response, null);
+        }
         
-        return response;
+        if (!refunds.isEmpty()) {
+            List<OutboxMessage> messages = refunds.stream()
+                    .map(refund -> OutboxMessage.of(OutboxMessage.Topic.SEND_REFUND, buildSendRefundMessage(refund.getTaxFile(), refund)))
+                    .collect(Collectors.toList());
+            taxFileBatchRepository.insertOutboxMessages(messages);
+            log.info("Queued {} refund creation events", messages.size());
+        }
+        
+        cacheService.putInCacheBulk(responses);
+        evictTaxUsersAfterCommit(responses.stream().map(TaxFileResponse::getUserId).collect(Collectors.toSet()));
+        existenceFilter.recordCreated(responses.stream()
+                .map(response -> new TaxFileKey(response.getUserId(), response.getYear()))
+                .collect(Collectors.toList()));
+        
+        return BatchCreateTaxFileResponse.builder()
+                .results(Arrays.asList(results))
+                .created(responses.size())
+                .failed(requests.size() - responses.size())
+                .build();
     }
     
     public TaxFileResponse getTaxFile(String userId, Integer year) {
         log.info("Retrieving tax file for user: {} and year: {}", userId, year);
         
-        // Try to get from cache first
+        // Try to get from cache first; a year remembered as missing throws here
         TaxFileResponse cachedResponse = cacheService.getFromCache(userId, year);
         if (cachedResponse != null) {
             log.debug("Returning cached tax file for user: {} and year: {}", userId, year);
             return cachedResponse;
         }
         
-        // Cache miss - fetch from database
-        TaxFile taxFile = taxFileRepository.findByUserIdAndYearWithRefund(userId, year)
-                .orElseThrow(() -> new RuntimeException("Tax file not found for user: " + userId + " and year: " + year));
+        // Filings that do not exist are answered without Postgres. The cache is asked first, since
+        // a tax file whose creation announcement this instance missed is cached when it is created
+        if (!existenceFilter.mightExist(userId, year)) {
+            log.debug("Existence filter rules out tax file for user: {} and year: {}", userId, year);
+            throw new TaxFileNotFoundException(userId, year);
+        }
         
-        TaxFileResponse response = TaxFileResponse.fromEntity(taxFile);
+        // Cache miss - concurrent misses for a key share one load on this instance, and the cache
+        // coordinates that load with other instances
+        return taxFileLoads.execute(userId + ":" + year, () -> cacheService.loadOnMiss(userId, year, () -> {
+            TaxFile taxFile = taxFileRepository.findByUserIdAndYearWithRefund(userId, year)
+                    .orElseThrow(() -> new TaxFileNotFoundException(userId, year));
+            return TaxFileResponse.fromEntity(taxFile);
+        }));
+    }
+    
+    /**
+     * Bulk variant of {@link #getTaxFile} for internal jobs that read many tax files at once.
+     * Cached keys are read with one Redis round trip, the misses with one query, and what the
+     * query found is cached with one more round trip. Keys without a tax file are reported
+     * rather than failing the lookup; uncached keys the existence filter rules out are not queried.
+     */
+    public TaxFileLookupResponse lookupTaxFiles(List<TaxFileKey> keys) {
+        log.info("Looking up {} tax files", keys.size());
         
-        // Cache the response for future reads
-        cacheService.putInCache(userId, year, response);
+        Set<TaxFileKey> requested = new LinkedHashSet<>(keys);
+        Map<String, Set<Integer>> yearsByUserId = new HashMap<>();
+        for (TaxFileKey key : requested) {
+            yearsByUserId.computeIfAbsent(key.getUserId(), userId -> new TreeSet<>()).add(key.getYear());
+        }
         
-        return response;
+        Map<TaxFileKey, TaxFileResponse> found = new HashMap<>();
+        for (TaxFileResponse response : cacheService.getFromCacheBulk(yearsByUserId)) {
+            found.put(new TaxFileKey(response.getUserId(), response.getYear()), response);
+        }
+        
+        List<TaxFileKey> misses = requested.stream()
+                .filter(key -> !found.containsKey(key))
+                .filter(key -> existenceFilter.mightExist(key.getUserId(), key.getYear()))
+                .toList();
+        if (!misses.isEmpty()) {
+            List<TaxFileResponse> loaded = taxFileBatchRepository.findTaxFilesWithRefund(misses);
+            for (TaxFileResponse response : loaded) {
+                found.put(new TaxFileKey(response.getUserId(), response.getYear()), response);
+            }
+            cacheService.putInCacheBulk(loaded);
+            log.debug("Loaded {} of {} uncached tax files", loaded.size(), misses.size());
+        }
+        
+        List<TaxFileResponse> taxFiles = new ArrayList<>(found.size());
+        List<TaxFileKey> notFound = new ArrayList<>();
+        for (TaxFileKey key : requested) {
+            TaxFileResponse response = found.get(key);
+            if (response != null) {
+                taxFiles.add(response);
+            } else {
+                notFound.add(key);
+            }
+        }
+        
+        return TaxFileLookupResponse.builder()
+                .taxFiles(taxFiles)
+                .notFound(notFound)
+                .build();
     }
     
     public TaxUserResponse getTaxFilesByUserId(String userId) {
         log.info("Retrieving all tax files for user: {}", userId);
         
+        // Concurrent reads for a user share one cache lookup, and one load on a miss
+        return taxUserLoads.execute(userId, () -> cacheService.getTaxUserFromCache(userId, () -> loadTaxUser(userId)));
+    }
+    
+    private TaxUserResponse loadTaxUser(String userId) {
         // Fetch user information
         User user = userRepository.findByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
@@ -150,6 +365,59 @@ public class TaxFileService {
                 .build();
     }
     
+    /**
+     * Message format matches batch job database structure: file_id, status, error_message
+     */
+    private String buildSendRefundMessage(TaxFile taxFile, Refund refund) {
+        return String.format(
+            "{\"file_id\":\"%s\",\"status\":\"%s\",\"error_message\":null,\"refund_amount\":\"%s\",\"user_id\":\"%s\",\"year\":%d,\"eta\":\"%s\",\"timestamp\":\"%s\"}",
+            taxFile.getId(),  // file_id - matches batch job database field
+            "pending",        // status - matches batch job database field  
+            taxFile.getRefundAmount().toString(),  // Convert to string
+            taxFile.getUserId(),
+            taxFile.getYear(),
+            refund.getRefundEta(),
+            java.time.Instant.now().toString()
+        );
+    }
+    
+    /**
+     * Drop the users' cached {@link TaxUserResponse} once their new tax files are committed, so a
+     * concurrent read cannot cache the aggregate without them again. Runs immediately outside a transaction.
+     */
+    private void evictTaxUsersAfterCommit(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cacheService.evictTaxUsersFromCache(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheService.evictTaxUsersFromCache(userIds);
+            }
+        });
+    }
+    
+    private static String userYearKey(String userId, Integer year) {
+        return userId + ":" + year;
+    }
+    
+    private static BatchCreateTaxFileResponse.ItemResult itemResult(int index, CreateTaxFileRequest request,
+                                                                     BatchCreateTaxFileResponse.ItemStatus status,
+                                                                     TaxFileResponse taxFile, String error) {
+        return BatchCreateTaxFileResponse.ItemResult.builder()
+                .index(index)
+                .userId(request != null ? request.getUserId() : null)
+                .year(request != null ? request.getYear() : null)
+                .status(status)
+                .taxFile(taxFile)
+                .error(error)
+                .build();
+    }
+    
     private TaxUserResponse.TaxFileSummary convertToTaxFileSummary(TaxFile taxFile) {
         TaxUserResponse.TaxFileSummary.TaxFileSummaryBuilder builder = TaxUserResponse.TaxFileSummary.builder()
                 .fileId(taxFile.getId().toString())
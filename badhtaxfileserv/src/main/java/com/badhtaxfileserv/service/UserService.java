@@ -2,23 +2,45 @@ package com.badhtaxfileserv.service;
 
 import com.badhtaxfileserv.dto.AllUsersResponse;
 import com.badhtaxfileserv.dto.CreateUserRequest;
+import com.badhtaxfileserv.dto.UserRefundStatusResponse;
 import com.badhtaxfileserv.dto.UserResponse;
 import com.badhtaxfileserv.entity.User;
+import com.badhtaxfileserv.repository.UserRefundStatusRepository;
 import com.badhtaxfileserv.repository.UserRepository;
+import com.badhtaxfileserv.repository.UserStreamRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "service.invocations", description = "Service method latency")
 public class UserService {
     
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    
     private final UserRepository userRepository;
+    private final UserStreamRepository userStreamRepository;
+    private final UserRefundStatusRepository userRefundStatusRepository;
+    private final ObjectMapper objectMapper;
     
     @Transactional
     public UserResponse createUser(CreateUserRequest request) {
@@ -58,6 +80,105 @@ public class UserService {
                 .build();
     }
     
+    /**
+     * One page of users, newest first, using keyset pagination on (created_at, user_id).
+     * The cursor is the opaque token returned as nextCursor by the previous page.
+     */
+    @Transactional(readOnly = true)
+    public AllUsersResponse getUsersPage(int limit, String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        log.info("Retrieving users page: limit={}, cursor={}", limit, cursor);
+        
+        // Fetch one extra row to learn whether another page exists
+        List<User> users;
+        if (cursor == null || cursor.isEmpty()) {
+            users = userRepository.findAllByOrderByCreatedAtDescUserIdDesc(PageRequest.of(0, limit + 1));
+        } else {
+            UserCursor position = UserCursor.decode(cursor);
+            users = userRepository.findPageAfter(position.createdAtWithOffset(), position.userId(), limit + 1);
+        }
+        
+        boolean hasMore = users.size() > limit;
+        List<UserResponse> userResponses = users.stream()
+                .limit(limit)
+                .map(this::mapToUserResponse)
+                .collect(Collectors.toList());
+        
+        String nextCursor = null;
+        if (hasMore) {
+            UserResponse last = userResponses.get(userResponses.size() - 1);
+            nextCursor = new UserCursor(last.getCreatedAt(), last.getUserId()).encode();
+        }
+        
+        return AllUsersResponse.builder()
+                .users(userResponses)
+                .totalUsers(userResponses.size())
+                .nextCursor(nextCursor)
+                .build();
+    }
+    
+    /**
+     * Write every user as an {@link AllUsersResponse}-shaped JSON document, row by row
+     * from a JDBC cursor, so heap use does not depend on the number of users.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllUsers(OutputStream outputStream) throws IOException {
+        log.info("Streaming all users");
+        
+        int[] count = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("users");
+            
+            userStreamRepository.forEachOrderByCreatedAtDesc(STREAM_FETCH_SIZE, user -> {
+                try {
+                    objectMapper.writeValue(generator, mapToUserResponse(user));
+                    if (++count[0] % STREAM_FETCH_SIZE == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            
+            generator.writeEndArray();
+            generator.writeNumberField("totalUsers", count[0]);
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Streamed {} users", count[0]);
+    }
+    
+    /**
+     * Each user's most recent tax file with its refund status and amount, one page at a time
+     * in user_id order. Replaces a per-user tax file lookup with a single query per page.
+     */
+    @Transactional(readOnly = true)
+    public UserRefundStatusResponse getLatestRefundStatuses(int limit, String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        log.info("Retrieving latest refund statuses: limit={}, cursor={}", limit, cursor);
+        
+        String afterUserId = cursor == null || cursor.isEmpty() ? "" : decodeUserIdCursor(cursor);
+        List<UserRefundStatusResponse.UserRefundStatus> statuses =
+                userRefundStatusRepository.findPageAfter(afterUserId, limit + 1);
+        
+        boolean hasMore = statuses.size() > limit;
+        if (hasMore) {
+            statuses = statuses.subList(0, limit);
+        }
+        
+        return UserRefundStatusResponse.builder()
+                .users(statuses)
+                .totalUsers(statuses.size())
+                .nextCursor(hasMore ? encodeUserIdCursor(statuses.get(limit - 1).getUserId()) : null)
+                .build();
+    }
+    
     @Transactional(readOnly = true)
     public UserResponse getUserById(String userId) {
         log.info("Retrieving user with ID: {}", userId);
@@ -77,4 +198,44 @@ public class UserService {
                 .updatedAt(user.getUpdatedAt())
                 .build();
     }
+    
+    private static String encodeUserIdCursor(String userId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String decodeUserIdCursor(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+    
+    /**
+     * Keyset position (created_at, user_id) of the last user on a page, encoded as URL-safe base64.
+     */
+    record UserCursor(LocalDateTime createdAt, String userId) {
+        
+        /**
+         * The position as an instant. Entity timestamps are read from timestamptz in the JVM time zone.
+         */
+        OffsetDateTime createdAtWithOffset() {
+            return createdAt.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+        }
+        
+        String encode() {
+            String raw = createdAt + "|" + userId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static UserCursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new UserCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package com.badhtaxfileserv.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over strings. {@link #mightContain} never answers false for a key that
+ * was {@link #put}; it answers true for a key that was not with roughly the probability the filter
+ * was sized for, rising once more keys than expected have been added.
+ *
+ * Bit positions come from one 64-bit hash split into two halves and combined as
+ * {@code h1 + i * h2} (Kirsch and Mitzenmacher), so a lookup hashes the key once.
+ */
+public class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // Bit indexes are non-negative ints, so 2^31 bits (256 MB) is as large as the filter gets
+    private static final int MAX_WORDS = 1 << 25;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + falsePositiveProbability);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(MAX_WORDS, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitCount;
+    }
+
+    public int hashFunctions() {
+        return hashCount;
+    }
+
+    private long index(int combined) {
+        // Flip negative values rather than taking abs, which leaves Integer.MIN_VALUE negative
+        return (combined < 0 ? ~combined : combined) % bitCount;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 64-bit mix so both halves are
+     * usable as independent hashes.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb53a1dc62cd3L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,460 @@
+package com.badhtaxfileserv.util;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoding of cached tax file values. {@link Format#BINARY} is a fixed field order with varints,
+ * nullable markers and no field names, deflated when it grows past the compression threshold.
+ * {@link Format#JSON} is the encoding used before this codec: the response as a JSON string,
+ * written again as a JSON string literal.
+ *
+ * Binary values start with a format version byte and a flags byte. Decoding accepts every known
+ * format whatever the configured one is, so instances can switch formats while others still write
+ * the previous one. A new layout takes the next version number.
+ */
+public class CacheValueCodec {
+
+    public enum Format {
+        JSON, BINARY
+    }
+
+    static final byte BINARY_V1 = 1;
+    private static final byte FLAG_DEFLATED = 1;
+    // Legacy values are JSON string literals, so they always start with a quote
+    private static final byte LEGACY_JSON = '"';
+
+    // zlib streams are costly to set up, so they are reused; the pools grow to the peak concurrency
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private final ObjectMapper objectMapper;
+    private final Format format;
+    private final int compressionThreshold;
+
+    public CacheValueCodec(ObjectMapper objectMapper, Format format, int compressionThreshold) {
+        this.objectMapper = objectMapper;
+        this.format = format;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public byte[] encode(TaxFileResponse response) {
+        if (format == Format.JSON) {
+            return toLegacyJson(response);
+        }
+        Writer out = new Writer();
+        writeTaxFile(out, response);
+        return frame(out);
+    }
+
+    public TaxFileResponse decodeTaxFile(byte[] bytes) {
+        if (isLegacyJson(bytes)) {
+            return fromLegacyJson(bytes, TaxFileResponse.class);
+        }
+        try {
+            return readTaxFile(open(bytes));
+        } catch (RuntimeException e) {
+            throw new SerializationException("Unreadable cached tax file", e);
+        }
+    }
+
+    public byte[] encode(TaxUserResponse response) {
+        if (format == Format.JSON) {
+            return toLegacyJson(response);
+        }
+        Writer out = new Writer();
+        out.writeString(response.getUserId());
+        out.writeString(response.getFirstName());
+        out.writeString(response.getLastName());
+        out.writeVarLong(response.getTotalFiles());
+        List<TaxUserResponse.TaxFileSummary> taxFiles = response.getTaxFiles();
+        out.writeSize(taxFiles);
+        if (taxFiles != null) {
+            for (TaxUserResponse.TaxFileSummary summary : taxFiles) {
+                writeSummary(out, summary);
+            }
+        }
+        return frame(out);
+    }
+
+    public TaxUserResponse decodeTaxUser(byte[] bytes) {
+        if (isLegacyJson(bytes)) {
+            return fromLegacyJson(bytes, TaxUserResponse.class);
+        }
+        try {
+            Reader in = open(bytes);
+            TaxUserResponse.TaxUserResponseBuilder builder = TaxUserResponse.builder()
+                    .userId(in.readString())
+                    .firstName(in.readString())
+                    .lastName(in.readString())
+                    .totalFiles((int) in.readVarLong());
+            int size = in.readSize();
+            if (size >= 0) {
+                List<TaxUserResponse.TaxFileSummary> taxFiles = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    taxFiles.add(readSummary(in));
+                }
+                builder.taxFiles(taxFiles);
+            }
+            return builder.build();
+        } catch (RuntimeException e) {
+            throw new SerializationException("Unreadable cached tax user", e);
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    private static void writeTaxFile(Writer out, TaxFileResponse response) {
+        out.writeString(response.getFileId());
+        out.writeString(response.getUserId());
+        out.writeInteger(response.getYear());
+        out.writeDecimal(response.getIncome());
+        out.writeDecimal(response.getExpense());
+        out.writeDecimal(response.getTaxRate());
+        out.writeDecimal(response.getDeducted());
+        out.writeDecimal(response.getRefund());
+        out.writeString(response.getTaxStatus());
+        out.writeString(response.getRefundStatus());
+        List<TaxFileResponse.ErrorDetail> errors = response.getRefundErrors();
+        out.writeSize(errors);
+        if (errors != null) {
+            for (TaxFileResponse.ErrorDetail error : errors) {
+                out.writeString(error.getCode());
+                out.writeString(error.getMessage());
+            }
+        }
+        out.writeDateTime(response.getRefundEta());
+        out.writeDateTime(response.getRefundUpdatedAt());
+        out.writeDateTime(response.getCreatedAt());
+        out.writeDateTime(response.getUpdatedAt());
+    }
+
+    private static TaxFileResponse readTaxFile(Reader in) {
+        TaxFileResponse.TaxFileResponseBuilder builder = TaxFileResponse.builder()
+                .fileId(in.readString())
+                .userId(in.readString())
+                .year(in.readInteger())
+                .income(in.readDecimal())
+                .expense(in.readDecimal())
+                .taxRate(in.readDecimal())
+                .deducted(in.readDecimal())
+                .refund(in.readDecimal())
+                .taxStatus(in.readString())
+                .refundStatus(in.readString());
+        int errorCount = in.readSize();
+        if (errorCount >= 0) {
+            List<TaxFileResponse.ErrorDetail> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(new TaxFileResponse.ErrorDetail(in.readString(), in.readString()));
+            }
+            builder.refundErrors(errors);
+        }
+        return builder
+                .refundEta(in.readDateTime())
+                .refundUpdatedAt(in.readDateTime())
+                .createdAt(in.readDateTime())
+                .updatedAt(in.readDateTime())
+                .build();
+    }
+
+    private static void writeSummary(Writer out, TaxUserResponse.TaxFileSummary summary) {
+        out.writeString(summary.getFileId());
+        out.writeInteger(summary.getYear());
+        out.writeDecimal(summary.getIncome());
+        out.writeDecimal(summary.getExpense());
+        out.writeDecimal(summary.getTaxRate());
+        out.writeDecimal(summary.getDeducted());
+        out.writeDecimal(summary.getRefundAmount());
+        out.writeString(summary.getTaxStatus());
+        out.writeString(summary.getRefundStatus());
+        out.writeDateTime(summary.getRefundEta());
+        out.writeDateTime(summary.getCreatedAt());
+        out.writeDateTime(summary.getUpdatedAt());
+    }
+
+    private static TaxUserResponse.TaxFileSummary readSummary(Reader in) {
+        return TaxUserResponse.TaxFileSummary.builder()
+                .fileId(in.readString())
+                .year(in.readInteger())
+                .income(in.readDecimal())
+                .expense(in.readDecimal())
+                .taxRate(in.readDecimal())
+                .deducted(in.readDecimal())
+                .refundAmount(in.readDecimal())
+                .taxStatus(in.readString())
+                .refundStatus(in.readString())
+                .refundEta(in.readDateTime())
+                .createdAt(in.readDateTime())
+                .updatedAt(in.readDateTime())
+                .build();
+    }
+
+    /**
+     * Version and flags header, then the body; bodies past the threshold are deflated when that
+     * makes them smaller, prefixed with their inflated length.
+     */
+    private byte[] frame(Writer out) {
+        int length = out.bodyLength();
+        if (length > compressionThreshold) {
+            Deflater deflater = DEFLATERS.poll();
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED, true);
+            }
+            try {
+                deflater.setInput(out.buffer(), Writer.HEADER_LENGTH, length);
+                deflater.finish();
+                byte[] deflated = new byte[length];
+                int deflatedLength = deflater.deflate(deflated);
+                if (deflater.finished() && deflatedLength + 5 < length) {
+                    Writer framed = new Writer(deflatedLength + 8);
+                    framed.writeVarLong(length);
+                    framed.write(deflated, 0, deflatedLength);
+                    return framed.toByteArray(FLAG_DEFLATED);
+                }
+            } finally {
+                deflater.reset();
+                DEFLATERS.offer(deflater);
+            }
+        }
+        return out.toByteArray((byte) 0);
+    }
+
+    private static Reader open(byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != BINARY_V1) {
+            throw new SerializationException("Unknown cache value format: " + (bytes.length == 0 ? "empty" : bytes[0]));
+        }
+        if ((bytes[1] & FLAG_DEFLATED) == 0) {
+            return new Reader(bytes, 2);
+        }
+
+        Reader header = new Reader(bytes, 2);
+        byte[] inflated = new byte[(int) header.readVarLong()];
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(bytes, header.position, bytes.length - header.position);
+            if (inflater.inflate(inflated) != inflated.length) {
+                throw new SerializationException("Truncated compressed cache value");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed cache value", e);
+        } finally {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+        }
+        return new Reader(inflated, 0);
+    }
+
+    private byte[] toLegacyJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(objectMapper.writeValueAsString(value));
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cache value as JSON", e);
+        }
+    }
+
+    private <T> T fromLegacyJson(byte[] bytes, Class<T> type) {
+        try {
+            return objectMapper.readValue(objectMapper.readValue(bytes, String.class), type);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read cached JSON value", e);
+        }
+    }
+
+    private static boolean isLegacyJson(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == LEGACY_JSON;
+    }
+
+    /**
+     * Varints are zigzag encoded so small negative numbers stay short. Strings and lists are
+     * written as length plus one, 0 meaning null; other nullable values are preceded by a presence byte.
+     */
+    private static final class Writer {
+
+        // Room for the version and flags bytes, filled in by toByteArray
+        static final int HEADER_LENGTH = 2;
+
+        private byte[] buf;
+        private int count = HEADER_LENGTH;
+
+        Writer() {
+            this(256);
+        }
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        int bodyLength() {
+            return count - HEADER_LENGTH;
+        }
+
+        byte[] toByteArray(byte flags) {
+            buf[0] = BINARY_V1;
+            buf[1] = flags;
+            return Arrays.copyOf(buf, count);
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buf, count, length);
+            count += length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            write((int) zigzag);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeInteger(Integer value) {
+            if (writePresence(value)) {
+                writeVarLong(value);
+            }
+        }
+
+        void writeSize(List<?> values) {
+            writeVarLong(values == null ? 0 : values.size() + 1L);
+        }
+
+        void writeDecimal(BigDecimal value) {
+            if (!writePresence(value)) {
+                return;
+            }
+            writeVarLong(value.scale());
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(unscaled.length);
+            write(unscaled, 0, unscaled.length);
+        }
+
+        void writeDateTime(LocalDateTime value) {
+            if (writePresence(value)) {
+                writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(value.getNano());
+            }
+        }
+
+        private boolean writePresence(Object value) {
+            write(value == null ? 0 : 1);
+            return value != null;
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 63) {
+                    throw new SerializationException("Malformed varint in cache value");
+                }
+                byte b = bytes[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+        }
+
+        String readString() {
+            long marker = readVarLong();
+            if (marker == 0) {
+                return null;
+            }
+            int length = (int) (marker - 1);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Integer readInteger() {
+            return readPresence() ? (int) readVarLong() : null;
+        }
+
+        int readSize() {
+            return (int) readVarLong() - 1;
+        }
+
+        BigDecimal readDecimal() {
+            if (!readPresence()) {
+                return null;
+            }
+            int scale = (int) readVarLong();
+            int length = (int) readVarLong();
+            if (length <= 0 || position + length > bytes.length) {
+                throw new SerializationException("Malformed decimal in cache value");
+            }
+            BigInteger unscaled = new BigInteger(Arrays.copyOfRange(bytes, position, position + length));
+            position += length;
+            return new BigDecimal(unscaled, scale);
+        }
+
+        LocalDateTime readDateTime() {
+            if (!readPresence()) {
+                return null;
+            }
+            return LocalDateTime.ofEpochSecond(readVarLong(), (int) readVarLong(), ZoneOffset.UTC);
+        }
+
+        private boolean readPresence() {
+            return bytes[position++] != 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.badhtaxfileserv.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Mergeable histogram of whole days, 0 to {@link #MAX_DAYS} with one overflow bin. Percentiles are
+ * exact at day resolution, two histograms merge by adding bins, and the serialized form keeps only
+ * non-empty bins as varint (day gap, count) pairs, a few dozen bytes for a typical bucket.
+ */
+public final class DaysHistogram {
+
+    public static final int MAX_DAYS = 365;
+
+    private final long[] counts = new long[MAX_DAYS + 2];
+    private long total;
+
+    public synchronized void add(long days) {
+        add(days, 1);
+    }
+
+    public synchronized void add(long days, long count) {
+        int bin = days < 0 ? 0 : (int) Math.min(days, MAX_DAYS + 1);
+        counts[bin] += count;
+        total += count;
+    }
+
+    public void merge(DaysHistogram other) {
+        long[] snapshot;
+        synchronized (other) {
+            snapshot = other.counts.clone();
+        }
+        synchronized (this) {
+            for (int bin = 0; bin < snapshot.length; bin++) {
+                counts[bin] += snapshot[bin];
+                total += snapshot[bin];
+            }
+        }
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Smallest day count at or below which {@code percentile} percent of samples fall, or -1 when empty.
+     */
+    public synchronized int percentile(double percentile) {
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int bin = 0; bin < counts.length; bin++) {
+            seen += counts[bin];
+            if (seen >= rank) {
+                return bin;
+            }
+        }
+        return MAX_DAYS + 1;
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int previous = -1;
+        for (int bin = 0; bin < counts.length; bin++) {
+            if (counts[bin] != 0) {
+                writeVarLong(out, bin - previous);
+                writeVarLong(out, counts[bin]);
+                previous = bin;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static DaysHistogram fromBytes(byte[] bytes) {
+        DaysHistogram histogram = new DaysHistogram();
+        int[] position = {0};
+        int bin = -1;
+        while (position[0] < bytes.length) {
+            bin += (int) readVarLong(bytes, position);
+            histogram.add(bin, readVarLong(bytes, position));
+        }
+        return histogram;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
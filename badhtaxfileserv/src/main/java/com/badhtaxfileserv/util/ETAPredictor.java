@@ -1,20 +1,193 @@
 package com.badhtaxfileserv.util;
 
+import com.badhtaxfileserv.entity.TaxFile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
 import java.util.Random;
 
+/**
+ * Predicts refund ETAs with the XGBoost model trained in badhrefundpredictserv, scored in-process.
+ * The model is loaded from {@code eta.model.path} at startup; without one, ETAs fall back to a
+ * random 10 to 60 days.
+ *
+ * With {@code eta.mode=statistics} the ETA is a percentile of observed days-to-approval from
+ * {@link RefundEtaStatistics}, falling back to the model (or random) for buckets with too few samples.
+ */
 @Component
+@Slf4j
 public class ETAPredictor {
     
     private static final Random RANDOM = new Random();
     private static final int MIN_DAYS = 10;
     private static final int MAX_DAYS = 60;
     
+    // Feature order of train_model.py / api.py
+    static final List<String> FEATURE_NAMES = List.of(
+            "tax_year", "income", "expense", "tax_rate_percent", "deducted", "refund_amount",
+            "created_at_ordinal", "created_month", "created_weekday", "is_weekend");
+    private static final int FEATURE_COUNT = FEATURE_NAMES.size();
+    // Reused feature row for single predictions; predict() reads it before returning
+    private static final ThreadLocal<float[]> FEATURE_ROW = ThreadLocal.withInitial(() -> new float[FEATURE_COUNT]);
+    // Python date.toordinal() of 1970-01-01
+    private static final long EPOCH_ORDINAL = 719_163;
+    private static final String STATISTICS_MODE = "statistics";
+    
+    @Value("${eta.model.path:}")
+    private String modelPath;
+    
+    @Value("${eta.mode:model}")
+    private String mode;
+    
+    @Value("${eta.statistics.percentile:50}")
+    private double statisticsPercentile;
+    
+    @Autowired(required = false)
+    private ResourceLoader resourceLoader;
+    
+    @Autowired(required = false)
+    private RefundEtaStatistics statistics;
+    
+    private volatile TreeEnsembleModel model;
+    
+    @PostConstruct
+    public void loadModel() {
+        if (modelPath == null || modelPath.isEmpty() || resourceLoader == null) {
+            log.info("No ETA model configured, using random ETAs");
+            return;
+        }
+        Resource resource = resourceLoader.getResource(modelPath);
+        try (InputStream in = resource.getInputStream()) {
+            setModel(TreeEnsembleModel.load(in));
+            log.info("Loaded ETA model from {}: {} trees", modelPath, model.getTreeCount());
+        } catch (Exception e) {
+            log.error("Failed to load ETA model from {}, using random ETAs", modelPath, e);
+        }
+    }
+    
+    public void setModel(TreeEnsembleModel model) {
+        if (model.getFeatureCount() != FEATURE_COUNT) {
+            throw new IllegalArgumentException("ETA model expects " + model.getFeatureCount()
+                    + " features, but " + FEATURE_COUNT + " are computed");
+        }
+        if (!model.getFeatureNames().isEmpty() && !model.getFeatureNames().equals(FEATURE_NAMES)) {
+            throw new IllegalArgumentException("ETA model features " + model.getFeatureNames()
+                    + " do not match " + FEATURE_NAMES);
+        }
+        this.model = model;
+    }
+    
     public LocalDateTime predictETA() {
         int daysToAdd = RANDOM.nextInt(MAX_DAYS - MIN_DAYS + 1) + MIN_DAYS;
         return LocalDateTime.now().plusDays(daysToAdd);
     }
+    
+    /**
+     * ETA for a new filing, counted from its creation time (now if not yet persisted).
+     */
+    public LocalDateTime predictETA(TaxFile taxFile) {
+        LocalDateTime createdAt = createdAt(taxFile);
+        LocalDateTime statisticsEta = statisticsEta(taxFile, createdAt);
+        if (statisticsEta != null) {
+            return statisticsEta;
+        }
+        TreeEnsembleModel current = model;
+        if (current == null) {
+            return predictETA();
+        }
+        float[] features = FEATURE_ROW.get();
+        writeFeatures(taxFile, createdAt, features, 0);
+        return toEta(createdAt, current.predict(features));
+    }
+    
+    /**
+     * ETAs for a bulk create, scored in one pass over a single feature matrix.
+     */
+    public List<LocalDateTime> predictETAs(List<TaxFile> taxFiles) {
+        List<LocalDateTime> etas = new ArrayList<>(taxFiles.size());
+        TreeEnsembleModel current = model;
+        if (current == null || useStatistics()) {
+            taxFiles.forEach(taxFile -> etas.add(predictETA(taxFile)));
+            return etas;
+        }
+        
+        float[] rows = new float[taxFiles.size() * FEATURE_COUNT];
+        LocalDateTime[] createdAt = new LocalDateTime[taxFiles.size()];
+        for (int i = 0; i < taxFiles.size(); i++) {
+            createdAt[i] = createdAt(taxFiles.get(i));
+            writeFeatures(taxFiles.get(i), createdAt[i], rows, i * FEATURE_COUNT);
+        }
+        float[] days = new float[taxFiles.size()];
+        current.predictBatch(rows, FEATURE_COUNT, days);
+        for (int i = 0; i < days.length; i++) {
+            etas.add(toEta(createdAt[i], days[i]));
+        }
+        return etas;
+    }
+    
+    public boolean isModelLoaded() {
+        return model != null;
+    }
+    
+    void setStatistics(RefundEtaStatistics statistics, String mode, double percentile) {
+        this.statistics = statistics;
+        this.mode = mode;
+        this.statisticsPercentile = percentile;
+    }
+    
+    private boolean useStatistics() {
+        return STATISTICS_MODE.equals(mode) && statistics != null && statistics.isReady();
+    }
+    
+    private LocalDateTime statisticsEta(TaxFile taxFile, LocalDateTime createdAt) {
+        if (!useStatistics() || taxFile.getYear() == null) {
+            return null;
+        }
+        OptionalInt days = statistics.percentileDays(taxFile.getYear(), createdAt, taxFile.getRefundAmount(), statisticsPercentile);
+        return days.isPresent() ? createdAt.plusDays(Math.max(1, days.getAsInt())) : null;
+    }
+    
+    /**
+     * Same feature engineering as api.py; created_weekday is Monday = 0 like Python's weekday().
+     */
+    static void writeFeatures(TaxFile taxFile, LocalDateTime createdAt, float[] out, int offset) {
+        LocalDate created = createdAt.toLocalDate();
+        DayOfWeek weekday = created.getDayOfWeek();
+        out[offset] = taxFile.getYear() == null ? 0f : taxFile.getYear();
+        out[offset + 1] = toFloat(taxFile.getIncome());
+        out[offset + 2] = toFloat(taxFile.getExpense());
+        out[offset + 3] = toFloat(taxFile.getTaxRate());
+        out[offset + 4] = toFloat(taxFile.getDeducted());
+        out[offset + 5] = toFloat(taxFile.getRefundAmount());
+        out[offset + 6] = created.toEpochDay() + EPOCH_ORDINAL;
+        out[offset + 7] = created.getMonthValue();
+        out[offset + 8] = weekday.getValue() - 1;
+        out[offset + 9] = weekday.getValue() >= DayOfWeek.SATURDAY.getValue() ? 1f : 0f;
+    }
+    
+    private static LocalDateTime createdAt(TaxFile taxFile) {
+        return taxFile.getCreatedAt() != null ? taxFile.getCreatedAt() : LocalDateTime.now();
+    }
+    
+    private static LocalDateTime toEta(LocalDateTime createdAt, float predictedDays) {
+        return createdAt.plusDays(Math.max(1, Math.round(predictedDays)));
+    }
+    
+    // api.py fills missing values with 0
+    private static float toFloat(BigDecimal value) {
+        return value == null ? 0f : value.floatValue();
+    }
 }
-
@@ -0,0 +1,208 @@
+package com.badhtaxfileserv.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Empirical days-to-approval distribution, learned from REFUND_APPROVED events. Samples are bucketed
+ * by filing month, refund amount band and tax year into {@link DaysHistogram}s. Every sample is also
+ * added to three rollups (any year; any month and year; everything), so a lookup that finds too few
+ * samples in its own bucket widens without merging anything at request time.
+ *
+ * Approvals applied on this instance are kept twice: in the totals answering lookups, and in a
+ * pending delta that {@code RefundEtaStatisticsService} drains and merges into the persisted copy.
+ */
+@Component
+@Slf4j
+public class RefundEtaStatistics {
+
+    static final int ANY = -1;
+    // Upper bounds of the refund amount bands; the last band is open ended
+    private static final BigDecimal[] AMOUNT_BANDS = {
+            new BigDecimal("500"), new BigDecimal("1000"), new BigDecimal("2500"),
+            new BigDecimal("5000"), new BigDecimal("10000")};
+
+    private final boolean enabled;
+    private final long minSamples;
+    private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+    private volatile Map<BucketKey, DaysHistogram> totals = new ConcurrentHashMap<>();
+    private Map<BucketKey, DaysHistogram> pending = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public RefundEtaStatistics(@Value("${eta.statistics.enabled:true}") boolean enabled,
+                               @Value("${eta.statistics.min-samples:30}") long minSamples) {
+        this.enabled = enabled;
+        this.minSamples = minSamples;
+    }
+
+    public record BucketKey(int filingMonth, int amountBand, int taxYear) {
+    }
+
+    /**
+     * One refund reaching APPROVED for the first time.
+     */
+    public record Approval(int taxYear, LocalDateTime filedAt, BigDecimal refundAmount, LocalDateTime approvedAt) {
+    }
+
+    public static BucketKey bucketOf(int taxYear, LocalDateTime filedAt, BigDecimal refundAmount) {
+        return new BucketKey(filedAt.getMonthValue(), amountBand(refundAmount), taxYear);
+    }
+
+    public static long daysToApproval(LocalDateTime filedAt, LocalDateTime approvedAt) {
+        return ChronoUnit.DAYS.between(filedAt.toLocalDate(), approvedAt.toLocalDate());
+    }
+
+    /**
+     * Record approvals once the surrounding transaction commits, so rolled back events are never counted.
+     */
+    public void recordAfterCommit(List<Approval> approvals) {
+        if (!enabled || approvals.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(approvals);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(approvals);
+            }
+        });
+    }
+
+    void record(List<Approval> approvals) {
+        pendingLock.readLock().lock();
+        try {
+            // Before the persisted statistics are loaded only buffer the samples, replaceTotals merges them in
+            boolean loaded = ready;
+            for (Approval approval : approvals) {
+                BucketKey bucket = bucketOf(approval.taxYear(), approval.filedAt(), approval.refundAmount());
+                long days = daysToApproval(approval.filedAt(), approval.approvedAt());
+                pending.computeIfAbsent(bucket, key -> new DaysHistogram()).add(days);
+                if (loaded) {
+                    addWithRollups(totals, bucket, days);
+                }
+            }
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Percentile of days to approval for a filing, from the narrowest bucket holding at least
+     * {@code eta.statistics.min-samples} samples. Empty when no level has enough data, or when the
+     * percentile falls in the overflow bin, which only says "more than {@link DaysHistogram#MAX_DAYS} days".
+     */
+    public OptionalInt percentileDays(int taxYear, LocalDateTime filedAt, BigDecimal refundAmount, double percentile) {
+        if (!ready) {
+            return OptionalInt.empty();
+        }
+        BucketKey bucket = bucketOf(taxYear, filedAt, refundAmount);
+        Map<BucketKey, DaysHistogram> current = totals;
+        for (BucketKey key : lookupOrder(bucket)) {
+            DaysHistogram histogram = current.get(key);
+            if (histogram != null && histogram.getTotal() >= minSamples) {
+                int days = histogram.percentile(percentile);
+                return days > DaysHistogram.MAX_DAYS ? OptionalInt.empty() : OptionalInt.of(days);
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Take the approvals recorded since the last call, for merging into the persisted statistics.
+     */
+    public Map<BucketKey, DaysHistogram> drainPending() {
+        pendingLock.writeLock().lock();
+        try {
+            Map<BucketKey, DaysHistogram> drained = pending;
+            pending = new ConcurrentHashMap<>();
+            return drained;
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Put back approvals taken by {@link #drainPending()} that could not be persisted.
+     */
+    public void restorePending(Map<BucketKey, DaysHistogram> drained) {
+        pendingLock.readLock().lock();
+        try {
+            drained.forEach((bucket, histogram) -> pending.computeIfAbsent(bucket, key -> new DaysHistogram()).merge(histogram));
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the totals with freshly loaded persisted buckets, keeping approvals not yet persisted.
+     */
+    public void replaceTotals(Map<BucketKey, DaysHistogram> persisted) {
+        Map<BucketKey, DaysHistogram> rebuilt = new ConcurrentHashMap<>();
+        persisted.forEach((bucket, histogram) -> mergeWithRollups(rebuilt, bucket, histogram));
+        pendingLock.writeLock().lock();
+        try {
+            pending.forEach((bucket, histogram) -> mergeWithRollups(rebuilt, bucket, histogram));
+            totals = rebuilt;
+            ready = true;
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+        log.info("Loaded refund ETA statistics: {} buckets", persisted.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    static int amountBand(BigDecimal refundAmount) {
+        if (refundAmount == null) {
+            return 0;
+        }
+        for (int band = 0; band < AMOUNT_BANDS.length; band++) {
+            if (refundAmount.compareTo(AMOUNT_BANDS[band]) < 0) {
+                return band;
+            }
+        }
+        return AMOUNT_BANDS.length;
+    }
+
+    private static BucketKey[] lookupOrder(BucketKey bucket) {
+        return new BucketKey[]{
+                bucket,
+                new BucketKey(bucket.filingMonth(), bucket.amountBand(), ANY),
+                new BucketKey(ANY, bucket.amountBand(), ANY),
+                new BucketKey(ANY, ANY, ANY)};
+    }
+
+    private static void addWithRollups(Map<BucketKey, DaysHistogram> target, BucketKey bucket, long days) {
+        for (BucketKey key : lookupOrder(bucket)) {
+            target.computeIfAbsent(key, k -> new DaysHistogram()).add(days);
+        }
+    }
+
+    private static void mergeWithRollups(Map<BucketKey, DaysHistogram> target, BucketKey bucket, DaysHistogram histogram) {
+        for (BucketKey key : lookupOrder(bucket)) {
+            target.computeIfAbsent(key, k -> new DaysHistogram()).merge(histogram);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.badhtaxfileserv.util;
+
+import com.badhtaxfileserv.dto.BatchRefundEventRequest;
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns refund events from Pub/Sub payloads and HTTP bodies into {@link ProcessRefundEventRequest}s.
+ * A Pub/Sub payload is either one event object or an array of them. The mapper is built once
+ * and shared, it is thread-safe after configuration.
+ */
+@Component
+public class RefundEventMessageParser {
+    
+    private final ObjectMapper objectMapper;
+    
+    public RefundEventMessageParser() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+    
+    public JsonNode readTree(String json) throws JsonProcessingException {
+        return objectMapper.readTree(json);
+    }
+    
+    /**
+     * Parse a Pub/Sub payload holding one event or an array of events.
+     */
+    public List<ProcessRefundEventRequest> parse(String json) throws JsonProcessingException {
+        JsonNode messageJson = readTree(json);
+        return messageJson.isArray() ? parseEvents(messageJson) : List.of(parseEvent(messageJson));
+    }
+    
+    /**
+     * Parse every element of an array of events. An element that is not a well-formed event still
+     * yields a request, with the fields that could not be read left null, so the batch reports it
+     * as invalid in its own result rather than failing the others.
+     */
+    public List<ProcessRefundEventRequest> parseEvents(JsonNode eventsJson) {
+        List<ProcessRefundEventRequest> requests = new ArrayList<>(eventsJson.size());
+        for (JsonNode eventJson : eventsJson) {
+            requests.add(parseEvent(eventJson));
+        }
+        return requests;
+    }
+    
+    /**
+     * Parse one event. Missing fields are left null; data is null when it is missing or its
+     * eventDate cannot be parsed.
+     */
+    public ProcessRefundEventRequest parseEvent(JsonNode messageJson) {
+        return ProcessRefundEventRequest.builder()
+            .eventId(messageJson.path("eventId").asText(null))
+            .fileId(messageJson.path("fileId").asText(null))
+            .type(messageJson.path("type").asText(null))
+            .data(parseData(messageJson.path("data")))
+            .build();
+    }
+    
+    private static ProcessRefundEventRequest.EventData parseData(JsonNode dataJson) {
+        if (!dataJson.isObject()) {
+            return null;
+        }
+        
+        // Parse the date string, handling both with and without timezone
+        LocalDateTime eventDate = null;
+        String eventDateStr = dataJson.path("eventDate").asText(null);
+        if (eventDateStr != null) {
+            try {
+                eventDate = LocalDateTime.parse(eventDateStr.endsWith("Z")
+                        ? eventDateStr.substring(0, eventDateStr.length() - 1)
+                        : eventDateStr);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        
+        List<ProcessRefundEventRequest.EventData.ErrorDetail> errorReasons = null;
+        JsonNode errorReasonsJson = dataJson.get("errorReasons");
+        if (errorReasonsJson != null && errorReasonsJson.isArray()) {
+            errorReasons = new ArrayList<>();
+            for (JsonNode error : errorReasonsJson) {
+                errorReasons.add(ProcessRefundEventRequest.EventData.ErrorDetail.builder()
+                    .code(error.path("code").asText(null))
+                    .message(error.path("message").asText(null))
+                    .build());
+            }
+        }
+        
+        return ProcessRefundEventRequest.EventData.builder()
+            .eventDate(eventDate)
+            .errorReasons(errorReasons)
+            .build();
+    }
+    
+    public ProcessRefundEventRequest convert(Map<String, Object> requestBody) {
+        return objectMapper.convertValue(requestBody, ProcessRefundEventRequest.class);
+    }
+    
+    public BatchRefundEventRequest convertBatch(Map<String, Object> requestBody) {
+        return objectMapper.convertValue(requestBody, BatchRefundEventRequest.class);
+    }
+}
@@ -0,0 +1,58 @@
+package com.badhtaxfileserv.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-key request coalescing: while a load for a key is running, other callers for the same key
+ * wait for its result instead of starting their own. The key is released as soon as the load
+ * finishes, so nothing is cached here.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run {@code loader} for {@code key}, or join the load already running for it. A failed load
+     * fails every caller waiting on it with the same exception.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            V value = loader.get();
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
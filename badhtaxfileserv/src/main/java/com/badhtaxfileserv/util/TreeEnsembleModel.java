@@ -0,0 +1,168 @@
+package com.badhtaxfileserv.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Regression tree ensemble loaded from an XGBoost model saved as JSON
+ * ({@code booster.save_model("model.json")}). All trees are flattened into shared primitive
+ * arrays, so scoring walks array indexes and allocates nothing.
+ *
+ * Scoring follows XGBoost: features and thresholds are compared as floats, a node goes left when
+ * {@code value < threshold}, NaN takes the node's default direction, and the prediction is the
+ * base score plus the sum of the leaf values.
+ */
+public final class TreeEnsembleModel {
+
+    private final String[] featureNames;
+    private final int featureCount;
+    private final float baseScore;
+    private final int[] treeRoots;
+    private final int[] leftChildren;
+    private final int[] rightChildren;
+    private final int[] splitIndices;
+    // Threshold for split nodes, leaf value for leaves
+    private final float[] splitConditions;
+    private final boolean[] defaultLeft;
+
+    private TreeEnsembleModel(String[] featureNames, int featureCount, float baseScore, int[] treeRoots, int[] leftChildren,
+                              int[] rightChildren, int[] splitIndices, float[] splitConditions, boolean[] defaultLeft) {
+        this.featureNames = featureNames;
+        this.featureCount = featureCount;
+        this.baseScore = baseScore;
+        this.treeRoots = treeRoots;
+        this.leftChildren = leftChildren;
+        this.rightChildren = rightChildren;
+        this.splitIndices = splitIndices;
+        this.splitConditions = splitConditions;
+        this.defaultLeft = defaultLeft;
+    }
+
+    public static TreeEnsembleModel load(InputStream json) throws IOException {
+        JsonNode learner = new ObjectMapper().readTree(json).path("learner");
+        JsonNode trees = learner.path("gradient_booster").path("model").path("trees");
+        if (!trees.isArray() || trees.isEmpty()) {
+            throw new IOException("Model JSON has no learner.gradient_booster.model.trees");
+        }
+
+        JsonNode params = learner.path("learner_model_param");
+        // XGBoost writes num_feature as a string
+        int featureCount = params.path("num_feature").asInt(0);
+        if (featureCount <= 0) {
+            throw new IOException("Model JSON has no learner.learner_model_param.num_feature");
+        }
+        String[] featureNames = new String[learner.path("feature_names").size()];
+        for (int i = 0; i < featureNames.length; i++) {
+            featureNames[i] = learner.path("feature_names").get(i).asText();
+        }
+        if (featureNames.length != 0 && featureNames.length != featureCount) {
+            throw new IOException("Model JSON names " + featureNames.length + " features but num_feature is " + featureCount);
+        }
+
+        int nodeCount = 0;
+        for (JsonNode tree : trees) {
+            nodeCount += tree.path("left_children").size();
+        }
+
+        int[] treeRoots = new int[trees.size()];
+        int[] leftChildren = new int[nodeCount];
+        int[] rightChildren = new int[nodeCount];
+        int[] splitIndices = new int[nodeCount];
+        float[] splitConditions = new float[nodeCount];
+        boolean[] defaultLeft = new boolean[nodeCount];
+
+        int offset = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            JsonNode tree = trees.get(t);
+            JsonNode left = tree.path("left_children");
+            JsonNode right = tree.path("right_children");
+            JsonNode indices = tree.path("split_indices");
+            JsonNode conditions = tree.path("split_conditions");
+            JsonNode defaults = tree.path("default_left");
+            treeRoots[t] = offset;
+            for (int n = 0; n < left.size(); n++) {
+                int node = offset + n;
+                // Child ids are tree-local, -1 marks a leaf
+                leftChildren[node] = left.get(n).asInt() < 0 ? -1 : offset + left.get(n).asInt();
+                rightChildren[node] = right.get(n).asInt() < 0 ? -1 : offset + right.get(n).asInt();
+                splitIndices[node] = indices.get(n).asInt();
+                if (leftChildren[node] != -1 && splitIndices[node] >= featureCount) {
+                    throw new IOException("Tree " + t + " splits on feature " + splitIndices[node]
+                            + " of a model with " + featureCount + " features");
+                }
+                splitConditions[node] = (float) conditions.get(n).asDouble();
+                defaultLeft[node] = defaults.get(n).asInt() != 0;
+            }
+            offset += left.size();
+        }
+
+        return new TreeEnsembleModel(featureNames, featureCount, parseBaseScore(params.path("base_score")),
+                treeRoots, leftChildren, rightChildren, splitIndices, splitConditions, defaultLeft);
+    }
+
+    /**
+     * Score one row; {@code features} is ordered as {@link #getFeatureNames()}.
+     */
+    public float predict(float[] features) {
+        return predict(features, 0);
+    }
+
+    /**
+     * Score {@code out.length} rows stored back to back in {@code rows}.
+     */
+    public void predictBatch(float[] rows, int featureCount, float[] out) {
+        for (int row = 0; row < out.length; row++) {
+            out[row] = predict(rows, row * featureCount);
+        }
+    }
+
+    private float predict(float[] features, int offset) {
+        float sum = baseScore;
+        for (int root : treeRoots) {
+            int node = root;
+            while (leftChildren[node] != -1) {
+                float value = features[offset + splitIndices[node]];
+                if (Float.isNaN(value)) {
+                    node = defaultLeft[node] ? leftChildren[node] : rightChildren[node];
+                } else {
+                    node = value < splitConditions[node] ? leftChildren[node] : rightChildren[node];
+                }
+            }
+            sum += splitConditions[node];
+        }
+        return sum;
+    }
+
+    public List<String> getFeatureNames() {
+        return List.of(featureNames);
+    }
+
+    /**
+     * Features per row, XGBoost's {@code num_feature}.
+     */
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getTreeCount() {
+        return treeRoots.length;
+    }
+
+    /**
+     * XGBoost writes the base score as a string, e.g. "3.4E1", or "[3.4E1]" since 3.0.
+     */
+    private static float parseBaseScore(JsonNode node) {
+        if (node.isMissingNode()) {
+            return 0.5f;
+        }
+        String text = node.asText().trim();
+        if (text.startsWith("[")) {
+            text = text.substring(1, text.length() - 1).split(",")[0].trim();
+        }
+        return Float.parseFloat(text);
+    }
+}
@@ -0,0 +1,44 @@
+package com.badhtaxfileserv.util;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Time-ordered UUIDs (RFC 9562 version 7) for primary keys. The leading 48 bits are the Unix
+ * time in milliseconds and the next 12 the fraction of the millisecond, so keys created one after
+ * another land next to each other in a B-tree index instead of anywhere in it. The remaining 62
+ * bits are random, as in {@link UUID#randomUUID()}.
+ *
+ * Matches taxfileservdb.uuid_generate_v7(), the column default for rows inserted without an id.
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private UuidV7() {
+    }
+
+    public static UUID randomUuid() {
+        return of(Instant.now(), RANDOM.nextLong());
+    }
+
+    static UUID of(Instant instant, long random) {
+        long millis = instant.toEpochMilli();
+        long subMillis = (instant.getNano() % NANOS_PER_MILLI) * 4096 / NANOS_PER_MILLI;
+        long mostSigBits = (millis << 16) | 0x7000L | subMillis;
+        long leastSigBits = (random & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Creation time in milliseconds carried by a version 7 UUID.
+     */
+    public static long timestampMillis(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
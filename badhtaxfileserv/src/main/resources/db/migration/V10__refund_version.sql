@@ -0,0 +1,18 @@
+SET search_path TO taxfileservdb;
+
+-- refund.updated_at is the version of cached tax files: a cached copy is only replaced by one at
+-- least as new. Every update moves it forward, by a microsecond if the clock has not, so two
+-- committed updates of a refund never share a version and a clock step back cannot reorder them.
+CREATE OR REPLACE FUNCTION update_refund_updated_at_column()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_at = GREATEST(clock_timestamp(), OLD.updated_at + INTERVAL '1 microsecond');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER update_refund_updated_at ON refund;
+
+CREATE TRIGGER update_refund_updated_at
+    BEFORE UPDATE ON refund
+    FOR EACH ROW EXECUTE FUNCTION update_refund_updated_at_column();
@@ -0,0 +1,7 @@
+-- Keyset pagination of users orders by (created_at DESC, user_id DESC);
+-- widen the created_at index so the cursor predicate and ordering are fully indexed
+SET search_path TO taxfileservdb;
+
+DROP INDEX IF EXISTS idx_user_created_at;
+
+CREATE INDEX idx_user_created_at ON "user"(created_at, user_id);
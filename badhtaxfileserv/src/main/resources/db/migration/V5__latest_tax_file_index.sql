@@ -0,0 +1,5 @@
+-- Set search path to the schema
+SET search_path TO taxfileservdb;
+
+-- Supports the per-user "latest tax file" lateral lookup: one index probe per user
+CREATE INDEX idx_tax_file_user_created_at ON tax_file(user_id, created_at DESC);
@@ -0,0 +1,8 @@
+-- Set search path to the schema
+SET search_path TO taxfileservdb;
+
+-- Publisher-assigned event ID, used to drop Pub/Sub redeliveries. Rows written before
+-- this migration have no event ID; NULLs never conflict with each other.
+ALTER TABLE refund_events ADD COLUMN event_id VARCHAR(100) NULL;
+
+CREATE UNIQUE INDEX uk_refund_events_event_id ON refund_events(event_id);
@@ -0,0 +1,17 @@
+-- Set search path to the schema
+SET search_path TO taxfileservdb;
+
+-- Transactional outbox: messages are written in the same transaction as the business
+-- change and relayed to Pub/Sub by a background poller, then deleted once acknowledged
+CREATE TABLE outbox (
+    id BIGSERIAL PRIMARY KEY,
+    topic VARCHAR(32) NOT NULL CHECK (topic IN ('SEND_REFUND', 'REFUND_UPDATE')),
+    payload TEXT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT NULL,
+    available_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- The relay polls for due rows in id order
+CREATE INDEX idx_outbox_available_at ON outbox(available_at, id);
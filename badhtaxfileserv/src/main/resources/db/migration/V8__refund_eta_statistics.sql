@@ -0,0 +1,24 @@
+-- Set search path to the schema
+SET search_path TO taxfileservdb;
+
+-- Days-to-approval histograms learned from REFUND_APPROVED events, one row per
+-- (filing month, refund amount band, tax year). counts holds the non-empty day bins
+-- as varint pairs; instances merge their new samples into it periodically.
+CREATE TABLE refund_eta_histogram (
+    filing_month SMALLINT NOT NULL,
+    amount_band SMALLINT NOT NULL,
+    tax_year INT NOT NULL,
+    sample_count BIGINT NOT NULL,
+    counts BYTEA NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (filing_month, amount_band, tax_year)
+);
+
+-- Single row written once the histograms have been rebuilt from refund_events history
+CREATE TABLE refund_eta_statistics_state (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    rebuilt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- Cold-start rebuild looks up each refund's earliest approval
+CREATE INDEX idx_refund_events_refund_type_date ON refund_events(refund_id, event_type, event_date);
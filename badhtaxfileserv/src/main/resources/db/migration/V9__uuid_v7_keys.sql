@@ -0,0 +1,26 @@
+-- Set search path to the schema
+SET search_path TO taxfileservdb;
+
+-- Time-ordered UUIDs (RFC 9562 version 7): 48 bits of Unix time in milliseconds, then random
+-- bits. New keys land at the right edge of the primary key and foreign key indexes instead of
+-- on random pages. Same layout as UuidV7 in the service, minus the sub-millisecond fraction.
+-- Postgres 15 has no built-in generator; the version bits of a random UUID become 0111.
+CREATE OR REPLACE FUNCTION uuid_generate_v7()
+RETURNS UUID AS $$
+BEGIN
+    RETURN encode(
+        set_bit(
+            set_bit(
+                overlay(uuid_send(gen_random_uuid())
+                        PLACING substring(int8send(floor(extract(epoch FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+                        FROM 1 FOR 6),
+                52, 1),
+            53, 1),
+        'hex')::UUID;
+END;
+$$ LANGUAGE plpgsql VOLATILE;
+
+-- Existing rows keep their random keys; only new rows are time ordered
+ALTER TABLE tax_file ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE refund ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE refund_events ALTER COLUMN id SET DEFAULT uuid_generate_v7();
@@ -2,6 +2,7 @@ package com.badhtaxfileserv.controller;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
@@ -11,6 +12,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
+@AutoConfigureObservability
 class RefundControllerIntegrationTest {
     
     @Autowired
@@ -25,4 +27,19 @@ class RefundControllerIntegrationTest {
         assertNotNull(restTemplate);
         assertTrue(port > 0);
     }
+    
+    @Test
+    void prometheusEndpoint_ShouldExposeServiceTimings() {
+        // Given
+        restTemplate.getForEntity("/refund?userId=metrics-user&year=2024", String.class);
+        
+        // When
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+        
+        // Then
+        assertNotNull(scrape);
+        assertTrue(scrape.contains("service_invocations_seconds_bucket{"), "service timer should publish SLO buckets");
+        assertTrue(scrape.contains("class=\"com.badhtaxfileserv.service.RefundService\""));
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"), "HTTP timer should publish SLO buckets");
+    }
 }
\ No newline at end of file
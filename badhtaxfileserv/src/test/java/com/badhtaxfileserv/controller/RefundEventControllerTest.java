@@ -0,0 +1,123 @@
+package com.badhtaxfileserv.controller;
+
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse.EventResult;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse.EventStatus;
+import com.badhtaxfileserv.service.RefundEventService;
+import com.badhtaxfileserv.util.RefundEventMessageParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefundEventControllerTest {
+
+    private static final String EVENT = "{\"eventId\":\"event-1\",\"fileId\":\"file-1\",\"type\":\"refund.approved\"}";
+
+    @Mock
+    private RefundEventService refundEventService;
+
+    private RefundEventController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new RefundEventController(refundEventService, new RefundEventMessageParser());
+    }
+
+    @Test
+    void processRefundEvents_PushMessageWithFailedEvents_ShouldAcknowledgeWithResults() {
+        // Given
+        BatchRefundEventResponse processed = response(EventStatus.APPLIED, EventStatus.NOT_FOUND);
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(processed);
+
+        // When
+        ResponseEntity<BatchRefundEventResponse> response = controller.processRefundEvents(push("[" + EVENT + "," + EVENT + "]"));
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(processed, response.getBody());
+    }
+
+    @Test
+    void processRefundEvents_DirectBatchWithFailedEvents_ShouldAnswerMultiStatus() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(EventStatus.APPLIED, EventStatus.INVALID));
+
+        // When
+        ResponseEntity<BatchRefundEventResponse> response = controller.processRefundEvents(Map.of("events", List.of(
+                Map.of("eventId", "event-1", "fileId", "file-1", "type", "refund.approved"),
+                Map.of("eventId", "event-2", "fileId", "file-2", "type", "refund.approved"))));
+
+        // Then
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+    }
+
+    @Test
+    void processRefundEvent_PushMessageWithArray_ShouldReturnResultsInsteadOfDroppingThem() {
+        // Given
+        BatchRefundEventResponse processed = response(EventStatus.INVALID);
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(processed);
+
+        // When
+        ResponseEntity<BatchRefundEventResponse> response = controller.processRefundEvent(push("[" + EVENT + "]"));
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(processed, response.getBody());
+    }
+
+    @Test
+    void processRefundEvent_PushMessageWithSingleEvent_ShouldAcknowledgeUnknownFile() {
+        // Given: the file was never created, which a redelivery cannot change
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(EventStatus.NOT_FOUND));
+
+        // When
+        ResponseEntity<BatchRefundEventResponse> response = controller.processRefundEvent(push(EVENT));
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(refundEventService, never()).processRefundEvent(any());
+    }
+
+    @Test
+    void processRefundEvent_UnreadablePushMessage_ShouldReject() {
+        // When
+        ResponseEntity<BatchRefundEventResponse> response = controller.processRefundEvent(push("not json"));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(refundEventService);
+    }
+
+    private static Map<String, Object> push(String data) {
+        String encoded = Base64.getEncoder().encodeToString(data.getBytes(StandardCharsets.UTF_8));
+        return Map.of("message", Map.of("data", encoded), "subscription", "refund-update-push");
+    }
+
+    private static BatchRefundEventResponse response(EventStatus... statuses) {
+        List<EventResult> results = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < statuses.length; i++) {
+            results.add(EventResult.builder().index(i).eventId("event-" + i).fileId("file-" + i).status(statuses[i]).build());
+            if (statuses[i] == EventStatus.NOT_FOUND || statuses[i] == EventStatus.INVALID) {
+                failed++;
+            }
+        }
+        return BatchRefundEventResponse.builder().results(results).failed(failed).build();
+    }
+}
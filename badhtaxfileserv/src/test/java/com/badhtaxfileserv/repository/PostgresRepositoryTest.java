@@ -0,0 +1,40 @@
+package com.badhtaxfileserv.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base for JDBC repository tests that need real Postgres: the SQL uses arrays, CTEs with
+ * RETURNING and timestamptz columns that H2 does not reproduce. The schema comes from the
+ * Flyway migrations. Skipped where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class PostgresRepositoryTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static JdbcTemplate jdbcTemplate;
+    static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas("taxfileservdb")
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+}
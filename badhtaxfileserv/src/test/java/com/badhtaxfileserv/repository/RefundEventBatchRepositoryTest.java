@@ -0,0 +1,132 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.RefundEvent;
+import com.badhtaxfileserv.entity.TaxFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefundEventBatchRepositoryTest extends PostgresRepositoryTest {
+
+    private RefundEventBatchRepository repository;
+    private Refund refund;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE taxfileservdb.tax_file CASCADE");
+        repository = new RefundEventBatchRepository(jdbcTemplate);
+        TaxFileBatchRepository taxFileBatchRepository = new TaxFileBatchRepository(jdbcTemplate);
+        LocalDateTime now = LocalDateTime.now();
+        TaxFile taxFile = TaxFileBatchRepositoryTest.taxFile("user-1", 2024, new BigDecimal("500.00"), now);
+        refund = Refund.builder()
+                .id(UUID.randomUUID())
+                .taxFile(taxFile)
+                .refundStatus(Refund.RefundStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        taxFileBatchRepository.insertTaxFiles(List.of(taxFile));
+        taxFileBatchRepository.insertRefunds(List.of(refund));
+    }
+
+    @Test
+    void insertRefundEvents_ShouldReturnOnlyEventIdsNotRecordedBefore() {
+        // Given
+        repository.insertRefundEvents(List.of(event("evt-1", RefundEvent.EventType.REFUND_INPROGRESS, null)));
+
+        // When
+        Set<String> inserted = repository.insertRefundEvents(List.of(
+                event("evt-1", RefundEvent.EventType.REFUND_INPROGRESS, null),
+                event("evt-2", RefundEvent.EventType.REFUND_ERROR, "[{\"code\":\"ERR001\",\"message\":\"Invalid bank account\"}]")));
+
+        // Then
+        assertEquals(Set.of("evt-2"), inserted);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM taxfileservdb.refund_events", Integer.class));
+        assertEquals("ERR001", jdbcTemplate.queryForObject(
+                "SELECT error_reasons->0->>'code' FROM taxfileservdb.refund_events WHERE event_id = 'evt-2'", String.class));
+    }
+
+    @Test
+    void findRefundsByTaxFileIds_ShouldLockTheRefundsUntilTheTransactionEnds() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Given
+            repository.findRefundsByTaxFileIds(List.of(refund.getTaxFile().getId()));
+
+            // When: another transaction tries to take the same row
+            SQLException conflict = assertThrows(SQLException.class, () -> {
+                try (Connection other = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+                     PreparedStatement statement = other.prepareStatement(
+                             "SELECT id FROM taxfileservdb.refund WHERE id = ? FOR UPDATE NOWAIT")) {
+                    statement.setObject(1, refund.getId());
+                    statement.executeQuery();
+                }
+            });
+
+            // Then: lock_not_available
+            assertEquals("55P03", conflict.getSQLState());
+        });
+    }
+
+    @Test
+    void updateRefunds_ShouldSetUpdatedAtToWhatALoadOfTheTaxFileReads() {
+        // Given
+        refund.setRefundStatus(Refund.RefundStatus.IN_PROGRESS);
+        refund.setUpdatedAt(LocalDateTime.now().plusHours(1));
+
+        // When
+        repository.updateRefunds(List.of(refund));
+
+        // Then
+        TaxFileResponse loaded = new TaxFileBatchRepository(jdbcTemplate)
+                .findTaxFilesWithRefund(List.of(new TaxFileKey("user-1", 2024))).get(0);
+        assertEquals("IN_PROGRESS", loaded.getRefundStatus());
+        assertEquals(loaded.getRefundUpdatedAt(), refund.getUpdatedAt());
+    }
+
+    @Test
+    void updateRefunds_ShouldMoveUpdatedAtForwardEvenIfTheClockDoesNot() {
+        // Given
+        LocalDateTime ahead = LocalDateTime.now().plusHours(1).withNano(0);
+        jdbcTemplate.update("ALTER TABLE taxfileservdb.refund DISABLE TRIGGER update_refund_updated_at");
+        jdbcTemplate.update("UPDATE taxfileservdb.refund SET updated_at = ? WHERE id = ?", Timestamp.valueOf(ahead), refund.getId());
+        jdbcTemplate.update("ALTER TABLE taxfileservdb.refund ENABLE TRIGGER update_refund_updated_at");
+        refund.setRefundStatus(Refund.RefundStatus.IN_PROGRESS);
+
+        // When
+        repository.updateRefunds(List.of(refund));
+        LocalDateTime first = refund.getUpdatedAt();
+        refund.setRefundStatus(Refund.RefundStatus.APPROVED);
+        repository.updateRefunds(List.of(refund));
+
+        // Then
+        assertEquals(ahead.plusNanos(1000), first);
+        assertEquals(first.plusNanos(1000), refund.getUpdatedAt());
+    }
+
+    private RefundEvent event(String eventId, RefundEvent.EventType type, String errorReasons) {
+        return RefundEvent.builder()
+                .id(UUID.randomUUID())
+                .eventId(eventId)
+                .refund(refund)
+                .eventType(type)
+                .eventDate(LocalDateTime.now())
+                .errorReasons(errorReasons)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
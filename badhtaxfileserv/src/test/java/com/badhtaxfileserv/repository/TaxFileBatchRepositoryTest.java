@@ -0,0 +1,167 @@
+package com.badhtaxfileserv.repository;
+
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.entity.OutboxMessage;
+import com.badhtaxfileserv.entity.Refund;
+import com.badhtaxfileserv.entity.TaxFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxFileBatchRepositoryTest extends PostgresRepositoryTest {
+
+    private TaxFileBatchRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE taxfileservdb.tax_file, taxfileservdb.outbox CASCADE");
+        repository = new TaxFileBatchRepository(jdbcTemplate);
+    }
+
+    @Test
+    void findTaxFilesWithRefund_ShouldReturnStoredRowsAndSkipMissingKeys() {
+        // Given
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        TaxFile withRefund = taxFile("user-1", 2023, new BigDecimal("500.00"), now);
+        Refund refund = Refund.builder()
+                .id(UUID.randomUUID())
+                .taxFile(withRefund)
+                .refundStatus(Refund.RefundStatus.PENDING)
+                .refundEta(now.plusDays(30))
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        TaxFile withoutRefund = taxFile("user-2", 2023, BigDecimal.ZERO, now);
+        repository.insertTaxFiles(List.of(withRefund, withoutRefund));
+        repository.insertRefunds(List.of(refund));
+
+        // When
+        List<TaxFileResponse> found = repository.findTaxFilesWithRefund(List.of(
+                new TaxFileKey("user-1", 2023), new TaxFileKey("user-2", 2023), new TaxFileKey("user-3", 2023)));
+
+        // Then
+        Map<String, TaxFileResponse> byUserId = found.stream()
+                .collect(Collectors.toMap(TaxFileResponse::getUserId, Function.identity()));
+        assertEquals(2, found.size());
+
+        TaxFileResponse first = byUserId.get("user-1");
+        assertEquals(withRefund.getId().toString(), first.getFileId());
+        assertEquals(0, new BigDecimal("500.00").compareTo(first.getRefund()));
+        assertEquals("PENDING", first.getRefundStatus());
+        assertEquals(now.plusDays(30), first.getRefundEta());
+        assertEquals(now, first.getRefundUpdatedAt());
+        assertEquals(now, first.getCreatedAt());
+        assertEquals(List.of(), first.getRefundErrors());
+
+        TaxFileResponse second = byUserId.get("user-2");
+        assertEquals("COMPLETED", second.getTaxStatus());
+        assertNull(second.getRefundStatus());
+        assertNull(second.getRefundEta());
+        assertEquals(now, second.getUpdatedAt());
+    }
+
+    @Test
+    void insertTaxFiles_WhenYearAlreadyFiled_ShouldSkipItAndReturnOnlyInsertedIds() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        repository.insertTaxFiles(List.of(taxFile("user-1", 2024, new BigDecimal("500.00"), now)));
+        TaxFile conflicting = taxFile("user-1", 2024, new BigDecimal("900.00"), now);
+        TaxFile fresh = taxFile("user-2", 2024, BigDecimal.ZERO, now);
+
+        // When
+        Set<UUID> inserted = repository.insertTaxFiles(List.of(conflicting, fresh));
+
+        // Then
+        assertEquals(Set.of(fresh.getId()), inserted);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM taxfileservdb.tax_file", Integer.class));
+        assertEquals(0, new BigDecimal("500.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT refund_amount FROM taxfileservdb.tax_file WHERE user_id = 'user-1'", BigDecimal.class)));
+    }
+
+    @Test
+    void insertTaxFile_WithRefund_ShouldWriteAllRowsAndReturnThemInOneStatement() {
+        // Given
+        TaxFile taxFile = taxFile("user-1", 2024, new BigDecimal("500.00"), null);
+        Refund refund = Refund.builder()
+                .id(UUID.randomUUID())
+                .taxFile(taxFile)
+                .refundStatus(Refund.RefundStatus.PENDING)
+                .refundEta(LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.MICROS))
+                .build();
+        OutboxMessage message = OutboxMessage.of(OutboxMessage.Topic.SEND_REFUND, "{\"file_id\":\"" + taxFile.getId() + "\"}");
+
+        // When
+        TaxFileResponse response = repository.insertTaxFile(taxFile, refund, message);
+
+        // Then
+        assertEquals(taxFile.getId().toString(), response.getFileId());
+        assertEquals("PENDING", response.getTaxStatus());
+        assertEquals("PENDING", response.getRefundStatus());
+        assertEquals(refund.getRefundEta(), response.getRefundEta());
+        assertNotNull(response.getCreatedAt());
+        assertNotNull(response.getRefundUpdatedAt());
+        assertEquals(List.of(response), repository.findTaxFilesWithRefund(List.of(new TaxFileKey("user-1", 2024))));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM taxfileservdb.outbox WHERE topic = 'SEND_REFUND'", Integer.class));
+    }
+
+    @Test
+    void insertTaxFile_WithoutRefund_ShouldReturnNoRefundFields() {
+        // When
+        TaxFileResponse response = repository.insertTaxFile(taxFile("user-2", 2024, BigDecimal.ZERO, null), null, null);
+
+        // Then
+        assertEquals("COMPLETED", response.getTaxStatus());
+        assertNull(response.getRefundStatus());
+        assertNull(response.getRefundEta());
+        assertNull(response.getRefundUpdatedAt());
+        assertNotNull(response.getUpdatedAt());
+    }
+
+    @Test
+    void insertTaxFile_WhenYearAlreadyFiled_ShouldFailOnUniqueKeyAndWriteNothing() {
+        // Given
+        repository.insertTaxFile(taxFile("user-1", 2024, BigDecimal.ZERO, null), null, null);
+        TaxFile duplicate = taxFile("user-1", 2024, new BigDecimal("500.00"), null);
+        Refund refund = Refund.builder()
+                .id(UUID.randomUUID())
+                .taxFile(duplicate)
+                .refundStatus(Refund.RefundStatus.PENDING)
+                .build();
+
+        // When & Then
+        assertThrows(DuplicateKeyException.class, () -> repository.insertTaxFile(duplicate, refund,
+                OutboxMessage.of(OutboxMessage.Topic.SEND_REFUND, "{}")));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM taxfileservdb.refund", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM taxfileservdb.outbox", Integer.class));
+    }
+
+    static TaxFile taxFile(String userId, int year, BigDecimal refund, LocalDateTime now) {
+        return TaxFile.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .year(year)
+                .income(new BigDecimal("120000.00"))
+                .expense(new BigDecimal("20000.00"))
+                .taxRate(new BigDecimal("30.00"))
+                .deducted(new BigDecimal("25000.00"))
+                .refundAmount(refund)
+                .taxStatus(refund.signum() > 0 ? TaxFile.TaxStatus.PENDING : TaxFile.TaxStatus.COMPLETED)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NearTaxFileCacheServiceTest {
+
+    private static final String CHANNEL = "taxfile:invalidations";
+
+    @Mock
+    private TaxFileCacheService redisCache;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private NearTaxFileCacheService nearCacheService;
+    private TaxFileResponse response;
+
+    @BeforeEach
+    void setUp() {
+        nearCacheService = new NearTaxFileCacheService(redisCache, stringRedisTemplate, objectMapper, 1_000_000, 60_000, CHANNEL);
+        response = TaxFileResponse.builder()
+                .fileId("file-1")
+                .userId("user-123")
+                .year(2024)
+                .taxStatus("PENDING")
+                .refundStatus("PENDING")
+                .build();
+    }
+
+    @Test
+    void getFromCache_AfterRedisHit_ShouldServeFromNearCache() {
+        // Given
+        when(redisCache.getFromCache("user-123", 2024)).thenReturn(response);
+
+        // When
+        TaxFileResponse first = nearCacheService.getFromCache("user-123", 2024);
+        TaxFileResponse second = nearCacheService.getFromCache("user-123", 2024);
+
+        // Then
+        assertSame(response, first);
+        assertSame(response, second);
+        verify(redisCache, times(1)).getFromCache("user-123", 2024);
+    }
+
+    @Test
+    void getFromCache_WhenEvictedDuringRedisRead_ShouldNotKeepTheReadValue() {
+        // Given: the entry is evicted while its Redis read is in flight
+        when(redisCache.getFromCache("user-123", 2024)).thenAnswer(invocation -> {
+            nearCacheService.onMessage(message(invalidation(NearTaxFileCacheService.Target.taxFile("user-123", 2024))), null);
+            return response;
+        });
+
+        // When
+        TaxFileResponse first = nearCacheService.getFromCache("user-123", 2024);
+
+        // Then
+        assertSame(response, first);
+        assertEquals(0, nearCacheService.nearCacheSize());
+    }
+
+    @Test
+    void putInCache_WhenInvalidatedDuringRedisWrite_ShouldNotKeepTheWrittenValue() {
+        // Given: another instance invalidates the entry while the Redis write is in flight
+        doAnswer(invocation -> {
+            nearCacheService.onMessage(message(invalidation(NearTaxFileCacheService.Target.taxFile("user-123", 2024))), null);
+            return null;
+        }).when(redisCache).putInCache("user-123", 2024, response);
+
+        // When
+        nearCacheService.putInCache("user-123", 2024, response);
+
+        // Then
+        assertEquals(0, nearCacheService.nearCacheSize());
+    }
+
+    @Test
+    void evictFromCache_ShouldEvictBothTiersAndBroadcast() throws Exception {
+        // Given
+        nearCacheService.putInCache("user-123", 2024, response);
+
+        // When
+        nearCacheService.evictFromCache("user-123", 2024);
+
+        // Then
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisCache).evictFromCache("user-123", 2024);
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), payload.capture());
+        NearTaxFileCacheService.Invalidation sent = objectMapper.readValue(payload.getValue(), NearTaxFileCacheService.Invalidation.class);
+        assertEquals(List.of(NearTaxFileCacheService.Target.taxFile("user-123", 2024)), sent.targets());
+        assertEquals(0, nearCacheService.nearCacheSize());
+    }
+
+    @Test
+    void onMessage_FromOtherInstance_ShouldInvalidateNearEntry() throws Exception {
+        // Given
+        nearCacheService.putInCache("user-123", 2024, response);
+
+        // When
+        nearCacheService.onMessage(message(invalidation(NearTaxFileCacheService.Target.taxFile("user-123", 2024))), null);
+
+        // Then
+        when(redisCache.getFromCache("user-123", 2024)).thenReturn(null);
+        assertNull(nearCacheService.getFromCache("user-123", 2024));
+    }
+
+    @Test
+    void onMessage_UserInvalidation_ShouldDropAllYearsForUser() throws Exception {
+        // Given
+        nearCacheService.putInCache("user-123", 2023, response);
+        nearCacheService.putInCache("user-123", 2024, response);
+        nearCacheService.putInCache("user-456", 2024, response);
+        nearCacheService.putInCache("user-123:2024", 2024, response);
+
+        // When
+        nearCacheService.onMessage(message(invalidation(
+                new NearTaxFileCacheService.Target(NearTaxFileCacheService.TargetType.USER, "user-123", null))), null);
+
+        // Then: user IDs that merely start with "user-123:" are kept
+        assertEquals(2, nearCacheService.nearCacheSize());
+        assertSame(response, nearCacheService.getFromCache("user-456", 2024));
+        assertSame(response, nearCacheService.getFromCache("user-123:2024", 2024));
+    }
+
+    @Test
+    void onMessage_WhenMalformed_ShouldKeepNearEntries() {
+        // Given
+        nearCacheService.putInCache("user-123", 2024, response);
+
+        // When
+        nearCacheService.onMessage(message("other-instance|user:user-123"), null);
+
+        // Then
+        assertEquals(1, nearCacheService.nearCacheSize());
+    }
+
+    private String invalidation(NearTaxFileCacheService.Target target) throws Exception {
+        return objectMapper.writeValueAsString(new NearTaxFileCacheService.Invalidation("other-instance", List.of(target)));
+    }
+
+    private DefaultMessage message(String payload) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
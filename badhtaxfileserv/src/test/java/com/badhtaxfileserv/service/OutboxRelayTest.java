@@ -0,0 +1,138 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.entity.OutboxMessage;
+import com.badhtaxfileserv.repository.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private PubSubServiceInterface pubSubService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private OutboxRelay outboxRelay;
+
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+    private OutboxMessage sendRefund;
+    private OutboxMessage refundUpdate;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 500);
+        ReflectionTestUtils.setField(outboxRelay, "initialBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(outboxRelay, "maxBackoffMillis", 300000L);
+
+        sendRefund = OutboxMessage.of(OutboxMessage.Topic.SEND_REFUND, "{\"file_id\":\"1\"}");
+        sendRefund.setId(1L);
+        refundUpdate = OutboxMessage.of(OutboxMessage.Topic.REFUND_UPDATE, "{\"refundId\":\"2\"}");
+        refundUpdate.setId(2L);
+    }
+
+    // Runs the callback as the real template would, recording whether a transaction is open
+    private void givenTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return invocation.getArgument(0, TransactionCallback.class).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+    }
+
+    @Test
+    void relayBatch_WhenPublished_ShouldDeleteRows() {
+        // Given
+        givenTransactions();
+        when(outboxRepository.claimNextBatch(any(LocalDateTime.class), any(LocalDateTime.class), anyInt()))
+                .thenReturn(List.of(sendRefund, refundUpdate));
+        when(pubSubService.publishAll(any(), any())).thenReturn(CompletableFuture.completedFuture(List.of("message-id")));
+
+        // When
+        int relayed = outboxRelay.relayBatch();
+
+        // Then
+        assertEquals(2, relayed);
+        verify(pubSubService).publishAll(PubSubTopic.SEND_REFUND, List.of("{\"file_id\":\"1\"}"));
+        verify(pubSubService).publishAll(PubSubTopic.REFUND_UPDATE, List.of("{\"refundId\":\"2\"}"));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(outboxRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void relayBatch_ShouldCommitClaimBeforePublishing() {
+        // Given
+        givenTransactions();
+        LocalDateTime before = LocalDateTime.now();
+        when(outboxRepository.claimNextBatch(any(LocalDateTime.class), any(LocalDateTime.class), anyInt())).thenAnswer(invocation -> {
+            assertTrue(inTransaction.get());
+            return List.of(sendRefund);
+        });
+        when(pubSubService.publishAll(any(), any())).thenAnswer(invocation -> {
+            assertFalse(inTransaction.get(), "published while the claim transaction was open");
+            return CompletableFuture.completedFuture(List.of("message-id"));
+        });
+
+        // When
+        outboxRelay.relayBatch();
+
+        // Then
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).claimNextBatch(now.capture(), leaseUntil.capture(), eq(500));
+        assertFalse(now.getValue().isBefore(before));
+        assertTrue(leaseUntil.getValue().isAfter(now.getValue().plusSeconds(60)));
+        verify(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void relayBatch_WhenPublishFails_ShouldKeepRowAndBackOff() {
+        // Given
+        givenTransactions();
+        LocalDateTime before = LocalDateTime.now();
+        when(outboxRepository.claimNextBatch(any(LocalDateTime.class), any(LocalDateTime.class), anyInt()))
+                .thenReturn(List.of(sendRefund, refundUpdate));
+        when(pubSubService.publishAll(eq(PubSubTopic.SEND_REFUND), any())).thenReturn(CompletableFuture.failedFuture(
+                new IllegalStateException("Publisher for topic send-refund-to-irs is not initialized yet")));
+        when(pubSubService.publishAll(eq(PubSubTopic.REFUND_UPDATE), any()))
+                .thenReturn(CompletableFuture.completedFuture(List.of("message-id")));
+
+        // When
+        int relayed = outboxRelay.relayBatch();
+
+        // Then
+        assertEquals(1, relayed);
+        assertEquals(1, sendRefund.getAttempts());
+        assertTrue(sendRefund.getAvailableAt().isAfter(before));
+        assertTrue(sendRefund.getLastError().contains("not initialized"));
+        verify(outboxRepository).saveAll(List.of(sendRefund));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+}
@@ -0,0 +1,84 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.repository.ReactiveReadRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveReadServiceTest {
+
+    @Mock
+    private ReactiveReadRepository readRepository;
+
+    @Mock
+    private ReactiveTaxFileCacheService cacheService;
+
+    @Mock
+    private ObjectProvider<ReactiveTaxFileCacheService> cacheServiceProvider;
+
+    private ReactiveReadService readService;
+    private TaxFileResponse response;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheServiceProvider.getIfAvailable()).thenReturn(cacheService);
+        readService = new ReactiveReadService(readRepository, cacheServiceProvider);
+        response = TaxFileResponse.builder()
+                .fileId("file-1")
+                .userId("user-123")
+                .year(2024)
+                .taxStatus("PENDING")
+                .build();
+    }
+
+    @Test
+    void getTaxFile_CacheHit_ShouldNotQueryDatabase() {
+        // Given
+        when(cacheService.getFromCache("user-123", 2024)).thenReturn(Mono.just(response));
+        when(readRepository.findTaxFileByUserIdAndYear("user-123", 2024)).thenReturn(Mono.never());
+
+        // When
+        TaxFileResponse result = readService.getTaxFile("user-123", 2024).block();
+
+        // Then
+        assertSame(response, result);
+        verify(cacheService, never()).putInCache(any(), any(), any());
+    }
+
+    @Test
+    void getTaxFile_CacheMiss_ShouldLoadFromDatabaseAndCache() {
+        // Given
+        when(cacheService.getFromCache("user-123", 2024)).thenReturn(Mono.empty());
+        when(readRepository.findTaxFileByUserIdAndYear("user-123", 2024)).thenReturn(Mono.just(response));
+        when(cacheService.putInCache("user-123", 2024, response)).thenReturn(Mono.empty());
+
+        // When
+        TaxFileResponse result = readService.getTaxFile("user-123", 2024).block();
+
+        // Then
+        assertSame(response, result);
+        verify(cacheService).putInCache("user-123", 2024, response);
+    }
+
+    @Test
+    void getTaxFilesByUserId_UnknownUser_ShouldBeEmpty() {
+        // Given
+        when(readRepository.findUserByUserId("missing")).thenReturn(Mono.empty());
+
+        // When
+        var result = readService.getTaxFilesByUserId("missing").blockOptional();
+
+        // Then
+        assertTrue(result.isEmpty());
+        verify(readRepository, never()).findTaxFilesByUserId("missing");
+    }
+}
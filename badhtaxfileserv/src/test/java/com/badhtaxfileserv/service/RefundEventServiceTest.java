@@ -4,19 +4,30 @@ import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.entity.RefundEvent;
 import com.badhtaxfileserv.entity.TaxFile;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
+import com.badhtaxfileserv.repository.RefundEventBatchRepository;
 import com.badhtaxfileserv.repository.RefundEventRepository;
 import com.badhtaxfileserv.repository.RefundRepository;
+import com.badhtaxfileserv.repository.TaxFileBatchRepository;
+import com.badhtaxfileserv.repository.TaxFileRepository;
+import com.badhtaxfileserv.util.RefundEtaStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +43,27 @@ class RefundEventServiceTest {
     @Mock
     private RefundEventRepository refundEventRepository;
     
+    @Mock
+    private TaxFileRepository taxFileRepository;
+    
+    @Mock
+    private TaxFileCacheServiceInterface cacheService;
+    
+    @Mock
+    private RefundEventBatchRepository refundEventBatchRepository;
+    
+    @Mock
+    private TaxFileBatchRepository taxFileBatchRepository;
+    
+    @Mock
+    private RefundEventIdFilter eventIdFilter;
+    
+    @Mock
+    private RefundEtaStatistics etaStatistics;
+    
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
     @InjectMocks
     private RefundEventService refundEventService;
     
@@ -103,7 +135,7 @@ class RefundEventServiceTest {
     @Test
     void processRefundEvent_InProgress_WhenPending_ShouldUpdateStatus() {
         // Given
-        when(refundRepository.findByTaxFileId(any(UUID.class)))
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
                 .thenReturn(Optional.of(refund));
         when(refundRepository.save(any(Refund.class))).thenReturn(refund);
         when(refundEventRepository.save(any(RefundEvent.class))).thenReturn(new RefundEvent());
@@ -121,7 +153,7 @@ class RefundEventServiceTest {
     void processRefundEvent_InProgress_WhenAlreadyInProgress_ShouldNotUpdateStatus() {
         // Given
         refund.setRefundStatus(Refund.RefundStatus.IN_PROGRESS);
-        when(refundRepository.findByTaxFileId(any(UUID.class)))
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
                 .thenReturn(Optional.of(refund));
         when(refundEventRepository.save(any(RefundEvent.class))).thenReturn(new RefundEvent());
         
@@ -136,7 +168,7 @@ class RefundEventServiceTest {
     @Test
     void processRefundEvent_Approved_ShouldUpdateStatus() {
         // Given
-        when(refundRepository.findByTaxFileId(any(UUID.class)))
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
                 .thenReturn(Optional.of(refund));
         when(refundRepository.save(any(Refund.class))).thenReturn(refund);
         when(refundEventRepository.save(any(RefundEvent.class))).thenReturn(new RefundEvent());
@@ -148,12 +180,15 @@ class RefundEventServiceTest {
         verify(refundRepository).save(argThat(r -> 
                 r.getRefundStatus() == Refund.RefundStatus.APPROVED));
         verify(refundEventRepository).save(any(RefundEvent.class));
+        verify(etaStatistics).recordAfterCommit(argThat(approvals -> approvals.size() == 1
+                && approvals.get(0).taxYear() == 2024
+                && approvals.get(0).filedAt().equals(taxFile.getCreatedAt())));
     }
     
     @Test
     void processRefundEvent_Error_ShouldUpdateStatusAndSetErrorReasons() {
         // Given
-        when(refundRepository.findByTaxFileId(any(UUID.class)))
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
                 .thenReturn(Optional.of(refund));
         when(refundRepository.save(any(Refund.class))).thenReturn(refund);
         when(refundEventRepository.save(any(RefundEvent.class))).thenReturn(new RefundEvent());
@@ -169,10 +204,32 @@ class RefundEventServiceTest {
         verify(refundEventRepository).save(any(RefundEvent.class));
     }
     
+    @Test
+    void processRefundEvent_WithWriteThrough_ShouldPatchCacheInsteadOfEvicting() {
+        // Given
+        ReflectionTestUtils.setField(refundEventService, "writeThroughEnabled", true);
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
+                .thenReturn(Optional.of(refund));
+        when(refundRepository.save(any(Refund.class))).thenReturn(refund);
+        when(refundEventRepository.save(any(RefundEvent.class))).thenReturn(new RefundEvent());
+        
+        // When
+        refundEventService.processRefundEvent(errorRequest);
+        
+        // Then
+        verify(cacheService).applyRefundUpdates(argThat(updates ->
+                updates.size() == 1 &&
+                updates.get(0).getUserId().equals("user-123") &&
+                updates.get(0).getRefundStatus().equals("ERROR") &&
+                updates.get(0).getRefundErrors().get(0).getCode().equals("ERR001") &&
+                updates.get(0).getRefundUpdatedAt().equals(refund.getUpdatedAt())));
+        verify(cacheService, never()).evictFromCacheBulk(any());
+    }
+    
     @Test
     void processRefundEvent_WhenRefundNotFound_ShouldThrowException() {
         // Given
-        when(refundRepository.findByTaxFileId(any(UUID.class)))
+        when(refundRepository.findByTaxFileIdForUpdate(any(UUID.class)))
                 .thenReturn(Optional.empty());
         
         // When & Then
@@ -184,5 +241,144 @@ class RefundEventServiceTest {
         assertTrue(exception.getMessage().contains("Refund not found"));
         verify(refundRepository, never()).save(any(Refund.class));
     }
+    
+    @Test
+    void processRefundEvents_ShouldApplyInOrderAndWriteInBatches() {
+        // Given
+        ProcessRefundEventRequest unknownFile = ProcessRefundEventRequest.builder()
+                .eventId("evt-4")
+                .fileId(UUID.randomUUID().toString())
+                .type("refund.approved")
+                .data(ProcessRefundEventRequest.EventData.builder().build())
+                .build();
+        ProcessRefundEventRequest badType = ProcessRefundEventRequest.builder()
+                .eventId("evt-5")
+                .fileId(taxFile.getId().toString())
+                .type("refund.unknown")
+                .data(ProcessRefundEventRequest.EventData.builder().build())
+                .build();
+        ProcessRefundEventRequest repeatedInProgress = ProcessRefundEventRequest.builder()
+                .eventId("evt-6")
+                .fileId(taxFile.getId().toString())
+                .type("refund.inprogress")
+                .data(ProcessRefundEventRequest.EventData.builder().build())
+                .build();
+        when(refundEventBatchRepository.findRefundsByTaxFileIds(any())).thenReturn(List.of(refund));
+        when(refundEventBatchRepository.insertRefundEvents(any())).thenReturn(Set.of("evt-1", "evt-6", "evt-2"));
+        
+        // When
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(
+                List.of(inProgressRequest, repeatedInProgress, approvedRequest, unknownFile, badType));
+        
+        // Then
+        List<BatchRefundEventResponse.EventResult> results = response.getResults();
+        assertEquals(BatchRefundEventResponse.EventStatus.APPLIED, results.get(0).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.UNCHANGED, results.get(1).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.APPLIED, results.get(2).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.NOT_FOUND, results.get(3).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.INVALID, results.get(4).getStatus());
+        assertEquals(2, response.getApplied());
+        assertEquals(1, response.getUnchanged());
+        assertEquals(2, response.getFailed());
+        assertEquals(Refund.RefundStatus.APPROVED, refund.getRefundStatus());
+        
+        verify(refundEventBatchRepository).updateRefunds(argThat(refunds -> refunds.size() == 1));
+        verify(refundEventBatchRepository).insertRefundEvents(argThat(events -> events.size() == 3));
+        verify(cacheService).evictFromCacheBulk(argThat(keys -> keys.get("user-123").contains(2024)));
+        verify(refundRepository, never()).save(any(Refund.class));
+    }
+    
+    @Test
+    void processRefundEvent_WhenEventIdAlreadyRecorded_ShouldSkipProcessing() {
+        // Given
+        when(refundEventRepository.existsByEventId("evt-2")).thenReturn(true);
+        
+        // When
+        refundEventService.processRefundEvent(approvedRequest);
+        
+        // Then
+        verify(refundRepository, never()).findByTaxFileIdForUpdate(any(UUID.class));
+        verify(refundEventRepository, never()).save(any(RefundEvent.class));
+        verify(eventIdFilter).markProcessed("evt-2");
+    }
+    
+    @Test
+    void processRefundEvent_WhenEventIdKnownToFilter_ShouldSkipDatabase() {
+        // Given
+        when(eventIdFilter.isKnownDuplicate("evt-2")).thenReturn(true);
+        
+        // When
+        refundEventService.processRefundEvent(approvedRequest);
+        
+        // Then
+        verifyNoInteractions(refundRepository, refundEventRepository, cacheService);
+    }
+    
+    @Test
+    void processRefundEvents_ShouldSkipRecordedAndRepeatedEventIds() {
+        // Given: evt-1 is already recorded, so its insert is skipped
+        when(refundEventBatchRepository.findRefundsByTaxFileIds(any())).thenReturn(List.of(refund));
+        when(refundEventBatchRepository.insertRefundEvents(any())).thenReturn(Set.of("evt-2"));
+        
+        // When
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(
+                List.of(inProgressRequest, approvedRequest, approvedRequest));
+        
+        // Then
+        List<BatchRefundEventResponse.EventResult> results = response.getResults();
+        assertEquals(BatchRefundEventResponse.EventStatus.DUPLICATE, results.get(0).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.APPLIED, results.get(1).getStatus());
+        assertEquals(BatchRefundEventResponse.EventStatus.DUPLICATE, results.get(2).getStatus());
+        assertEquals(2, response.getDuplicates());
+        assertEquals(0, response.getFailed());
+        verify(refundEventBatchRepository).insertRefundEvents(argThat(events ->
+                events.size() == 2 && "evt-1".equals(events.get(0).getEventId()) && "evt-2".equals(events.get(1).getEventId())));
+        assertEquals(1.0, meterRegistry.get("refund.events")
+                .tags("type", "REFUND_APPROVED", "outcome", "duplicate").counter().count());
+        assertEquals(1.0, meterRegistry.get("refund.events")
+                .tags("type", "REFUND_APPROVED", "outcome", "applied").counter().count());
+    }
+    
+    @Test
+    void processRefundEvents_WhenEventRecordedConcurrently_ShouldNotApplyItAgain() {
+        // Given: another delivery of evt-3 committed first, so nothing is inserted
+        refund.setRefundStatus(Refund.RefundStatus.APPROVED);
+        when(refundEventBatchRepository.findRefundsByTaxFileIds(any())).thenReturn(List.of(refund));
+        when(refundEventBatchRepository.insertRefundEvents(any())).thenReturn(Set.of());
+        
+        // When
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(List.of(errorRequest));
+        
+        // Then
+        assertEquals(BatchRefundEventResponse.EventStatus.DUPLICATE, response.getResults().get(0).getStatus());
+        assertEquals(0, response.getApplied());
+        assertEquals(Refund.RefundStatus.APPROVED, refund.getRefundStatus());
+        verify(refundEventBatchRepository, never()).updateRefunds(any());
+        verifyNoInteractions(cacheService, etaStatistics);
+    }
+    
+    @Test
+    void processRefundEvents_WithMalformedEvents_ShouldReportOnlyThoseAsInvalid() {
+        // Given: what the parser yields for an element without data, and a null element
+        ProcessRefundEventRequest withoutData = ProcessRefundEventRequest.builder()
+                .eventId("evt-4")
+                .fileId(taxFile.getId().toString())
+                .type("refund.approved")
+                .build();
+        when(refundEventBatchRepository.findRefundsByTaxFileIds(any())).thenReturn(List.of(refund));
+        when(refundEventBatchRepository.insertRefundEvents(any())).thenReturn(Set.of("evt-1"));
+        
+        // When
+        BatchRefundEventResponse response = refundEventService.processRefundEvents(
+                Arrays.asList(withoutData, null, inProgressRequest));
+        
+        // Then
+        List<BatchRefundEventResponse.EventResult> results = response.getResults();
+        assertEquals(BatchRefundEventResponse.EventStatus.INVALID, results.get(0).getStatus());
+        assertEquals("Event data is missing or malformed", results.get(0).getError());
+        assertEquals(BatchRefundEventResponse.EventStatus.INVALID, results.get(1).getStatus());
+        assertNull(results.get(1).getEventId());
+        assertEquals(BatchRefundEventResponse.EventStatus.APPLIED, results.get(2).getStatus());
+        assertEquals(2, response.getFailed());
+    }
 }
-
@@ -63,6 +63,23 @@ class RefundServiceTest {
                 .build();
     }
     
+    @Test
+    void getRefund_WhenRejected_ShouldReturnStoredErrors() {
+        // Given
+        refund.setRefundStatus(Refund.RefundStatus.ERROR);
+        refund.setRefundErrors("[{\"code\":\"ERR001\",\"message\":\"Invalid bank account\"}]");
+        when(refundRepository.findByUserIdAndYear(anyString(), any()))
+                .thenReturn(Optional.of(refund));
+        
+        // When
+        RefundResponse response = refundService.getRefund("user-123", 2024);
+        
+        // Then
+        assertEquals(1, response.getErrors().size());
+        assertEquals("ERR001", response.getErrors().get(0).getCode());
+        assertEquals("Invalid bank account", response.getErrors().get(0).getMessage());
+    }
+    
     @Test
     void getRefund_ByUserIdAndYear_WhenExists_ShouldReturnRefund() {
         // Given
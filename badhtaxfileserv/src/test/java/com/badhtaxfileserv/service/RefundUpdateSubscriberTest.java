@@ -0,0 +1,147 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.dto.BatchRefundEventResponse;
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import com.badhtaxfileserv.util.RefundEventMessageParser;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.badhtaxfileserv.dto.BatchRefundEventResponse.EventStatus.APPLIED;
+import static com.badhtaxfileserv.dto.BatchRefundEventResponse.EventStatus.DUPLICATE;
+import static com.badhtaxfileserv.dto.BatchRefundEventResponse.EventStatus.INVALID;
+import static com.badhtaxfileserv.dto.BatchRefundEventResponse.EventStatus.NOT_FOUND;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefundUpdateSubscriberTest {
+
+    @Mock
+    private RefundEventService refundEventService;
+
+    @Mock
+    private AckReplyConsumer firstConsumer;
+
+    @Mock
+    private AckReplyConsumer secondConsumer;
+
+    private RefundUpdateSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() {
+        subscriber = new RefundUpdateSubscriber(refundEventService, new RefundEventMessageParser(),
+            new BackgroundExecutorFactory(false), new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handleBatch_ShouldApplyAllEventsInOneCallAndAck() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(APPLIED, APPLIED, DUPLICATE));
+        List<RefundUpdateSubscriber.PendingMessage> batch = List.of(
+            pending(event("evt-1", "file-1"), firstConsumer),
+            pending("[" + event("evt-2", "file-2") + "," + event("evt-3", "file-3") + "]", secondConsumer));
+
+        // When
+        subscriber.handleBatch(batch);
+
+        // Then
+        ArgumentCaptor<List<ProcessRefundEventRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(refundEventService, times(1)).processRefundEvents(requests.capture());
+        assertEquals(List.of("evt-1", "evt-2", "evt-3"),
+            requests.getValue().stream().map(ProcessRefundEventRequest::getEventId).toList());
+        verify(firstConsumer).ack();
+        verify(secondConsumer).ack();
+    }
+
+    @Test
+    void handleBatch_WhenProcessingFails_ShouldNackForRedelivery() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenThrow(new RuntimeException("database unavailable"));
+
+        // When
+        subscriber.handleBatch(List.of(pending(event("evt-1", "file-1"), firstConsumer)));
+
+        // Then
+        verify(firstConsumer).nack();
+        verify(firstConsumer, never()).ack();
+    }
+
+    @Test
+    void handleBatch_UnparseableMessage_ShouldAckAndSkipIt() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(APPLIED));
+
+        // When
+        subscriber.handleBatch(List.of(
+            pending("not json", firstConsumer),
+            pending(event("evt-1", "file-1"), secondConsumer)));
+
+        // Then
+        verify(firstConsumer).ack();
+        verify(secondConsumer).ack();
+        verify(refundEventService).processRefundEvents(argThat(requests -> requests.size() == 1));
+    }
+
+    @Test
+    void handleBatch_WhenAnEventsTaxFileIsNotFound_ShouldNackOnlyItsMessage() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(APPLIED, APPLIED, NOT_FOUND));
+
+        // When
+        subscriber.handleBatch(List.of(
+            pending(event("evt-1", "file-1"), firstConsumer),
+            pending("[" + event("evt-2", "file-2") + "," + event("evt-3", "file-3") + "]", secondConsumer)));
+
+        // Then
+        verify(firstConsumer).ack();
+        verify(secondConsumer).nack();
+        verify(secondConsumer, never()).ack();
+    }
+
+    @Test
+    void handleBatch_WithMalformedEventInMessage_ShouldApplyTheOthersAndAck() {
+        // Given
+        when(refundEventService.processRefundEvents(anyList())).thenReturn(response(INVALID, APPLIED));
+
+        // When
+        subscriber.handleBatch(List.of(
+            pending("[{\"eventId\":\"evt-1\",\"fileId\":\"file-1\"}," + event("evt-2", "file-2") + "]", firstConsumer)));
+
+        // Then
+        verify(refundEventService).processRefundEvents(argThat(requests -> requests.size() == 2
+            && requests.get(0).getData() == null && "evt-2".equals(requests.get(1).getEventId())));
+        verify(firstConsumer).ack();
+    }
+
+    private static BatchRefundEventResponse response(BatchRefundEventResponse.EventStatus... statuses) {
+        List<BatchRefundEventResponse.EventResult> results = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            results.add(BatchRefundEventResponse.EventResult.builder().index(i).status(statuses[i]).build());
+        }
+        return BatchRefundEventResponse.builder().results(results).build();
+    }
+
+    private static RefundUpdateSubscriber.PendingMessage pending(String data, AckReplyConsumer consumer) {
+        return new RefundUpdateSubscriber.PendingMessage(
+            PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(data)).build(), consumer);
+    }
+
+    private static String event(String eventId, String fileId) {
+        return "{\"eventId\":\"" + eventId + "\",\"fileId\":\"" + fileId + "\",\"type\":\"REFUND_APPROVED\","
+            + "\"data\":{\"eventDate\":\"2024-03-01T10:00:00Z\"}}";
+    }
+}
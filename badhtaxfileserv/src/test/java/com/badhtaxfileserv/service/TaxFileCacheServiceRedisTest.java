@@ -0,0 +1,214 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TaxFileCacheService} against real Redis, so the Lua scripts themselves run. Skipped where
+ * Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TaxFileCacheServiceRedisTest {
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private TaxFileCacheService cacheService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        // Same serializers as RedisConfig
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+        CacheValueCodec codec = new CacheValueCodec(new ObjectMapper().findAndRegisterModules(), CacheValueCodec.Format.BINARY, 1024);
+        cacheService = new TaxFileCacheService(redisTemplate, codec, new SimpleMeterRegistry(), 3000, 100, 60000, 300000, 86400000, 60000);
+    }
+
+    @Test
+    void putInCache_AfterPatchOfUncachedEntry_ShouldCacheReloadOfThePatchedRow() {
+        // Given: the refund row's updated_at after the status change, as Postgres stamped it
+        LocalDateTime version = LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123456000);
+        cacheService.applyRefundUpdates(List.of(update("IN_PROGRESS", version)));
+
+        // When: the next read loads the same row
+        cacheService.putInCache("user-1", 2024, response("IN_PROGRESS", version));
+
+        // Then
+        TaxFileResponse cached = cacheService.getFromCache("user-1", 2024);
+        assertNotNull(cached);
+        assertEquals("IN_PROGRESS", cached.getRefundStatus());
+    }
+
+    @Test
+    void putInCache_AfterPatch_ShouldDropLoadOfTheRowBeforeTheChange() {
+        // Given
+        LocalDateTime before = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        cacheService.putInCache("user-1", 2024, response("PENDING", before));
+        cacheService.applyRefundUpdates(List.of(update("APPROVED", before.plusNanos(1000))));
+
+        // When: a load that read the row before the change finishes late
+        cacheService.putInCache("user-1", 2024, response("PENDING", before));
+
+        // Then
+        assertEquals("APPROVED", cacheService.getFromCache("user-1", 2024).getRefundStatus());
+    }
+
+    @Test
+    void applyRefundUpdates_WhenSupersededByNewerEntry_ShouldStillDropCachedTaxUser() {
+        // Given
+        LocalDateTime version = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        cacheService.putInCache("user-1", 2024, response("APPROVED", version.plusSeconds(1)));
+        TaxUserResponse taxUser = TaxUserResponse.builder().userId("user-1").taxFiles(List.of()).build();
+        cacheService.getTaxUserFromCache("user-1", () -> taxUser);
+
+        // When: a change older than the cached entry arrives late
+        cacheService.applyRefundUpdates(List.of(update("IN_PROGRESS", version)));
+
+        // Then
+        AtomicBoolean reloaded = new AtomicBoolean();
+        cacheService.getTaxUserFromCache("user-1", () -> {
+            reloaded.set(true);
+            return taxUser;
+        });
+        assertTrue(reloaded.get());
+        assertEquals("APPROVED", cacheService.getFromCache("user-1", 2024).getRefundStatus());
+    }
+
+    @Test
+    void unlockScript_ShouldLeaveLockTakenByAnotherHolder() {
+        // Given: the first holder's lock expired and another instance took it
+        String lockKey = "taxfile:lock:{user-1}:2024";
+        redisTemplate.execute(TaxFileCacheService.LOCK_SCRIPT, RedisSerializer.string(), null, List.of(lockKey), "first", "3000");
+        redisTemplate.delete(lockKey);
+        Long taken = redisTemplate.execute(TaxFileCacheService.LOCK_SCRIPT, RedisSerializer.string(), null, List.of(lockKey), "second", "3000");
+
+        // When: the first holder finishes its load
+        Long released = redisTemplate.execute(TaxFileCacheService.UNLOCK_SCRIPT, RedisSerializer.string(), null, List.of(lockKey), "first");
+
+        // Then
+        assertEquals(1L, taken);
+        assertEquals(0L, released);
+        assertEquals(1L, redisTemplate.execute(TaxFileCacheService.UNLOCK_SCRIPT, RedisSerializer.string(), null, List.of(lockKey), "second"));
+    }
+
+    @Test
+    void loadOnMiss_AfterEvictionForStatusChange_ShouldNotServeTheOldStatus() {
+        // Given: another instance holds the load lock for the evicted entry
+        LocalDateTime version = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        cacheService.putInCache("user-1", 2024, response("PENDING", version));
+        cacheService.evictFromCache("user-1", 2024);
+        redisTemplate.execute(TaxFileCacheService.LOCK_SCRIPT, RedisSerializer.string(), null,
+                List.of("taxfile:lock:{user-1}:2024"), "other-instance", "3000");
+
+        // When
+        TaxFileResponse served = cacheService.loadOnMiss("user-1", 2024, () -> response("APPROVED", version.plusSeconds(1)));
+
+        // Then
+        assertEquals("APPROVED", served.getRefundStatus());
+    }
+
+    @Test
+    void evictAll_ShouldHideEntriesWrittenUnderTheOldGeneration() {
+        // Given
+        LocalDateTime version = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        cacheService.putInCache("user-1", 2024, response("PENDING", version));
+        TaxUserResponse taxUser = TaxUserResponse.builder().userId("user-1").taxFiles(List.of()).build();
+        cacheService.getTaxUserFromCache("user-1", () -> taxUser);
+
+        // When
+        cacheService.evictAll();
+
+        // Then: nothing was deleted, but the old generation's entries read as absent
+        assertTrue(redisTemplate.hasKey(TaxFileCacheService.userKey("user-1")));
+        assertNull(cacheService.getFromCache("user-1", 2024));
+        assertTrue(cacheService.getAllFromCache("user-1").isEmpty());
+        AtomicBoolean reloaded = new AtomicBoolean();
+        cacheService.getTaxUserFromCache("user-1", () -> {
+            reloaded.set(true);
+            return taxUser;
+        });
+        assertTrue(reloaded.get());
+    }
+
+    @Test
+    void putInCache_AfterEvictAll_ShouldResetTheHashForTheNewGeneration() {
+        // Given
+        LocalDateTime version = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        cacheService.putInCache("user-1", 2023, response("APPROVED", version));
+        cacheService.putInCache("user-1", 2024, response("PENDING", version));
+        cacheService.evictAll();
+
+        // When: a write that is not newer than the old generation's entry
+        cacheService.putInCache("user-1", 2024, response("PENDING", version));
+
+        // Then: it is kept, and the other old year stays gone
+        assertEquals("PENDING", cacheService.getFromCache("user-1", 2024).getRefundStatus());
+        assertNull(cacheService.getFromCache("user-1", 2023));
+        assertEquals(List.of(2024), List.copyOf(cacheService.getAllFromCache("user-1").keySet()));
+    }
+
+    private static RefundCacheUpdate update(String refundStatus, LocalDateTime refundUpdatedAt) {
+        return RefundCacheUpdate.builder()
+                .userId("user-1")
+                .year(2024)
+                .refundStatus(refundStatus)
+                .refundUpdatedAt(refundUpdatedAt)
+                .build();
+    }
+
+    private static TaxFileResponse response(String refundStatus, LocalDateTime refundUpdatedAt) {
+        return TaxFileResponse.builder()
+                .fileId("file-1")
+                .userId("user-1")
+                .year(2024)
+                .taxStatus("PENDING")
+                .refundStatus(refundStatus)
+                .refundUpdatedAt(refundUpdatedAt)
+                .build();
+    }
+}
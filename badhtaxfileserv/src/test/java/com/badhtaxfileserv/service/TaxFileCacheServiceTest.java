@@ -0,0 +1,381 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.RefundCacheUpdate;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+import com.badhtaxfileserv.util.CacheValueCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaxFileCacheServiceTest {
+
+    private static final String GENERATION_KEY = "taxfile:generation";
+    private static final String USER_KEY = "taxfile:{user-123}";
+    private static final String LOCK_KEY = "taxfile:lock:{user-123}:2024";
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private final CacheValueCodec codec = new CacheValueCodec(new ObjectMapper().findAndRegisterModules(), CacheValueCodec.Format.BINARY, 1024);
+    private TaxFileCacheService cacheService;
+    private TaxFileResponse response;
+    private final AtomicReference<byte[]> writtenChange = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        cacheService = new TaxFileCacheService(redisTemplate, codec, new SimpleMeterRegistry(), 3000, 100, 60000, 300000, 86400000, 60000);
+        response = TaxFileResponse.builder()
+                .fileId("file-1")
+                .userId("user-123")
+                .year(2024)
+                .taxStatus("PENDING")
+                .refundStatus("PENDING")
+                .build();
+    }
+
+    @Test
+    void getFromCache_ShouldReadYearFromUserHash() {
+        // Given
+        whenRead(USER_KEY, codec.encode(response));
+
+        // When
+        TaxFileResponse cached = cacheService.getFromCache("user-123", 2024);
+
+        // Then
+        assertEquals("file-1", cached.getFileId());
+    }
+
+    @Test
+    void getFromCache_WhenRememberedAsMissing_ShouldThrowNotFound() {
+        // Given
+        whenRead(USER_KEY, new byte[0]);
+
+        // When & Then
+        assertThrows(TaxFileNotFoundException.class, () -> cacheService.getFromCache("user-123", 2024));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAllFromCache_ShouldReturnEveryCachedYear() {
+        // Given
+        TaxFileResponse previousYear = response.toBuilder().fileId("file-0").year(2023).build();
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(GENERATION_KEY, USER_KEY))))
+                .thenReturn(List.of(
+                        "2024".getBytes(StandardCharsets.UTF_8), codec.encode(response),
+                        "2023".getBytes(StandardCharsets.UTF_8), codec.encode(previousYear)));
+
+        // When
+        Map<Integer, TaxFileResponse> byYear = cacheService.getAllFromCache("user-123");
+
+        // Then
+        assertEquals(List.of(2023, 2024), List.copyOf(byYear.keySet()));
+        assertEquals("file-0", byYear.get(2023).getFileId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getFromCacheBulk_ShouldReadEveryKeyInOnePipeline() {
+        // Given
+        when(redisTemplate.executePipelined(any(SessionCallback.class), any(RedisSerializer.class)))
+                .thenReturn(Arrays.asList(codec.encode(response), null));
+
+        // When
+        List<TaxFileResponse> cached = cacheService.getFromCacheBulk(Map.of("user-123", List.of(2024, 2023)));
+
+        // Then
+        assertEquals(1, cached.size());
+        assertEquals("file-1", cached.get(0).getFileId());
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class), any(RedisSerializer.class));
+    }
+
+    @Test
+    void loadOnMiss_WhenLockAcquired_ShouldLoadCacheAndReleaseLock() {
+        // Given
+        AtomicReference<String> token = whenLock(1L);
+        AtomicReference<byte[]> written = captureWrite(1L);
+
+        // When
+        TaxFileResponse loaded = cacheService.loadOnMiss("user-123", 2024, () -> response);
+
+        // Then
+        assertSame(response, loaded);
+        assertEquals(response, codec.decodeTaxFile(written.get()));
+        verify(redisTemplate).execute(eq(TaxFileCacheService.UNLOCK_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(LOCK_KEY)), eq(token.get()));
+    }
+
+    @Test
+    void loadOnMiss_WhenLoaderFindsNothing_ShouldRememberMissing() {
+        // Given
+        AtomicReference<String> token = whenLock(1L);
+
+        // When
+        assertThrows(TaxFileNotFoundException.class, () -> cacheService.loadOnMiss("user-123", 2024, () -> {
+            throw new TaxFileNotFoundException("user-123", 2024);
+        }));
+
+        // Then
+        verify(redisTemplate).execute(eq(TaxFileCacheService.WRITE_MISSING_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), eq("2024".getBytes(StandardCharsets.UTF_8)),
+                eq("60000".getBytes(StandardCharsets.UTF_8)));
+        verify(redisTemplate).execute(eq(TaxFileCacheService.UNLOCK_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(LOCK_KEY)), eq(token.get()));
+    }
+
+    @Test
+    void loadOnMiss_WhenAnotherInstanceIsLoading_ShouldServeStaleCopy() {
+        // Given
+        whenLock(0L);
+        when(redisTemplate.execute(eq(TaxFileCacheService.READ_STALE_SCRIPT), any(RedisSerializer.class), any(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), eq("2024"), eq("60000")))
+                .thenReturn(codec.encode(response));
+
+        // When
+        TaxFileResponse served = cacheService.loadOnMiss("user-123", 2024, () -> {
+            throw new AssertionError("Stale copy should be served without loading");
+        });
+
+        // Then
+        assertEquals("file-1", served.getFileId());
+        verify(redisTemplate, never()).execute(eq(TaxFileCacheService.UNLOCK_SCRIPT), any(RedisSerializer.class), any(),
+                any(), any());
+    }
+
+    @Test
+    void loadOnMiss_WhenLoaderNeverDelivers_ShouldLoadAfterWaiting() {
+        // Given
+        whenLock(0L);
+        captureWrite(1L);
+
+        // When
+        TaxFileResponse loaded = cacheService.loadOnMiss("user-123", 2024, () -> response);
+
+        // Then
+        assertSame(response, loaded);
+        verify(redisTemplate, atLeast(2)).execute(eq(TaxFileCacheService.READ_SCRIPT), any(RedisSerializer.class), any(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), eq("2024"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictFromCache_ShouldDropYearFromUserHash() {
+        // When
+        cacheService.evictFromCache("user-123", 2024);
+
+        // Then
+        verify(redisTemplate).execute(any(RedisScript.class), any(RedisSerializer.class), isNull(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), eq("2024"));
+        verify(redisTemplate, never()).delete(USER_KEY);
+    }
+
+    @Test
+    void evictAllForUser_ShouldDeleteUserHashesInOneCall() {
+        // When
+        cacheService.evictAllForUser("user-123");
+
+        // Then
+        verify(redisTemplate).delete(USER_KEY);
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void evictAll_ShouldBumpGenerationWithoutScanningKeys() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // When
+        cacheService.evictAll();
+
+        // Then
+        verify(valueOperations).increment(GENERATION_KEY);
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void applyRefundUpdates_ShouldPatchCachedEntryInPlace() {
+        // Given
+        whenRead(USER_KEY, codec.encode(response));
+        AtomicReference<byte[]> written = captureWrite(1L);
+        RefundCacheUpdate update = RefundCacheUpdate.builder()
+                .userId("user-123")
+                .year(2024)
+                .refundStatus("ERROR")
+                .refundErrors(List.of(new TaxFileResponse.ErrorDetail("ERR001", "Invalid bank account")))
+                .refundUpdatedAt(LocalDateTime.of(2024, 4, 1, 12, 0))
+                .build();
+
+        // When
+        cacheService.applyRefundUpdates(List.of(update));
+
+        // Then
+        TaxFileResponse patched = codec.decodeTaxFile(written.get());
+        assertEquals("file-1", patched.getFileId());
+        assertEquals("ERROR", patched.getRefundStatus());
+        assertEquals("ERR001", patched.getRefundErrors().get(0).getCode());
+        assertEquals(update.getRefundUpdatedAt(), patched.getRefundUpdatedAt());
+        assertEquals("1", new String(writtenChange.get(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void applyRefundUpdates_WhenNotCached_ShouldOnlyRaiseVersion() {
+        // Given
+        whenRead(USER_KEY, null);
+        AtomicReference<byte[]> written = captureWrite(1L);
+
+        // When
+        cacheService.applyRefundUpdates(List.of(RefundCacheUpdate.builder()
+                .userId("user-123")
+                .year(2024)
+                .refundStatus("APPROVED")
+                .refundErrors(List.of())
+                .refundUpdatedAt(LocalDateTime.of(1970, 1, 1, 0, 0, 1))
+                .build()));
+
+        // Then
+        assertEquals(0, written.get().length);
+        assertEquals("1000000", new String(TaxFileCacheService.versionBytes(LocalDateTime.of(1970, 1, 1, 0, 0, 1)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void applyRefundUpdates_WhenRedisFails_ShouldFallBackToEviction() {
+        // Given
+        when(redisTemplate.execute(eq(TaxFileCacheService.READ_SCRIPT), any(RedisSerializer.class), any(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), eq("2024")))
+                .thenThrow(new IllegalStateException("Redis down"));
+
+        // When
+        cacheService.applyRefundUpdates(List.of(RefundCacheUpdate.builder()
+                .userId("user-123")
+                .year(2024)
+                .refundStatus("APPROVED")
+                .build()));
+
+        // Then
+        verify(redisTemplate).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getTaxUserFromCache_WhenCached_ShouldNotLoad() {
+        // Given
+        TaxUserResponse taxUser = TaxUserResponse.builder().userId("user-123").firstName("John").taxFiles(List.of()).build();
+        when(redisTemplate.execute(eq(TaxFileCacheService.READ_TAX_USER_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(GENERATION_KEY, USER_KEY))))
+                .thenReturn(List.of("0:3".getBytes(StandardCharsets.UTF_8), codec.encode(taxUser)));
+
+        // When
+        TaxUserResponse cached = cacheService.getTaxUserFromCache("user-123", () -> {
+            throw new AssertionError("Cached tax user should be served without loading");
+        });
+
+        // Then
+        assertEquals("John", cached.getFirstName());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getTaxUserFromCache_OnMiss_ShouldCacheUnderVersionSeenOnMiss() {
+        // Given
+        TaxUserResponse taxUser = TaxUserResponse.builder().userId("user-123").taxFiles(List.of()).build();
+        when(redisTemplate.execute(eq(TaxFileCacheService.READ_TAX_USER_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(GENERATION_KEY, USER_KEY))))
+                .thenReturn(List.of("0:3".getBytes(StandardCharsets.UTF_8)));
+        AtomicReference<Object[]> written = new AtomicReference<>();
+        when(redisTemplate.execute(eq(TaxFileCacheService.WRITE_TAX_USER_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    written.set(invocation.getArguments());
+                    return 1L;
+                });
+
+        // When
+        TaxUserResponse loaded = cacheService.getTaxUserFromCache("user-123", () -> taxUser);
+
+        // Then
+        assertSame(taxUser, loaded);
+        assertEquals("0:3", new String((byte[]) written.get()[5], StandardCharsets.UTF_8));
+        assertEquals("86400000", new String((byte[]) written.get()[6], StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void taxUserTtl_ShouldBeShortWhileAnyRefundIsInFlight() {
+        // Given
+        TaxUserResponse.TaxFileSummary approved = TaxUserResponse.TaxFileSummary.builder().year(2023).refundStatus("APPROVED").build();
+        TaxUserResponse.TaxFileSummary inProgress = TaxUserResponse.TaxFileSummary.builder().year(2024).refundStatus("IN_PROGRESS").build();
+
+        // When
+        Duration settled = cacheService.taxUserTtl(TaxUserResponse.builder().taxFiles(List.of(approved)).build());
+        Duration active = cacheService.taxUserTtl(TaxUserResponse.builder().taxFiles(List.of(approved, inProgress)).build());
+
+        // Then
+        assertEquals(Duration.ofHours(24), settled);
+        assertEquals(Duration.ofMinutes(5), active);
+    }
+
+    private void whenRead(String hashKey, byte[] value) {
+        when(redisTemplate.execute(eq(TaxFileCacheService.READ_SCRIPT), any(RedisSerializer.class), any(),
+                eq(List.of(GENERATION_KEY, hashKey)), eq("2024")))
+                .thenReturn(value);
+    }
+
+    /**
+     * Answer the lock script with {@code result} and capture the token it was given.
+     */
+    private AtomicReference<String> whenLock(Long result) {
+        AtomicReference<String> token = new AtomicReference<>();
+        when(redisTemplate.execute(eq(TaxFileCacheService.LOCK_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(LOCK_KEY)), anyString(), eq("3000")))
+                .thenAnswer(invocation -> {
+                    token.set(invocation.getArgument(4));
+                    return result;
+                });
+        return token;
+    }
+
+    /**
+     * Answer the write script with {@code result} and capture the value it was given.
+     */
+    private AtomicReference<byte[]> captureWrite(Long result) {
+        AtomicReference<byte[]> value = new AtomicReference<>();
+        when(redisTemplate.execute(eq(TaxFileCacheService.WRITE_SCRIPT), any(RedisSerializer.class), isNull(),
+                eq(List.of(GENERATION_KEY, USER_KEY)), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    value.set(invocation.getArgument(5));
+                    writtenChange.set(invocation.getArgument(8));
+                    return result;
+                });
+        return value;
+    }
+}
@@ -0,0 +1,104 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.config.BackgroundExecutorFactory;
+import com.badhtaxfileserv.repository.TaxFileKeyStreamRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaxFileExistenceFilterTest {
+
+    @Mock
+    private TaxFileKeyStreamRepository keyRepository;
+
+    private TaxFileExistenceFilter existenceFilter;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate noTransaction = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(null);
+            }
+        };
+        existenceFilter = new TaxFileExistenceFilter(keyRepository, noTransaction, null, new BackgroundExecutorFactory(false),
+                new SimpleMeterRegistry(), false, true, 0.01, 1000, "taxfile:created");
+    }
+
+    @Test
+    void mightExist_BeforeFirstBuild_ShouldNotRuleAnythingOut() {
+        assertFalse(existenceFilter.isReady());
+        assertTrue(existenceFilter.mightExist("user-123", 2025));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_ShouldRuleOutKeysNotInTaxFileTable() {
+        // Given
+        when(keyRepository.count()).thenReturn(1L);
+        doAnswer(invocation -> {
+            invocation.<BiConsumer<String, Integer>>getArgument(1).accept("user-123", 2024);
+            return null;
+        }).when(keyRepository).forEachKey(anyInt(), any(BiConsumer.class));
+
+        // When
+        existenceFilter.rebuild();
+
+        // Then
+        assertTrue(existenceFilter.mightExist("user-123", 2024));
+        assertFalse(existenceFilter.mightExist("user-123", 2025));
+    }
+
+    @Test
+    void recordCreated_AndAnnouncementsFromOtherInstances_ShouldBeAddedToFilter() {
+        // Given
+        existenceFilter.rebuild();
+
+        // When
+        existenceFilter.recordCreated("user-123", 2025);
+        existenceFilter.onMessage(new DefaultMessage("taxfile:created".getBytes(StandardCharsets.UTF_8),
+                "other-instance|user-456:2024\nuser-789:2024".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then
+        assertTrue(existenceFilter.mightExist("user-123", 2025));
+        assertTrue(existenceFilter.mightExist("user-456", 2024));
+        assertTrue(existenceFilter.mightExist("user-789", 2024));
+        assertFalse(existenceFilter.mightExist("user-000", 2024));
+    }
+
+    @Test
+    void onChannelSubscribed_BeforeFirstBuild_ShouldNotRebuild() {
+        // When
+        existenceFilter.onChannelSubscribed("taxfile:created".getBytes(StandardCharsets.UTF_8), 1);
+
+        // Then
+        verifyNoInteractions(keyRepository);
+    }
+
+    @Test
+    void onChannelSubscribed_AfterBuild_ShouldRebuildToPickUpMissedAnnouncements() {
+        // Given
+        existenceFilter.rebuild();
+
+        // When: the subscription is re-established after a disconnect
+        existenceFilter.onChannelSubscribed("taxfile:created".getBytes(StandardCharsets.UTF_8), 1);
+
+        // Then
+        verify(keyRepository, timeout(5000).times(2)).forEachKey(anyInt(), any());
+    }
+}
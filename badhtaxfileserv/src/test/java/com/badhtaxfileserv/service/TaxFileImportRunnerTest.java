@@ -0,0 +1,77 @@
+package com.badhtaxfileserv.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaxFileImportRunnerTest {
+
+    @Mock
+    private TaxFileImportService taxFileImportService;
+
+    @Mock
+    private ConfigurableApplicationContext applicationContext;
+
+    private TaxFileImportRunner runner;
+    private Path file;
+    private final AtomicInteger exitStatus = new AtomicInteger(-1);
+
+    @BeforeEach
+    void setUp() {
+        runner = new TaxFileImportRunner(taxFileImportService, applicationContext);
+        runner.exit = exitStatus::set;
+        ReflectionTestUtils.setField(runner, "importFormat", "");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void run_WhenImportSucceeds_ShouldCloseContextAndExitWithZero() throws Exception {
+        // Given
+        file = Files.writeString(Files.createTempFile("filings", ".ndjson"), "{}\n");
+        ReflectionTestUtils.setField(runner, "importFile", file.toString());
+
+        // When
+        runner.run(null);
+
+        // Then
+        verify(taxFileImportService).importFile(any(), eq(TaxFileImportService.ImportFormat.NDJSON), eq(file.toString()));
+        verify(applicationContext).close();
+        assertEquals(0, exitStatus.get());
+    }
+
+    @Test
+    void run_WhenImportFails_ShouldCloseContextAndExitWithOne() throws Exception {
+        // Given
+        file = Files.writeString(Files.createTempFile("filings", ".csv"), "user_id\n");
+        ReflectionTestUtils.setField(runner, "importFile", file.toString());
+        when(taxFileImportService.importFile(any(), any(), any())).thenThrow(new RuntimeException("Import failed: boom"));
+
+        // When
+        runner.run(null);
+
+        // Then
+        verify(applicationContext).close();
+        assertEquals(1, exitStatus.get());
+    }
+}
@@ -0,0 +1,223 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.TaxFileImportResponse;
+import com.badhtaxfileserv.exception.ImportAlreadyRunningException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaxFileImportServiceTest {
+
+    private static final String CSV_HEADER = "user_id,first_name,last_name,tax_year,income,expense,tax_rate_percent,deducted,refund_amount\n";
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private ResultSet mergeResult;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @Mock
+    private CopyIn copyIn;
+
+    @Mock
+    private TaxFileExistenceFilter existenceFilter;
+
+    @Mock
+    private TaxFileCacheServiceInterface cacheService;
+
+    private TaxFileImportService importService;
+    private final StringBuilder staged = new StringBuilder();
+
+    @BeforeEach
+    void setUp() {
+        importService = new TaxFileImportService(dataSource, new ObjectMapper(), existenceFilter, cacheService);
+    }
+
+    // A connection whose merge reports the given counts
+    private void givenConnection(long taxFilesInserted) throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        when(statement.executeQuery(startsWith("WITH deduped"))).thenReturn(mergeResult);
+        when(mergeResult.next()).thenReturn(true);
+        when(mergeResult.getLong(1)).thenReturn(taxFilesInserted);
+        when(mergeResult.getLong(2)).thenReturn(taxFilesInserted);
+    }
+
+    // Collects the rows sent over COPY
+    private void captureStaged() throws Exception {
+        doAnswer(invocation -> {
+            staged.append(new String(invocation.<byte[]>getArgument(0), 0, invocation.<Integer>getArgument(2), StandardCharsets.UTF_8));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    void importFile_ShouldStageRowsMergeAndInvalidateCaches() throws Exception {
+        // Given
+        givenConnection(2);
+        captureStaged();
+        String csv = CSV_HEADER +
+                "user-1,Jane,Doe,2023,90000,10000,22,18000,1200\n" +
+                "user-2,\"Smith, \"\"Jr.\"\"\",\"Line one\nline two\",2023,80000,9000,20,15000,0\n";
+
+        // When
+        TaxFileImportResponse response = importService.importFile(input(csv), TaxFileImportService.ImportFormat.CSV, "test");
+
+        // Then
+        assertEquals(2, response.getRowsRead());
+        assertEquals(0, response.getRowsRejected());
+        assertEquals(2, response.getTaxFilesInserted());
+        assertTrue(staged.toString().startsWith("\"user-1\",\"Jane\",\"Doe\",2023,90000,10000,22,18000,1200,PENDING,,"));
+        assertTrue(staged.toString().contains("\"user-2\",\"Smith, \"\"Jr.\"\"\",\"Line one\nline two\",2023,"));
+        verify(connection).commit();
+        verify(existenceFilter).invalidateAndRebuild();
+        verify(cacheService).evictAll();
+    }
+
+    @Test
+    void importFile_WhenNothingWasInserted_ShouldLeaveCachesAlone() throws Exception {
+        // Given
+        givenConnection(0);
+
+        // When
+        importService.importFile(input(CSV_HEADER + "user-1,Jane,Doe,2023,90000,10000,22,18000,1200\n"),
+                TaxFileImportService.ImportFormat.CSV, "test");
+
+        // Then
+        verifyNoInteractions(existenceFilter, cacheService);
+    }
+
+    @Test
+    void importFile_ShouldRejectInvalidRowsAndKeepTheRest() throws Exception {
+        // Given
+        givenConnection(1);
+        captureStaged();
+        String ndjson = "{\"user_id\":\"user-1\",\"tax_year\":2023,\"income\":1,\"expense\":0,\"tax_rate_percent\":10,\"deducted\":0,\"refund_amount\":0}\n" +
+                "{\"user_id\":\"user-2\",\"tax_year\":\"not a year\"}\n" +
+                "not json\n";
+
+        // When
+        TaxFileImportResponse response = importService.importFile(input(ndjson), TaxFileImportService.ImportFormat.NDJSON, "test");
+
+        // Then
+        assertEquals(3, response.getRowsRead());
+        assertEquals(2, response.getRowsRejected());
+        assertTrue(staged.toString().startsWith("\"user-1\""));
+    }
+
+    @Test
+    void importFile_WhileAnotherImportRuns_ShouldThrowAlreadyRunning() throws Exception {
+        // Given: a second import starts while the first one is staging rows
+        givenConnection(1);
+        doAnswer(invocation -> {
+            assertThrows(ImportAlreadyRunningException.class,
+                    () -> importService.importFile(input(CSV_HEADER), TaxFileImportService.ImportFormat.CSV, "second"));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+
+        // When
+        importService.importFile(input(CSV_HEADER + "user-1,Jane,Doe,2023,90000,10000,22,18000,1200\n"),
+                TaxFileImportService.ImportFormat.CSV, "first");
+
+        // Then
+        verify(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        verify(connection).commit();
+    }
+
+    @Test
+    void readCsvRecord_ShouldSplitPlainFields() throws IOException {
+        // When
+        List<String> values = TaxFileImportService.readCsvRecord(reader("2023,97563,9737,23,2166,3489,2022-03-02,9\n"));
+
+        // Then
+        assertEquals(8, values.size());
+        assertEquals("2023", values.get(0));
+        assertEquals("2022-03-02", values.get(6));
+    }
+
+    @Test
+    void readCsvRecord_ShouldHonourQuotedFieldsAndEscapes() throws IOException {
+        // When
+        List<String> values = TaxFileImportService.readCsvRecord(reader("user-1,\"O'Brien, Jr.\",\"Say \"\"hi\"\"\","));
+
+        // Then
+        assertEquals(List.of("user-1", "O'Brien, Jr.", "Say \"hi\"", ""), values);
+    }
+
+    @Test
+    void readCsvRecord_ShouldKeepLineBreaksInsideQuotedFields() throws IOException {
+        // Given
+        BufferedReader reader = reader("user-1,\"first line\r\nsecond line\",2023\r\nuser-2,plain,2024\n");
+
+        // When
+        List<String> first = TaxFileImportService.readCsvRecord(reader);
+        List<String> second = TaxFileImportService.readCsvRecord(reader);
+
+        // Then
+        assertEquals(List.of("user-1", "first line\nsecond line", "2023"), first);
+        assertEquals(List.of("user-2", "plain", "2024"), second);
+        assertNull(TaxFileImportService.readCsvRecord(reader));
+    }
+
+    @Test
+    void readCsvRecord_WhenQuoteIsNeverClosed_ShouldThrow() {
+        assertThrows(IOException.class, () -> TaxFileImportService.readCsvRecord(reader("user-1,\"unterminated\n")));
+    }
+
+    @Test
+    void importFormat_ShouldFollowContentTypeOrFileName() {
+        assertEquals(TaxFileImportService.ImportFormat.NDJSON, TaxFileImportService.ImportFormat.fromName("application/x-ndjson; charset=UTF-8"));
+        assertEquals(TaxFileImportService.ImportFormat.NDJSON, TaxFileImportService.ImportFormat.fromName("filings-2023.jsonl"));
+        assertEquals(TaxFileImportService.ImportFormat.CSV, TaxFileImportService.ImportFormat.fromName("text/csv"));
+        assertEquals(TaxFileImportService.ImportFormat.CSV, TaxFileImportService.ImportFormat.fromName("dummy_tax_refund_data.csv"));
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static BufferedReader reader(String content) {
+        return new BufferedReader(new StringReader(content));
+    }
+}
@@ -1,12 +1,19 @@
 package com.badhtaxfileserv.service;
 
+import com.badhtaxfileserv.dto.BatchCreateTaxFileResponse;
 import com.badhtaxfileserv.dto.CreateTaxFileRequest;
+import com.badhtaxfileserv.dto.TaxFileKey;
+import com.badhtaxfileserv.dto.TaxFileLookupResponse;
 import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.badhtaxfileserv.entity.OutboxMessage;
 import com.badhtaxfileserv.entity.Refund;
 import com.badhtaxfileserv.entity.TaxFile;
-import com.badhtaxfileserv.repository.RefundRepository;
+import com.badhtaxfileserv.exception.TaxFileNotFoundException;
+import com.badhtaxfileserv.repository.TaxFileBatchRepository;
 import com.badhtaxfileserv.repository.TaxFileRepository;
 import com.badhtaxfileserv.util.ETAPredictor;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,15 +21,24 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,10 +48,19 @@ class TaxFileServiceTest {
     private TaxFileRepository taxFileRepository;
     
     @Mock
-    private RefundRepository refundRepository;
+    private ETAPredictor etaPredictor;
     
     @Mock
-    private ETAPredictor etaPredictor;
+    private TaxFileCacheServiceInterface cacheService;
+    
+    @Mock
+    private TaxFileBatchRepository taxFileBatchRepository;
+    
+    @Mock
+    private Validator validator;
+    
+    @Mock
+    private TaxFileExistenceFilter existenceFilter;
     
     @InjectMocks
     private TaxFileService taxFileService;
@@ -80,17 +105,17 @@ class TaxFileServiceTest {
                 .build();
         
         savedTaxFile.setRefund(savedRefund);
+        
+        // Nothing is ruled out unless a test says so
+        lenient().when(existenceFilter.mightExist(anyString(), any())).thenReturn(true);
     }
     
     @Test
-    void createTaxFile_WithRefund_ShouldCreateTaxFileAndRefund() {
+    void createTaxFile_WithRefund_ShouldInsertTaxFileRefundAndOutboxMessageTogether() {
         // Given
-        when(taxFileRepository.existsByUserIdAndYear(anyString(), any())).thenReturn(false);
-        when(taxFileRepository.save(any(TaxFile.class))).thenReturn(savedTaxFile);
-        when(refundRepository.save(any(Refund.class))).thenReturn(savedRefund);
-        when(etaPredictor.predictETA()).thenReturn(LocalDateTime.now().plusDays(30));
-        when(taxFileRepository.findByUserIdAndYearWithRefund(anyString(), any()))
-                .thenReturn(Optional.of(savedTaxFile));
+        when(etaPredictor.predictETA(any(TaxFile.class))).thenReturn(LocalDateTime.now().plusDays(30));
+        when(taxFileBatchRepository.insertTaxFile(any(TaxFile.class), any(Refund.class), any(OutboxMessage.class)))
+                .thenReturn(TaxFileResponse.fromEntity(savedTaxFile));
         
         // When
         TaxFileResponse response = taxFileService.createTaxFile(validRequest);
@@ -103,10 +128,15 @@ class TaxFileServiceTest {
         assertEquals("PENDING", response.getRefundStatus());
         assertNotNull(response.getRefundEta());
         
-        verify(taxFileRepository).existsByUserIdAndYear("user-123", 2024);
-        verify(taxFileRepository).save(any(TaxFile.class));
-        verify(refundRepository).save(any(Refund.class));
-        verify(etaPredictor).predictETA();
+        verify(etaPredictor).predictETA(any(TaxFile.class));
+        verify(taxFileBatchRepository).insertTaxFile(
+                argThat(taxFile -> taxFile.getId() != null && taxFile.getTaxStatus() == TaxFile.TaxStatus.PENDING),
+                argThat(refund -> refund.getId() != null && refund.getRefundStatus() == Refund.RefundStatus.PENDING),
+                argThat(message -> message.getTopic() == OutboxMessage.Topic.SEND_REFUND && message.getPayload().contains("user-123")));
+        verify(cacheService).putInCache("user-123", 2024, response);
+        verify(cacheService).evictTaxUsersFromCache(List.of("user-123"));
+        // No pre-check and no re-read
+        verifyNoInteractions(taxFileRepository);
     }
     
     @Test
@@ -137,10 +167,8 @@ class TaxFileServiceTest {
                 .updatedAt(savedTaxFile.getUpdatedAt())
                 .build();
         
-        when(taxFileRepository.existsByUserIdAndYear(anyString(), any())).thenReturn(false);
-        when(taxFileRepository.save(any(TaxFile.class))).thenReturn(completedTaxFile);
-        when(taxFileRepository.findByUserIdAndYearWithRefund(anyString(), any()))
-                .thenReturn(Optional.of(completedTaxFile));
+        when(taxFileBatchRepository.insertTaxFile(any(TaxFile.class), isNull(), isNull()))
+                .thenReturn(TaxFileResponse.fromEntity(completedTaxFile));
         
         // When
         TaxFileResponse response = taxFileService.createTaxFile(zeroRefundRequest);
@@ -151,15 +179,16 @@ class TaxFileServiceTest {
         assertNull(response.getRefundStatus());
         assertNull(response.getRefundEta());
         
-        verify(taxFileRepository).save(any(TaxFile.class));
-        verify(refundRepository, never()).save(any(Refund.class));
-        verify(etaPredictor, never()).predictETA();
+        verify(taxFileBatchRepository).insertTaxFile(
+                argThat(taxFile -> taxFile.getTaxStatus() == TaxFile.TaxStatus.COMPLETED), isNull(), isNull());
+        verify(etaPredictor, never()).predictETA(any(TaxFile.class));
     }
     
     @Test
     void createTaxFile_WhenTaxFileExists_ShouldThrowException() {
         // Given
-        when(taxFileRepository.existsByUserIdAndYear(anyString(), any())).thenReturn(true);
+        when(taxFileBatchRepository.insertTaxFile(any(TaxFile.class), any(), any()))
+                .thenThrow(new DuplicateKeyException("duplicate key value violates unique constraint \"uk_tax_file_user_year\""));
         
         // When & Then
         DataIntegrityViolationException exception = assertThrows(
@@ -167,13 +196,15 @@ class TaxFileServiceTest {
                 () -> taxFileService.createTaxFile(validRequest)
         );
         
-        assertTrue(exception.getMessage().contains("Tax file already exists"));
-        verify(taxFileRepository, never()).save(any(TaxFile.class));
+        assertEquals("Tax file already exists for user: user-123 and year: 2024", exception.getMessage());
+        verify(cacheService, never()).putInCache(anyString(), any(), any());
+        verify(existenceFilter, never()).recordCreated(anyString(), any());
     }
     
     @Test
     void getTaxFile_WhenExists_ShouldReturnTaxFile() {
         // Given
+        loadMissesThroughCache();
         when(taxFileRepository.findByUserIdAndYearWithRefund(anyString(), any()))
                 .thenReturn(Optional.of(savedTaxFile));
         
@@ -190,6 +221,7 @@ class TaxFileServiceTest {
     @Test
     void getTaxFile_WhenNotExists_ShouldThrowException() {
         // Given
+        loadMissesThroughCache();
         when(taxFileRepository.findByUserIdAndYearWithRefund(anyString(), any()))
                 .thenReturn(Optional.empty());
         
@@ -201,4 +233,186 @@ class TaxFileServiceTest {
         
         assertTrue(exception.getMessage().contains("Tax file not found"));
     }
+    
+    @Test
+    void getTaxFile_WhenExistenceFilterRulesItOut_ShouldThrowWithoutDatabase() {
+        // Given
+        when(existenceFilter.mightExist("user-123", 2025)).thenReturn(false);
+        
+        // When & Then
+        TaxFileNotFoundException exception = assertThrows(
+                TaxFileNotFoundException.class,
+                () -> taxFileService.getTaxFile("user-123", 2025)
+        );
+        assertEquals("Tax file not found for user: user-123 and year: 2025", exception.getMessage());
+        verify(cacheService, never()).loadOnMiss(anyString(), any(), any());
+        verifyNoInteractions(taxFileRepository);
+    }
+    
+    @Test
+    void getTaxFile_WhenExistenceFilterMissedItsCreation_ShouldReturnCachedTaxFile() {
+        // Given: created on another instance whose announcement never arrived here
+        TaxFileResponse cached = TaxFileResponse.fromEntity(savedTaxFile);
+        when(cacheService.getFromCache("user-123", 2024)).thenReturn(cached);
+        
+        // When
+        TaxFileResponse response = taxFileService.getTaxFile("user-123", 2024);
+        
+        // Then
+        assertSame(cached, response);
+        verify(existenceFilter, never()).mightExist(anyString(), any());
+    }
+    
+    @Test
+    void getTaxFile_WhenCached_ShouldNotLoad() {
+        // Given
+        TaxFileResponse cached = TaxFileResponse.fromEntity(savedTaxFile);
+        when(cacheService.getFromCache("user-123", 2024)).thenReturn(cached);
+        
+        // When
+        TaxFileResponse response = taxFileService.getTaxFile("user-123", 2024);
+        
+        // Then
+        assertSame(cached, response);
+        verify(cacheService, never()).loadOnMiss(anyString(), any(), any());
+        verifyNoInteractions(taxFileRepository);
+    }
+    
+    @Test
+    void getTaxFilesByUserId_WhenCached_ShouldNotQueryDatabase() {
+        // Given
+        TaxUserResponse cached = TaxUserResponse.builder().userId("user-123").taxFiles(List.of()).build();
+        when(cacheService.getTaxUserFromCache(eq("user-123"), any())).thenReturn(cached);
+        
+        // When
+        TaxUserResponse response = taxFileService.getTaxFilesByUserId("user-123");
+        
+        // Then
+        assertSame(cached, response);
+        verify(taxFileRepository, never()).findByUserIdWithRefund(anyString());
+    }
+    
+    @Test
+    void createTaxFiles_ShouldInsertNewItemsAndReportDuplicates() {
+        // Given
+        CreateTaxFileRequest existing = CreateTaxFileRequest.builder()
+                .userId("user-456")
+                .year(2024)
+                .income(new BigDecimal("80000.00"))
+                .expense(new BigDecimal("10000.00"))
+                .taxRate(new BigDecimal("25.0"))
+                .deducted(new BigDecimal("15000.00"))
+                .refund(new BigDecimal("200.00"))
+                .build();
+        List<CreateTaxFileRequest> requests = List.of(validRequest, existing, validRequest);
+        
+        when(taxFileRepository.findUserIdAndYearByUserIdInAndYearIn(any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{"user-456", 2024}));
+        when(taxFileBatchRepository.insertTaxFiles(any())).thenAnswer(invocation -> invocation.<List<TaxFile>>getArgument(0)
+                .stream().map(TaxFile::getId).collect(Collectors.toSet()));
+        when(etaPredictor.predictETAs(argThat(taxFiles -> taxFiles.size() == 1)))
+                .thenReturn(List.of(LocalDateTime.now().plusDays(30)));
+        
+        // When
+        BatchCreateTaxFileResponse response = taxFileService.createTaxFiles(requests);
+        
+        // Then
+        assertEquals(1, response.getCreated());
+        assertEquals(2, response.getFailed());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.CREATED, response.getResults().get(0).getStatus());
+        assertEquals("PENDING", response.getResults().get(0).getTaxFile().getRefundStatus());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, response.getResults().get(1).getStatus());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, response.getResults().get(2).getStatus());
+        
+        verify(taxFileBatchRepository).insertTaxFiles(argThat(taxFiles -> taxFiles.size() == 1));
+        verify(taxFileBatchRepository).insertRefunds(argThat(refunds -> refunds.size() == 1));
+        verify(taxFileBatchRepository).insertOutboxMessages(argThat(messages -> messages.size() == 1));
+        verify(cacheService).putInCacheBulk(argThat(responses -> responses.size() == 1));
+        verify(taxFileRepository, never()).save(any(TaxFile.class));
+        // Every pair goes to the duplicate query, whatever the existence filter would say
+        verify(existenceFilter, never()).mightExist(anyString(), any());
+    }
+    
+    @Test
+    void createTaxFiles_WhenYearFiledConcurrently_ShouldReportConflictAndSkipItsRefund() {
+        // Given
+        CreateTaxFileRequest racing = CreateTaxFileRequest.builder()
+                .userId("user-456")
+                .year(2024)
+                .income(new BigDecimal("80000.00"))
+                .expense(new BigDecimal("10000.00"))
+                .taxRate(new BigDecimal("25.0"))
+                .deducted(new BigDecimal("15000.00"))
+                .refund(new BigDecimal("200.00"))
+                .build();
+        when(taxFileRepository.findUserIdAndYearByUserIdInAndYearIn(any(), any())).thenReturn(List.of());
+        // Only the first row is inserted; the other conflicts on uk_tax_file_user_year
+        when(taxFileBatchRepository.insertTaxFiles(argThat(taxFiles -> taxFiles.size() == 2)))
+                .thenAnswer(invocation -> Set.of(invocation.<List<TaxFile>>getArgument(0).get(0).getId()));
+        when(etaPredictor.predictETAs(argThat(taxFiles -> taxFiles.size() == 1)))
+                .thenReturn(List.of(LocalDateTime.now().plusDays(30)));
+        
+        // When
+        BatchCreateTaxFileResponse response = taxFileService.createTaxFiles(Arrays.asList(validRequest, null, racing));
+        
+        // Then
+        assertEquals(1, response.getCreated());
+        assertEquals(2, response.getFailed());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.CREATED, response.getResults().get(0).getStatus());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.INVALID, response.getResults().get(1).getStatus());
+        assertEquals(BatchCreateTaxFileResponse.ItemStatus.DUPLICATE, response.getResults().get(2).getStatus());
+        assertEquals("user-456", response.getResults().get(2).getUserId());
+        
+        verify(validator, never()).validate(isNull());
+        verify(taxFileBatchRepository).insertRefunds(argThat(refunds -> refunds.size() == 1
+                && refunds.get(0).getTaxFile().getUserId().equals("user-123")));
+        verify(taxFileBatchRepository).insertOutboxMessages(argThat(messages -> messages.size() == 1));
+        verify(cacheService).putInCacheBulk(argThat(responses -> responses.size() == 1));
+    }
+    
+    private void loadMissesThroughCache() {
+        when(cacheService.loadOnMiss(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<TaxFileResponse>>getArgument(2).get());
+    }
+    
+    @Test
+    void lookupTaxFiles_ShouldLoadOnlyCacheMissesInOneQueryAndCacheThem() {
+        // Given
+        TaxFileResponse cached = TaxFileResponse.fromEntity(savedTaxFile);
+        TaxFileResponse loaded = cached.toBuilder().fileId("file-2023").year(2023).build();
+        TaxFileKey key2024 = new TaxFileKey("user-123", 2024);
+        TaxFileKey key2023 = new TaxFileKey("user-123", 2023);
+        TaxFileKey missing = new TaxFileKey("user-456", 2024);
+        when(cacheService.getFromCacheBulk(any())).thenReturn(List.of(cached));
+        when(taxFileBatchRepository.findTaxFilesWithRefund(List.of(key2023, missing))).thenReturn(List.of(loaded));
+        
+        // When
+        TaxFileLookupResponse response = taxFileService.lookupTaxFiles(List.of(key2023, key2024, missing, key2024));
+        
+        // Then
+        assertEquals(List.of(loaded, cached), response.getTaxFiles());
+        assertEquals(List.of(missing), response.getNotFound());
+        verify(taxFileBatchRepository).findTaxFilesWithRefund(List.of(key2023, missing));
+        verify(cacheService).putInCacheBulk(List.of(loaded));
+        verify(taxFileRepository, never()).findByUserIdAndYearWithRefund(anyString(), any());
+    }
+    
+    @Test
+    void lookupTaxFiles_WhenExistenceFilterRulesOutKeys_ShouldStillReturnCachedOnesAndQueryNeither() {
+        // Given
+        TaxFileResponse cached = TaxFileResponse.fromEntity(savedTaxFile);
+        TaxFileKey key2024 = new TaxFileKey("user-123", 2024);
+        TaxFileKey missing = new TaxFileKey("user-456", 2024);
+        when(existenceFilter.mightExist(anyString(), any())).thenReturn(false);
+        when(cacheService.getFromCacheBulk(Map.of("user-123", Set.of(2024), "user-456", Set.of(2024))))
+                .thenReturn(List.of(cached));
+        
+        // When
+        TaxFileLookupResponse response = taxFileService.lookupTaxFiles(List.of(key2024, missing));
+        
+        // Then
+        assertEquals(List.of(cached), response.getTaxFiles());
+        assertEquals(List.of(missing), response.getNotFound());
+        verifyNoInteractions(taxFileBatchRepository);
+    }
 }
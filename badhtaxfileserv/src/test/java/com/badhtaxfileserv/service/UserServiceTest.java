@@ -0,0 +1,107 @@
+package com.badhtaxfileserv.service;
+
+import com.badhtaxfileserv.dto.AllUsersResponse;
+import com.badhtaxfileserv.dto.UserRefundStatusResponse;
+import com.badhtaxfileserv.entity.User;
+import com.badhtaxfileserv.repository.UserRefundStatusRepository;
+import com.badhtaxfileserv.repository.UserRepository;
+import com.badhtaxfileserv.repository.UserStreamRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserStreamRepository userStreamRepository;
+
+    @Mock
+    private UserRefundStatusRepository userRefundStatusRepository;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserService(userRepository, userStreamRepository, userRefundStatusRepository, new ObjectMapper());
+    }
+
+    @Test
+    void getUsersPage_WithMoreRows_ShouldReturnCursorForNextPage() {
+        // Given
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        when(userRepository.findAllByOrderByCreatedAtDescUserIdDesc(any(Pageable.class)))
+                .thenReturn(List.of(user("user-3", now), user("user-2", now.minusHours(1)), user("user-1", now.minusHours(2))));
+        when(userRepository.findPageAfter(now.minusHours(1).atZone(ZoneId.systemDefault()).toOffsetDateTime(), "user-2", 3))
+                .thenReturn(List.of(user("user-1", now.minusHours(2))));
+
+        // When
+        AllUsersResponse firstPage = userService.getUsersPage(2, null);
+        AllUsersResponse secondPage = userService.getUsersPage(2, firstPage.getNextCursor());
+
+        // Then
+        assertEquals(2, firstPage.getTotalUsers());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals("user-1", secondPage.getUsers().get(0).getUserId());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void getUsersPage_InvalidCursor_ShouldThrowException() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersPage(10, "not-a-cursor"));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getLatestRefundStatuses_WithMoreRows_ShouldTrimPageAndContinueAfterLastUser() {
+        // Given
+        when(userRefundStatusRepository.findPageAfter("", 3)).thenReturn(List.of(
+                status("user-1", "APPROVED"), status("user-2", null), status("user-3", "PENDING")));
+        when(userRefundStatusRepository.findPageAfter("user-2", 3)).thenReturn(List.of(status("user-3", "PENDING")));
+
+        // When
+        UserRefundStatusResponse firstPage = userService.getLatestRefundStatuses(2, null);
+        UserRefundStatusResponse secondPage = userService.getLatestRefundStatuses(2, firstPage.getNextCursor());
+
+        // Then
+        assertEquals(2, firstPage.getTotalUsers());
+        assertEquals("user-2", firstPage.getUsers().get(1).getUserId());
+        assertEquals(1, secondPage.getTotalUsers());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    private UserRefundStatusResponse.UserRefundStatus status(String userId, String refundStatus) {
+        return UserRefundStatusResponse.UserRefundStatus.builder()
+                .userId(userId)
+                .firstName("First")
+                .lastName("Last")
+                .refundStatus(refundStatus)
+                .build();
+    }
+
+    private User user(String userId, LocalDateTime createdAt) {
+        return User.builder()
+                .userId(userId)
+                .firstName("First")
+                .lastName("Last")
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.badhtaxfileserv.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverMissAnAddedKey() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user-" + i + ":2024");
+        }
+
+        // Then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user-" + i + ":2024"));
+        }
+    }
+
+    @Test
+    void mightContain_ShouldRarelyMatchKeysNeverAdded() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user-" + i + ":2024");
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("user-" + i + ":2025")) {
+                falsePositives++;
+            }
+        }
+
+        // Then: 1% expected, allow for variance
+        assertTrue(falsePositives < 200, "False positives: " + falsePositives);
+        assertEquals(7, filter.hashFunctions());
+    }
+
+    @Test
+    void constructor_ShouldRejectImpossibleSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1.0));
+    }
+}
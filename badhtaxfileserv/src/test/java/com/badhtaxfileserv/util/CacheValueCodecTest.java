@@ -0,0 +1,125 @@
+package com.badhtaxfileserv.util;
+
+import com.badhtaxfileserv.config.RedisConfig;
+import com.badhtaxfileserv.dto.TaxFileResponse;
+import com.badhtaxfileserv.dto.TaxUserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheValueCodecTest {
+
+    private final ObjectMapper objectMapper = new RedisConfig().objectMapper();
+    private CacheValueCodec binary;
+    private CacheValueCodec json;
+    private TaxFileResponse response;
+
+    @BeforeEach
+    void setUp() {
+        binary = new CacheValueCodec(objectMapper, CacheValueCodec.Format.BINARY, 1024);
+        json = new CacheValueCodec(objectMapper, CacheValueCodec.Format.JSON, 1024);
+        response = TaxFileResponse.builder()
+                .fileId("7f8e2c4a-1b3d-4e5f-9a0b-1c2d3e4f5a6b")
+                .userId("user-123")
+                .year(2024)
+                .income(new BigDecimal("120000.00"))
+                .expense(new BigDecimal("20000.00"))
+                .taxRate(new BigDecimal("30.0"))
+                .deducted(new BigDecimal("-0.5"))
+                .refund(new BigDecimal("1E+3"))
+                .taxStatus("PENDING")
+                .refundStatus("ERROR")
+                .refundErrors(List.of(new TaxFileResponse.ErrorDetail("ERR001", "Invalid bank account – ümlaut")))
+                .refundEta(LocalDateTime.of(2024, 5, 1, 9, 30, 0, 123456000))
+                .refundUpdatedAt(LocalDateTime.of(1969, 12, 31, 23, 59, 59))
+                .createdAt(LocalDateTime.of(2024, 4, 1, 12, 0))
+                .build();
+    }
+
+    @Test
+    void binary_ShouldRoundTripEveryFieldIncludingNulls() {
+        // When
+        byte[] encoded = binary.encode(response);
+
+        // Then
+        assertEquals(CacheValueCodec.BINARY_V1, encoded[0]);
+        assertEquals(response, binary.decodeTaxFile(encoded));
+        assertTrue(encoded.length < json.encode(response).length / 2);
+    }
+
+    @Test
+    void decode_ShouldReadEitherFormat() throws Exception {
+        // Given: a value as written before the codec existed
+        byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(objectMapper.writeValueAsString(response));
+
+        TaxFileResponse withoutVersion = response.toBuilder().refundUpdatedAt(null).build();
+
+        // When / Then
+        assertArrayEquals(legacy, json.encode(response));
+        assertEquals(withoutVersion, binary.decodeTaxFile(legacy));
+        assertEquals(response, json.decodeTaxFile(binary.encode(response)));
+    }
+
+    @Test
+    void json_ShouldLeaveOutTheCacheVersion() {
+        // When
+        String encoded = new String(json.encode(response), StandardCharsets.UTF_8);
+
+        // Then
+        assertFalse(encoded.contains("refundUpdatedAt"));
+        assertNull(json.decodeTaxFile(json.encode(response)).getRefundUpdatedAt());
+    }
+
+    @Test
+    void binary_ShouldCompressLargeTaxUser() {
+        // Given
+        List<TaxUserResponse.TaxFileSummary> summaries = new ArrayList<>();
+        for (int year = 2000; year < 2025; year++) {
+            summaries.add(TaxUserResponse.TaxFileSummary.builder()
+                    .fileId("file-" + year)
+                    .year(year)
+                    .income(new BigDecimal("120000.00"))
+                    .taxStatus("COMPLETED")
+                    .refundStatus("APPROVED")
+                    .createdAt(LocalDateTime.of(year + 1, 4, 1, 12, 0))
+                    .build());
+        }
+        TaxUserResponse taxUser = TaxUserResponse.builder()
+                .userId("user-123")
+                .firstName("John")
+                .taxFiles(summaries)
+                .totalFiles(summaries.size())
+                .build();
+
+        // When
+        byte[] compressed = binary.encode(taxUser);
+        byte[] uncompressed = new CacheValueCodec(objectMapper, CacheValueCodec.Format.BINARY, Integer.MAX_VALUE).encode(taxUser);
+
+        // Then
+        assertEquals(1, compressed[1]);
+        assertTrue(compressed.length < uncompressed.length);
+        assertEquals(taxUser, binary.decodeTaxUser(compressed));
+        assertEquals(taxUser, binary.decodeTaxUser(uncompressed));
+    }
+
+    @Test
+    void decode_WhenFormatIsUnknown_ShouldThrowSerializationException() {
+        // Given
+        byte[] encoded = binary.encode(response);
+        encoded[0] = 9;
+
+        // When / Then
+        assertThrows(SerializationException.class, () -> binary.decodeTaxFile(encoded));
+        assertThrows(SerializationException.class, () -> binary.decodeTaxFile(new byte[]{CacheValueCodec.BINARY_V1, 0, 2}));
+    }
+}
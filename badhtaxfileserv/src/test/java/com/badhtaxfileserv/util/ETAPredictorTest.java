@@ -1,12 +1,21 @@
 package com.badhtaxfileserv.util;
 
+import com.badhtaxfileserv.entity.TaxFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -44,5 +53,104 @@ class ETAPredictorTest {
         // it's very unlikely with 50-day range
         assertNotEquals(eta1, eta2, "Multiple calls should return different ETAs");
     }
+    
+    @Test
+    void predictETA_WithModel_ShouldScoreTreesFromCreationDate() throws Exception {
+        // Given
+        etaPredictor.setModel(loadTestModel());
+        LocalDateTime saturday = LocalDateTime.of(2024, 3, 2, 9, 0);
+        
+        // When
+        LocalDateTime eta = etaPredictor.predictETA(taxFile("3489.00", saturday));
+        
+        // Then: base 20 + refund_amount >= 1000 (10) + weekend (3)
+        assertEquals(saturday.plusDays(33), eta);
+    }
+    
+    @Test
+    void setModel_WhenModelExpectsOtherFeatureCount_ShouldReject() throws Exception {
+        // Given: the test model as trained without feature names on eleven features
+        ObjectNode json = (ObjectNode) new ObjectMapper().readTree(getClass().getResourceAsStream("/eta/test_model.json"));
+        ObjectNode learner = (ObjectNode) json.path("learner");
+        learner.remove("feature_names");
+        ((ObjectNode) learner.path("learner_model_param")).put("num_feature", "11");
+        TreeEnsembleModel model = TreeEnsembleModel.load(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+        
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> etaPredictor.setModel(model));
+        assertFalse(etaPredictor.isModelLoaded());
+    }
+    
+    @Test
+    void predictETAs_ShouldMatchSinglePredictions() throws Exception {
+        // Given
+        etaPredictor.setModel(loadTestModel());
+        LocalDateTime monday = LocalDateTime.of(2024, 3, 4, 9, 0);
+        List<TaxFile> taxFiles = List.of(taxFile("3489.00", monday), taxFile("500.00", monday));
+        
+        // When
+        List<LocalDateTime> etas = etaPredictor.predictETAs(taxFiles);
+        
+        // Then
+        assertEquals(List.of(monday.plusDays(30), monday.plusDays(15)), etas);
+        assertEquals(etaPredictor.predictETA(taxFiles.get(1)), etas.get(1));
+    }
+    
+    @Test
+    void writeFeatures_ShouldMatchPythonFeatureEngineering() {
+        // Given
+        float[] features = new float[ETAPredictor.FEATURE_NAMES.size()];
+        
+        // When
+        ETAPredictor.writeFeatures(taxFile("3489.00", null), LocalDateTime.of(2024, 3, 2, 9, 0), features, 0);
+        
+        // Then: date(2024, 3, 2).toordinal() == 738947, weekday() == 5
+        assertEquals(2023f, features[0]);
+        assertEquals(3489f, features[5]);
+        assertEquals(738947f, features[6]);
+        assertEquals(3f, features[7]);
+        assertEquals(5f, features[8]);
+        assertEquals(1f, features[9]);
+    }
+    
+    @Test
+    void predictETA_InStatisticsMode_ShouldUseObservedPercentileAndFallBackToModel() throws Exception {
+        // Given
+        etaPredictor.setModel(loadTestModel());
+        LocalDateTime saturday = LocalDateTime.of(2024, 3, 2, 9, 0);
+        LocalDateTime modelEta = etaPredictor.predictETA(taxFile("3489.00", saturday));
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 1);
+        
+        // When
+        etaPredictor.setStatistics(statistics, "statistics", 50);
+        LocalDateTime beforeLoad = etaPredictor.predictETA(taxFile("3489.00", saturday));
+        statistics.replaceTotals(Map.of());
+        statistics.recordAfterCommit(List.of(new RefundEtaStatistics.Approval(
+                2023, saturday.minusYears(1), new BigDecimal("3000.00"), saturday.minusYears(1).plusDays(21))));
+        LocalDateTime afterLoad = etaPredictor.predictETA(taxFile("3489.00", saturday));
+        
+        // Then
+        assertEquals(modelEta, beforeLoad);
+        assertEquals(saturday.plusDays(21), afterLoad);
+        assertEquals(List.of(afterLoad), etaPredictor.predictETAs(List.of(taxFile("3489.00", saturday))));
+    }
+    
+    private TreeEnsembleModel loadTestModel() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/eta/test_model.json")) {
+            return TreeEnsembleModel.load(in);
+        }
+    }
+    
+    private static TaxFile taxFile(String refundAmount, LocalDateTime createdAt) {
+        return TaxFile.builder()
+                .userId("user-123")
+                .year(2023)
+                .income(new BigDecimal("97563.00"))
+                .expense(new BigDecimal("9737.00"))
+                .taxRate(new BigDecimal("23.00"))
+                .deducted(new BigDecimal("2166.00"))
+                .refundAmount(new BigDecimal(refundAmount))
+                .createdAt(createdAt)
+                .build();
+    }
 }
-
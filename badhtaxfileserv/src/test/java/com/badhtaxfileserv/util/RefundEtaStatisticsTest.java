@@ -0,0 +1,134 @@
+package com.badhtaxfileserv.util;
+
+import com.badhtaxfileserv.util.RefundEtaStatistics.Approval;
+import com.badhtaxfileserv.util.RefundEtaStatistics.BucketKey;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefundEtaStatisticsTest {
+
+    private static final LocalDateTime MARCH_FILING = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    @Test
+    void daysHistogram_ShouldRoundTripThroughBytesAndMerge() {
+        // Given
+        DaysHistogram histogram = new DaysHistogram();
+        for (int days = 1; days <= 100; days++) {
+            histogram.add(days);
+        }
+        histogram.add(1000);
+
+        // When
+        DaysHistogram restored = DaysHistogram.fromBytes(histogram.toBytes());
+        restored.merge(histogram);
+
+        // Then
+        assertEquals(202, restored.getTotal());
+        assertEquals(51, restored.percentile(50));
+        assertEquals(DaysHistogram.MAX_DAYS + 1, restored.percentile(100));
+        assertEquals(-1, new DaysHistogram().percentile(50));
+    }
+
+    @Test
+    void percentileDays_ShouldUseOwnBucketOnceItHasEnoughSamples() {
+        // Given
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 3);
+        statistics.replaceTotals(Map.of());
+
+        // When
+        statistics.recordAfterCommit(List.of(
+                approval(2024, MARCH_FILING, "800.00", 20),
+                approval(2024, MARCH_FILING, "900.00", 30),
+                approval(2024, MARCH_FILING, "700.00", 40)));
+
+        // Then
+        assertEquals(OptionalInt.of(30), statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("750.00"), 50));
+        assertEquals(OptionalInt.of(40), statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("750.00"), 90));
+    }
+
+    @Test
+    void percentileDays_ShouldWidenToRollupsForSparseBuckets() {
+        // Given
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 2);
+        statistics.replaceTotals(Map.of());
+        LocalDateTime juneFiling = LocalDateTime.of(2024, 6, 1, 10, 0);
+        statistics.recordAfterCommit(List.of(
+                approval(2022, MARCH_FILING.minusYears(2), "800.00", 10),
+                approval(2023, MARCH_FILING.minusYears(1), "800.00", 12),
+                approval(2024, juneFiling, "20000.00", 50),
+                approval(2024, juneFiling, "30000.00", 60)));
+
+        // When
+        OptionalInt sameMonthAndBand = statistics.percentileDays(2025, MARCH_FILING.plusYears(1), new BigDecimal("800.00"), 100);
+        OptionalInt everything = statistics.percentileDays(2025, MARCH_FILING.plusYears(1), new BigDecimal("3000.00"), 50);
+
+        // Then
+        assertEquals(OptionalInt.of(12), sameMonthAndBand);
+        assertEquals(OptionalInt.of(12), everything);
+        assertTrue(new RefundEtaStatistics(true, 5).percentileDays(2025, MARCH_FILING, BigDecimal.ONE, 50).isEmpty());
+    }
+
+    @Test
+    void percentileDays_WhenPercentileFallsInOverflowBin_ShouldGiveNoEstimate() {
+        // Given
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 2);
+        statistics.replaceTotals(Map.of());
+        statistics.recordAfterCommit(List.of(
+                approval(2024, MARCH_FILING, "800.00", 30),
+                approval(2024, MARCH_FILING, "800.00", 500)));
+
+        // When
+        OptionalInt median = statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("800.00"), 50);
+        OptionalInt slowest = statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("800.00"), 100);
+
+        // Then
+        assertEquals(OptionalInt.of(30), median);
+        assertTrue(slowest.isEmpty());
+    }
+
+    @Test
+    void drainPending_ShouldHandOverOnlyNewSamplesAndKeepThemAcrossReload() {
+        // Given
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 1);
+        statistics.replaceTotals(Map.of());
+        statistics.recordAfterCommit(List.of(approval(2024, MARCH_FILING, "800.00", 20)));
+
+        // When
+        Map<BucketKey, DaysHistogram> drained = statistics.drainPending();
+        statistics.recordAfterCommit(List.of(approval(2024, MARCH_FILING, "800.00", 40)));
+        statistics.replaceTotals(drained);
+
+        // Then
+        BucketKey bucket = RefundEtaStatistics.bucketOf(2024, MARCH_FILING, new BigDecimal("800.00"));
+        assertEquals(1, drained.get(bucket).getTotal());
+        assertEquals(OptionalInt.of(40), statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("800.00"), 100));
+        assertEquals(1, statistics.drainPending().get(bucket).getTotal());
+    }
+
+    @Test
+    void recordAfterCommit_ShouldBufferSamplesUntilStatisticsAreLoaded() {
+        // Given
+        RefundEtaStatistics statistics = new RefundEtaStatistics(true, 1);
+        statistics.recordAfterCommit(List.of(approval(2024, MARCH_FILING, "800.00", 20)));
+        assertTrue(statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("800.00"), 50).isEmpty());
+
+        // When
+        statistics.replaceTotals(Map.of());
+
+        // Then
+        BucketKey bucket = RefundEtaStatistics.bucketOf(2024, MARCH_FILING, new BigDecimal("800.00"));
+        assertEquals(OptionalInt.of(20), statistics.percentileDays(2024, MARCH_FILING, new BigDecimal("800.00"), 50));
+        assertEquals(1, statistics.drainPending().get(bucket).getTotal());
+    }
+
+    private static Approval approval(int taxYear, LocalDateTime filedAt, String refundAmount, int days) {
+        return new Approval(taxYear, filedAt, new BigDecimal(refundAmount), filedAt.plusDays(days));
+    }
+}
@@ -0,0 +1,48 @@
+package com.badhtaxfileserv.util;
+
+import com.badhtaxfileserv.dto.ProcessRefundEventRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefundEventMessageParserTest {
+
+    private final RefundEventMessageParser parser = new RefundEventMessageParser();
+
+    @Test
+    void parse_ShouldReadEventWithUtcDateAndErrorReasons() throws Exception {
+        // When
+        List<ProcessRefundEventRequest> requests = parser.parse("{\"eventId\":\"evt-1\",\"fileId\":\"file-1\"," +
+                "\"type\":\"refund.error\",\"data\":{\"eventDate\":\"2024-05-01T10:15:30Z\"," +
+                "\"errorReasons\":[{\"code\":\"ERR001\",\"message\":\"Invalid bank account\"}]}}");
+
+        // Then
+        assertEquals(1, requests.size());
+        ProcessRefundEventRequest request = requests.get(0);
+        assertEquals("evt-1", request.getEventId());
+        assertEquals("refund.error", request.getType());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 15, 30), request.getData().getEventDate());
+        assertEquals("ERR001", request.getData().getErrorReasons().get(0).getCode());
+    }
+
+    @Test
+    void parse_WithMalformedElements_ShouldStillParseTheOthers() throws Exception {
+        // When
+        List<ProcessRefundEventRequest> requests = parser.parse("[" +
+                "{\"eventId\":\"evt-1\",\"fileId\":\"file-1\",\"type\":\"refund.approved\"}," +
+                "{\"eventId\":\"evt-2\",\"fileId\":\"file-1\",\"type\":\"refund.approved\",\"data\":{\"eventDate\":\"yesterday\"}}," +
+                "42," +
+                "{\"eventId\":\"evt-3\",\"fileId\":\"file-1\",\"type\":\"refund.approved\",\"data\":{\"eventDate\":\"2024-05-01T10:15:30\"}}]");
+
+        // Then
+        assertEquals(4, requests.size());
+        assertEquals("evt-1", requests.get(0).getEventId());
+        assertNull(requests.get(0).getData());
+        assertNull(requests.get(1).getData());
+        assertNull(requests.get(2).getEventId());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 15, 30), requests.get(3).getData().getEventDate());
+    }
+}
@@ -0,0 +1,75 @@
+package com.badhtaxfileserv.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_WhenLoadInFlight_ShouldShareItsResult() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("user-123:2024", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "loaded";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // When
+        Thread follower = new Thread(() -> singleFlight.execute("user-123:2024", () -> {
+            loads.incrementAndGet();
+            return "second load";
+        }));
+        follower.start();
+        waitUntilParked(follower);
+        release.countDown();
+        follower.join(5000);
+
+        // Then
+        assertEquals("loaded", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void execute_WhenLoadFails_ShouldRethrowAndReleaseKey() {
+        // When
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> singleFlight.execute("user-123:2024", () -> {
+                    throw new IllegalStateException("Tax file not found");
+                }));
+
+        // Then
+        assertEquals("Tax file not found", failure.getMessage());
+        assertEquals(0, singleFlight.inFlightCount());
+        assertEquals("retried", singleFlight.execute("user-123:2024", () -> "retried"));
+    }
+
+    private static void waitUntilParked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
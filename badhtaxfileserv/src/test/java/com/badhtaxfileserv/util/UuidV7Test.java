@@ -0,0 +1,50 @@
+package com.badhtaxfileserv.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7Test {
+
+    @Test
+    void randomUuid_ShouldBeVersion7WithCurrentTimestamp() {
+        // Given
+        long before = System.currentTimeMillis();
+
+        // When
+        UUID uuid = UuidV7.randomUuid();
+
+        // Then
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = UuidV7.timestampMillis(uuid);
+        assertTrue(millis >= before && millis <= System.currentTimeMillis());
+    }
+
+    @Test
+    void of_ShouldOrderByCreationTimeWhateverTheRandomBits() {
+        // Given
+        Instant first = Instant.parse("2025-04-15T10:00:00.000100Z");
+        Instant sameMillisecond = Instant.parse("2025-04-15T10:00:00.000900Z");
+        Instant nextMillisecond = Instant.parse("2025-04-15T10:00:00.001Z");
+
+        // When
+        UUID a = UuidV7.of(first, -1L);
+        UUID b = UuidV7.of(sameMillisecond, 0L);
+        UUID c = UuidV7.of(nextMillisecond, 0L);
+
+        // Then: Postgres compares uuids bytewise, which is the string order
+        assertTrue(a.toString().compareTo(b.toString()) < 0);
+        assertTrue(b.toString().compareTo(c.toString()) < 0);
+        assertEquals(first.toEpochMilli(), UuidV7.timestampMillis(a));
+        assertEquals(nextMillisecond.toEpochMilli(), UuidV7.timestampMillis(c));
+    }
+
+    @Test
+    void timestampMillis_WhenNotVersion7_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.timestampMillis(UUID.randomUUID()));
+    }
+}
@@ -12,80 +12,71 @@ interface RefundStatusResponse {
   lastUpdated?: string;
 }
 
+// One row of GET /user/refundStatus: a user and their most recent tax file, if any
+interface UserRefundStatus {
+  userId: string;
+  firstName: string;
+  lastName: string;
+  fileId?: string;
+  taxStatus?: 'PENDING' | 'COMPLETED';
+  refundStatus?: RefundStatusResponse['refundStatus'];
+  refundAmount?: number;
+  lastUpdated?: string;
+}
+
+const PAGE_SIZE = 1000;
+
 // GET refund status for all users
 export async function GET() {
   try {
-    // First, get all users from the user service
-    const usersResponse = await fetch(`${config.badhtaxfileservBaseUrl}/user`, {
-      method: 'GET',
-      headers: {
-        'Content-Type': 'application/json',
-      },
-    });
-
-    if (!usersResponse.ok) {
-      throw new Error(`User service error: ${usersResponse.status}`);
-    }
-
-    const usersData = await usersResponse.json();
-    const users = usersData.users || [];
-
-    // For each user, get their refund status
-    const refundStatusPromises = users.map(async (user: { userId: string; firstName: string; lastName: string }) => {
-      try {
-        // Get user's tax files to determine refund status
-        const taxFilesResponse = await fetch(
-          `${config.badhtaxfileservBaseUrl}/taxFile/taxUser?userId=${user.userId}`,
-          {
-            method: 'GET',
-            headers: {
-              'Content-Type': 'application/json',
-            },
-          }
-        );
+    const refundStatuses: RefundStatusResponse[] = [];
+    let cursor: string | null = null;
 
-        let refundStatus: RefundStatusResponse = {
-          userId: user.userId,
-          firstName: user.firstName,
-          lastName: user.lastName,
-          refundStatus: 'NO_REFUND',
-        };
+    // The service returns every user's latest refund in pages, so this is one request per page
+    // rather than one request per user
+    do {
+      const params = new URLSearchParams({ limit: String(PAGE_SIZE) });
+      if (cursor) {
+        params.set('cursor', cursor);
+      }
 
-        if (taxFilesResponse.ok) {
-          const taxFilesData = await taxFilesResponse.json();
-          const taxFiles = taxFilesData.taxFiles || [];
+      const response = await fetch(`${config.badhtaxfileservBaseUrl}/user/refundStatus?${params}`, {
+        method: 'GET',
+        headers: {
+          'Content-Type': 'application/json',
+        },
+      });
 
-          if (taxFiles.length > 0) {
-            // Get the most recent tax file
-            const latestTaxFile = taxFiles.sort((a: { createdAt: string }, b: { createdAt: string }) => 
-              new Date(b.createdAt).getTime() - new Date(a.createdAt).getTime()
-            )[0];
+      if (!response.ok) {
+        throw new Error(`Refund status service error: ${response.status}`);
+      }
 
-            refundStatus = {
-              userId: user.userId,
-              firstName: user.firstName,
-              lastName: user.lastName,
-              refundStatus: latestTaxFile.refundStatus || 'PENDING',
-              refundAmount: latestTaxFile.refundAmount,
-              taxStatus: latestTaxFile.taxStatus,
-              lastUpdated: latestTaxFile.updatedAt,
-            };
-          }
-        }
+      const page = await response.json();
+      const users: UserRefundStatus[] = page.users || [];
 
-        return refundStatus;
-      } catch (error) {
-        console.error(`Error getting refund status for user ${user.userId}:`, error);
-        return {
-          userId: user.userId,
-          firstName: user.firstName,
-          lastName: user.lastName,
-          refundStatus: 'ERROR' as const,
-        };
+      for (const user of users) {
+        refundStatuses.push(
+          user.fileId
+            ? {
+                userId: user.userId,
+                firstName: user.firstName,
+                lastName: user.lastName,
+                refundStatus: user.refundStatus || 'PENDING',
+                refundAmount: user.refundAmount,
+                taxStatus: user.taxStatus,
+                lastUpdated: user.lastUpdated,
+              }
+            : {
+                userId: user.userId,
+                firstName: user.firstName,
+                lastName: user.lastName,
+                refundStatus: 'NO_REFUND',
+              }
+        );
       }
-    });
 
-    const refundStatuses = await Promise.all(refundStatusPromises);
+      cursor = page.nextCursor || null;
+    } while (cursor);
 
     return NextResponse.json({
       users: refundStatuses,
@@ -343,7 +343,7 @@ file_cloud_run_service = gcp.cloudrun.Service(
                                 db_instance.public_ip_address,
                                 ":5432/",
                                 db_name,
-                                "?sslmode=require&currentSchema=taxfileservdb"
+                                "?sslmode=require&currentSchema=taxfileservdb&reWriteBatchedInserts=true"
                             )
                         ),
                         gcp.cloudrun.ServiceTemplateSpecContainerEnvArgs(